@@ -0,0 +1,82 @@
+package com.xiledsystems.AlternateJavaBridgelib.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that the touch and collision hot path allocates nothing per event.
+ * Each event is a move of a drag: the sprites under the finger are found,
+ * and the dragged sprite is moved and checked for collisions with its
+ * neighbours, at 10, 100 and 1000 sprites.  Both go through
+ * {@link com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteIndex},
+ * the code Canvas and AnimCanvas run (see {@link SpriteWorld}).
+ *
+ * <p>The bytes the thread allocates are counted with HotSpot's
+ * {@code com.sun.management.ThreadMXBean}, over {@link #EVENTS} events that
+ * follow as many identical ones run to warm up and to grow the reused lists
+ * and grid cells.  Fewer than one byte per event means none: the smallest
+ * object takes 16.  Run it with escape analysis off, as below, so that
+ * HotSpot does not optimise away allocations that Dalvik would make.
+ *
+ * <p>Compile it with {@link SpriteWorld} and these library sources, which
+ * need neither Android nor JMH:
+ *
+ * <pre>
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/Component.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/HandlesEventDispatching.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/common/ComponentConstants.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/BoundingBox.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/LayeredList.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/SpatialHash.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/SpriteIndex.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/SpriteMath.java
+ * </pre>
+ *
+ * and run {@code java -XX:-DoEscapeAnalysis -cp <classes> com.xiledsystems.AlternateJavaBridgelib.benchmarks.AllocationCheck}.
+ * It exits with status 1 if anything was allocated.
+ *
+ */
+public final class AllocationCheck {
+
+  static final int EVENTS = 200000;
+
+  private static final int[] SPRITE_COUNTS = { 10, 100, 1000 };
+
+  private AllocationCheck() {
+  }
+
+  public static void main(String[] args) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    boolean failed = false;
+    for (int count : SPRITE_COUNTS) {
+      SpriteWorld world = new SpriteWorld(count);
+      SpriteWorld.Body dragged = world.bodies[0];
+      int sink = drag(world, dragged);
+      long before = threads.getThreadAllocatedBytes(thread);
+      sink += drag(world, dragged);
+      long bytes = threads.getThreadAllocatedBytes(thread) - before;
+      System.out.println(count + " sprites: " + bytes + " bytes over " + EVENTS
+          + " events (" + sink + " hits)");
+      if (bytes >= EVENTS) {
+        failed = true;
+      }
+    }
+    if (failed) {
+      System.out.println("FAILED: the touch and collision path allocates");
+      System.exit(1);
+    }
+  }
+
+  // Drags a sprite to and fro under a finger that follows it, one event per
+  // move, and returns how many sprites were touched and hit along the way.
+  private static int drag(SpriteWorld world, SpriteWorld.Body body) {
+    int hits = 0;
+    for (int i = 0; i < EVENTS; i++) {
+      double dx = (i & 1) == 0 ? 1 : -1;
+      hits += world.touch(body.x + body.width / 2.0, body.y + body.height / 2.0);
+      hits += world.drag(body, dx, 0);
+    }
+    return hits;
+  }
+}
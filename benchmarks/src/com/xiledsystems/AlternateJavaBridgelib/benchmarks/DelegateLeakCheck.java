@@ -0,0 +1,81 @@
+package com.xiledsystems.AlternateJavaBridgelib.benchmarks;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
+
+/**
+ * Checks that {@link EventDispatcher} lets go of dispatch delegates.  It
+ * creates and destroys {@link #FORMS} stand-ins for Forms, each holding a
+ * megabyte as its views and bitmaps would, registering events and raising
+ * them as a Form does.  Half are removed with
+ * {@link EventDispatcher#removeDispatchDelegate}, as Form.onDestroy() does;
+ * the other half are simply dropped, as a Form that never got its
+ * onDestroy() would be.  Afterwards no delegate may be left registered,
+ * and the heap may not have grown by more than {@link #MAX_GROWTH} bytes,
+ * a fraction of what the dropped forms would hold if they leaked.
+ *
+ * <p>Compile it as {@link DispatchBenchmark} is compiled (it needs no JMH)
+ * and run {@code java -cp <classes> com.xiledsystems.AlternateJavaBridgelib.benchmarks.DelegateLeakCheck}.
+ * It exits with status 1 if the check fails.
+ *
+ */
+public final class DelegateLeakCheck {
+
+  static final int FORMS = 1000;
+  static final long MAX_GROWTH = 8L << 20;
+
+  // Stands in for a Form and the views it holds.
+  static final class Form implements HandlesEventDispatching, Component {
+    final byte[] views = new byte[1 << 20];
+
+    public boolean canDispatchEvent(Component component, String eventName) {
+      return true;
+    }
+
+    public boolean dispatchEvent(Component component, String componentName,
+        String eventName, Object[] args) {
+      return true;
+    }
+
+    public HandlesEventDispatching getDispatchDelegate() {
+      return this;
+    }
+  }
+
+  private DelegateLeakCheck() {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int click = EventDispatcher.eventId("Click");
+    long before = usedHeap();
+    for (int i = 0; i < FORMS; i++) {
+      Form form = new Form();
+      EventDispatcher.registerEventForDelegation(form, "Form1", "Initialize");
+      EventDispatcher.registerEventForDelegation(form, "Button1", "Click");
+      EventDispatcher.dispatchEvent(form, "Initialize");
+      EventDispatcher.dispatchEvent(form, click);
+      if (i % 2 == 0) {
+        EventDispatcher.removeDispatchDelegate(form);
+      }
+    }
+    long growth = usedHeap() - before;
+    int left = EventDispatcher.dispatchDelegateCount();
+    System.out.println(FORMS + " forms: " + left + " delegates left, heap grew by "
+        + growth / 1024 + " KB");
+    if (left != 0 || growth > MAX_GROWTH) {
+      System.out.println("FAILED: dispatch delegates are leaking");
+      System.exit(1);
+    }
+  }
+
+  // Collects what can be collected and returns the heap in use.
+  private static long usedHeap() throws InterruptedException {
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,97 @@
+package com.xiledsystems.AlternateJavaBridgelib.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
+
+/**
+ * The cost of dispatching an event by name through {@link EventDispatcher},
+ * to a delegate with a handful of events registered, as a Form has.
+ *
+ * <p>This raises AccelerationChanged the way every event was raised before
+ * events had ids, by name with boxed varargs, to a delegate that only
+ * implements HandlesEventDispatching.  It uses nothing added since, so it
+ * compiles and runs against the library from before ids as well as the
+ * current one, for comparison.  {@link DispatchByIdBenchmark} measures the
+ * paths components use now.  Run with {@code -prof gc} to see the
+ * allocations per dispatch as well.
+ *
+ * <p>The benchmarks run on a desktop JVM.  Compile this class with JMH and
+ * its annotation processor, the Android platform jar (only for the
+ * classes' references to logging, which these benchmarks never reach),
+ * and these library sources:
+ *
+ * <pre>
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/Component.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/HandlesEventDispatching.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/HandlesFloatEventDispatching.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/common/ComponentConstants.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/events/*.java
+ * </pre>
+ *
+ * leaving out HandlesFloatEventDispatching, which the library from before
+ * ids doesn't have, and run it with
+ * {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main DispatchBenchmark}.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+  // Stands in for a Form that is its own component, and handles every event.
+  static final class Delegate implements HandlesEventDispatching, Component {
+    int handled;
+
+    public boolean canDispatchEvent(Component component, String eventName) {
+      return true;
+    }
+
+    public boolean dispatchEvent(Component component, String componentName,
+        String eventName, Object[] args) {
+      handled++;
+      return true;
+    }
+
+    public HandlesEventDispatching getDispatchDelegate() {
+      return this;
+    }
+  }
+
+  static final String[] EVENTS = {
+    "Click", "Timer", "Touched", "Dragged", "AccelerationChanged", "CollidedWith", "EdgeReached"
+  };
+
+  private Delegate delegate;
+  private float x;
+
+  @Setup
+  public void setUp() {
+    delegate = new Delegate();
+    for (String event : EVENTS) {
+      EventDispatcher.registerEventForDelegation(delegate, "Form1", event);
+    }
+  }
+
+  @Benchmark
+  public boolean byName() {
+    x++;
+    return EventDispatcher.dispatchEvent(delegate, "AccelerationChanged", x, 2f, 3f);
+  }
+}
@@ -0,0 +1,96 @@
+package com.xiledsystems.AlternateJavaBridgelib.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesFloatEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
+
+/**
+ * The cost of dispatching an event by id through {@link EventDispatcher},
+ * the paths components use now: with the floats in an array, as
+ * AccelerationChanged and Dragged are raised, and with no arguments, as
+ * Timer is.  The delegate has the same events registered as in
+ * {@link DispatchBenchmark}, and takes floats as they are.  Run with
+ * {@code -prof gc} to see the allocations per dispatch as well.
+ *
+ * <p>Compile it as {@link DispatchBenchmark} is compiled, with
+ * HandlesFloatEventDispatching, and run it with
+ * {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main DispatchByIdBenchmark}.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchByIdBenchmark {
+
+  // Stands in for a Form that is its own component, handles every event,
+  // and takes float events without boxing.
+  static final class Delegate implements HandlesFloatEventDispatching, Component {
+    int handled;
+
+    public boolean canDispatchEvent(Component component, String eventName) {
+      return true;
+    }
+
+    public boolean dispatchEvent(Component component, String componentName,
+        String eventName, Object[] args) {
+      handled++;
+      return true;
+    }
+
+    public boolean dispatchEvent(Component component, String componentName, int eventId,
+        float[] args, int argCount) {
+      handled++;
+      return true;
+    }
+
+    public HandlesEventDispatching getDispatchDelegate() {
+      return this;
+    }
+  }
+
+  private Delegate delegate;
+  private int accelerationChanged;
+  private int timer;
+  private final float[] args = new float[3];
+  private float x;
+
+  @Setup
+  public void setUp() {
+    delegate = new Delegate();
+    for (String event : DispatchBenchmark.EVENTS) {
+      EventDispatcher.registerEventForDelegation(delegate, "Form1", event);
+    }
+    accelerationChanged = EventDispatcher.eventId("AccelerationChanged");
+    timer = EventDispatcher.eventId("Timer");
+  }
+
+  @Benchmark
+  public boolean byIdWithFloats() {
+    args[0] = ++x;
+    args[1] = 2f;
+    args[2] = 3f;
+    return EventDispatcher.dispatchEvent(delegate, accelerationChanged, args, 3);
+  }
+
+  @Benchmark
+  public boolean byIdWithoutArguments() {
+    return EventDispatcher.dispatchEvent(delegate, timer);
+  }
+}
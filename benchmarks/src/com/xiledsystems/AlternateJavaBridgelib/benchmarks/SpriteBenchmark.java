@@ -0,0 +1,85 @@
+package com.xiledsystems.AlternateJavaBridgelib.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of what a canvas does with its sprites, at 10, 100 and 1000 of
+ * them (see {@link SpriteWorld}): moving every sprite one step, checking
+ * every sprite for collisions, and finding the sprites under a touch, which
+ * walks the canvas in a grid so that touches land on crowded and empty
+ * places alike.  The last two run
+ * {@link com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteIndex},
+ * as Canvas and AnimCanvas do.
+ *
+ * <p>Compile this class and {@link SpriteWorld} with JMH and its annotation
+ * processor, and these library sources, which need no Android:
+ *
+ * <pre>
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/Component.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/HandlesEventDispatching.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/common/ComponentConstants.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/BoundingBox.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/LayeredList.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/SpatialHash.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/SpriteIndex.java
+ *   src/com/xiledsystems/AlternateJavaBridgelib/components/util/SpriteMath.java
+ * </pre>
+ *
+ * and run it with {@code java -cp <classes>:<jmh jars> org.openjdk.jmh.Main SpriteBenchmark}.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteBenchmark {
+
+  // The distance between touches
+  private static final int TOUCH_STEP = 16;
+
+  @Param({ "10", "100", "1000" })
+  public int sprites;
+
+  private SpriteWorld world;
+  private int touchX;
+  private int touchY;
+
+  @Setup
+  public void setUp() {
+    world = new SpriteWorld(sprites);
+  }
+
+  @Benchmark
+  public void step() {
+    world.step();
+  }
+
+  @Benchmark
+  public int collide() {
+    return world.collide();
+  }
+
+  @Benchmark
+  public int touch() {
+    touchX += TOUCH_STEP;
+    if (touchX >= SpriteWorld.CANVAS_WIDTH) {
+      touchX = 0;
+      touchY = (touchY + TOUCH_STEP) % SpriteWorld.CANVAS_HEIGHT;
+    }
+    return world.touch(touchX, touchY);
+  }
+}
@@ -0,0 +1,254 @@
+package com.xiledsystems.AlternateJavaBridgelib.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteIndex;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteMath;
+
+/**
+ * A canvas full of sprites, reduced to the Android-free parts that
+ * SpriteComponent, Sprite and the canvases are built on: {@link SpriteMath}
+ * for motion and collisions, and {@link SpriteIndex}, the very code with
+ * which Canvas and AnimCanvas find touched sprites and check moved sprites
+ * for collisions.  Only what a sprite is, a box here, differs from the
+ * components, so that it can be measured on a desktop JVM.
+ *
+ */
+final class SpriteWorld {
+
+  static final int CANVAS_WIDTH = 320;
+  static final int CANVAS_HEIGHT = 480;
+
+  // Half the size of the box around a touch, as in MotionEventParser
+  private static final int HALF_FINGER_WIDTH = 12;
+  private static final int HALF_FINGER_HEIGHT = 12;
+
+  // The number of layers sprites are spread over, so that finding them
+  // has to sort them into drawing order
+  private static final int LAYERS = 4;
+
+  // What a sprite's motion and collisions depend on
+  static final class Body {
+    double x;
+    double y;
+    int width;
+    int height;
+    double heading;
+    double headingCos;
+    double headingSin;
+    double speed;
+    double z;
+
+    // Kept for SpriteIndex, as Sprite keeps them
+    long drawingSequence;
+    final List<Body> registeredCollisions = new ArrayList<Body>();
+    int collisionStamp;
+
+    void heading(double heading) {
+      this.heading = heading;
+      double radians = Math.toRadians(heading);
+      headingCos = Math.cos(radians);
+      headingSin = Math.sin(radians);
+    }
+  }
+
+  // The index, told of collisions as Sprite is
+  private static final class Bodies extends SpriteIndex<Body> {
+    private final BoundingBox scratchBox = new BoundingBox(0, 0, 0, 0);
+    private int collisionPass;
+
+    // Collisions begun or ended since last reset
+    int changes;
+
+    @Override
+    protected double getLayer(Body body) {
+      return body.z;
+    }
+
+    @Override
+    protected long getSequence(Body body) {
+      return body.drawingSequence;
+    }
+
+    @Override
+    protected void setSequence(Body body, long sequence) {
+      body.drawingSequence = sequence;
+    }
+
+    @Override
+    protected boolean touches(Body body, BoundingBox box) {
+      scratchBox.set(body.x, body.y, body.x + body.width - 1, body.y + body.height - 1);
+      return scratchBox.intersectDestructively(box);
+    }
+
+    @Override
+    protected boolean collidable(Body body) {
+      return true;
+    }
+
+    @Override
+    protected boolean colliding(Body body1, Body body2) {
+      return SpriteMath.rectanglesColliding(body1.x, body1.y, body1.width, body1.height,
+          body2.x, body2.y, body2.width, body2.height);
+    }
+
+    @Override
+    protected boolean registeredColliding(Body body, Body other) {
+      return body.registeredCollisions.contains(other);
+    }
+
+    @Override
+    protected void addRegisteredCollisions(Body body, List<Body> out) {
+      if (body.registeredCollisions.isEmpty()) {
+        return;
+      }
+      int stamp = ++collisionPass;
+      for (int i = 0; i < out.size(); i++) {
+        out.get(i).collisionStamp = stamp;
+      }
+      for (int i = 0; i < body.registeredCollisions.size(); i++) {
+        Body other = body.registeredCollisions.get(i);
+        if (other.collisionStamp != stamp) {
+          other.collisionStamp = stamp;
+          out.add(other);
+        }
+      }
+    }
+
+    @Override
+    protected void collided(Body body, Body other) {
+      body.registeredCollisions.add(other);
+      changes++;
+    }
+
+    @Override
+    protected void noLongerColliding(Body body, Body other) {
+      body.registeredCollisions.remove(other);
+      changes++;
+    }
+  }
+
+  final Body[] bodies;
+  private final Bodies index = new Bodies();
+
+  // Reused as the components reuse theirs
+  private final List<Body> touched = new ArrayList<Body>();
+  private final BoundingBox touchBox = new BoundingBox(0, 0, 0, 0);
+
+  /**
+   * Creates a world of sprites of random sizes, places, layers and headings,
+   * the same ones for the same count.
+   *
+   * @param count the number of sprites
+   */
+  SpriteWorld(int count) {
+    Random random = new Random(count);
+    bodies = new Body[count];
+    for (int i = 0; i < count; i++) {
+      Body body = new Body();
+      body.width = 8 + random.nextInt(24);
+      body.height = 8 + random.nextInt(24);
+      body.x = random.nextInt(CANVAS_WIDTH - body.width);
+      body.y = random.nextInt(CANVAS_HEIGHT - body.height);
+      body.speed = 1 + random.nextInt(8);
+      body.heading(random.nextInt(360));
+      body.z = random.nextInt(LAYERS);
+      bodies[i] = body;
+      index.add(body, body.z);
+      place(body);
+    }
+  }
+
+  /**
+   * Moves every sprite one step, bouncing those that reach an edge, as the
+   * sprite clock does on a tick.
+   */
+  void step() {
+    for (int i = 0; i < bodies.length; i++) {
+      Body body = bodies[i];
+      body.x = SpriteMath.step(body.x, body.speed, body.headingCos);
+      body.y = SpriteMath.step(body.y, body.speed, body.headingSin);
+      int edge = SpriteMath.edgeHit(body.x, body.y, body.width, body.height,
+          CANVAS_WIDTH, CANVAS_HEIGHT);
+      if (edge != Component.DIRECTION_NONE) {
+        body.x = SpriteMath.intoBounds(body.x, body.width, CANVAS_WIDTH);
+        body.y = SpriteMath.intoBounds(body.y, body.height, CANVAS_HEIGHT);
+        body.heading(SpriteMath.bounceHeading(body.heading, edge));
+      }
+      place(body);
+    }
+  }
+
+  /**
+   * Checks every sprite for collisions with its neighbours, as the canvas
+   * does once a batch of moves is done.
+   *
+   * @return the number of collisions begun or ended, each counted from
+   *         both sides
+   */
+  int collide() {
+    index.changes = 0;
+    for (int i = 0; i < bodies.length; i++) {
+      index.findCollisions(bodies[i]);
+    }
+    return index.changes;
+  }
+
+  /**
+   * Checks one sprite for collisions with its neighbours, as the canvas
+   * does when a single sprite moves.
+   *
+   * @param body the sprite
+   * @return the number of collisions begun or ended, counted from both sides
+   */
+  int collide(Body body) {
+    index.changes = 0;
+    index.findCollisions(body);
+    return index.changes;
+  }
+
+  /**
+   * Finds the sprites under a finger, as a canvas does for every touch and
+   * every move of a drag.
+   *
+   * @param x x-coordinate of the finger
+   * @param y y-coordinate of the finger
+   * @return the number of sprites touched
+   */
+  int touch(double x, double y) {
+    touchBox.set(Math.max(0, x - HALF_FINGER_WIDTH), Math.max(0, y - HALF_FINGER_HEIGHT),
+        Math.min(CANVAS_WIDTH - 1, x + HALF_FINGER_WIDTH),
+        Math.min(CANVAS_HEIGHT - 1, y + HALF_FINGER_HEIGHT));
+    index.findTouched(touchBox, touched);
+    int count = touched.size();
+    touched.clear();
+    return count;
+  }
+
+  /**
+   * Moves a sprite by the given amount, as dragging it does, and checks it
+   * for collisions.
+   *
+   * @param body the sprite
+   * @param dx distance to move right
+   * @param dy distance to move down
+   * @return the number of collisions begun or ended, counted from both sides
+   */
+  int drag(Body body, double dx, double dy) {
+    body.x += dx;
+    body.y += dy;
+    place(body);
+    return collide(body);
+  }
+
+  // Covers the sprite grown by a pixel, as the canvases do, since sprites
+  // that merely touch collide.
+  private void place(Body body) {
+    index.update(body, body.x - 1, body.y - 1,
+        body.x + body.width + 1, body.y + body.height + 1);
+  }
+}
@@ -0,0 +1,462 @@
+package com.xiledsystems.AlternateJavaBridgelib.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates an EventRouter for every class with methods marked
+ * {@code @OnEvent}, so that events reach them through a lookup of the
+ * component and a switch on a handler number, rather than through string
+ * comparisons in dispatchEvent.  Each event gets one handler however many
+ * components it is handled for.
+ *
+ * <p>This runs in the compiler, not on the device, and so is kept apart
+ * from the library's sources.  Put it on the processor path of the app's
+ * build, from a jar of this directory.
+ *
+ */
+@SupportedAnnotationTypes(OnEventProcessor.ON_EVENT)
+public class OnEventProcessor extends AbstractProcessor {
+
+  static final String EVENTS = "com.xiledsystems.AlternateJavaBridgelib.components.events";
+  static final String ON_EVENT = EVENTS + ".OnEvent";
+  private static final String EVENT_DISPATCHER = EVENTS + ".EventDispatcher";
+  private static final String EVENT_HANDLER = EVENTS + ".EventHandler";
+  private static final String EVENT_ROUTER = EVENTS + ".EventRouter";
+  // Must match EventRouter.SUFFIX
+  private static final String SUFFIX = "_EventRouter";
+  private static final String COMPONENT = "com.xiledsystems.AlternateJavaBridgelib.components.Component";
+  private static final String DELEGATE =
+      "com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching";
+
+  // A method marked @OnEvent
+  private static final class Handler {
+    private final ExecutableElement method;
+    private final String component;
+    private final String event;
+
+    private Handler(ExecutableElement method, String component, String event) {
+      this.method = method;
+      this.component = component;
+      this.event = event;
+    }
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement onEvent = processingEnv.getElementUtils().getTypeElement(ON_EVENT);
+    if (onEvent == null) {
+      return false;
+    }
+    // The handlers of each class, in the order they appear
+    Map<TypeElement, List<Handler>> handlers = new LinkedHashMap<TypeElement, List<Handler>>();
+    for (Element element : roundEnv.getElementsAnnotatedWith(onEvent)) {
+      if (element.getKind() != ElementKind.METHOD) {
+        continue;
+      }
+      ExecutableElement method = (ExecutableElement) element;
+      TypeElement type = (TypeElement) method.getEnclosingElement();
+      AnnotationMirror mirror = findMirror(method, onEvent);
+      Handler handler = new Handler(method, stringValue(mirror, "component"),
+          stringValue(mirror, "event"));
+      if (check(type, handler)) {
+        List<Handler> list = handlers.get(type);
+        if (list == null) {
+          list = new ArrayList<Handler>();
+          handlers.put(type, list);
+        }
+        list.add(handler);
+      }
+    }
+    for (Map.Entry<TypeElement, List<Handler>> entry : handlers.entrySet()) {
+      if (checkDuplicates(entry.getValue())) {
+        write(entry.getKey(), entry.getValue());
+      }
+    }
+    return true;
+  }
+
+  // Reports whatever would keep the generated router from compiling or
+  // working, returning false if there is any.
+  private boolean check(TypeElement type, Handler handler) {
+    ExecutableElement method = handler.method;
+    Set<Modifier> modifiers = method.getModifiers();
+    if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+      error(method, "@OnEvent methods must be neither private nor static");
+      return false;
+    }
+    TypeKind returnKind = method.getReturnType().getKind();
+    if (returnKind != TypeKind.VOID && returnKind != TypeKind.BOOLEAN) {
+      error(method, "@OnEvent methods must return void or boolean");
+      return false;
+    }
+    if (handler.event.length() == 0) {
+      error(method, "@OnEvent needs the name of an event");
+      return false;
+    }
+    if (handler.component.length() > 0) {
+      VariableElement field = findField(type, handler.component);
+      if (field == null) {
+        error(method, "No field " + handler.component + " in " + type.getQualifiedName());
+        return false;
+      }
+      if (field.getModifiers().contains(Modifier.STATIC)) {
+        error(method, "Component field " + handler.component + " must not be static");
+        return false;
+      }
+      if (!accessible(type, field)) {
+        error(method, "Component field " + handler.component
+            + " must not be private, or must be public if inherited from another package");
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean checkDuplicates(List<Handler> list) {
+    Set<String> seen = new HashSet<String>();
+    boolean ok = true;
+    for (Handler handler : list) {
+      if (!seen.add(handler.component + '$' + handler.event)) {
+        error(handler.method, "More than one @OnEvent handler of " + handler.event
+            + " for " + (handler.component.length() == 0 ? "this" : handler.component));
+        ok = false;
+      }
+    }
+    return ok;
+  }
+
+  private VariableElement findField(TypeElement type, String name) {
+    for (VariableElement field : ElementFilter.fieldsIn(
+        processingEnv.getElementUtils().getAllMembers(type))) {
+      if (field.getSimpleName().contentEquals(name)) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  private boolean accessible(TypeElement type, Element member) {
+    Set<Modifier> modifiers = member.getModifiers();
+    if (modifiers.contains(Modifier.PRIVATE)) {
+      return false;
+    }
+    return modifiers.contains(Modifier.PUBLIC)
+        || packageOf(member.getEnclosingElement()).equals(packageOf(type));
+  }
+
+  private String packageOf(Element element) {
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf(element);
+    return pkg.getQualifiedName().toString();
+  }
+
+  private static AnnotationMirror findMirror(Element element, TypeElement annotation) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      if (mirror.getAnnotationType().asElement().equals(annotation)) {
+        return mirror;
+      }
+    }
+    return null;
+  }
+
+  private static String stringValue(AnnotationMirror mirror, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+        : mirror.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return (String) entry.getValue().getValue();
+      }
+    }
+    return "";  // Only component has a default, which is empty.
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  // Code generation
+
+  private void write(TypeElement type, List<Handler> handlers) {
+    String pkg = packageOf(type);
+    String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    String simpleName = (pkg.length() == 0 ? binaryName : binaryName.substring(pkg.length() + 1))
+        + SUFFIX;
+    String typeName = type.getQualifiedName().toString();
+    // The numbers of the handlers of each event, in the order they appear
+    Map<String, List<Integer>> events = new LinkedHashMap<String, List<Integer>>();
+    for (int i = 0; i < handlers.size(); i++) {
+      String event = handlers.get(i).event;
+      List<Integer> numbers = events.get(event);
+      if (numbers == null) {
+        numbers = new ArrayList<Integer>();
+        events.put(event, numbers);
+      }
+      numbers.add(i);
+    }
+    try {
+      PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(
+          (pkg.length() == 0 ? "" : pkg + ".") + simpleName, type).openWriter());
+      try {
+        out.println("// Generated by OnEventProcessor from " + typeName + ".  Do not edit.");
+        if (pkg.length() > 0) {
+          out.println("package " + pkg + ";");
+        }
+        out.println();
+        out.println("public final class " + simpleName + " implements " + EVENT_ROUTER + " {");
+        out.println();
+        // The handler numbers of each event, by event number
+        out.println("  private static final int[][] HANDLERS = {");
+        for (List<Integer> numbers : events.values()) {
+          StringBuilder row = new StringBuilder();
+          for (int number : numbers) {
+            row.append(row.length() == 0 ? "" : ", ").append(number);
+          }
+          out.println("    { " + row + " },");
+        }
+        out.println("  };");
+        out.println();
+        out.println("  public void register(" + DELEGATE + " dispatchDelegate) {");
+        int event = 0;
+        for (String name : events.keySet()) {
+          out.println("    register(dispatchDelegate, " + quote(name) + ", " + event++ + ");");
+        }
+        out.println("  }");
+        out.println();
+        // A superclass's router has registered first, so its handler of the
+        // event is passed on to for the components this class doesn't handle.
+        out.println("  private static void register(" + DELEGATE
+            + " dispatchDelegate, String eventName, int event) {");
+        out.println("    " + EVENT_HANDLER + " next = " + EVENT_DISPATCHER
+            + ".getEventHandler(dispatchDelegate, " + EVENT_ROUTER + ".COMPONENT_ID, eventName);");
+        out.println("    " + EVENT_DISPATCHER + ".registerEventHandler(dispatchDelegate, "
+            + EVENT_ROUTER + ".COMPONENT_ID, eventName, new Handler(event, next));");
+        out.println("  }");
+        out.println();
+        out.println("  // The component of each handler, as its field holds it now");
+        out.println("  static Object component(" + typeName + " target, int handler) {");
+        out.println("    switch (handler) {");
+        for (int i = 0; i < handlers.size(); i++) {
+          Handler handler = handlers.get(i);
+          out.println("      case " + i + ":");
+          out.println("        return " + (handler.component.length() == 0
+              ? "target" : "target." + handler.component) + ";");
+        }
+        out.println("      default:");
+        out.println("        return null;");
+        out.println("    }");
+        out.println("  }");
+        out.println();
+        out.println("  // The handler number of each component, and the components they were");
+        out.println("  // found from");
+        out.println("  private static final class Lookup {");
+        out.println("    final java.util.IdentityHashMap<Object, Integer> handlers;");
+        out.println("    final Object[] components;");
+        out.println();
+        out.println("    Lookup(java.util.IdentityHashMap<Object, Integer> handlers, Object[] components) {");
+        out.println("      this.handlers = handlers;");
+        out.println("      this.components = components;");
+        out.println("    }");
+        out.println("  }");
+        out.println();
+        out.println("  private static final class Handler extends " + EVENT_HANDLER + " {");
+        out.println("    private final int[] numbers;");
+        out.println("    private final " + EVENT_HANDLER + " next;");
+        out.println("    private volatile Lookup lookup;");
+        out.println();
+        out.println("    Handler(int event, " + EVENT_HANDLER + " next) {");
+        out.println("      this.numbers = HANDLERS[event];");
+        out.println("      this.next = next;");
+        out.println("      this.lookup = new Lookup(new java.util.IdentityHashMap<Object, Integer>(),");
+        out.println("          new Object[numbers.length]);");
+        out.println("    }");
+        out.println();
+        out.println("    // Returns the number of the component's handler, or -1 if it has none.");
+        out.println("    // The components are only read from their fields again when the one");
+        out.println("    // found isn't there any more, or none is found and a field has changed.");
+        out.println("    private int find(" + typeName + " target, "
+            + COMPONENT + " component) {");
+        out.println("      Lookup lookup = this.lookup;");
+        out.println("      Integer found = lookup.handlers.get(component);");
+        out.println("      if (found != null && component(target, found) == component) {");
+        out.println("        return found;");
+        out.println("      }");
+        out.println("      boolean changed = false;");
+        out.println("      for (int i = 0; i < numbers.length && !changed; i++) {");
+        out.println("        changed = component(target, numbers[i]) != lookup.components[i];");
+        out.println("      }");
+        out.println("      if (!changed) {");
+        out.println("        return -1;");
+        out.println("      }");
+        out.println("      java.util.IdentityHashMap<Object, Integer> handlers =");
+        out.println("          new java.util.IdentityHashMap<Object, Integer>();");
+        out.println("      Object[] components = new Object[numbers.length];");
+        out.println("      for (int i = 0; i < numbers.length; i++) {");
+        out.println("        components[i] = component(target, numbers[i]);");
+        out.println("        if (components[i] != null) {");
+        out.println("          handlers.put(components[i], numbers[i]);");
+        out.println("        }");
+        out.println("      }");
+        out.println("      this.lookup = new Lookup(handlers, components);");
+        out.println("      found = handlers.get(component);");
+        out.println("      return found != null ? found : -1;");
+        out.println("    }");
+        out.println();
+        writeHandle(out, typeName, handlers, false);
+        if (hasFloatHandler(handlers)) {
+          out.println();
+          writeHandle(out, typeName, handlers, true);
+        }
+        out.println("  }");
+        out.println("}");
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      error(type, "Unable to write " + simpleName + ": " + e.getMessage());
+    }
+  }
+
+  // Writes one of the two handle() methods: the one taking boxed arguments,
+  // or the one taking floats, which only has cases for the methods whose
+  // parameters can all be taken from floats.  A component without a
+  // handler in this class goes on to the superclass's handler, if any.
+  private void writeHandle(PrintWriter out, String typeName, List<Handler> handlers,
+      boolean floats) {
+    String args = floats ? "args, argCount" : "args";
+    out.println("    @Override");
+    out.println("    public boolean handle(" + DELEGATE + " dispatchDelegate, " + COMPONENT
+        + " component, " + (floats ? "float[] args, int argCount" : "Object[] args") + ") {");
+    out.println("      " + typeName + " target = (" + typeName + ") dispatchDelegate;");
+    out.println("      switch (find(target, component)) {");
+    out.println("        case -1:");
+    out.println("          return next != null && next.handle(dispatchDelegate, component, "
+        + args + ");");
+    for (int i = 0; i < handlers.size(); i++) {
+      Handler handler = handlers.get(i);
+      List<? extends VariableElement> params = handler.method.getParameters();
+      if (floats && !takesFloats(handler)) {
+        continue;
+      }
+      out.println("        case " + i + ":");
+      out.println("          if (" + (floats ? "argCount" : "args.length") + " != "
+          + params.size() + ") {");
+      out.println("            return false;");
+      out.println("          }");
+      StringBuilder call = new StringBuilder();
+      call.append("target.").append(handler.method.getSimpleName()).append('(');
+      for (int p = 0; p < params.size(); p++) {
+        if (p > 0) {
+          call.append(", ");
+        }
+        TypeMirror type = params.get(p).asType();
+        String arg = "args[" + p + "]";
+        call.append(floats ? fromFloat(type, arg) : unbox(type, arg));
+      }
+      call.append(')');
+      if (handler.method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+        out.println("          return " + call + ";");
+      } else {
+        out.println("          " + call + ";");
+        out.println("          return true;");
+      }
+    }
+    out.println("        default:");
+    out.println(floats
+        ? "          return super.handle(dispatchDelegate, component, args, argCount);"
+        : "          return false;");
+    out.println("      }");
+    out.println("    }");
+  }
+
+  private static boolean hasFloatHandler(List<Handler> handlers) {
+    for (Handler handler : handlers) {
+      if (takesFloats(handler)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Whether every parameter is a float, double or boolean, so that the
+  // method can be called straight from an all-float event
+  private static boolean takesFloats(Handler handler) {
+    for (VariableElement param : handler.method.getParameters()) {
+      TypeKind kind = param.asType().getKind();
+      if (kind != TypeKind.FLOAT && kind != TypeKind.DOUBLE && kind != TypeKind.BOOLEAN) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Converts a float argument to a parameter's type.  All-float events pass
+  // booleans as 1 or 0.
+  private static String fromFloat(TypeMirror type, String arg) {
+    return type.getKind() == TypeKind.BOOLEAN ? arg + " != 0" : arg;
+  }
+
+  // Converts an argument to a parameter's type.  Numbers are taken as any
+  // Number, since components aren't consistent about their boxed types.
+  private String unbox(TypeMirror type, String arg) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return "((Boolean) " + arg + ").booleanValue()";
+      case CHAR:
+        return "((Character) " + arg + ").charValue()";
+      case BYTE:
+        return "((Number) " + arg + ").byteValue()";
+      case SHORT:
+        return "((Number) " + arg + ").shortValue()";
+      case INT:
+        return "((Number) " + arg + ").intValue()";
+      case LONG:
+        return "((Number) " + arg + ").longValue()";
+      case FLOAT:
+        return "((Number) " + arg + ").floatValue()";
+      case DOUBLE:
+        return "((Number) " + arg + ").doubleValue()";
+      default:
+        return "(" + processingEnv.getTypeUtils().erasure(type) + ") " + arg;
+    }
+  }
+
+  private static String quote(String s) {
+    StringBuilder quoted = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\');
+      }
+      quoted.append(c);
+    }
+    return quoted.append('"').toString();
+  }
+}
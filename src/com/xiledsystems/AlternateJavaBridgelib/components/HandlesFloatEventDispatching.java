@@ -0,0 +1,27 @@
+package com.xiledsystems.AlternateJavaBridgelib.components;
+
+/**
+ * Interface indicating that this object can handle events whose arguments
+ * are all floats without having them boxed, for events raised many times a
+ * second such as AccelerationChanged.
+ *
+ */
+
+public interface HandlesFloatEventDispatching extends HandlesEventDispatching {
+  /**
+   * Handles an event whose arguments are all floats.  The arguments belong
+   * to the component raising the event, which reuses them for its next
+   * event, so they must not be kept.  A boolean argument, such as the last
+   * one of a canvas' Dragged, is passed as 1 or 0.
+   *
+   * @param component the component raising the event
+   * @param componentName the name the event was registered under
+   * @param eventId the event, as returned by
+   *        {@link com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher#eventId}
+   * @param args the arguments
+   * @param argCount the number of arguments in {@code args}
+   * @return {@code true} if the event was handled
+   */
+  public boolean dispatchEvent(Component component, String componentName, int eventId,
+      float[] args, int argCount);
+}
@@ -1,6 +1,7 @@
 package com.xiledsystems.AlternateJavaBridgelib.components;
 
 import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteMath;
 
 
 /**
@@ -11,6 +12,9 @@ import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
  * by multiplying the speed by a cosine or sine value) have the chance to
  * add up.
  *
+ * The arithmetic itself is in {@link SpriteMath}, which does not depend on
+ * Android.
+ *
  */
 
 public abstract class SpriteComponent extends VisibleComponent implements AlarmHandler {
@@ -44,6 +48,9 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
   private double headingCos;      // cosine(heading)
   private double headingSin;      // sine(heading)
 
+  // Reused by intersectsWith() so that touch tests don't allocate
+  private final BoundingBox scratchBox = new BoundingBox(0, 0, 0, 0);
+
   // Getters
   
   public void useCircleCollision(boolean circlecollision) {
@@ -286,8 +293,8 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
    * caller is responsible for calling {@link #registerChange()}.
    */
   protected void updateCoordinates() {
-    xLeft += speed * headingCos;
-    yTop += speed * headingSin;
+    xLeft = SpriteMath.step(xLeft, speed, headingCos);
+    yTop = SpriteMath.step(yTop, speed, headingSin);
   }
 
   // Methods for determining collisions and intersections
@@ -319,55 +326,15 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
   protected abstract int hitEdge();
 
   protected final int hitEdge(int canvasWidth, int canvasHeight) {
-    // Determine in which direction(s) we are out of bounds, if any.
-    // Note that more than one boolean value can be true.  For example, if
-    // the sprite is past the northwest boundary, north and west will be true.
-    boolean west = overWestEdge();
-    boolean north = overNorthEdge();
-    boolean east = overEastEdge(canvasWidth);
-    boolean south = overSouthEdge(canvasHeight);
-
-    // If no edge was hit, return.
-    if (!(north || south || east || west)) {
-      return Component.DIRECTION_NONE;
-    }
+    int edge = SpriteMath.edgeHit(xLeft, yTop, Width(), Height(), canvasWidth, canvasHeight);
 
     // Move the sprite back into bounds.  Note that we don't just reverse the
     // last move, since that might have been multiple pixels, and we'd only need
     // to undo part of it.
-    if (KeepBounds) {
+    if (edge != Component.DIRECTION_NONE && KeepBounds) {
     	MoveIntoBounds();
     }
-
-    // Determine the appropriate return value.
-    if (west) {
-      if (north) {
-        return Component.DIRECTION_NORTHWEST;
-      } else if (south) {
-        return Component.DIRECTION_SOUTHWEST;
-      } else {
-        return Component.DIRECTION_WEST;
-      }
-    }
-
-    if (east) {
-      if (north) {
-        return Component.DIRECTION_NORTHEAST;
-      } else if (south) {
-        return Component.DIRECTION_SOUTHEAST;
-      } else {
-        return Component.DIRECTION_EAST;
-      }
-    }
-
-    if (north) {
-      return Component.DIRECTION_NORTH;
-    }
-    if (south) {
-      return Component.DIRECTION_SOUTH;
-    }
-
-    throw new AssertionError("Unreachable code hit in SpriteComponent.hitEdge()");
+    return edge;
   }
 
   /**
@@ -379,7 +346,21 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
    * @return the bounding box for this sprite
    */
   public BoundingBox getBoundingBox(int border) {
-    return new BoundingBox(X() - border, Y() - border,
+    BoundingBox box = new BoundingBox(0, 0, 0, 0);
+    getBoundingBox(border, box);
+    return box;
+  }
+
+  /**
+   * Sets the given bounding box to the bounding box for this sprite, for
+   * callers that reuse one box instead of allocating a new one.
+   *
+   * @param border the number of pixels outside the sprite to include in the
+   *        bounding box
+   * @param box the bounding box to set
+   */
+  public void getBoundingBox(int border, BoundingBox box) {
+    box.set(X() - border, Y() - border,
         X() + Width() - 1 + border, Y() + Height() - 1 + border);
   }
   
@@ -398,13 +379,11 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
    * @return {@code true} if they are in collision, {@code false} otherwise
    */
   public static boolean colliding(SpriteComponent sprite1, SpriteComponent sprite2) {
-    // If the bounding boxes don't intersect, there can be no collision.
-    BoundingBox rect1 = sprite1.getBoundingBox(1);
-    BoundingBox rect2 = sprite2.getBoundingBox(1);
-      
-    return rect1.getLeft() <= rect2.getRight() && rect1.getRight() >= rect2.getLeft() 
-    && rect1.getTop() <= rect2.getBottom() && rect1.getBottom() >= rect2.getTop();
-   
+    // Compare the bounding boxes, each grown by a pixel so that sprites that
+    // merely touch count as colliding, without building them.
+    return SpriteMath.rectanglesColliding(sprite1.X(), sprite1.Y(),
+        sprite1.Width(), sprite1.Height(),
+        sprite2.X(), sprite2.Y(), sprite2.Width(), sprite2.Height());
   }
   
     
@@ -417,29 +396,27 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
    * @return {@code true} if they are in collision, {@code false} otherwise
    */
   public static boolean circlecolliding(SpriteComponent sprite1, SpriteComponent sprite2) {
-	  
-	  int newx = (int) (sprite2.X() - sprite1.X());
-	  if (newx < 0) {
-		  newx = -newx;
-	  }
-	  int newy = (int) (sprite2.Y() - sprite1.Y());
-	  if (newy < 0) {
-		  newy = -newy;
-	  }
-	  double squaredDistance = (sprite1.getCollisionRadius()+sprite2.getCollisionRadius())+(sprite1.getCollisionRadius()+sprite2.getCollisionRadius());
-	  return (newx*newx)+(newy*newy) <= squaredDistance;
-	  
+    return SpriteMath.circlesColliding(sprite1.X(), sprite1.Y(), sprite1.getCollisionRadius(),
+        sprite2.X(), sprite2.Y(), sprite2.getCollisionRadius());
   }
 
   /**
    * Determines whether this sprite intersects with the given rectangle.
    *
+   * <p>This implementation only knows the sprite's shape through
+   * {@link #containsPoint(double, double)}, so it tests every pixel of the
+   * overlap between the rectangle and the sprite's bounding box.  Subclasses
+   * whose shape can be tested directly should override it, typically with
+   * {@link #rectangleIntersects}, {@link #circleIntersects} or
+   * {@link #rotatedRectangleIntersects}.
+   *
    * @param rect the rectangle
    * @return {@code true} if they intersect, {@code false} otherwise
    */
   public boolean intersectsWith(BoundingBox rect) {
     // If the bounding boxes don't intersect, there can be no intersection.
-    BoundingBox rect1 = getBoundingBox(0);
+    BoundingBox rect1 = scratchBox;
+    getBoundingBox(0, rect1);
     if (!rect1.intersectDestructively(rect)) {
       return false;
     }
@@ -457,6 +434,91 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
     return false;
   }
 
+  /**
+   * Determines whether an axis-aligned rectangle occupying
+   * [x, x + width) by [y, y + height) intersects with the given
+   * rectangle, whose coordinates are inclusive.
+   *
+   * @param x leftmost x-coordinate of the first rectangle
+   * @param y uppermost y-coordinate of the first rectangle
+   * @param width width of the first rectangle
+   * @param height height of the first rectangle
+   * @param rect the second rectangle
+   * @return {@code true} if they intersect, {@code false} otherwise
+   */
+  public static boolean rectangleIntersects(double x, double y, double width, double height,
+      BoundingBox rect) {
+    return x <= rect.getRight() && x + width > rect.getLeft()
+        && y <= rect.getBottom() && y + height > rect.getTop();
+  }
+
+  /**
+   * Determines whether a circle intersects with the given rectangle, by
+   * checking the distance from the center to the nearest point of the
+   * rectangle.
+   *
+   * @param centerX x-coordinate of the center of the circle
+   * @param centerY y-coordinate of the center of the circle
+   * @param radius radius of the circle
+   * @param rect the rectangle
+   * @return {@code true} if they intersect, {@code false} otherwise
+   */
+  public static boolean circleIntersects(double centerX, double centerY, double radius,
+      BoundingBox rect) {
+    double nearestX = Math.max(rect.getLeft(), Math.min(centerX, rect.getRight()));
+    double nearestY = Math.max(rect.getTop(), Math.min(centerY, rect.getBottom()));
+    double dx = centerX - nearestX;
+    double dy = centerY - nearestY;
+    return dx * dx + dy * dy <= radius * radius;
+  }
+
+  /**
+   * Determines whether a rectangle rotated about its center intersects with
+   * the given axis-aligned rectangle.  This uses the separating axis test:
+   * two convex shapes are disjoint exactly when their projections onto one
+   * of the edge normals of either shape do not overlap, which for two
+   * rectangles leaves four axes to check.
+   *
+   * @param centerX x-coordinate of the center of the rotated rectangle
+   * @param centerY y-coordinate of the center of the rotated rectangle
+   * @param width unrotated width of the rotated rectangle
+   * @param height unrotated height of the rotated rectangle
+   * @param radians clockwise rotation on screen (the y-axis points down)
+   * @param rect the axis-aligned rectangle
+   * @return {@code true} if they intersect, {@code false} otherwise
+   */
+  public static boolean rotatedRectangleIntersects(double centerX, double centerY,
+      double width, double height, double radians, BoundingBox rect) {
+    double cos = Math.abs(Math.cos(radians));
+    double sin = Math.abs(Math.sin(radians));
+    double halfWidth = width / 2;
+    double halfHeight = height / 2;
+    double rectHalfWidth = (rect.getRight() - rect.getLeft()) / 2;
+    double rectHalfHeight = (rect.getBottom() - rect.getTop()) / 2;
+    double dx = (rect.getLeft() + rect.getRight()) / 2 - centerX;
+    double dy = (rect.getTop() + rect.getBottom()) / 2 - centerY;
+
+    // The axes of the screen.
+    if (Math.abs(dx) > rectHalfWidth + halfWidth * cos + halfHeight * sin) {
+      return false;
+    }
+    if (Math.abs(dy) > rectHalfHeight + halfWidth * sin + halfHeight * cos) {
+      return false;
+    }
+    // The axes of the rotated rectangle.
+    double signedCos = Math.cos(radians);
+    double signedSin = Math.sin(radians);
+    if (Math.abs(dx * signedCos + dy * signedSin)
+        > halfWidth + rectHalfWidth * cos + rectHalfHeight * sin) {
+      return false;
+    }
+    if (Math.abs(-dx * signedSin + dy * signedCos)
+        > halfHeight + rectHalfWidth * sin + rectHalfHeight * cos) {
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Indicates whether the specified point is contained by this sprite.
    * Subclasses of Sprite that are not rectangular should override this method.
@@ -483,68 +545,21 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
   public abstract void MoveIntoBounds();
 
   protected final void moveIntoBounds(int canvasWidth, int canvasHeight) {
-    boolean moved = false;
-
     // We set the xLeft and/or yTop fields directly, instead of calling X(123) and Y(123), to avoid
     // having multiple calls to registerChange.
-
-    // Check if the sprite is too wide to fit on the canvas.
-    if (Width() > canvasWidth) {
-      // Sprite is too wide to fit. If it isn't already at the left edge, move it there.
-      // It is important not to set moved to true if xLeft is already 0. Doing so can cause a stack
-      // overflow.
-      if (xLeft != 0) {
-        xLeft = 0;
-        moved = true;
-      }
-    } else if (overWestEdge()) {
-      xLeft = 0;
-      moved = true;
-    } else if (overEastEdge(canvasWidth)) {
-      xLeft = canvasWidth - Width();
-      moved = true;
-    }
-
-    // Check if the sprite is too tall to fit on the canvas. We don't want to cause a stack
-    // overflow by moving the sprite to the top edge and then to the bottom edge, repeatedly.
-    if (Height() > canvasHeight) {
-      // Sprite is too tall to fit. If it isn't already at the top edge, move it there.
-      // It is important not to set moved to true if yTop is already 0. Doing so can cause a stack
-      // overflow.
-      if (yTop != 0) {
-        yTop = 0;
-        moved = true;
-      }
-    } else if (overNorthEdge()) {
-      yTop = 0;
-      moved = true;
-    } else if (overSouthEdge(canvasHeight)) {
-      yTop = canvasHeight - Height();
-      moved = true;
-    }
-
-    // Then, call registerChange (just once!) if necessary.
-    if (moved) {
+    double x = SpriteMath.intoBounds(xLeft, Width(), canvasWidth);
+    double y = SpriteMath.intoBounds(yTop, Height(), canvasHeight);
+
+    // It is important not to call registerChange if the sprite is already in
+    // place, for instance at the left edge because it is too wide to fit.
+    // Doing so can cause a stack overflow.
+    if (x != xLeft || y != yTop) {
+      xLeft = x;
+      yTop = y;
       registerChange();
     }
   }
 
-  /**
-   * Normalizes an angle to be in the range [0, 359).
-   *
-   * @param angle original value
-   * @return equivalent angle in the range [0, 359).
-   */
-  private static double normalizeAngle(double angle) {
-    angle = angle % 360;
-    // The following step is necessary because Java's modulus operation yields a
-    // negative number if the dividend is negative and the divisor is positive.
-    if (angle < 0) {
-      angle += 360;
-    }
-    return angle;
-  }
-
   /**
    * Makes this sprite bounce, as if off of a wall by changing the
    * {@link #heading} (unless the sprite is not traveling toward the specified
@@ -566,28 +581,9 @@ public abstract class SpriteComponent extends VisibleComponent implements AlarmH
   public void Bounce(int edge) {
     MoveIntoBounds();
 
-    // Normalize heading to [0, 360)
-    double normalizedAngle = normalizeAngle(userHeading);
-
-    // Only transform heading if sprite was moving in that direction.
-    // This avoids oscillations.
-    if ((edge == Component.DIRECTION_EAST
-         && (normalizedAngle < 90 || normalizedAngle > 270))
-        || (edge == Component.DIRECTION_WEST
-            && (normalizedAngle > 90 && normalizedAngle < 270))) {
-      Heading(180 - normalizedAngle);
-    } else if ((edge == Component.DIRECTION_NORTH
-                && normalizedAngle > 0 && normalizedAngle < 180)
-               || (edge == Component.DIRECTION_SOUTH && normalizedAngle > 180)) {
-      Heading(360 - normalizedAngle);
-    } else if ((edge == Component.DIRECTION_NORTHEAST
-                && normalizedAngle > 0 && normalizedAngle < 90)
-              || (edge == Component.DIRECTION_NORTHWEST
-                  && normalizedAngle > 90 && normalizedAngle < 180)
-              || (edge == Component.DIRECTION_SOUTHWEST
-                  && normalizedAngle > 180 && normalizedAngle < 270)
-              || (edge == Component.DIRECTION_SOUTHEAST && normalizedAngle > 270)) {
-      Heading(180 + normalizedAngle);
+    double heading = SpriteMath.bounceHeading(userHeading, edge);
+    if (heading != userHeading) {
+      Heading(heading);
     }
   }
 
@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Queue;
 
 import com.xiledsystems.AlternateJavaBridgelib.components.SensorComponent;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.EventMailbox;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
 
 /**
@@ -50,6 +51,16 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
   private float yAccel;
   private float zAccel;
 
+  private static final int ACCELERATION_CHANGED = EventDispatcher.eventId("AccelerationChanged");
+  // The arguments of AccelerationChanged, reused for every event
+  private final float[] accelerationArgs = new float[3];
+
+  // The least time between events, and the mailbox merging readings in
+  // the meantime (null when every reading raises an event)
+  private int coalesceInterval;
+  private EventMailbox mailbox;
+  private int droppedEvents;
+
   private int accuracy;
 
   // Sensor manager
@@ -81,10 +92,14 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
    */
   
   public void AccelerationChanged(float xAccel, float yAccel, float zAccel) {
-    this.xAccel = xAccel;
-    this.yAccel = yAccel;
-    this.zAccel = zAccel;
+    checkShaking(xAccel, yAccel, zAccel);
+    raiseAccelerationChanged(xAccel, yAccel, zAccel);
+  }
 
+  // Adds a reading to the shake caches, raising Shaking if it stands out.
+  // Every reading goes through here, whether or not it is coalesced, so
+  // that a shake is seen in full.
+  private void checkShaking(float xAccel, float yAccel, float zAccel) {
     addToSensorCache(X_CACHE, xAccel);
     addToSensorCache(Y_CACHE, yAccel);
     addToSensorCache(Z_CACHE, zAccel);
@@ -92,8 +107,17 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
     if (isShaking(X_CACHE, xAccel) || isShaking(Y_CACHE, yAccel) || isShaking(Z_CACHE, zAccel)) {
       Shaking();
     }
- 
-    EventDispatcher.dispatchEvent(this, "AccelerationChanged", xAccel, yAccel, zAccel);
+  }
+
+  private void raiseAccelerationChanged(float xAccel, float yAccel, float zAccel) {
+    this.xAccel = xAccel;
+    this.yAccel = yAccel;
+    this.zAccel = zAccel;
+
+    accelerationArgs[0] = xAccel;
+    accelerationArgs[1] = yAccel;
+    accelerationArgs[2] = zAccel;
+    EventDispatcher.dispatchEvent(this, ACCELERATION_CHANGED, accelerationArgs, 3);
   }
 
   /**
@@ -136,6 +160,67 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
   // Assumes that sensorManager has been initialized, which happens in constructor
   private void stopListening() {
     sensorManager.unregisterListener(this);
+    if (mailbox != null) {
+      mailbox.cancel();
+    }
+  }
+
+  /**
+   * Returns the least time between AccelerationChanged events, or 0 if every
+   * reading raises one.
+   *
+   * @return the interval in milliseconds
+   */
+  
+  public int CoalesceInterval() {
+    return coalesceInterval;
+  }
+
+  /**
+   * Specifies the least time between AccelerationChanged events.  When it is
+   * more than 0, readings that come in sooner than that are merged into
+   * one event with the newest values, so a slow handler doesn't fall
+   * further and further behind the sensor.  16 milliseconds is about one
+   * screen frame.  {@link #DroppedEvents()} tells how many readings an
+   * event stands for.  Shaking is still looked for in every reading.
+   *
+   * @param interval the interval in milliseconds, 0 to raise an event for
+   *        every reading
+   */
+  
+  public void CoalesceInterval(int interval) {
+    if (interval < 0) {
+      throw new IllegalArgumentException("Illegal coalesce interval " + interval);
+    }
+    coalesceInterval = interval;
+    if (interval == 0) {
+      if (mailbox != null) {
+        mailbox.cancel();
+        mailbox = null;
+      }
+      droppedEvents = 0;
+    } else if (mailbox == null) {
+      mailbox = new EventMailbox(3, interval, new EventMailbox.Receiver() {
+        public void receive(float[] args, int dropped) {
+          droppedEvents = dropped;
+          raiseAccelerationChanged(args[0], args[1], args[2]);
+        }
+      });
+    } else {
+      mailbox.setInterval(interval);
+    }
+  }
+
+  /**
+   * Returns how many readings were merged into the AccelerationChanged event
+   * being handled without being raised themselves, when
+   * {@link #CoalesceInterval()} is more than 0.
+   *
+   * @return the number of readings dropped
+   */
+  
+  public int DroppedEvents() {
+    return droppedEvents;
   }
 
   /**
@@ -227,7 +312,12 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
       yAccel = values[1];
       zAccel = values[2];
       accuracy = sensorEvent.accuracy;
-      AccelerationChanged(xAccel, yAccel, zAccel);
+      if (mailbox != null) {
+        checkShaking(xAccel, yAccel, zAccel);
+        mailbox.post(values);
+      } else {
+        AccelerationChanged(xAccel, yAccel, zAccel);
+      }
     }
   }
 
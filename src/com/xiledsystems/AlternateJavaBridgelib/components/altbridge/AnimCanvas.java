@@ -4,10 +4,13 @@ import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.graphics.drawable.AnimationDrawable;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
@@ -18,10 +21,15 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.Form;
 import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesFloatEventDispatching;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.DonutUtil;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.EventMailbox;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.FileUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MediaUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.PaintUtil;
@@ -29,8 +37,8 @@ import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.SdkLeve
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.ViewUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.common.ComponentConstants;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
-import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
 import com.xiledsystems.AlternateJavaBridgelib.components.util.ErrorMessages;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.Viewport;
 
 /**
  * A two-dimensional touch-sensitive rectangular panel on which drawing can
@@ -52,6 +60,10 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
   // Variables behind properties
   private int paintColor;
   private final Paint paint;
+
+  // Reused by the drawing calls that take arrays
+  private final Path drawingPath = new Path();
+  private float[] scratchCoordinates = new float[0];
   private int backgroundColor;
   private final Paint backgroundPaint;
   private String backgroundImagePath = "";
@@ -67,190 +79,138 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
 
   private static final float DEFAULT_LINE_WIDTH = 2;
 
-  // Keep track of enclosed sprites
-  private final List<Sprite> sprites;
+  // Ids of the events raised for every touch and move of a finger
+  private static final int TOUCHED = EventDispatcher.eventId("Touched");
+  private static final int DRAGGED = EventDispatcher.eventId("Dragged");
+  private static final int DRAGGED_PATH = EventDispatcher.eventId("DraggedPath");
+  private static final int PINCHED = EventDispatcher.eventId("Pinched");
+
+  private static final int DEFAULT_TARGET_FPS = 60;
+
+  // Frame pacing of the render thread.  renderRequested is guarded by
+  // renderLock, which the render thread waits on when it is only drawing
+  // frames in which something has changed.
+  private volatile int targetFps = DEFAULT_TARGET_FPS;
+  private volatile boolean renderOnlyWhenDirty;
+  private final Object renderLock = new Object();
+  private boolean renderRequested = true;
+
+  // Keep track of enclosed sprites, in drawing order and by position
+  private final CanvasSprites sprites;
+
+  // Scratch space for a sprite's draw bounds, which the grid also covers
+  private final Rect gridDrawRect = new Rect();
+
+  // Which part of the world the view shows
+  private final Viewport viewport = new Viewport();
+
+  // Moves the sprites, and the sprites moved by the current batch of changes
+  private final SpriteClock spriteClock;
+  private final Set<Sprite> batchedSprites;
+  private int batchDepth;
+
+  // The render thread draws the sprites from snapshots of their draw state
+  // rather than from the sprites themselves, which the UI thread changes.
+  // There are three: the one the UI thread fills, the one the render thread
+  // draws, and the newest complete one, waiting in pendingSnapshot.  Each
+  // thread trades its own for the waiting one with a single atomic swap, so
+  // neither ever waits for the other.
+  private RenderSnapshot fillSnapshot = new RenderSnapshot();  // UI thread only
+  private RenderSnapshot drawSnapshot = new RenderSnapshot();  // render thread only
+  private final AtomicReference<RenderSnapshot> pendingSnapshot =
+      new AtomicReference<RenderSnapshot>(new RenderSnapshot());
+  private long snapshotSequence;
+
+  // Particle emitters, drawn over the sprites by the render thread.  The
+  // array is replaced, never changed, when emitters come and go.
+  private volatile ParticleEmitter[] emitters = new ParticleEmitter[0];
+
+  // Tile maps, drawn beneath the drawing layer and the sprites by the render
+  // thread, replaced in the same way.  While there are any, the background
+  // color is painted beneath them rather than into the drawing layer; a
+  // background image is the bitmap itself, so maps go over that.
+  private volatile TileMap[] tileMaps = new TileMap[0];
+  private volatile boolean backgroundBeneathMaps;
+  private volatile int mapBackgroundColor;
+  private volatile boolean bitmapIsBackgroundImage;
+
+  // A snapshot is published at most once per pass of the UI thread's
+  // message loop, however many sprites change during it.
+  private final Handler snapshotHandler = new Handler();
+  private boolean snapshotPosted;
+  private final List<Sprite> visibleSprites = new ArrayList<Sprite>();
+  private final Runnable publishSnapshot = new Runnable() {
+    public void run() {
+      snapshotPosted = false;
+      // Only the sprites the grid finds in view are captured.
+      sprites.find(viewport.toWorldX(0), viewport.toWorldY(0),
+          viewport.toWorldX(Width()), viewport.toWorldY(Height()), visibleSprites);
+      fillSnapshot.capture(visibleSprites, viewport, ++snapshotSequence);
+      visibleSprites.clear();
+      fillSnapshot = pendingSnapshot.getAndSet(fillSnapshot);
+      view.invalidate();
+    }
+  };
 
   // Handle touches and drags
   private final MotionEventParser motionEventParser;
 
+  // The arguments of Pinched, reused for every event
+  private final float[] pinchedArgs = new float[4];
+
+  // The arguments of DraggedPath, reused for every event.  The start of a
+  // finger stays the same while it moves, so its boxed coordinates are kept
+  // rather than boxed again for every move.
+  private final Object[] draggedPathArgs = new Object[7];
+  private Float draggedPathStartX;
+  private Float draggedPathStartY;
+
+  // The least time between Dragged events, and the mailbox merging drags in
+  // the meantime (null when every move raises Dragged)
+  private int dragCoalesceInterval;
+  private EventMailbox dragMailbox;
+  private final float[] dragArgs = new float[7];
+  private int droppedDrags;
+
   /**
-   * Parser for Android {@link android.view.MotionEvent} sequences, which calls
-   * the appropriate event handlers.  Specifically:
-   * <ul>
-   * <li> If a {@link android.view.MotionEvent#ACTION_DOWN} is followed by one
-   * or more {@link android.view.MotionEvent#ACTION_MOVE} events, a sequence of
-   * {@link Sprite#Dragged(float, float, float, float, float, float)}
-   * calls are generated for sprites that were touched, and the final
-   * {@link android.view.MotionEvent#ACTION_UP} is ignored.
-   *
-   * <li> If a {@link android.view.MotionEvent#ACTION_DOWN} is followed by an
-   * {@link android.view.MotionEvent#ACTION_UP} event either immediately or
-   * after {@link android.view.MotionEvent#ACTION_MOVE} events that take it no
-   * further than {@link #TAP_THRESHOLD} pixels horizontally or vertically from
-   * the start point, it is interpreted as a touch, and a single call to
-   * {@link Sprite#Touched(float, float)} for each touched sprite is
-   * generated.
-   * </ul>
-   *
-   * After the {@code Dragged()} or {@code Touched()} methods are called for
-   * any applicable sprites, a call is made to
-   * {@link Canvas_backup#Dragged(float, float, float, float, float, float, boolean)}
-   * or {@link Canvas_backup#Touched(float, float, boolean)}, respectively.  The
-   * additional final argument indicates whether it was preceded by one or
-   * more calls to a sprite, i.e., whether the locations on the canvas had a
-   * sprite on them ({@code true}) or were empty of sprites {@code false}).
-   *
-   *
+   * Raises this canvas' events for the touches, drags and pinches found by
+   * {@link MotionEventParser}.
    */
-  class MotionEventParser {
-    /**
-     * The number of pixels right, left, up, or down, a sequence of drags must
-     * move from the starting point to be considered a drag (instead of a
-     * touch).
-     */
-    public static final int TAP_THRESHOLD = 30;
-
-    /**
-     * The width of a finger.  This is used in determining whether a sprite is
-     * touched.  Specifically, this is used to determine the horizontal extent
-     * of a bounding box that is tested for collision with each sprite.  The
-     * vertical extent is determined by {@link #FINGER_HEIGHT}.
-     */
-    public static final int FINGER_WIDTH = 24;
-
-    /**
-     * The width of a finger.  This is used in determining whether a sprite is
-     * touched.  Specifically, this is used to determine the vertical extent
-     * of a bounding box that is tested for collision with each sprite.  The
-     * horizontal extent is determined by {@link #FINGER_WIDTH}.
-     */
-    public static final int FINGER_HEIGHT = 24;
-
-    private static final int HALF_FINGER_WIDTH = FINGER_WIDTH / 2;
-    private static final int HALF_FINGER_HEIGHT = FINGER_HEIGHT / 2;
-
-    /**
-     * The set of sprites encountered in a touch or drag sequence.  Checks are
-     * only made for sprites at the endpoints of each drag.
-     */
-    private final List<Sprite> draggedSprites = new ArrayList<Sprite>();
-
-    // startX and startY hold the coordinates of where a touch/drag started
-    private static final int UNSET = -1;
-    private float startX = UNSET;
-    private float startY = UNSET;
-
-    // lastX and lastY hold the coordinates of the previous step of a drag
-    private float lastX = UNSET;
-    private float lastY = UNSET;
-
-    private boolean drag = false;
-
-    void parse(MotionEvent event) {
-      int width = Width();
-      int height = Height();
-
-      // Coordinates less than 0 can be returned if a move begins within a
-      // view and ends outside of it.  Because negative coordinates would
-      // probably confuse the user (as they did me) and would not be useful,
-      // we replace any negative values with zero.
-      float x = Math.max(0, (int) event.getX());
-      float y = Math.max(0, (int) event.getY());
-
-      // Also make sure that by adding or subtracting a half finger that
-      // we don't go out of bounds.
-      BoundingBox rect = new BoundingBox(
-          Math.max(0, (int) x - HALF_FINGER_HEIGHT),
-          Math.max(0, (int) y - HALF_FINGER_WIDTH),
-          Math.min(width - 1, (int) x + HALF_FINGER_WIDTH),
-          Math.min(height - 1, (int) y + HALF_FINGER_HEIGHT));
-
-      switch (event.getAction()) {
-        case MotionEvent.ACTION_DOWN:
-          draggedSprites.clear();
-          startX = x;
-          startY = y;
-          lastX = x;
-          lastY = y;
-          drag = false;
-          for (Sprite sprite : sprites) {
-            if (sprite.Enabled() && sprite.Visible() && sprite.intersectsWith(rect)) {
-              draggedSprites.add(sprite);
-              if (sprite instanceof ImageSprite) {
-            	  ((ImageSprite) sprite).requestDownEvent();
-              }
-            }
-          } 
-          
-          break;
-
-        case MotionEvent.ACTION_MOVE:
-          // Ensure that this was preceded by an ACTION_DOWN
-          if (startX == UNSET || startY == UNSET || lastX == UNSET || lastY == UNSET) {
-            Log.w("Canvas", "In Canvas.MotionEventParser.parse(), " +
-                "an ACTION_MOVE was passed without a preceding ACTION_DOWN: " + event);
-          }
+  private final class CanvasMotionEventParser extends MotionEventParser {
+    CanvasMotionEventParser() {
+      super(viewport, sprites);
+    }
 
-          // If the new point is near the start point, it may just be a tap
-          if (Math.abs(x - startX) < TAP_THRESHOLD && Math.abs(y - startY) < TAP_THRESHOLD) {
-            break;
-          }
-          // Otherwise, it's a drag.
-          drag = true;
-
-          // Update draggedSprites by adding any that are currently being
-          // touched.
-          for (Sprite sprite : sprites) {
-            if (!draggedSprites.contains(sprite)
-                && sprite.Enabled() && sprite.Visible()
-                && sprite.intersectsWith(rect)) {
-              draggedSprites.add(sprite);
-            }
-          }
+    @Override
+    int width() {
+      return Width();
+    }
 
-          // Raise a Dragged event for any affected sprites
-          boolean handled = false;
-          for (Sprite sprite : draggedSprites) {
-            if (sprite.Enabled() && sprite.Visible()) {
-              sprite.Dragged(startX, startY, lastX, lastY, x, y);
-              handled = true;
-            }
-          }
+    @Override
+    int height() {
+      return Height();
+    }
 
-          // Last argument indicates whether a sprite handled the drag
-          Dragged(startX, startY, lastX, lastY, x, y, handled);
-          lastX = x;
-          lastY = y;
-          break;
-
-        case MotionEvent.ACTION_UP:
-          // If we never strayed far from the start point, it's a tap.  (If we
-          // did stray far, we've already handled the movements in the ACTION_MOVE
-          // case.)
-          if (!drag) {
-            // It's a tap
-            handled = false;
-            for (Sprite sprite : draggedSprites) {
-              if (sprite.Enabled() && sprite.Visible()) {
-                sprite.Touched(startX, startY);
-                handled = true;
-                if (sprite instanceof ImageSprite) {
-                	((ImageSprite) sprite).requestUpEvent();
-                }
-              }
-            }
-            // Last argument indicates that one or more sprites handled the tap
-            Touched(startX, startY, handled);
-          }
+    @Override
+    void touched(float x, float y, boolean touchedSprite) {
+      Touched(x, y, touchedSprite);
+    }
 
-          // Prepare for next drag
-          drag = false;
-          startX = UNSET;
-          startY = UNSET;
-          lastX = UNSET;
-          lastY = UNSET;
-          break;
-      }
+    @Override
+    void dragged(float startX, float startY, float prevX, float prevY,
+        float currentX, float currentY, boolean draggedSprite) {
+      Dragged(startX, startY, prevX, prevY, currentX, currentY, draggedSprite);
+    }
+
+    @Override
+    void draggedPath(int pointerId, float startX, float startY,
+        float[] xs, float[] ys, int count, boolean draggedSprite) {
+      DraggedPath(pointerId, startX, startY, xs, ys, count, draggedSprite);
+    }
+
+    @Override
+    void pinched(float scale, float rotation, float centerX, float centerY) {
+      Pinched(scale, rotation, centerX, centerY);
     }
   }
 
@@ -277,7 +237,7 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
     class CanvasThread extends Thread {
     	
     	private SurfaceHolder surfaceHolder;    	
-    	private boolean _run = false;    	
+    	private volatile boolean _run = false;    	
     	
     	public CanvasThread(SurfaceHolder surface, CanvasView canvas) {
     		surfaceHolder = surface;    		    		
@@ -285,37 +245,141 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
     	
     	public void setRunning(boolean run) {
     		_run = run;
+    		// Wake the thread if it is waiting for something to change.
+    		requestRender();
     	}
     	
     	 public void doDraw(android.graphics.Canvas canvas0) {    		 	
-    	    	canvas0.drawBitmap(bitmap, 0, 0, null);
-    	    	for (Sprite sprite : sprites) {
-    	    		sprite.onDraw(canvas0);    	    		
+    	    	RenderSnapshot snapshot = takeSnapshot();
+    	    	// Tile maps are a background layer: over the background image,
+    	    	// if there is one, and beneath what has been drawn.  The
+    	    	// background color stays out of the drawing layer until it is
+    	    	// next cleared, even once the last map has gone.
+    	    	TileMap[] maps = tileMaps;
+    	    	boolean mapsOverBitmap = bitmapIsBackgroundImage;
+    	    	if (mapsOverBitmap) {
+    	    		canvas0.drawBitmap(bitmap, 0, 0, null);
+    	    	} else if (backgroundBeneathMaps) {
+    	    		canvas0.drawColor(mapBackgroundColor);
+    	    	}
+    	    	if (maps.length > 0) {
+    	    		drawTileMaps(canvas0, snapshot, maps);
+    	    	}
+    	    	if (!mapsOverBitmap) {
+    	    		canvas0.drawBitmap(bitmap, 0, 0, null);
+    	    	}
+    	    	// Sprites are in world coordinates, so draw them through the camera.
+    	    	if (snapshot.camera) {
+    	    		canvas0.save();
+    	    		canvas0.scale(snapshot.zoom, snapshot.zoom);
+    	    		canvas0.translate(-snapshot.cameraX, -snapshot.cameraY);
+    	    	}
+    	    	for (int i = 0; i < snapshot.count; i++) {
+    	    		snapshot.sprites[i].onDraw(canvas0, snapshot, i);
     	    	}    	        	    	
+    	    	ParticleEmitter[] particleEmitters = emitters;
+    	    	for (int i = 0; i < particleEmitters.length; i++) {
+    	    		particleEmitters[i].onDraw(canvas0);
+    	    	}
+    	    	if (snapshot.camera) {
+    	    		canvas0.restore();
+    	    	}
     	    	drawn = true;    	    	
     	    }
+
+    	 private void drawTileMaps(android.graphics.Canvas canvas0, RenderSnapshot snapshot,
+    	     TileMap[] maps) {
+    	    	float left = snapshot.camera ? snapshot.cameraX : 0;
+    	    	float top = snapshot.camera ? snapshot.cameraY : 0;
+    	    	float zoom = snapshot.camera ? snapshot.zoom : 1;
+    	    	if (snapshot.camera) {
+    	    		canvas0.save();
+    	    		canvas0.scale(snapshot.zoom, snapshot.zoom);
+    	    		canvas0.translate(-snapshot.cameraX, -snapshot.cameraY);
+    	    	}
+    	    	for (int i = 0; i < maps.length; i++) {
+    	    		maps[i].onDraw(canvas0, left, top, left + canvas0.getWidth() / zoom,
+    	    		    top + canvas0.getHeight() / zoom);
+    	    	}
+    	    	if (snapshot.camera) {
+    	    		canvas0.restore();
+    	    	}
+    	 }
+
+    	// Particles move every frame, so they keep the thread drawing.
+    	private boolean particlesActive() {
+    		ParticleEmitter[] particleEmitters = emitters;
+    		for (int i = 0; i < particleEmitters.length; i++) {
+    			if (particleEmitters[i].isActive()) {
+    				return true;
+    			}
+    		}
+    		return false;
+    	}
+
+    	// Trades the snapshot drawn last for the newest one, if there is a
+    	// newer one.
+    	private RenderSnapshot takeSnapshot() {
+    		if (pendingSnapshot.get().sequence > drawSnapshot.sequence) {
+    			drawSnapshot = pendingSnapshot.getAndSet(drawSnapshot);
+    		}
+    		return drawSnapshot;
+    	}
     	
     	@Override
     	public void run() {
     		android.graphics.Canvas c;
-    		double lastrun = 0;
-    		while (_run) {
-    			if (lastrun+25<System.currentTimeMillis()) {
-    				c = null;
-    				try {
-    					c = surfaceHolder.lockCanvas(null);
+    		// Frames are due on a fixed grid of TargetFPS slots per second.
+    		long nextFrame = System.nanoTime();
+    		while (awaitFrame()) {
+    			c = null;
+    			try {
+    				c = surfaceHolder.lockCanvas(null);
+    				if (c != null) {
     					synchronized (surfaceHolder) {
-    						doDraw(c);	    						    						
-    					}
-    				} finally {
-    					if (c != null) {
-    						surfaceHolder.unlockCanvasAndPost(c);
-    						lastrun = System.currentTimeMillis();
+    						doDraw(c);
     					}
     				}
+    			} finally {
+    				if (c != null) {
+    					surfaceHolder.unlockCanvasAndPost(c);
+    				}
+    			}
+
+    			long framePeriod = 1000000000L / targetFps;
+    			nextFrame += framePeriod;
+    			long now = System.nanoTime();
+    			if (now > nextFrame) {
+    				// The frame overran its slot (or we were idle). Skip the slots
+    				// that have passed rather than drawing frames back to back to
+    				// catch up.
+    				nextFrame += ((now - nextFrame) / framePeriod + 1) * framePeriod;
+    			}
+    			long delay = nextFrame - now;
+    			try {
+    				Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+    			} catch (InterruptedException e) {
+
     			}
     		}
     	}
+
+    	// Waits until a frame should be drawn, which is straight away unless
+    	// RenderOnlyWhenDirty is set and nothing has changed since the last
+    	// frame.  Returns false once the thread has been told to stop.
+    	private boolean awaitFrame() {
+    		synchronized (renderLock) {
+    			while (_run && renderOnlyWhenDirty && !renderRequested && !particlesActive()) {
+    				try {
+    					renderLock.wait();
+    				} catch (InterruptedException e) {
+
+    				}
+    			}
+    			renderRequested = false;
+    			return _run;
+    		}
+    	}
     }
     
 
@@ -363,6 +427,13 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
       return result;
     }
 
+    @Override
+    public void invalidate() {
+      super.invalidate();
+      // Every change to the sprites or the drawing layer invalidates the view.
+      requestRender();
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
       // The following call results in the Form not grabbing our events and
@@ -423,14 +494,21 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
     TextAlignment(Component.ALIGNMENT_NORMAL);
     FontSize(Component.FONT_DEFAULT_SIZE);
 
-    sprites = new ArrayList<Sprite>();
-    motionEventParser = new MotionEventParser();
+    sprites = new CanvasSprites();
+    spriteClock = new SpriteClock(this);
+    batchedSprites = new LinkedHashSet<Sprite>();
+    motionEventParser = new CanvasMotionEventParser();
     picList = new ArrayList<String>();
   }
 
   private void clearViewCanvas() {
     // We avoid drawing the default background color over an explicit background image.
-    if (backgroundDrawable == null && animBackground == null) {
+    boolean fillsBackground = backgroundDrawable == null && animBackground == null;
+    bitmapIsBackgroundImage = !fillsBackground;
+    mapBackgroundColor = backgroundColor != Component.COLOR_DEFAULT
+        ? backgroundColor : Component.COLOR_WHITE;
+    backgroundBeneathMaps = fillsBackground && tileMaps.length > 0;
+    if (fillsBackground && !backgroundBeneathMaps) {
       // There is no background image.
       // Fill the view.canvas with the background color.
       view.canvas.drawPaint(backgroundPaint);
@@ -516,7 +594,93 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
    * @param sprite the sprite to add
    */
   public void addSprite(Sprite sprite) {
-    sprites.add(sprite);
+    sprites.add(sprite, sprite.Z());
+    updateSpriteGrid(sprite);
+    spritesChanged();
+  }
+
+  /**
+   * Adds a particle emitter, whose particles are drawn over the sprites.
+   *
+   * @param emitter the emitter to add
+   */
+  void addParticleEmitter(ParticleEmitter emitter) {
+    ParticleEmitter[] old = emitters;
+    ParticleEmitter[] updated = new ParticleEmitter[old.length + 1];
+    System.arraycopy(old, 0, updated, 0, old.length);
+    updated[old.length] = emitter;
+    emitters = updated;
+    requestRender();
+  }
+
+  /**
+   * Removes a particle emitter from this canvas.
+   *
+   * @param emitter the emitter to remove
+   */
+  void removeParticleEmitter(ParticleEmitter emitter) {
+    ParticleEmitter[] old = emitters;
+    for (int i = 0; i < old.length; i++) {
+      if (old[i] == emitter) {
+        ParticleEmitter[] updated = new ParticleEmitter[old.length - 1];
+        System.arraycopy(old, 0, updated, 0, i);
+        System.arraycopy(old, i + 1, updated, i, old.length - i - 1);
+        emitters = updated;
+        requestRender();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Adds a tile map, which is drawn beneath the drawing layer and the
+   * sprites.  The first map moves the background color from the drawing
+   * layer to beneath the maps, which clears the drawing layer.
+   *
+   * @param map the tile map to add
+   */
+  void addTileMap(TileMap map) {
+    TileMap[] old = tileMaps;
+    TileMap[] updated = new TileMap[old.length + 1];
+    System.arraycopy(old, 0, updated, 0, old.length);
+    updated[old.length] = map;
+    tileMaps = updated;
+    if (old.length == 0 && !backgroundBeneathMaps
+        && backgroundDrawable == null && animBackground == null) {
+      clearViewCanvas();
+    }
+    requestRender();
+  }
+
+  /**
+   * Removes a tile map from this canvas.
+   *
+   * @param map the tile map to remove
+   */
+  void removeTileMap(TileMap map) {
+    TileMap[] old = tileMaps;
+    for (int i = 0; i < old.length; i++) {
+      if (old[i] == map) {
+        TileMap[] updated = new TileMap[old.length - 1];
+        System.arraycopy(old, 0, updated, 0, i);
+        System.arraycopy(old, i + 1, updated, i, old.length - i - 1);
+        tileMaps = updated;
+        requestRender();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Moves a sprite to its new layer, above the other sprites in it.
+   *
+   * @param sprite the sprite whose {@link Sprite#Z()} has changed
+   */
+  public void changeSpriteLayer(Sprite sprite) {
+    // Only the drawing order changes, so the sprite keeps its place in the
+    // collision grid.
+    sprites.setLayer(sprite, sprite.Z());
+    spritesChanged();
   }
 
   /**
@@ -526,6 +690,8 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
    */
   public void removeSprite(Sprite sprite) {
     sprites.remove(sprite);
+    batchedSprites.remove(sprite);
+    spritesChanged();
   }
 
   @Override
@@ -557,15 +723,110 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
 
   /**
    * Indicates that a sprite has changed, triggering invalidation of the view
-   * and a check for collisions.
+   * and a check for collisions.  Inside a batch both are put off until
+   * {@link #endBatch()}.
    *
    * @param sprite the sprite whose location, size, or appearance has changed
    */
   void registerChange(Sprite sprite) {
-    view.invalidate();
+    if (!sprites.contains(sprite)) {
+      return;  // removed, but still being changed
+    }
+    updateSpriteGrid(sprite);
+    if (batchDepth > 0) {
+      batchedSprites.add(sprite);
+      return;
+    }
+    spritesChanged();
     findSpriteCollisions(sprite);
   }
 
+  /**
+   * Notes that sprites have been added, removed or changed.  Their draw
+   * state is published to the render thread, and a frame drawn, once the UI
+   * thread has finished what it is doing.
+   */
+  void spritesChanged() {
+    if (!snapshotPosted) {
+      snapshotPosted = true;
+      snapshotHandler.post(publishSnapshot);
+    }
+  }
+
+  /**
+   * Starts a batch of sprite changes.  Until the matching
+   * {@link #endBatch()}, changed sprites are only recorded, so that several
+   * sprites can move before any collision is looked for.  Batches may nest.
+   */
+  void beginBatch() {
+    batchDepth++;
+  }
+
+  /**
+   * Ends a batch of sprite changes started by {@link #beginBatch()},
+   * checking every sprite changed during the batch for collisions and
+   * invalidating the view once.
+   */
+  void endBatch() {
+    if (--batchDepth > 0 || batchedSprites.isEmpty()) {
+      return;
+    }
+    spritesChanged();
+    for (Sprite sprite : batchedSprites) {
+      findSpriteCollisions(sprite);
+    }
+    batchedSprites.clear();
+  }
+
+  /**
+   * Asks the render thread for a new frame.  This only matters when
+   * {@link #RenderOnlyWhenDirty()} is set, and is already done whenever a
+   * sprite or the drawing layer changes.
+   */
+  public void requestRender() {
+    synchronized (renderLock) {
+      renderRequested = true;
+      renderLock.notifyAll();
+    }
+  }
+
+  /**
+   * Returns the clock that moves the sprites on this canvas.
+   *
+   * @return the sprite clock
+   */
+  SpriteClock getSpriteClock() {
+    return spriteClock;
+  }
+
+  /**
+   * Records the region in which the sprite can collide with others, or be
+   * drawn, in {@link #sprites}.  This is the bounding box used by
+   * {@link Sprite#colliding(com.xiledsystems.AlternateJavaBridgelib.components.SpriteComponent,
+   * com.xiledsystems.AlternateJavaBridgelib.components.SpriteComponent)},
+   * grown by the collision radius for sprites using circle collision, since
+   * {@link CanvasSprites} treats the sprite's position as
+   * the center of that circle, and covers the sprite's draw bounds too.
+   *
+   * @param sprite the sprite whose location or size has changed
+   */
+  void updateSpriteGrid(Sprite sprite) {
+    // A sprite that has been removed must not be put back in the grid,
+    // where it would still collide and be found.
+    if (!sprites.contains(sprite)) {
+      return;
+    }
+    double border = 1;
+    if (sprite.isCircleCollision()) {
+      border += sprite.getCollisionRadius();
+    }
+    sprite.getDrawBounds(gridDrawRect);
+    sprites.update(sprite,
+        Math.min(sprite.X() - border, gridDrawRect.left),
+        Math.min(sprite.Y() - border, gridDrawRect.top),
+        Math.max(sprite.X() + sprite.Width() + border, gridDrawRect.right),
+        Math.max(sprite.Y() + sprite.Height() + border, gridDrawRect.bottom));
+  }
 
   // Methods for detecting collisions
 
@@ -582,93 +843,210 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
    * and
    * {@link com.google.devtools.simple.runtime.components.android.Sprite#Enabled()}.
    *
+   * <p>Only sprites sharing a cell of the collision grid with the moved
+   * sprite, plus those it is already registered as colliding with, are
+   * examined (see {@link CanvasSprites}).
+   *
    * @param movedSprite the sprite that has just changed position
    */
   protected void findSpriteCollisions(Sprite movedSprite) {
-    for (Sprite sprite : sprites) {
-      if (sprite != movedSprite) {
-        // Check whether we already raised an event for their collision.
-        if (movedSprite.CollidingWith(sprite)) {
-          // If they no longer conflict, note that.
-          if (!movedSprite.Visible() || !movedSprite.Enabled() ||
-              !sprite.Visible() || !sprite.Enabled() ||
-              !Sprite.colliding(sprite, movedSprite) ||
-              !collidingcheck(sprite, movedSprite)) {
-            movedSprite.NoLongerCollidingWith(sprite);
-            sprite.NoLongerCollidingWith(movedSprite);
-          } else {
-            // If they still conflict, do nothing.
-          }
-        } else {
-          // Check if they now conflict.
-          if (movedSprite.Visible() && movedSprite.Enabled() &&
-              sprite.Visible() && sprite.Enabled() &&
-              (Sprite.colliding(sprite, movedSprite) || 
-               collidingcheck(sprite, movedSprite))) {
-            // If so, raise two CollidedWith events.
-            movedSprite.CollidedWith(sprite);
-            sprite.CollidedWith(movedSprite);
-          } else {
-            // If they still don't conflict, do nothing.
-          }
-        }
-      }
+    sprites.findCollisions(movedSprite);
+  }
+
+
+  // Properties
+
+  /**
+   * Returns the width and height, in pixels, of the cells used to find
+   * sprites that might be colliding.
+   *
+   * @return the collision cell size in pixels
+   */
+
+  public int CollisionCellSize() {
+    return sprites.getCellSize();
+  }
+
+  /**
+   * Specifies the width and height, in pixels, of the cells used to find
+   * sprites that might be colliding.  Only sprites sharing a cell are tested
+   * against each other, so a size around that of a typical sprite works
+   * best; much smaller cells cost more to maintain as sprites move, and much
+   * larger ones let more pairs through to the exact test.
+   *
+   * @param size the collision cell size in pixels
+   */
+
+  public void CollisionCellSize(int size) {
+    sprites.setCellSize(size);
+  }
+
+  /**
+   * Returns the number of frames per second the render thread aims for.
+   *
+   * @return the target frame rate
+   */
+
+  public int TargetFPS() {
+    return targetFps;
+  }
+
+  /**
+   * Specifies the number of frames per second the render thread aims for.
+   * Between frames the thread sleeps.  When drawing a frame takes longer than
+   * one frame period, the frames it ran into are skipped so the canvas stays
+   * in step instead of falling behind.
+   *
+   * @param fps the target frame rate
+   */
+
+  public void TargetFPS(int fps) {
+    if (fps <= 0) {
+      throw new IllegalArgumentException("Illegal target frame rate " + fps);
     }
+    targetFps = fps;
   }
-  
-  private boolean collidingcheck(Sprite sprite, Sprite movedSprite) {
-	  
-	  if (sprite.isCircleCollision() && movedSprite.isCircleCollision()) {
-		  return Sprite.circlecolliding(sprite, movedSprite);
-	  }
-	  if (sprite.isCircleCollision() && !movedSprite.isCircleCollision()) {
-		  Sprite circle = sprite;
-		  Sprite rect = movedSprite;
-		  double circledistanceX = Math.abs(circle.X() - rect.X() - rect.Width()/2);
-		  double circledistanceY = Math.abs(circle.Y() - rect.Y() - rect.Height()/2);
-		  if (circledistanceX > (rect.Width()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceY > (rect.Height()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceX <= (rect.Width()/2)) {
-			  return true;
-		  }
-		  if (circledistanceY <= (rect.Height()/2)) {
-			  return true;
-		  }
-		  double cornerDistance_sq = (circledistanceX - rect.Width()/2)* (circledistanceX - rect.Width()/2) +
-		  (circledistanceY - rect.Height()/2) * (circledistanceY - rect.Height()/2);
-		  return (cornerDistance_sq <= (circle.getCollisionRadius()*circle.getCollisionRadius()));
-		  
-	  }
-	  if (!sprite.isCircleCollision() && movedSprite.isCircleCollision()) {
-		  Sprite circle = movedSprite;
-		  Sprite rect = sprite;
-		  double circledistanceX = Math.abs(circle.X() - rect.X() - rect.Width()/2);
-		  double circledistanceY = Math.abs(circle.Y() - rect.Y() - rect.Height()/2);
-		  if (circledistanceX > (rect.Width()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceY > (rect.Height()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceX <= (rect.Width()/2)) {
-			  return true;
-		  }
-		  if (circledistanceY <= (rect.Height()/2)) {
-			  return true;
-		  }
-		  double cornerDistance_sq = (circledistanceX - rect.Width()/2)* (circledistanceX - rect.Width()/2) +
-		  (circledistanceY - rect.Height()/2) * (circledistanceY - rect.Height()/2);
-		  return (cornerDistance_sq <= (circle.getCollisionRadius()*circle.getCollisionRadius()));
-	  }
-	  return false;
+
+  /**
+   * Indicates whether the render thread only draws a frame when something
+   * has changed.
+   *
+   * @return {@code true} if frames are only drawn after a change
+   */
+
+  public boolean RenderOnlyWhenDirty() {
+    return renderOnlyWhenDirty;
   }
 
+  /**
+   * Specifies whether the render thread only draws a frame when something
+   * has changed, rather than redrawing at {@link #TargetFPS()} all the time.
+   * Moving a sprite, changing its appearance or drawing on the canvas counts
+   * as a change; anything else can call {@link #requestRender()}.  A still
+   * scene then costs no CPU at all.
+   *
+   * @param dirtyOnly {@code true} to only draw frames after a change
+   */
 
-  // Properties
+  public void RenderOnlyWhenDirty(boolean dirtyOnly) {
+    renderOnlyWhenDirty = dirtyOnly;
+    requestRender();
+  }
+
+  /**
+   * Returns the width of the world in which sprites move, and against whose
+   * edges they bounce.  This is the width of the canvas unless a world
+   * width has been specified.
+   *
+   * @return the world width in pixels
+   */
+
+  public int WorldWidth() {
+    int width = viewport.getWorldWidth();
+    return width == 0 ? Width() : width;
+  }
+
+  /**
+   * Specifies the width of the world in which sprites move, which may be
+   * more than the width of the canvas.  0 makes it the width of the canvas.
+   *
+   * @param width the world width in pixels
+   */
+
+  public void WorldWidth(int width) {
+    viewport.setWorldWidth(width);
+  }
+
+  /**
+   * Returns the height of the world in which sprites move, and against
+   * whose edges they bounce.  This is the height of the canvas unless a
+   * world height has been specified.
+   *
+   * @return the world height in pixels
+   */
+
+  public int WorldHeight() {
+    int height = viewport.getWorldHeight();
+    return height == 0 ? Height() : height;
+  }
+
+  /**
+   * Specifies the height of the world in which sprites move, which may be
+   * more than the height of the canvas.  0 makes it the height of the
+   * canvas.
+   *
+   * @param height the world height in pixels
+   */
+
+  public void WorldHeight(int height) {
+    viewport.setWorldHeight(height);
+  }
+
+  /**
+   * Returns the world x-coordinate shown at the left edge of the canvas.
+   *
+   * @return the camera's x-coordinate
+   */
+
+  public double CameraX() {
+    return viewport.getCameraX();
+  }
+
+  /**
+   * Specifies the world x-coordinate shown at the left edge of the canvas,
+   * scrolling the sprites.  The drawing layer does not scroll.
+   *
+   * @param x the camera's x-coordinate
+   */
+
+  public void CameraX(double x) {
+    viewport.setCameraX(x);
+    spritesChanged();
+  }
+
+  /**
+   * Returns the world y-coordinate shown at the top edge of the canvas.
+   *
+   * @return the camera's y-coordinate
+   */
+
+  public double CameraY() {
+    return viewport.getCameraY();
+  }
+
+  /**
+   * Specifies the world y-coordinate shown at the top edge of the canvas,
+   * scrolling the sprites.  The drawing layer does not scroll.
+   *
+   * @param y the camera's y-coordinate
+   */
+
+  public void CameraY(double y) {
+    viewport.setCameraY(y);
+    spritesChanged();
+  }
+
+  /**
+   * Returns the number of canvas pixels per world pixel.
+   *
+   * @return the camera zoom
+   */
+
+  public double CameraZoom() {
+    return viewport.getZoom();
+  }
+
+  /**
+   * Specifies the number of canvas pixels per world pixel.  Values above 1
+   * magnify the sprites, values below 1 show more of the world.
+   *
+   * @param zoom the camera zoom
+   */
+
+  public void CameraZoom(double zoom) {
+    viewport.setZoom(zoom);
+    spritesChanged();
+  }
 
   /**
    * Returns the button's background color as an alpha-red-green-blue
@@ -727,6 +1105,7 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
 	  
 	  if (picList.size()>0) {
 		  
+		  MediaUtil.releaseDrawable(animBackground);
 		  animBackground = new AnimationDrawable();
 		  for (int i = 0; i < picList.size(); i++) {
 			  String path;
@@ -784,6 +1163,7 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
     		path = path.split("\\.")[0];
     	}
         //int temp = form.getResources().getIdentifier(path, "drawable", form.getPackageName());
+    	MediaUtil.releaseDrawable(backgroundDrawable);
     	try {
     		//backgroundDrawable = form.getResources().getDrawable(temp);
     		backgroundDrawable = MediaUtil.getDrawable(container.$form(), backgroundImagePath);
@@ -922,7 +1302,7 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
    */
   
   public void Touched(float x, float y, boolean touchedSprite) {
-    EventDispatcher.dispatchEvent(this, "Touched", x, y, touchedSprite);
+    EventDispatcher.dispatchEvent(this, TOUCHED, x, y, touchedSprite);
   }
 
   /**
@@ -945,8 +1325,161 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
   
   public void Dragged(float startX, float startY, float prevX, float prevY,
                       float currentX, float currentY, boolean draggedSprite) {
-    EventDispatcher.dispatchEvent(this, "Dragged", startX, startY,
-                                  prevX, prevY, currentX, currentY, draggedSprite);
+    if (dragMailbox != null) {
+      // Another finger's drag is raised on its own rather than merged.
+      if (dragMailbox.isPending()
+          && (dragMailbox.pending(0) != startX || dragMailbox.pending(1) != startY)) {
+        dragMailbox.flush();
+      }
+    }
+    dragArgs[0] = startX;
+    dragArgs[1] = startY;
+    dragArgs[2] = prevX;
+    dragArgs[3] = prevY;
+    dragArgs[4] = currentX;
+    dragArgs[5] = currentY;
+    dragArgs[6] = draggedSprite ? 1 : 0;
+    if (dragMailbox != null) {
+      dragMailbox.post(dragArgs);
+    } else {
+      dispatchDragged(dragArgs);
+    }
+  }
+
+  // Raises Dragged with the arguments in args.  A delegate that takes floats
+  // gets them as they are, draggedSprite as 1 or 0; any other gets them
+  // boxed, draggedSprite as a Boolean.
+  private void dispatchDragged(float[] args) {
+    if (getDispatchDelegate() instanceof HandlesFloatEventDispatching) {
+      EventDispatcher.dispatchEvent(this, DRAGGED, args, 7);
+    } else {
+      EventDispatcher.dispatchEvent(this, DRAGGED, args[0], args[1],
+          args[2], args[3], args[4], args[5], args[6] != 0);
+    }
+  }
+
+  /**
+   * Returns the least time between Dragged events, or 0 if every move
+   * raises one.
+   *
+   * @return the interval in milliseconds
+   */
+
+  public int DragCoalesceInterval() {
+    return dragCoalesceInterval;
+  }
+
+  /**
+   * Specifies the least time between Dragged events.  When it is more than
+   * 0, the moves of a finger that come sooner than that are merged into one
+   * Dragged, from where the first started to where the last ended, so a
+   * slow handler doesn't fall further and further behind the finger.  16
+   * milliseconds is about one screen frame.  {@link #DroppedDrags()} tells
+   * how many moves an event stands for.  DraggedPath and the sprites'
+   * Dragged events are still raised for every move.
+   *
+   * @param interval the interval in milliseconds, 0 to raise Dragged for
+   *        every move
+   */
+
+  public void DragCoalesceInterval(int interval) {
+    if (interval < 0) {
+      throw new IllegalArgumentException("Illegal drag coalesce interval " + interval);
+    }
+    dragCoalesceInterval = interval;
+    if (interval == 0) {
+      if (dragMailbox != null) {
+        dragMailbox.flush();
+        dragMailbox = null;
+      }
+      droppedDrags = 0;
+    } else if (dragMailbox == null) {
+      dragMailbox = new EventMailbox(dragArgs.length, interval, new EventMailbox.Receiver() {
+        public void receive(float[] args, int dropped) {
+          droppedDrags = dropped;
+          dispatchDragged(args);
+        }
+      });
+      // The merged drag starts where the first one did, and touched a
+      // sprite if any of them did.
+      dragMailbox.setMerge(2, EventMailbox.FIRST);
+      dragMailbox.setMerge(3, EventMailbox.FIRST);
+      dragMailbox.setMerge(6, EventMailbox.MAX);
+    } else {
+      dragMailbox.setInterval(interval);
+    }
+  }
+
+  /**
+   * Returns how many moves were merged into the Dragged event being handled
+   * without being raised themselves, when {@link #DragCoalesceInterval()}
+   * is more than 0.
+   *
+   * @return the number of moves dropped
+   */
+
+  public int DroppedDrags() {
+    return droppedDrags;
+  }
+
+  /**
+   * When a finger moves, with every point it passed through since it last
+   * moved, for drawing smooth strokes.  Android batches the points of a
+   * frame into one event, so this is raised once per finger per frame rather
+   * than once per point.  The first point is the previous position, so
+   * consecutive paths join up.
+   *
+   * <p>The arrays are reused for the next event; copy them to keep them.
+   *
+   * @param pointerId identifies the finger, for as long as it stays down
+   * @param startX the starting x-coordinate
+   * @param startY the starting y-coordinate
+   * @param xs the x-coordinates of the path, from {@code xs[0]}
+   * @param ys the y-coordinates of the path, from {@code ys[0]}
+   * @param count the number of points in the path, at least 2
+   * @param draggedSprite {@code true} if a sprite is being dragged by the
+   *        finger, {@code false} otherwise
+   */
+
+  public void DraggedPath(int pointerId, float startX, float startY,
+                          float[] xs, float[] ys, int count, boolean draggedSprite) {
+    if (draggedPathStartX == null || draggedPathStartX.floatValue() != startX) {
+      draggedPathStartX = Float.valueOf(startX);
+    }
+    if (draggedPathStartY == null || draggedPathStartY.floatValue() != startY) {
+      draggedPathStartY = Float.valueOf(startY);
+    }
+    Object[] args = draggedPathArgs;
+    // Small Integers and Booleans are cached rather than allocated.
+    args[0] = Integer.valueOf(pointerId);
+    args[1] = draggedPathStartX;
+    args[2] = draggedPathStartY;
+    args[3] = xs;
+    args[4] = ys;
+    args[5] = Integer.valueOf(count);
+    args[6] = Boolean.valueOf(draggedSprite);
+    EventDispatcher.dispatchEvent(this, DRAGGED_PATH, args);
+  }
+
+  /**
+   * When two fingers are down and move relative to each other.  The scale
+   * and rotation are measured from where the fingers were when the second
+   * went down.
+   *
+   * @param scale the distance between the fingers over their starting
+   *        distance; above 1 when spreading, below 1 when pinching
+   * @param rotation the degrees the line between the fingers has turned,
+   *        clockwise, from -180 to 180
+   * @param centerX the x-coordinate of the point between the fingers
+   * @param centerY the y-coordinate of the point between the fingers
+   */
+
+  public void Pinched(float scale, float rotation, float centerX, float centerY) {
+    pinchedArgs[0] = scale;
+    pinchedArgs[1] = rotation;
+    pinchedArgs[2] = centerX;
+    pinchedArgs[3] = centerY;
+    EventDispatcher.dispatchEvent(this, PINCHED, pinchedArgs, 4);
   }
 
 
@@ -1001,6 +1534,151 @@ public final class AnimCanvas extends AndroidViewComponent implements ComponentC
     view.invalidate();
   }
 
+  /**
+   * Draws a point at each pair of coordinates in the array, with a single
+   * drawing call and a single redraw, for plotting many points at once.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPoints(float[] points) {
+    checkCoordinates(points);
+    view.canvas.drawPoints(points, paint);
+    view.invalidate();
+  }
+
+  /**
+   * Draws a point at each pair of coordinates in the array.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPoints(int[] points) {
+    DrawPoints(toFloats(points));
+  }
+
+  /**
+   * Draws a separate line between each two pairs of coordinates in the
+   * array, with a single drawing call and a single redraw.
+   *
+   * @param lines x and y coordinates of the ends of the lines: x0, y0, x1,
+   *        y1 for the first line, x2, y2, x3, y3 for the second, and so on
+   */
+
+  public void DrawLines(float[] lines) {
+    if (lines.length % 4 != 0) {
+      throw new IllegalArgumentException("Illegal number of line coordinates " + lines.length);
+    }
+    view.canvas.drawLines(lines, paint);
+    view.invalidate();
+  }
+
+  /**
+   * Draws a separate line between each two pairs of coordinates in the
+   * array.
+   *
+   * @param lines x and y coordinates of the ends of the lines: x0, y0, x1,
+   *        y1 for the first line, x2, y2, x3, y3 for the second, and so on
+   */
+
+  public void DrawLines(int[] lines) {
+    DrawLines(toFloats(lines));
+  }
+
+  /**
+   * Draws a line joining the points in the array in order, as for a chart or
+   * a trace, with a single drawing call and a single redraw.  Nothing is
+   * drawn for fewer than two points.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPath(float[] points) {
+    checkCoordinates(points);
+    if (points.length < 4) {
+      return;
+    }
+    drawShape(points, false);
+    view.invalidate();
+  }
+
+  /**
+   * Draws a line joining the points in the array in order.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPath(int[] points) {
+    DrawPath(toFloats(points));
+  }
+
+  /**
+   * Draws a polygon (filled in) with the points in the array as its
+   * corners, with a single drawing call and a single redraw.  Nothing is
+   * drawn for fewer than three points.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPolygon(float[] points) {
+    checkCoordinates(points);
+    if (points.length < 6) {
+      return;
+    }
+    drawShape(points, true);
+    view.invalidate();
+  }
+
+  /**
+   * Draws a polygon (filled in) with the points in the array as its
+   * corners.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPolygon(int[] points) {
+    DrawPolygon(toFloats(points));
+  }
+
+  private static void checkCoordinates(float[] coordinates) {
+    if (coordinates.length % 2 != 0) {
+      throw new IllegalArgumentException("Illegal number of coordinates " + coordinates.length);
+    }
+  }
+
+  // Draws the points as one path, either an open line or a filled polygon.
+  // The path is reused from call to call.
+  private void drawShape(float[] points, boolean filled) {
+    Path path = drawingPath;
+    path.rewind();
+    path.moveTo(points[0], points[1]);
+    for (int i = 2; i < points.length; i += 2) {
+      path.lineTo(points[i], points[i + 1]);
+    }
+    Paint.Style style = paint.getStyle();
+    if (filled) {
+      path.close();
+      paint.setStyle(Paint.Style.FILL);
+    } else {
+      paint.setStyle(Paint.Style.STROKE);
+    }
+    view.canvas.drawPath(path, paint);
+    paint.setStyle(style);
+  }
+
+  // Copies int coordinates into a float array that is reused as long as the
+  // number of coordinates stays the same, as it does for a chart redrawn
+  // with new values.
+  private float[] toFloats(int[] coordinates) {
+    if (scratchCoordinates.length != coordinates.length) {
+      scratchCoordinates = new float[coordinates.length];
+    }
+    for (int i = 0; i < coordinates.length; i++) {
+      scratchCoordinates[i] = coordinates[i];
+    }
+    return scratchCoordinates;
+  }
+
   /**
    * Draws the specified text relative to the specified coordinates.
    * Appearance depends on the values of {@link #textSize} and
@@ -2,6 +2,7 @@ package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
 
 import com.xiledsystems.AlternateJavaBridgelib.components.Component;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.PaintUtil;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
 
 import android.graphics.Canvas;
 import android.graphics.Paint;
@@ -15,12 +16,17 @@ public final class Ball extends Sprite {
   private int radius;
   private int paintColor;
   private Paint paint;
+  // Drawn with by the render thread of an AnimCanvas, in the color last
+  // drawn with, so that it need not read the paint the UI thread changes
+  private final Paint renderPaint = new Paint();
+  private int renderColor = Component.COLOR_BLACK;
   static final int DEFAULT_RADIUS = 5;
 
   public Ball(ComponentContainer container) {
     super(container);
     
     paint = new Paint();
+    PaintUtil.changePaint(renderPaint, renderColor);
 
     // Set default properties.
     PaintColor(Component.COLOR_BLACK);
@@ -37,6 +43,27 @@ public final class Ball extends Sprite {
     }
   }
 
+  @Override
+  void captureDrawState(RenderSnapshot snapshot, int index) {
+    super.captureDrawState(snapshot, index);
+    snapshot.color[index] =
+        paintColor != Component.COLOR_DEFAULT ? paintColor : Component.COLOR_BLACK;
+  }
+
+  @Override
+  void onDraw(Canvas canvas, RenderSnapshot snapshot, int index) {
+    if (snapshot.visible[index]) {
+      int color = snapshot.color[index];
+      if (color != renderColor) {
+        PaintUtil.changePaint(renderPaint, color);
+        renderColor = color;
+      }
+      float r = snapshot.width[index] / 2f;
+      canvas.drawCircle((float) snapshot.x[index] + r, (float) snapshot.y[index] + r,
+          r, renderPaint);
+    }
+  }
+
   // The following four methods are required by abstract superclass
   // VisibleComponent.  Because we don't want to expose them to the Simple
   // programmer, we omit the SimpleProperty and DesignerProperty pragmas.
@@ -68,6 +95,11 @@ public final class Ball extends Sprite {
         <= radius * radius;
   }
 
+  @Override
+  public boolean intersectsWith(BoundingBox rect) {
+    return circleIntersects(xLeft + radius, yTop + radius, radius, rect);
+  }
+
 
   // Additional properties
 
@@ -6,14 +6,16 @@ import java.util.ArrayList;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.Form;
 import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.FrameSequencePlayer;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MediaUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.TextViewUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.ViewUtil;
 
 import android.content.res.ColorStateList;
 import android.content.res.Resources.NotFoundException;
+import android.graphics.Bitmap;
 import android.graphics.Typeface;
-import android.graphics.drawable.AnimationDrawable;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.StateListDrawable;
 import android.util.Log;
@@ -35,11 +37,11 @@ public abstract class ButtonBase extends AndroidViewComponent
 
   private final android.widget.Button view;
     
-  private AnimationDrawable animBackground;
+  private FrameSequencePlayer animBackground;
   private int fps=10;
   private boolean animRunning=false;
+  private boolean loopAnimation=true;
   private ArrayList<String> picList;
-  private boolean firstrun=true;
   private boolean autoToggle=true;
   
   // Backing for text alignment
@@ -63,6 +65,9 @@ public abstract class ButtonBase extends AndroidViewComponent
   // Image path
   private String imagePath = "";
 
+  // Image loaded for the image path, released when it is replaced
+  private Drawable imageDrawable;
+
   // This is our handle on Android's nice 3-d default button.
   private Drawable defaultButtonDrawable;
 
@@ -210,15 +215,9 @@ public abstract class ButtonBase extends AndroidViewComponent
   
   public void startAnimation() {
 	  if (!animRunning) {
-		  if (firstrun) {
-			  if (resourceId!= -1) {
-				  ViewUtil.setBackgroundImage((android.widget.Button) container.$form().findViewById(resourceId), animBackground);
-			  } else {
-				  ViewUtil.setBackgroundImage(view, animBackground);
-			  }
-			  firstrun=false;
+		  if (animBackground != null) {
+			  animBackground.start();
 		  }
-		  animBackground.start();
 		  animRunning=true;
 	  }
   }
@@ -230,7 +229,9 @@ public abstract class ButtonBase extends AndroidViewComponent
   
   public void stopAnimation() {
 	  if (animRunning) {
-		  animBackground.stop();
+		  if (animBackground != null) {
+			  animBackground.stop();
+		  }
 		  animRunning=false;
 	  }
   }
@@ -325,11 +326,12 @@ public abstract class ButtonBase extends AndroidViewComponent
     try {
       //drawable = form.getResources().getDrawable(temp);
       drawable = MediaUtil.getDrawable(container.$form(), imagePath);
-      firstrun=true;
     } catch (IOException ioe) {
       Log.e("ButtonBase", "Unable to load " + imagePath);
       drawable = null;
     }
+    MediaUtil.releaseDrawable(imageDrawable);
+    imageDrawable = drawable;
     if (resourceId!= -1) {
     	ViewUtil.setBackgroundImage((android.widget.Button) container.$form().findViewById(resourceId), drawable);
     } else {
@@ -345,44 +347,52 @@ public abstract class ButtonBase extends AndroidViewComponent
    */
   
   public void LoopAnimation(boolean loop) {
-	  animBackground.setOneShot(!loop);
+	  loopAnimation = loop;
+	  if (animBackground != null) {
+		  animBackground.setLooping(loop);
+	  }
   }
   
   private void setAnimBackground() {
 	  
 	  if (picList.size()>0) {
 		  
-		  animBackground = new AnimationDrawable();
-		  for (int i = 0; i < picList.size(); i++) {	
-			  String path;
-			  if (picList.get(i).contains(".")) {
-				  path = picList.get(i).split("\\.")[0];
-			  } else {
-				  path = picList.get(i);
-			  }			  
-			  try {				
-				  animBackground.addFrame(MediaUtil.getDrawable(container.$form(), path), fps);
-			  } catch (IOException ioe) {
-				  Log.e("Canvas", "Unable to load " + picList.get(i));
-				  animBackground = null;				  
-			  }
+		  if (animBackground != null) {
+			  animBackground.stop();
+			  animBackground.release();
+		  }
+		  // Frames are decoded in the background as they come up, so however
+		  // long the list, only a few are held at once.
+		  animBackground = new FrameSequencePlayer(container.$form(), picList, Math.max(1, fps),
+		      new FrameSequencePlayer.FrameTarget() {
+		    public void showFrame(Bitmap frame, int index) {
+		      // The button is sized to its background, so it is only laid out
+		      // again when a frame isn't the size of the one before.
+		      View target = getView();
+		      Drawable shown = target.getBackground();
+		      BitmapDrawable drawable = new BitmapDrawable(frame);
+		      if (shown != null && shown.getIntrinsicWidth() == drawable.getIntrinsicWidth()
+		          && shown.getIntrinsicHeight() == drawable.getIntrinsicHeight()) {
+		        target.setBackgroundDrawable(drawable);
+		      } else {
+		        ViewUtil.setBackgroundImage(target, drawable);
+		      }
+		    }
+		  });
+		  animBackground.setLooping(loopAnimation);
+		  animBackground.showFrame(0);
+		  if (animRunning) {
+			  animBackground.start();
 		  }
-		  if (resourceId!= -1) {
-			  ViewUtil.setBackgroundImage((android.widget.Button) container.$form().findViewById(resourceId), animBackground.getFrame(0));
-		  } else {
-			  ViewUtil.setBackgroundImage(view, animBackground.getFrame(0));
-		  }	    	
 	  }
 	    
   }
   
   public void setFrame(int frame) {
 	  frame--;
-	  if (frame < animBackground.getNumberOfFrames()) {
-		  if (resourceId!= -1) {
-			  ViewUtil.setBackgroundImage((android.widget.Button) container.$form().findViewById(resourceId), animBackground.getFrame(frame));
-		  } else {
-			  ViewUtil.setBackgroundImage(view, animBackground.getFrame(frame));
+	  if (animBackground != null) {
+		  if (frame >= 0 && frame < animBackground.getFrameCount()) {
+			  animBackground.showFrame(frame);
 		  }
 	  }
 	  
@@ -697,6 +707,15 @@ public abstract class ButtonBase extends AndroidViewComponent
 		
 	}
   
+  @Override
+	public void onDestroy() {
+		super.onDestroy();
+		if (animBackground != null) {
+			animBackground.release();
+			animBackground = null;
+		}
+	}
+  
   @Override
 	public void postAnimEvent() {
 		EventDispatcher.dispatchEvent(this, "AnimationMiddle");
@@ -4,12 +4,13 @@ import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.drawable.AnimationDrawable;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
@@ -18,24 +19,31 @@ import android.widget.RelativeLayout;
 import android.widget.RelativeLayout.LayoutParams;
 import android.widget.Toast;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.Form;
 import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesFloatEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.AsynchUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.DonutUtil;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.EventMailbox;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.FileUtil;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.FrameSequencePlayer;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MediaUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.PaintUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.SdkLevel;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.ViewUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.common.ComponentConstants;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
-import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
 import com.xiledsystems.AlternateJavaBridgelib.components.util.ErrorMessages;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.Viewport;
 
 
 /**
@@ -58,11 +66,18 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   // Variables behind properties
   private int paintColor;
   private final Paint paint;
+
+  // Reused by the drawing calls that take arrays
+  private final Path drawingPath = new Path();
+  private float[] scratchCoordinates = new float[0];
   private int backgroundColor;
   private final Paint backgroundPaint;
   private String backgroundImagePath = "";
   private Drawable backgroundDrawable;
-  private AnimationDrawable animBackground;
+  // Plays the images of setAnimListandFPS as the background, decoding a few
+  // at a time
+  private FrameSequencePlayer animBackground;
+  private boolean loopAnimation = true;
   private int textAlignment;
   private int fps=100;
   private boolean animRunning=false;
@@ -75,190 +90,135 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
 
   private static final float DEFAULT_LINE_WIDTH = 2;
 
-  // Keep track of enclosed sprites
-  private final List<Sprite> sprites;
+  // Ids of the events raised for every touch and move of a finger
+  private static final int TOUCHED = EventDispatcher.eventId("Touched");
+  private static final int DRAGGED = EventDispatcher.eventId("Dragged");
+  private static final int DRAGGED_PATH = EventDispatcher.eventId("DraggedPath");
+  private static final int PINCHED = EventDispatcher.eventId("Pinched");
+
+  // Keep track of enclosed sprites, in drawing order and by position
+  private final CanvasSprites sprites;
+
+  // Tile maps, drawn beneath the drawing layer and the sprites.  While there
+  // are any, the background color is painted beneath them rather than into
+  // the drawing layer.
+  private final List<TileMap> tileMaps = new ArrayList<TileMap>();
+  private boolean backgroundBeneathMaps;
+
+  // Scratch space for a sprite's draw bounds, which the grid also covers
+  private final Rect gridDrawRect = new Rect();
+
+  // Which part of the world the view shows
+  private final Viewport viewport = new Viewport();
+
+  // Moves the sprites, and the sprites moved by the current batch of changes
+  private final SpriteClock spriteClock;
+  private final Set<Sprite> batchedSprites;
+  private int batchDepth;
+
+  // Part of the view changed by the current batch, and scratch space for
+  // working out the part changed by a single sprite
+  private final Rect batchDirtyRect = new Rect();
+  private final Rect spriteDirtyRect = new Rect();
+
+  // A file a picture is to be written to, for SaveAsync or SaveAsAsync
+  private static final class SaveTarget {
+    private final File file;
+    private final String method;
+    private Bitmap.CompressFormat format;
+    private int quality;
+    // Set by the background thread
+    private boolean success;
+    private int errorNumber;
+    private String errorMessage;
+
+    private SaveTarget(File file, String method) {
+      this.file = file;
+      this.method = method;
+    }
+  }
+
+  // A picture of the canvas waiting to be, or being, written to its files
+  private static final class SaveRequest {
+    private final List<SaveTarget> targets = new ArrayList<SaveTarget>();
+    private Bitmap bitmap;
+  }
+
+  // Bitmaps saved pictures are drawn into, kept for the next save
+  private static final int SAVE_BITMAP_POOL_SIZE = 2;
+
+  // Pictures are written one at a time.  At most one waits while another is
+  // written, so that a burst of saves holds no more than two pictures: the
+  // saves asked for meanwhile all go into the waiting one.  Only the UI
+  // thread touches these; the background thread only sees the request it
+  // is given.
+  private SaveRequest pendingSave;
+  private SaveRequest runningSave;
+  private final List<Bitmap> saveBitmapPool = new ArrayList<Bitmap>();
+  private final android.graphics.Canvas saveCanvas = new android.graphics.Canvas();
+  private final Handler saveHandler = new Handler();
+  private int saveQuality = 100;
+  private double saveScale = 1;
 
   // Handle touches and drags
   private final MotionEventParser motionEventParser;
 
+  // The arguments of Pinched, reused for every event
+  private final float[] pinchedArgs = new float[4];
+
+  // The arguments of DraggedPath, reused for every event.  The start of a
+  // finger stays the same while it moves, so its boxed coordinates are kept
+  // rather than boxed again for every move.
+  private final Object[] draggedPathArgs = new Object[7];
+  private Float draggedPathStartX;
+  private Float draggedPathStartY;
+
+  // The least time between Dragged events, and the mailbox merging drags in
+  // the meantime (null when every move raises Dragged)
+  private int dragCoalesceInterval;
+  private EventMailbox dragMailbox;
+  private final float[] dragArgs = new float[7];
+  private int droppedDrags;
+
   /**
-   * Parser for Android {@link android.view.MotionEvent} sequences, which calls
-   * the appropriate event handlers.  Specifically:
-   * <ul>
-   * <li> If a {@link android.view.MotionEvent#ACTION_DOWN} is followed by one
-   * or more {@link android.view.MotionEvent#ACTION_MOVE} events, a sequence of
-   * {@link Sprite#Dragged(float, float, float, float, float, float)}
-   * calls are generated for sprites that were touched, and the final
-   * {@link android.view.MotionEvent#ACTION_UP} is ignored.
-   *
-   * <li> If a {@link android.view.MotionEvent#ACTION_DOWN} is followed by an
-   * {@link android.view.MotionEvent#ACTION_UP} event either immediately or
-   * after {@link android.view.MotionEvent#ACTION_MOVE} events that take it no
-   * further than {@link #TAP_THRESHOLD} pixels horizontally or vertically from
-   * the start point, it is interpreted as a touch, and a single call to
-   * {@link Sprite#Touched(float, float)} for each touched sprite is
-   * generated.
-   * </ul>
-   *
-   * After the {@code Dragged()} or {@code Touched()} methods are called for
-   * any applicable sprites, a call is made to
-   * {@link Canvas#Dragged(float, float, float, float, float, float, boolean)}
-   * or {@link Canvas#Touched(float, float, boolean)}, respectively.  The
-   * additional final argument indicates whether it was preceded by one or
-   * more calls to a sprite, i.e., whether the locations on the canvas had a
-   * sprite on them ({@code true}) or were empty of sprites {@code false}).
-   *
-   *
+   * Raises this canvas' events for the touches, drags and pinches found by
+   * {@link MotionEventParser}.
    */
-  class MotionEventParser {
-    /**
-     * The number of pixels right, left, up, or down, a sequence of drags must
-     * move from the starting point to be considered a drag (instead of a
-     * touch).
-     */
-    public static final int TAP_THRESHOLD = 30;
-
-    /**
-     * The width of a finger.  This is used in determining whether a sprite is
-     * touched.  Specifically, this is used to determine the horizontal extent
-     * of a bounding box that is tested for collision with each sprite.  The
-     * vertical extent is determined by {@link #FINGER_HEIGHT}.
-     */
-    public static final int FINGER_WIDTH = 24;
-
-    /**
-     * The width of a finger.  This is used in determining whether a sprite is
-     * touched.  Specifically, this is used to determine the vertical extent
-     * of a bounding box that is tested for collision with each sprite.  The
-     * horizontal extent is determined by {@link #FINGER_WIDTH}.
-     */
-    public static final int FINGER_HEIGHT = 24;
-
-    private static final int HALF_FINGER_WIDTH = FINGER_WIDTH / 2;
-    private static final int HALF_FINGER_HEIGHT = FINGER_HEIGHT / 2;
-
-    /**
-     * The set of sprites encountered in a touch or drag sequence.  Checks are
-     * only made for sprites at the endpoints of each drag.
-     */
-    private final List<Sprite> draggedSprites = new ArrayList<Sprite>();
-
-    // startX and startY hold the coordinates of where a touch/drag started
-    private static final int UNSET = -1;
-    private float startX = UNSET;
-    private float startY = UNSET;
-
-    // lastX and lastY hold the coordinates of the previous step of a drag
-    private float lastX = UNSET;
-    private float lastY = UNSET;
-
-    private boolean drag = false;
-
-    void parse(MotionEvent event) {
-      int width = Width();
-      int height = Height();
-
-      // Coordinates less than 0 can be returned if a move begins within a
-      // view and ends outside of it.  Because negative coordinates would
-      // probably confuse the user (as they did me) and would not be useful,
-      // we replace any negative values with zero.
-      float x = Math.max(0, (int) event.getX());
-      float y = Math.max(0, (int) event.getY());
-
-      // Also make sure that by adding or subtracting a half finger that
-      // we don't go out of bounds.
-      BoundingBox rect = new BoundingBox(
-          Math.max(0, (int) x - HALF_FINGER_HEIGHT),
-          Math.max(0, (int) y - HALF_FINGER_WIDTH),
-          Math.min(width - 1, (int) x + HALF_FINGER_WIDTH),
-          Math.min(height - 1, (int) y + HALF_FINGER_HEIGHT));
-
-      switch (event.getAction()) {
-        case MotionEvent.ACTION_DOWN:
-          draggedSprites.clear();
-          startX = x;
-          startY = y;
-          lastX = x;
-          lastY = y;
-          drag = false;
-          for (Sprite sprite : sprites) {
-            if (sprite.Enabled() && sprite.Visible() && sprite.intersectsWith(rect)) {
-              draggedSprites.add(sprite);
-              if (sprite instanceof ImageSprite) {
-            	  ((ImageSprite) sprite).requestDownEvent();
-              }
-            }
-          } 
-          
-          break;
+  private final class CanvasMotionEventParser extends MotionEventParser {
+    CanvasMotionEventParser() {
+      super(viewport, sprites);
+    }
 
-        case MotionEvent.ACTION_MOVE:
-          // Ensure that this was preceded by an ACTION_DOWN
-          if (startX == UNSET || startY == UNSET || lastX == UNSET || lastY == UNSET) {
-            Log.w("Canvas", "In Canvas.MotionEventParser.parse(), " +
-                "an ACTION_MOVE was passed without a preceding ACTION_DOWN: " + event);
-          }
+    @Override
+    int width() {
+      return Width();
+    }
 
-          // If the new point is near the start point, it may just be a tap
-          if (Math.abs(x - startX) < TAP_THRESHOLD && Math.abs(y - startY) < TAP_THRESHOLD) {
-            break;
-          }
-          // Otherwise, it's a drag.
-          drag = true;
-
-          // Update draggedSprites by adding any that are currently being
-          // touched.
-          for (Sprite sprite : sprites) {
-            if (!draggedSprites.contains(sprite)
-                && sprite.Enabled() && sprite.Visible()
-                && sprite.intersectsWith(rect)) {
-              draggedSprites.add(sprite);
-            }
-          }
+    @Override
+    int height() {
+      return Height();
+    }
 
-          // Raise a Dragged event for any affected sprites
-          boolean handled = false;
-          for (Sprite sprite : draggedSprites) {
-            if (sprite.Enabled() && sprite.Visible()) {
-              sprite.Dragged(startX, startY, lastX, lastY, x, y);
-              handled = true;
-            }
-          }
+    @Override
+    void touched(float x, float y, boolean touchedSprite) {
+      Touched(x, y, touchedSprite);
+    }
 
-          // Last argument indicates whether a sprite handled the drag
-          Dragged(startX, startY, lastX, lastY, x, y, handled);
-          lastX = x;
-          lastY = y;
-          break;
+    @Override
+    void dragged(float startX, float startY, float prevX, float prevY,
+        float currentX, float currentY, boolean draggedSprite) {
+      Dragged(startX, startY, prevX, prevY, currentX, currentY, draggedSprite);
+    }
 
-        case MotionEvent.ACTION_UP:
-          // If we never strayed far from the start point, it's a tap.  (If we
-          // did stray far, we've already handled the movements in the ACTION_MOVE
-          // case.)
-          if (!drag) {
-            // It's a tap
-            handled = false;
-            for (Sprite sprite : draggedSprites) {
-              if (sprite.Enabled() && sprite.Visible()) {
-                sprite.Touched(startX, startY);
-                handled = true;
-                if (sprite instanceof ImageSprite) {
-                	((ImageSprite) sprite).requestUpEvent();
-                }
-              }
-            }
-            // Last argument indicates that one or more sprites handled the tap
-            Touched(startX, startY, handled);
-          }
+    @Override
+    void draggedPath(int pointerId, float startX, float startY,
+        float[] xs, float[] ys, int count, boolean draggedSprite) {
+      DraggedPath(pointerId, startX, startY, xs, ys, count, draggedSprite);
+    }
 
-          // Prepare for next drag
-          drag = false;
-          startX = UNSET;
-          startY = UNSET;
-          lastX = UNSET;
-          lastY = UNSET;
-          break;
-      }
+    @Override
+    void pinched(float scale, float rotation, float centerX, float centerY) {
+      Pinched(scale, rotation, centerX, centerY);
     }
   }
 
@@ -278,12 +238,75 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
       canvas = new android.graphics.Canvas(bitmap);
     }
 
+    // Scratch rectangles used while drawing
+    private final Rect clipRect = new Rect();
+    private final Rect blitRect = new Rect();
+    private final Rect spriteRect = new Rect();
+    private final Rect worldClipRect = new Rect();
+    private final List<Sprite> visibleSprites = new ArrayList<Sprite>();
+
     @Override
     public void onDraw(android.graphics.Canvas canvas0) {
       super.onDraw(canvas0);  // Redraw the canvas itself
-      canvas0.drawBitmap(bitmap, 0, 0, null);
-      for (Sprite sprite : sprites) {
-        sprite.onDraw(canvas0);
+      // Sprites and drawing calls only invalidate the area they change, and
+      // canvas0 arrives clipped to the union of those areas (or to the whole
+      // view when that has been invalidated), so only that part of the
+      // bitmap is copied and only the sprites overlapping it are drawn.
+      if (canvas0.getClipBounds(clipRect)) {
+        // Sprites and tile maps are in world coordinates, so they are drawn
+        // through the camera, and only those in the part of the world being
+        // redrawn are looked at.
+        worldClipRect.set(
+            (int) Math.floor(viewport.toWorldX(clipRect.left)),
+            (int) Math.floor(viewport.toWorldY(clipRect.top)),
+            (int) Math.ceil(viewport.toWorldX(clipRect.right)),
+            (int) Math.ceil(viewport.toWorldY(clipRect.bottom)));
+        boolean camera = !viewport.isIdentity();
+
+        // Tile maps are a background layer, beneath what has been drawn.
+        // The background color stays out of the drawing layer until it is
+        // next cleared, even once the last map has gone.
+        if (backgroundBeneathMaps) {
+          canvas0.drawPaint(backgroundPaint);
+        }
+        if (!tileMaps.isEmpty()) {
+          if (camera) {
+            canvas0.save();
+            canvas0.scale((float) viewport.getZoom(), (float) viewport.getZoom());
+            canvas0.translate((float) -viewport.getCameraX(), (float) -viewport.getCameraY());
+          }
+          for (int i = 0; i < tileMaps.size(); i++) {
+            tileMaps.get(i).onDraw(canvas0, worldClipRect.left, worldClipRect.top,
+                worldClipRect.right, worldClipRect.bottom);
+          }
+          if (camera) {
+            canvas0.restore();
+          }
+        }
+
+        blitRect.set(clipRect);
+        if (blitRect.intersect(0, 0, bitmap.getWidth(), bitmap.getHeight())) {
+          canvas0.drawBitmap(bitmap, blitRect, blitRect, null);
+        }
+
+        if (camera) {
+          canvas0.save();
+          canvas0.scale((float) viewport.getZoom(), (float) viewport.getZoom());
+          canvas0.translate((float) -viewport.getCameraX(), (float) -viewport.getCameraY());
+        }
+        sprites.find(worldClipRect.left, worldClipRect.top, worldClipRect.right,
+            worldClipRect.bottom, visibleSprites);
+        for (int i = 0; i < visibleSprites.size(); i++) {
+          Sprite sprite = visibleSprites.get(i);
+          sprite.getDrawBounds(spriteRect);
+          if (Rect.intersects(spriteRect, worldClipRect)) {
+            sprite.onDraw(canvas0);
+          }
+        }
+        visibleSprites.clear();
+        if (camera) {
+          canvas0.restore();
+        }
       }
       drawn = true;
     }
@@ -403,8 +426,10 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     TextAlignment(Component.ALIGNMENT_NORMAL);
     FontSize(Component.FONT_DEFAULT_SIZE);
 
-    sprites = new ArrayList<Sprite>();
-    motionEventParser = new MotionEventParser();
+    sprites = new CanvasSprites();
+    spriteClock = new SpriteClock(this);
+    batchedSprites = new LinkedHashSet<Sprite>();
+    motionEventParser = new CanvasMotionEventParser();
     picList = new ArrayList<String>();
   }
   
@@ -449,15 +474,19 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
 	    TextAlignment(Component.ALIGNMENT_NORMAL);
 	    FontSize(Component.FONT_DEFAULT_SIZE);
 
-	    sprites = new ArrayList<Sprite>();
-	    motionEventParser = new MotionEventParser();
+	    sprites = new CanvasSprites();
+	    spriteClock = new SpriteClock(this);
+	    batchedSprites = new LinkedHashSet<Sprite>();
+	    motionEventParser = new CanvasMotionEventParser();
 	    picList = new ArrayList<String>();
 	    layout.setBackgroundDrawable(null);
 	  }
 
   private void clearViewCanvas() {
     // We avoid drawing the default background color over an explicit background image.
-    if (backgroundDrawable == null && animBackground == null && !clearcanvas) {
+    boolean fillsBackground = backgroundDrawable == null && animBackground == null && !clearcanvas;
+    backgroundBeneathMaps = fillsBackground && !tileMaps.isEmpty();
+    if (fillsBackground && !backgroundBeneathMaps) {
       // There is no background image.
       // Fill the view.canvas with the background color.
       view.canvas.drawPaint(backgroundPaint);
@@ -501,11 +530,12 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   public void startAnimation() {
 	  if (!animRunning) {
 		  if (firstrun) {
-			  ViewUtil.setBackgroundImage(view, animBackground);		  
 			  clearViewCanvas();
 			  firstrun=false;
 		  }
-		  animBackground.start();
+		  if (animBackground != null) {
+			  animBackground.start();
+		  }
 		  animRunning=true;
 	  }
   }
@@ -517,7 +547,9 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   
   public void stopAnimation() {
 	  if (animRunning) {
-		  animBackground.stop();
+		  if (animBackground != null) {
+			  animBackground.stop();
+		  }
 		  animRunning=false;
 	  }
   }
@@ -548,19 +580,20 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    * @param sprite the sprite to add
    */
   public void addSprite(Sprite sprite) {
-	  for (int i = 0; i < sprites.size(); i++) {
-		  if (sprites.get(i).Z() > sprite.Z()) {
-			  sprites.add(i, sprite);
-			  return;
-		  }
-	  }
-    sprites.add(sprite);
+    sprites.add(sprite, sprite.Z());
+    updateSpriteGrid(sprite);
   }
-  
+
+  /**
+   * Moves a sprite to its new layer, above the other sprites in it.
+   *
+   * @param sprite the sprite whose {@link Sprite#Z()} has changed
+   */
   public void changeSpriteLayer(Sprite sprite) {
-	  removeSprite(sprite);
-	  addSprite(sprite);
-	  view.invalidate();
+	  // Only the drawing order changes, so the sprite keeps its place in the
+	  // collision grid, and only the area it covers needs redrawing.
+	  sprites.setLayer(sprite, sprite.Z());
+	  invalidateSprite(sprite);
   }
 
   /**
@@ -570,6 +603,38 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    */
   public void removeSprite(Sprite sprite) {
     sprites.remove(sprite);
+    batchedSprites.remove(sprite);
+    if (!sprite.drawnBounds.isEmpty()) {
+      invalidateWorld(sprite.drawnBounds);
+    }
+  }
+
+  /**
+   * Adds a tile map, which is drawn beneath the drawing layer and the
+   * sprites.  The first map moves the background color from the drawing
+   * layer to beneath the maps, which clears the drawing layer.
+   *
+   * @param map the tile map to add
+   */
+  void addTileMap(TileMap map) {
+    tileMaps.add(map);
+    if (tileMaps.size() == 1 && !backgroundBeneathMaps
+        && backgroundDrawable == null && animBackground == null && !clearcanvas) {
+      clearViewCanvas();
+    } else {
+      view.invalidate();
+    }
+  }
+
+  /**
+   * Removes a tile map from this Canvas.
+   *
+   * @param map the tile map to remove
+   */
+  void removeTileMap(TileMap map) {
+    if (tileMaps.remove(map)) {
+      view.invalidate();
+    }
   }
 
   @Override
@@ -600,16 +665,130 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   // Methods executed when a child sprite has changed its location or appearance
 
   /**
-   * Indicates that a sprite has changed, triggering invalidation of the view
-   * and a check for collisions.
+   * Indicates that a sprite has changed, triggering invalidation of the part
+   * of the view it covered and now covers, and a check for collisions.
+   * Inside a batch both are put off until {@link #endBatch()}.
    *
    * @param sprite the sprite whose location, size, or appearance has changed
    */
   void registerChange(Sprite sprite) {
-    view.invalidate();
+    if (!sprites.contains(sprite)) {
+      return;  // removed, but still being changed
+    }
+    updateSpriteGrid(sprite);
+    if (batchDepth > 0) {
+      batchedSprites.add(sprite);
+      addSpriteDirtyRect(sprite, batchDirtyRect);
+      return;
+    }
+    invalidateSprite(sprite);
     findSpriteCollisions(sprite);
   }
 
+  /**
+   * Invalidates the part of the view the sprite covered when it was last
+   * invalidated and the part it covers now, without checking for collisions.
+   *
+   * @param sprite the sprite that has changed
+   */
+  void invalidateSprite(Sprite sprite) {
+    spriteDirtyRect.setEmpty();
+    addSpriteDirtyRect(sprite, spriteDirtyRect);
+    if (!spriteDirtyRect.isEmpty()) {
+      invalidateWorld(spriteDirtyRect);
+    }
+  }
+
+  /**
+   * Invalidates the part of the view showing the given area of the world.
+   *
+   * @param area the area, in world coordinates
+   */
+  void invalidateWorld(Rect area) {
+    if (viewport.isIdentity()) {
+      view.invalidate(area);
+    } else {
+      view.invalidate(
+          (int) Math.floor(viewport.toCanvasX(area.left)),
+          (int) Math.floor(viewport.toCanvasY(area.top)),
+          (int) Math.ceil(viewport.toCanvasX(area.right)),
+          (int) Math.ceil(viewport.toCanvasY(area.bottom)));
+    }
+  }
+
+  // Grows dirtyRect by the sprite's previous and current draw bounds, and
+  // records the latter as the area to clear when it next changes.
+  private void addSpriteDirtyRect(Sprite sprite, Rect dirtyRect) {
+    dirtyRect.union(sprite.drawnBounds);
+    sprite.getDrawBounds(sprite.drawnBounds);
+    dirtyRect.union(sprite.drawnBounds);
+  }
+
+  /**
+   * Starts a batch of sprite changes.  Until the matching
+   * {@link #endBatch()}, changed sprites are only recorded, so that several
+   * sprites can move before any collision is looked for.  Batches may nest.
+   */
+  void beginBatch() {
+    batchDepth++;
+  }
+
+  /**
+   * Ends a batch of sprite changes started by {@link #beginBatch()},
+   * checking every sprite changed during the batch for collisions and
+   * invalidating the union of their areas once.
+   */
+  void endBatch() {
+    if (--batchDepth > 0 || batchedSprites.isEmpty()) {
+      return;
+    }
+    if (!batchDirtyRect.isEmpty()) {
+      invalidateWorld(batchDirtyRect);
+      batchDirtyRect.setEmpty();
+    }
+    for (Sprite sprite : batchedSprites) {
+      findSpriteCollisions(sprite);
+    }
+    batchedSprites.clear();
+  }
+
+  /**
+   * Returns the clock that moves the sprites on this canvas.
+   *
+   * @return the sprite clock
+   */
+  SpriteClock getSpriteClock() {
+    return spriteClock;
+  }
+
+  /**
+   * Records the region in which the sprite can collide with others, or be
+   * drawn, in {@link #sprites}.  This is the bounding box used by
+   * {@link Sprite#colliding(com.xiledsystems.AlternateJavaBridgelib.components.SpriteComponent,
+   * com.xiledsystems.AlternateJavaBridgelib.components.SpriteComponent)},
+   * grown by the collision radius for sprites using circle collision, since
+   * {@link CanvasSprites} treats the sprite's position as
+   * the center of that circle, and covers the sprite's draw bounds too.
+   *
+   * @param sprite the sprite whose location or size has changed
+   */
+  void updateSpriteGrid(Sprite sprite) {
+    // A sprite that has been removed must not be put back in the grid,
+    // where it would still collide and be found.
+    if (!sprites.contains(sprite)) {
+      return;
+    }
+    double border = 1;
+    if (sprite.isCircleCollision()) {
+      border += sprite.getCollisionRadius();
+    }
+    sprite.getDrawBounds(gridDrawRect);
+    sprites.update(sprite,
+        Math.min(sprite.X() - border, gridDrawRect.left),
+        Math.min(sprite.Y() - border, gridDrawRect.top),
+        Math.max(sprite.X() + sprite.Width() + border, gridDrawRect.right),
+        Math.max(sprite.Y() + sprite.Height() + border, gridDrawRect.bottom));
+  }
 
   // Methods for detecting collisions
 
@@ -626,93 +805,210 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    * and
    * {@link com.google.devtools.simple.runtime.components.android.Sprite#Enabled()}.
    *
+   * <p>Only sprites sharing a cell of the collision grid with the moved
+   * sprite, plus those it is already registered as colliding with, are
+   * examined (see {@link CanvasSprites}).
+   *
    * @param movedSprite the sprite that has just changed position
    */
   protected void findSpriteCollisions(Sprite movedSprite) {
-    for (Sprite sprite : sprites) {
-      if (sprite != movedSprite) {
-        // Check whether we already raised an event for their collision.
-        if (movedSprite.CollidingWith(sprite)) {
-          // If they no longer conflict, note that.
-          if (!movedSprite.Visible() || !movedSprite.Enabled() ||
-              !sprite.Visible() || !sprite.Enabled() ||
-              !Sprite.colliding(sprite, movedSprite) ||
-              !collidingcheck(sprite, movedSprite)) {
-            movedSprite.NoLongerCollidingWith(sprite);
-            sprite.NoLongerCollidingWith(movedSprite);
-          } else {
-            // If they still conflict, do nothing.
-          }
-        } else {
-          // Check if they now conflict.
-          if (movedSprite.Visible() && movedSprite.Enabled() &&
-              sprite.Visible() && sprite.Enabled() &&
-              (Sprite.colliding(sprite, movedSprite) || 
-               collidingcheck(sprite, movedSprite))) {
-            // If so, raise two CollidedWith events.
-            movedSprite.CollidedWith(sprite);
-            sprite.CollidedWith(movedSprite);
-          } else {
-            // If they still don't conflict, do nothing.
-          }
-        }
-      }
+    sprites.findCollisions(movedSprite);
+  }
+
+
+  // Properties
+
+  /**
+   * Returns the width and height, in pixels, of the cells used to find
+   * sprites that might be colliding.
+   *
+   * @return the collision cell size in pixels
+   */
+
+  public int CollisionCellSize() {
+    return sprites.getCellSize();
+  }
+
+  /**
+   * Specifies the width and height, in pixels, of the cells used to find
+   * sprites that might be colliding.  Only sprites sharing a cell are tested
+   * against each other, so a size around that of a typical sprite works
+   * best; much smaller cells cost more to maintain as sprites move, and much
+   * larger ones let more pairs through to the exact test.
+   *
+   * @param size the collision cell size in pixels
+   */
+
+  public void CollisionCellSize(int size) {
+    sprites.setCellSize(size);
+  }
+
+  /**
+   * Returns the width of the world in which sprites move, and against whose
+   * edges they bounce.  This is the width of the canvas unless a world
+   * width has been specified.
+   *
+   * @return the world width in pixels
+   */
+
+  public int WorldWidth() {
+    int width = viewport.getWorldWidth();
+    return width == 0 ? Width() : width;
+  }
+
+  /**
+   * Specifies the width of the world in which sprites move, which may be
+   * more than the width of the canvas.  0 makes it the width of the canvas.
+   *
+   * @param width the world width in pixels
+   */
+
+  public void WorldWidth(int width) {
+    viewport.setWorldWidth(width);
+  }
+
+  /**
+   * Returns the height of the world in which sprites move, and against
+   * whose edges they bounce.  This is the height of the canvas unless a
+   * world height has been specified.
+   *
+   * @return the world height in pixels
+   */
+
+  public int WorldHeight() {
+    int height = viewport.getWorldHeight();
+    return height == 0 ? Height() : height;
+  }
+
+  /**
+   * Specifies the height of the world in which sprites move, which may be
+   * more than the height of the canvas.  0 makes it the height of the
+   * canvas.
+   *
+   * @param height the world height in pixels
+   */
+
+  public void WorldHeight(int height) {
+    viewport.setWorldHeight(height);
+  }
+
+  /**
+   * Returns the world x-coordinate shown at the left edge of the canvas.
+   *
+   * @return the camera's x-coordinate
+   */
+
+  public double CameraX() {
+    return viewport.getCameraX();
+  }
+
+  /**
+   * Specifies the world x-coordinate shown at the left edge of the canvas,
+   * scrolling the sprites.  The drawing layer does not scroll.
+   *
+   * @param x the camera's x-coordinate
+   */
+
+  public void CameraX(double x) {
+    viewport.setCameraX(x);
+    view.invalidate();
+  }
+
+  /**
+   * Returns the world y-coordinate shown at the top edge of the canvas.
+   *
+   * @return the camera's y-coordinate
+   */
+
+  public double CameraY() {
+    return viewport.getCameraY();
+  }
+
+  /**
+   * Specifies the world y-coordinate shown at the top edge of the canvas,
+   * scrolling the sprites.  The drawing layer does not scroll.
+   *
+   * @param y the camera's y-coordinate
+   */
+
+  public void CameraY(double y) {
+    viewport.setCameraY(y);
+    view.invalidate();
+  }
+
+  /**
+   * Returns the number of canvas pixels per world pixel.
+   *
+   * @return the camera zoom
+   */
+
+  public double CameraZoom() {
+    return viewport.getZoom();
+  }
+
+  /**
+   * Specifies the number of canvas pixels per world pixel.  Values above 1
+   * magnify the sprites, values below 1 show more of the world.
+   *
+   * @param zoom the camera zoom
+   */
+
+  public void CameraZoom(double zoom) {
+    viewport.setZoom(zoom);
+    view.invalidate();
+  }
+
+  /**
+   * Returns the quality pictures are saved at by {@link #SaveAsync()} and
+   * {@link #SaveAsAsync(String)}.
+   *
+   * @return the quality, from 0 to 100
+   */
+
+  public int SaveQuality() {
+    return saveQuality;
+  }
+
+  /**
+   * Specifies the quality pictures are saved at by {@link #SaveAsync()} and
+   * {@link #SaveAsAsync(String)}.  Only JPEG files use it; PNG files are
+   * always lossless.
+   *
+   * @param quality the quality, from 0 (smallest) to 100 (best)
+   */
+
+  public void SaveQuality(int quality) {
+    if (quality < 0 || quality > 100) {
+      throw new IllegalArgumentException("Illegal save quality " + quality);
     }
+    saveQuality = quality;
   }
-  
-  private boolean collidingcheck(Sprite sprite, Sprite movedSprite) {
-	  
-	  if (sprite.isCircleCollision() && movedSprite.isCircleCollision()) {
-		  return Sprite.circlecolliding(sprite, movedSprite);
-	  }
-	  if (sprite.isCircleCollision() && !movedSprite.isCircleCollision()) {
-		  Sprite circle = sprite;
-		  Sprite rect = movedSprite;
-		  double circledistanceX = Math.abs(circle.X() - rect.X() - rect.Width()/2);
-		  double circledistanceY = Math.abs(circle.Y() - rect.Y() - rect.Height()/2);
-		  if (circledistanceX > (rect.Width()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceY > (rect.Height()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceX <= (rect.Width()/2)) {
-			  return true;
-		  }
-		  if (circledistanceY <= (rect.Height()/2)) {
-			  return true;
-		  }
-		  double cornerDistance_sq = (circledistanceX - rect.Width()/2)* (circledistanceX - rect.Width()/2) +
-		  (circledistanceY - rect.Height()/2) * (circledistanceY - rect.Height()/2);
-		  return (cornerDistance_sq <= (circle.getCollisionRadius()*circle.getCollisionRadius()));
-		  
-	  }
-	  if (!sprite.isCircleCollision() && movedSprite.isCircleCollision()) {
-		  Sprite circle = movedSprite;
-		  Sprite rect = sprite;
-		  double circledistanceX = Math.abs(circle.X() - rect.X() - rect.Width()/2);
-		  double circledistanceY = Math.abs(circle.Y() - rect.Y() - rect.Height()/2);
-		  if (circledistanceX > (rect.Width()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceY > (rect.Height()/2 + circle.getCollisionRadius())) {
-			  return false;
-		  }
-		  if (circledistanceX <= (rect.Width()/2)) {
-			  return true;
-		  }
-		  if (circledistanceY <= (rect.Height()/2)) {
-			  return true;
-		  }
-		  double cornerDistance_sq = (circledistanceX - rect.Width()/2)* (circledistanceX - rect.Width()/2) +
-		  (circledistanceY - rect.Height()/2) * (circledistanceY - rect.Height()/2);
-		  return (cornerDistance_sq <= (circle.getCollisionRadius()*circle.getCollisionRadius()));
-	  }
-	  return false;
+
+  /**
+   * Returns the scale pictures are saved at by {@link #SaveAsync()} and
+   * {@link #SaveAsAsync(String)}.
+   *
+   * @return the scale, greater than 0 and at most 1
+   */
+
+  public double SaveScale() {
+    return saveScale;
   }
 
+  /**
+   * Specifies the scale pictures are saved at by {@link #SaveAsync()} and
+   * {@link #SaveAsAsync(String)}, to save a smaller picture than the canvas,
+   * such as a thumbnail.  The default of 1 saves the canvas at its own size.
+   *
+   * @param scale the scale, greater than 0 and at most 1
+   */
 
-  // Properties
+  public void SaveScale(double scale) {
+    if (!(scale > 0 && scale <= 1)) {
+      throw new IllegalArgumentException("Illegal save scale " + scale);
+    }
+    saveScale = scale;
+  }
 
   /**
    * Returns the button's background color as an alpha-red-green-blue
@@ -764,35 +1060,36 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    */
   
   public void LoopAnimation(boolean loop) {
-	  animBackground.setOneShot(!loop);
+	  loopAnimation = loop;
+	  if (animBackground != null) {
+		  animBackground.setLooping(loop);
+	  }
   }
   
   private void setAnimBackground() {
 	  
 	  if (picList.size()>0) {
 		  
-		  animBackground = new AnimationDrawable();
-		  for (int i = 0; i < picList.size(); i++) {
-			  String path;
-			  if (picList.get(i).contains(".")) {
-				  path = picList.get(i).split("\\.")[0];
-			  } else {
-				  path = picList.get(i);
-			  }
-			  //int temp = form.getResources().getIdentifier(path, "drawable", form.getPackageName());
-			  try {
-				  //animBackground.addFrame(form.getResources().getDrawable(temp), fps);
-				  animBackground.addFrame(MediaUtil.getDrawable(container.$form(), path), fps);
-			  } catch (IOException ioe) {
-				  Log.e("Canvas", "Unable to load " + picList.get(i));
-				  animBackground = null;
-				  
-			  }
-		  }
 		  if (animBackground != null) {
-			  ViewUtil.setBackgroundImage(view, animBackground.getFrame(0));		  
-			  clearViewCanvas();
-		  }	    	
+			  animBackground.stop();
+			  animBackground.release();
+		  }
+		  // Frames are decoded in the background as they come up, so however
+		  // long the list, only a few are held at once.
+		  animBackground = new FrameSequencePlayer(container.$form(), picList, Math.max(1, fps),
+		      new FrameSequencePlayer.FrameTarget() {
+		    public void showFrame(Bitmap frame, int index) {
+		      // Every frame is the same size, so there is no need for the new
+		      // layout ViewUtil.setBackgroundImage asks for.
+		      view.setBackgroundDrawable(new BitmapDrawable(frame));
+		    }
+		  });
+		  animBackground.setLooping(loopAnimation);
+		  animBackground.showFrame(0);
+		  if (animRunning) {
+			  animBackground.start();
+		  }
+		  clearViewCanvas();
 	  }
 	    
   }
@@ -802,8 +1099,8 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   public void setFrame(int frame) {
 	  frame--;
 	  if (animBackground != null) {
-		  if (frame < animBackground.getNumberOfFrames()) {		  
-			  ViewUtil.setBackgroundImage(view, animBackground.getFrame(frame));
+		  if (frame >= 0 && frame < animBackground.getFrameCount()) {		  
+			  animBackground.showFrame(frame);
 			  clearViewCanvas();
 		  }
 	  }
@@ -825,6 +1122,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     		path = path.split("\\.")[0];
     	}
         //int temp = form.getResources().getIdentifier(path, "drawable", form.getPackageName());
+    	MediaUtil.releaseDrawable(backgroundDrawable);
     	try {
     		//backgroundDrawable = form.getResources().getDrawable(temp);
     		backgroundDrawable = MediaUtil.getDrawable(container.$form(), backgroundImagePath);
@@ -956,7 +1254,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    */
   
   public void Touched(float x, float y, boolean touchedSprite) {
-    EventDispatcher.dispatchEvent(this, "Touched", x, y, touchedSprite);
+    EventDispatcher.dispatchEvent(this, TOUCHED, x, y, touchedSprite);
   }
 
   /**
@@ -979,8 +1277,172 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   
   public void Dragged(float startX, float startY, float prevX, float prevY,
                       float currentX, float currentY, boolean draggedSprite) {
-    EventDispatcher.dispatchEvent(this, "Dragged", startX, startY,
-                                  prevX, prevY, currentX, currentY, draggedSprite);
+    if (dragMailbox != null) {
+      // Another finger's drag is raised on its own rather than merged.
+      if (dragMailbox.isPending()
+          && (dragMailbox.pending(0) != startX || dragMailbox.pending(1) != startY)) {
+        dragMailbox.flush();
+      }
+    }
+    dragArgs[0] = startX;
+    dragArgs[1] = startY;
+    dragArgs[2] = prevX;
+    dragArgs[3] = prevY;
+    dragArgs[4] = currentX;
+    dragArgs[5] = currentY;
+    dragArgs[6] = draggedSprite ? 1 : 0;
+    if (dragMailbox != null) {
+      dragMailbox.post(dragArgs);
+    } else {
+      dispatchDragged(dragArgs);
+    }
+  }
+
+  // Raises Dragged with the arguments in args.  A delegate that takes floats
+  // gets them as they are, draggedSprite as 1 or 0; any other gets them
+  // boxed, draggedSprite as a Boolean.
+  private void dispatchDragged(float[] args) {
+    if (getDispatchDelegate() instanceof HandlesFloatEventDispatching) {
+      EventDispatcher.dispatchEvent(this, DRAGGED, args, 7);
+    } else {
+      EventDispatcher.dispatchEvent(this, DRAGGED, args[0], args[1],
+          args[2], args[3], args[4], args[5], args[6] != 0);
+    }
+  }
+
+  /**
+   * Returns the least time between Dragged events, or 0 if every move
+   * raises one.
+   *
+   * @return the interval in milliseconds
+   */
+
+  public int DragCoalesceInterval() {
+    return dragCoalesceInterval;
+  }
+
+  /**
+   * Specifies the least time between Dragged events.  When it is more than
+   * 0, the moves of a finger that come sooner than that are merged into one
+   * Dragged, from where the first started to where the last ended, so a
+   * slow handler doesn't fall further and further behind the finger.  16
+   * milliseconds is about one screen frame.  {@link #DroppedDrags()} tells
+   * how many moves an event stands for.  DraggedPath and the sprites'
+   * Dragged events are still raised for every move.
+   *
+   * @param interval the interval in milliseconds, 0 to raise Dragged for
+   *        every move
+   */
+
+  public void DragCoalesceInterval(int interval) {
+    if (interval < 0) {
+      throw new IllegalArgumentException("Illegal drag coalesce interval " + interval);
+    }
+    dragCoalesceInterval = interval;
+    if (interval == 0) {
+      if (dragMailbox != null) {
+        dragMailbox.flush();
+        dragMailbox = null;
+      }
+      droppedDrags = 0;
+    } else if (dragMailbox == null) {
+      dragMailbox = new EventMailbox(dragArgs.length, interval, new EventMailbox.Receiver() {
+        public void receive(float[] args, int dropped) {
+          droppedDrags = dropped;
+          dispatchDragged(args);
+        }
+      });
+      // The merged drag starts where the first one did, and touched a
+      // sprite if any of them did.
+      dragMailbox.setMerge(2, EventMailbox.FIRST);
+      dragMailbox.setMerge(3, EventMailbox.FIRST);
+      dragMailbox.setMerge(6, EventMailbox.MAX);
+    } else {
+      dragMailbox.setInterval(interval);
+    }
+  }
+
+  /**
+   * Returns how many moves were merged into the Dragged event being handled
+   * without being raised themselves, when {@link #DragCoalesceInterval()}
+   * is more than 0.
+   *
+   * @return the number of moves dropped
+   */
+
+  public int DroppedDrags() {
+    return droppedDrags;
+  }
+
+  /**
+   * When a finger moves, with every point it passed through since it last
+   * moved, for drawing smooth strokes.  Android batches the points of a
+   * frame into one event, so this is raised once per finger per frame rather
+   * than once per point.  The first point is the previous position, so
+   * consecutive paths join up.
+   *
+   * <p>The arrays are reused for the next event; copy them to keep them.
+   *
+   * @param pointerId identifies the finger, for as long as it stays down
+   * @param startX the starting x-coordinate
+   * @param startY the starting y-coordinate
+   * @param xs the x-coordinates of the path, from {@code xs[0]}
+   * @param ys the y-coordinates of the path, from {@code ys[0]}
+   * @param count the number of points in the path, at least 2
+   * @param draggedSprite {@code true} if a sprite is being dragged by the
+   *        finger, {@code false} otherwise
+   */
+
+  public void DraggedPath(int pointerId, float startX, float startY,
+                          float[] xs, float[] ys, int count, boolean draggedSprite) {
+    if (draggedPathStartX == null || draggedPathStartX.floatValue() != startX) {
+      draggedPathStartX = Float.valueOf(startX);
+    }
+    if (draggedPathStartY == null || draggedPathStartY.floatValue() != startY) {
+      draggedPathStartY = Float.valueOf(startY);
+    }
+    Object[] args = draggedPathArgs;
+    // Small Integers and Booleans are cached rather than allocated.
+    args[0] = Integer.valueOf(pointerId);
+    args[1] = draggedPathStartX;
+    args[2] = draggedPathStartY;
+    args[3] = xs;
+    args[4] = ys;
+    args[5] = Integer.valueOf(count);
+    args[6] = Boolean.valueOf(draggedSprite);
+    EventDispatcher.dispatchEvent(this, DRAGGED_PATH, args);
+  }
+
+  /**
+   * When two fingers are down and move relative to each other.  The scale
+   * and rotation are measured from where the fingers were when the second
+   * went down.
+   *
+   * @param scale the distance between the fingers over their starting
+   *        distance; above 1 when spreading, below 1 when pinching
+   * @param rotation the degrees the line between the fingers has turned,
+   *        clockwise, from -180 to 180
+   * @param centerX the x-coordinate of the point between the fingers
+   * @param centerY the y-coordinate of the point between the fingers
+   */
+
+  public void Pinched(float scale, float rotation, float centerX, float centerY) {
+    pinchedArgs[0] = scale;
+    pinchedArgs[1] = rotation;
+    pinchedArgs[2] = centerX;
+    pinchedArgs[3] = centerY;
+    EventDispatcher.dispatchEvent(this, PINCHED, pinchedArgs, 4);
+  }
+
+  /**
+   * When a picture of the canvas asked for by {@link #SaveAsync()} or
+   * {@link #SaveAsAsync(String)} has been written.
+   *
+   * @param path the full path name of the saved file
+   */
+
+  public void AfterSave(String path) {
+    EventDispatcher.dispatchEvent(this, "AfterSave", path);
   }
 
 
@@ -1004,7 +1466,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   
   public void DrawPoint(int x, int y) {
     view.canvas.drawPoint(x, y, paint);
-    view.invalidate();
+    invalidateDrawing(x, y, x, y);
   }
 
   /**
@@ -1018,7 +1480,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   
   public void DrawCircle(int x, int y, float r) {
     view.canvas.drawCircle(x, y, r, paint);
-    view.invalidate();
+    invalidateDrawing(x - r, y - r, x + r, y + r);
   }
 
   /**
@@ -1032,7 +1494,152 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   
   public void DrawLine(int x1, int y1, int x2, int y2) {
     view.canvas.drawLine(x1, y1, x2, y2, paint);
-    view.invalidate();
+    invalidateDrawing(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2));
+  }
+
+  /**
+   * Draws a point at each pair of coordinates in the array, with a single
+   * drawing call and a single redraw, for plotting many points at once.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPoints(float[] points) {
+    checkCoordinates(points);
+    view.canvas.drawPoints(points, paint);
+    invalidateDrawing(points, points.length);
+  }
+
+  /**
+   * Draws a point at each pair of coordinates in the array.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPoints(int[] points) {
+    DrawPoints(toFloats(points));
+  }
+
+  /**
+   * Draws a separate line between each two pairs of coordinates in the
+   * array, with a single drawing call and a single redraw.
+   *
+   * @param lines x and y coordinates of the ends of the lines: x0, y0, x1,
+   *        y1 for the first line, x2, y2, x3, y3 for the second, and so on
+   */
+
+  public void DrawLines(float[] lines) {
+    if (lines.length % 4 != 0) {
+      throw new IllegalArgumentException("Illegal number of line coordinates " + lines.length);
+    }
+    view.canvas.drawLines(lines, paint);
+    invalidateDrawing(lines, lines.length);
+  }
+
+  /**
+   * Draws a separate line between each two pairs of coordinates in the
+   * array.
+   *
+   * @param lines x and y coordinates of the ends of the lines: x0, y0, x1,
+   *        y1 for the first line, x2, y2, x3, y3 for the second, and so on
+   */
+
+  public void DrawLines(int[] lines) {
+    DrawLines(toFloats(lines));
+  }
+
+  /**
+   * Draws a line joining the points in the array in order, as for a chart or
+   * a trace, with a single drawing call and a single redraw.  Nothing is
+   * drawn for fewer than two points.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPath(float[] points) {
+    checkCoordinates(points);
+    if (points.length < 4) {
+      return;
+    }
+    drawShape(points, false);
+    invalidateDrawing(points, points.length);
+  }
+
+  /**
+   * Draws a line joining the points in the array in order.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPath(int[] points) {
+    DrawPath(toFloats(points));
+  }
+
+  /**
+   * Draws a polygon (filled in) with the points in the array as its
+   * corners, with a single drawing call and a single redraw.  Nothing is
+   * drawn for fewer than three points.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPolygon(float[] points) {
+    checkCoordinates(points);
+    if (points.length < 6) {
+      return;
+    }
+    drawShape(points, true);
+    invalidateDrawing(points, points.length);
+  }
+
+  /**
+   * Draws a polygon (filled in) with the points in the array as its
+   * corners.
+   *
+   * @param points x and y coordinates, alternating: x0, y0, x1, y1, ...
+   */
+
+  public void DrawPolygon(int[] points) {
+    DrawPolygon(toFloats(points));
+  }
+
+  private static void checkCoordinates(float[] coordinates) {
+    if (coordinates.length % 2 != 0) {
+      throw new IllegalArgumentException("Illegal number of coordinates " + coordinates.length);
+    }
+  }
+
+  // Draws the points as one path, either an open line or a filled polygon.
+  // The path is reused from call to call.
+  private void drawShape(float[] points, boolean filled) {
+    Path path = drawingPath;
+    path.rewind();
+    path.moveTo(points[0], points[1]);
+    for (int i = 2; i < points.length; i += 2) {
+      path.lineTo(points[i], points[i + 1]);
+    }
+    Paint.Style style = paint.getStyle();
+    if (filled) {
+      path.close();
+      paint.setStyle(Paint.Style.FILL);
+    } else {
+      paint.setStyle(Paint.Style.STROKE);
+    }
+    view.canvas.drawPath(path, paint);
+    paint.setStyle(style);
+  }
+
+  // Copies int coordinates into a float array that is reused as long as the
+  // number of coordinates stays the same, as it does for a chart redrawn
+  // with new values.
+  private float[] toFloats(int[] coordinates) {
+    if (scratchCoordinates.length != coordinates.length) {
+      scratchCoordinates = new float[coordinates.length];
+    }
+    for (int i = 0; i < coordinates.length; i++) {
+      scratchCoordinates[i] = coordinates[i];
+    }
+    return scratchCoordinates;
   }
 
   /**
@@ -1047,7 +1654,11 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   
   public void DrawText(String text, int x, int y) {
     view.canvas.drawText(text, (float) x, (float) y, paint);
-    view.invalidate();
+    // Depending on the alignment the text extends left, right or both ways
+    // from x, so allow its full width on either side.
+    float width = paint.measureText(text);
+    Paint.FontMetrics metrics = paint.getFontMetrics();
+    invalidateDrawing(x - width, y + metrics.top, x + width, y + metrics.bottom);
   }
 
   /**
@@ -1066,7 +1677,47 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     view.canvas.rotate(-angle, (float) x, (float) y);
     view.canvas.drawText(text, (float) x, (float) y, paint);
     view.canvas.restore();
-    view.invalidate();
+    // Whatever the angle, the text stays within this distance of the origin.
+    float width = paint.measureText(text);
+    Paint.FontMetrics metrics = paint.getFontMetrics();
+    float height = Math.max(-metrics.top, metrics.bottom);
+    float radius = (float) Math.sqrt(width * width + height * height);
+    invalidateDrawing(x - radius, y - radius, x + radius, y + radius);
+  }
+
+  // Invalidates the part of the view covering the given area of the drawing
+  // layer, widened by half the line width plus a pixel for antialiasing.
+  private void invalidateDrawing(float left, float top, float right, float bottom) {
+    float border = paint.getStrokeWidth() / 2 + 1;
+    view.invalidate((int) Math.floor(left - border), (int) Math.floor(top - border),
+        (int) Math.ceil(right + border), (int) Math.ceil(bottom + border));
+  }
+
+  // Invalidates the union of the bounds of the first count coordinates, in
+  // x, y pairs, widened as above.
+  private void invalidateDrawing(float[] coordinates, int count) {
+    if (count < 2) {
+      return;
+    }
+    float left = coordinates[0];
+    float top = coordinates[1];
+    float right = left;
+    float bottom = top;
+    for (int i = 2; i + 1 < count; i += 2) {
+      float x = coordinates[i];
+      float y = coordinates[i + 1];
+      if (x < left) {
+        left = x;
+      } else if (x > right) {
+        right = x;
+      }
+      if (y < top) {
+        top = y;
+      } else if (y > bottom) {
+        bottom = y;
+      }
+    }
+    invalidateDrawing(left, top, right, bottom);
   }
 
   /**
@@ -1177,6 +1828,208 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     }
     return "";
   }
+
+  /**
+   * Saves a picture of this Canvas to the device's external storage without
+   * waiting for it to be written, and returns the full path name the file
+   * will have.  The picture is taken now, at {@link #SaveScale()}, and
+   * compressed to PNG in the background; {@link #AfterSave(String)} is
+   * raised once it is written.  While an earlier picture is being written,
+   * the saves asked for share a single picture waiting its turn, retaken
+   * each time, so each of their files gets the latest.  If an error occurs
+   * the Screen's ErrorOccurred event will be called.
+   */
+
+  public String SaveAsync() {
+    try {
+      File file = FileUtil.getPictureFile("png");
+      queueSave(file, Bitmap.CompressFormat.PNG, "SaveAsync");
+      return file.getAbsolutePath();
+    } catch (IOException e) {
+      container.$form().dispatchErrorOccurredEvent(this, "SaveAsync",
+          ErrorMessages.ERROR_MEDIA_FILE_ERROR, e.getMessage());
+    } catch (FileUtil.FileException e) {
+      container.$form().dispatchErrorOccurredEvent(this, "SaveAsync",
+          e.getErrorMessageNumber());
+    }
+    return "";
+  }
+
+  /**
+   * Saves a picture of this Canvas to the device's external storage in the
+   * file named fileName, as {@link #SaveAs(String)} does, but without
+   * waiting for it to be written.  The picture is taken now, at
+   * {@link #SaveScale()} and {@link #SaveQuality()}, and compressed in the
+   * background; {@link #AfterSave(String)} is raised once it is written.
+   * As with {@link #SaveAsync()}, the saves asked for while an earlier
+   * picture is being written share the latest picture, and a file named
+   * more than once among them is written once.
+   */
+
+  public String SaveAsAsync(String fileName) {
+    // Figure out desired file format
+    Bitmap.CompressFormat format;
+    if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
+      format = Bitmap.CompressFormat.JPEG;
+    } else if (fileName.endsWith(".png")) {
+      format = Bitmap.CompressFormat.PNG;
+    } else if (!fileName.contains(".")) {  // make PNG the default to match Save behavior
+      fileName = fileName + ".png";
+      format = Bitmap.CompressFormat.PNG;
+    } else {
+      container.$form().dispatchErrorOccurredEvent(this, "SaveAsAsync",
+          ErrorMessages.ERROR_MEDIA_IMAGE_FILE_FORMAT);
+      return "";
+    }
+    try {
+      File file = FileUtil.getExternalFile(fileName);
+      queueSave(file, format, "SaveAsAsync");
+      return file.getAbsolutePath();
+    } catch (IOException e) {
+      container.$form().dispatchErrorOccurredEvent(this, "SaveAsAsync",
+          ErrorMessages.ERROR_MEDIA_FILE_ERROR, e.getMessage());
+    } catch (FileUtil.FileException e) {
+      container.$form().dispatchErrorOccurredEvent(this, "SaveAsAsync",
+          e.getErrorMessageNumber());
+    }
+    return "";
+  }
+
+  // Takes a picture of the canvas for saving to the file, into the request
+  // waiting its turn, which all its files share, or into a new one.
+  private void queueSave(File file, Bitmap.CompressFormat format, String method) {
+    SaveRequest request = pendingSave;
+    if (request == null) {
+      request = new SaveRequest();
+      pendingSave = request;
+    }
+    SaveTarget target = null;
+    for (int i = 0; i < request.targets.size(); i++) {
+      if (request.targets.get(i).file.equals(file)) {
+        target = request.targets.get(i);
+        break;
+      }
+    }
+    if (target == null) {
+      target = new SaveTarget(file, method);
+      request.targets.add(target);
+    }
+    target.format = format;
+    target.quality = saveQuality;
+    takeSavePicture(request);
+    startNextSave();
+  }
+
+  // Draws the view, sprites and all, into the request's bitmap at the save
+  // scale.  Bitmaps of earlier saves are reused when they are the right size.
+  private void takeSavePicture(SaveRequest request) {
+    int width = Math.max(1, (int) Math.round(view.getWidth() * saveScale));
+    int height = Math.max(1, (int) Math.round(view.getHeight() * saveScale));
+    Bitmap bitmap = request.bitmap;
+    if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+      if (bitmap != null) {
+        recycleSaveBitmap(bitmap);
+      }
+      bitmap = null;
+      for (int i = 0; i < saveBitmapPool.size(); i++) {
+        Bitmap pooled = saveBitmapPool.get(i);
+        if (pooled.getWidth() == width && pooled.getHeight() == height) {
+          bitmap = saveBitmapPool.remove(i);
+          break;
+        }
+      }
+      if (bitmap == null) {
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      }
+      request.bitmap = bitmap;
+    }
+    bitmap.eraseColor(0);
+    saveCanvas.setBitmap(bitmap);
+    saveCanvas.save();
+    saveCanvas.scale((float) width / Math.max(1, view.getWidth()),
+        (float) height / Math.max(1, view.getHeight()));
+    view.draw(saveCanvas);
+    saveCanvas.restore();
+  }
+
+  // Keeps a bitmap for a later save, if the pool has room.
+  private void recycleSaveBitmap(Bitmap bitmap) {
+    if (saveBitmapPool.size() < SAVE_BITMAP_POOL_SIZE) {
+      saveBitmapPool.add(bitmap);
+    } else {
+      bitmap.recycle();
+    }
+  }
+
+  // Starts writing the next picture in the background, unless one is
+  // already being written.
+  private void startNextSave() {
+    if (runningSave != null || pendingSave == null) {
+      return;
+    }
+    final SaveRequest request = pendingSave;
+    pendingSave = null;
+    runningSave = request;
+    AsynchUtil.runAsynchronously(saveHandler, new Runnable() {
+      @Override
+      public void run() {
+        writeSavePicture(request);
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        finishSave(request);
+      }
+    });
+  }
+
+  // Compresses the picture to each of its files.  Runs in the background,
+  // so it only touches the request.
+  private static void writeSavePicture(SaveRequest request) {
+    for (int i = 0; i < request.targets.size(); i++) {
+      SaveTarget target = request.targets.get(i);
+      try {
+        BufferedOutputStream out =
+            new BufferedOutputStream(new FileOutputStream(target.file), 64 * 1024);
+        try {
+          target.success = request.bitmap.compress(target.format, target.quality, out);
+          if (!target.success) {
+            target.errorNumber = ErrorMessages.ERROR_CANVAS_BITMAP_ERROR;
+          }
+        } finally {
+          out.close();
+        }
+      } catch (FileNotFoundException e) {
+        target.success = false;
+        target.errorNumber = ErrorMessages.ERROR_MEDIA_CANNOT_OPEN;
+        target.errorMessage = target.file.getAbsolutePath();
+      } catch (IOException e) {
+        target.success = false;
+        target.errorNumber = ErrorMessages.ERROR_MEDIA_FILE_ERROR;
+        target.errorMessage = e.getMessage();
+      }
+    }
+  }
+
+  // Back on the UI thread once a picture has been written
+  private void finishSave(SaveRequest request) {
+    runningSave = null;
+    recycleSaveBitmap(request.bitmap);
+    request.bitmap = null;
+    for (int i = 0; i < request.targets.size(); i++) {
+      SaveTarget target = request.targets.get(i);
+      if (target.success) {
+        AfterSave(target.file.getAbsolutePath());
+      } else if (target.errorMessage != null) {
+        container.$form().dispatchErrorOccurredEvent(this, target.method,
+            target.errorNumber, target.errorMessage);
+      } else {
+        container.$form().dispatchErrorOccurredEvent(this, target.method,
+            target.errorNumber);
+      }
+    }
+    startNextSave();
+  }
   
 	
 		public void AutoToggle(boolean autotoggle) {
@@ -1187,16 +2040,25 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
 		public void onStop() {
 			
 			if (autoToggle) {
-				if (animBackground.isRunning()) {
+				if (animBackground != null && animBackground.isRunning()) {
 					animBackground.stop();
 				}
 			}			
 		}
 
+		@Override
+		public void onDestroy() {
+			super.onDestroy();
+			if (animBackground != null) {
+				animBackground.release();
+				animBackground = null;
+			}
+		}
+
 		@Override
 		public void onResume() {
 			
-			if (autoToggle && animRunning) {
+			if (autoToggle && animRunning && animBackground != null) {
 				animBackground.start();			
 			}			
 		}
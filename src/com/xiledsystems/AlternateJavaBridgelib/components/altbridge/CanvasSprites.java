@@ -0,0 +1,90 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
+
+import java.util.List;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteIndex;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteMath;
+
+/**
+ * The sprites of a {@link Canvas} or {@link AnimCanvas}.  Collisions
+ * between them raise {@link Sprite#CollidedWith(Sprite)} and are ended by
+ * {@link Sprite#NoLongerCollidingWith(Sprite)}, and only sprites that are
+ * both {@link Sprite#Visible()} and {@link Sprite#Enabled()} can collide or
+ * be touched.
+ *
+ */
+final class CanvasSprites extends SpriteIndex<Sprite> {
+
+  @Override
+  protected double getLayer(Sprite sprite) {
+    return sprite.Z();
+  }
+
+  @Override
+  protected long getSequence(Sprite sprite) {
+    return sprite.drawingSequence;
+  }
+
+  @Override
+  protected void setSequence(Sprite sprite, long sequence) {
+    sprite.drawingSequence = sequence;
+  }
+
+  @Override
+  protected boolean touches(Sprite sprite, BoundingBox box) {
+    return sprite.Enabled() && sprite.Visible() && sprite.intersectsWith(box);
+  }
+
+  @Override
+  protected boolean collidable(Sprite sprite) {
+    return sprite.Visible() && sprite.Enabled();
+  }
+
+  // The same test has to decide both the start and the end of a collision,
+  // otherwise a pair that only passes one half of it would have its
+  // collision raised and cleared on alternate moves.
+  // Sprites colliding by their pixels are only tested for it once their
+  // shapes are found to overlap.
+  @Override
+  protected boolean colliding(Sprite sprite, Sprite movedSprite) {
+    return (Sprite.colliding(sprite, movedSprite) || collidingcheck(sprite, movedSprite))
+        && Sprite.masksColliding(sprite, movedSprite);
+  }
+
+  private static boolean collidingcheck(Sprite sprite, Sprite movedSprite) {
+    if (sprite.isCircleCollision() && movedSprite.isCircleCollision()) {
+      return Sprite.circlecolliding(sprite, movedSprite);
+    }
+    if (sprite.isCircleCollision()) {
+      return SpriteMath.circleRectangleColliding(sprite.X(), sprite.Y(),
+          sprite.getCollisionRadius(), movedSprite.X(), movedSprite.Y(),
+          movedSprite.Width(), movedSprite.Height());
+    }
+    if (movedSprite.isCircleCollision()) {
+      return SpriteMath.circleRectangleColliding(movedSprite.X(), movedSprite.Y(),
+          movedSprite.getCollisionRadius(), sprite.X(), sprite.Y(),
+          sprite.Width(), sprite.Height());
+    }
+    return false;
+  }
+
+  @Override
+  protected boolean registeredColliding(Sprite sprite, Sprite other) {
+    return sprite.CollidingWith(other);
+  }
+
+  @Override
+  protected void addRegisteredCollisions(Sprite sprite, List<Sprite> out) {
+    sprite.addRegisteredCollisions(out);
+  }
+
+  @Override
+  protected void collided(Sprite sprite, Sprite other) {
+    sprite.CollidedWith(other);
+  }
+
+  @Override
+  protected void noLongerColliding(Sprite sprite, Sprite other) {
+    sprite.NoLongerCollidingWith(other);
+  }
+}
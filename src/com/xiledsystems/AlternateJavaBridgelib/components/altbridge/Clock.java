@@ -18,6 +18,8 @@ import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher
 public final class Clock extends AndroidNonvisibleComponent
     implements Component, AlarmHandler, OnStopListener, OnResumeListener, OnDestroyListener, OnDestroySvcListener, Deleteable {
 
+  private static final int TIMER = EventDispatcher.eventId("Timer");
+
   private TimerInternal timerInternal;
   private boolean timerAlwaysFires = true;
   private boolean onScreen = false;
@@ -62,7 +64,7 @@ public final class Clock extends AndroidNonvisibleComponent
   
   public void Timer() {
     if (timerAlwaysFires || onScreen) {
-      EventDispatcher.dispatchEvent(this, "Timer");
+      EventDispatcher.dispatchEvent(this, TIMER);
     }
   }
 
@@ -204,6 +204,9 @@ public class Form extends Activity
     	rotateIn = true;
     }
 
+    // Route events to any @OnEvent handlers
+    EventDispatcher.registerEventRouter(this);
+
     // Add application components to the form
     $define();
 
@@ -607,6 +610,12 @@ public class Form extends Activity
    * {@link com.google.devtools.simple.scripts.DocumentationGenerator} and
    * {@link com.google.devtools.simple.scripts.LangDefXmlGenerator},
    * respectively.  The actual implementation appears in {@code runtime.scm}.
+   *
+   * Events whose arguments are all floats, AccelerationChanged for one, come
+   * here boxed once per event, shared by all their handlers.  A Form that
+   * implements
+   * {@link com.xiledsystems.AlternateJavaBridgelib.components.HandlesFloatEventDispatching}
+   * gets them as they are instead.
    */
   @Override
   public boolean dispatchEvent(Component component, String componentName, String eventName,
@@ -828,6 +837,7 @@ public class Form extends Activity
   public void BackgroundImage(String path) {
     backgroundImagePath = (path == null) ? "" : path;
 
+    MediaUtil.releaseDrawable(backgroundDrawable);
     try {
       backgroundDrawable = MediaUtil.getDrawable(this, backgroundImagePath);
     } catch (IOException ioe) {
@@ -87,6 +87,9 @@ public class FormService extends Service implements Component, SvcComponentConta
        Log.i(LOG_TAG, "active FormService is now "+activeFormService.formServiceName);
        
       
+       // Route events to any @OnEvent handlers
+       EventDispatcher.registerEventRouter(this);
+       
        $define();
        Initialize();
     }
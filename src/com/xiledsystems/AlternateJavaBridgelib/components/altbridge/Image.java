@@ -1,7 +1,8 @@
 package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
 
 import android.content.res.Resources.NotFoundException;
-import android.graphics.drawable.AnimationDrawable;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.util.Log;
 import android.view.View;
@@ -9,6 +10,7 @@ import android.widget.ImageView;
 import java.io.IOException;
 import java.util.ArrayList;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.AnimationUtil;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.FrameSequencePlayer;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MediaUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.ViewUtil;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
@@ -24,14 +26,14 @@ public final class Image extends AndroidViewComponent implements OnResumeListene
   
   //AJB
    
-  private AnimationDrawable animBackground;
+  private FrameSequencePlayer animBackground;
   private int fps=10;
   private boolean animRunning=false;
   private ArrayList<String> picList;
-  private boolean firstrun=true;
   private boolean autoToggle=true;
 
   private String picturePath = "";  // Picture property
+  private Drawable pictureDrawable;
 
   
   /**
@@ -66,11 +68,9 @@ public final class Image extends AndroidViewComponent implements OnResumeListene
   
   public void startAnimation() {
 	  if (!animRunning) {
-		  if (firstrun) {
-			  ViewUtil.setBackgroundImage(view, animBackground);		  
-			  firstrun=false;
+		  if (animBackground != null) {
+			  animBackground.start();
 		  }
-		  animBackground.start();
 		  animRunning=true;
 	  }
   }
@@ -82,7 +82,9 @@ public final class Image extends AndroidViewComponent implements OnResumeListene
   
   public void stopAnimation() {
 	  if (animRunning) {
-		  animBackground.stop();
+		  if (animBackground != null) {
+			  animBackground.stop();
+		  }
 		  animRunning=false;
 	  }
   }
@@ -158,6 +160,8 @@ public final class Image extends AndroidViewComponent implements OnResumeListene
       Log.e("Image", "Unable to load " + picturePath);
       drawable = null;
     }
+    MediaUtil.releaseDrawable(pictureDrawable);
+    pictureDrawable = drawable;
 
     // AJB change - changed from setImage, so it can resize freely (not locked to aspect ratio)
     if (resourceId!=-1) {
@@ -171,39 +175,41 @@ public final class Image extends AndroidViewComponent implements OnResumeListene
 	  
 	  if (picList.size()>0) {
 		  
-		  animBackground = new AnimationDrawable();
-		  for (int i = 0; i < picList.size(); i++) {	
-			  String path;
-			  if (picList.get(i).contains(".")) {
-				  path = picList.get(i).split("\\.")[0];
-			  } else {
-				  path = picList.get(i);
-			  }
-			 // int temp = form.getResources().getIdentifier(path, "drawable", form.getPackageName());
-			  try {
-				  //animBackground.addFrame(form.getResources().getDrawable(temp), fps);
-				  animBackground.addFrame(MediaUtil.getDrawable(container.$form(), path), fps);
-			  } catch (IOException ioe) {
-				  Log.e("Canvas", "Unable to load " + picList.get(i));
-				  animBackground = null;				  
-			  }
+		  if (animBackground != null) {
+			  animBackground.stop();
+			  animBackground.release();
+		  }
+		  // Frames are decoded in the background as they come up, so however
+		  // long the list, only a few are held at once.
+		  animBackground = new FrameSequencePlayer(container.$form(), picList, Math.max(1, fps),
+		      new FrameSequencePlayer.FrameTarget() {
+		    public void showFrame(Bitmap frame, int index) {
+		      // The image is sized to its background, so it is only laid out
+		      // again when a frame isn't the size of the one before.
+		      View target = getView();
+		      Drawable shown = target.getBackground();
+		      BitmapDrawable drawable = new BitmapDrawable(frame);
+		      if (shown != null && shown.getIntrinsicWidth() == drawable.getIntrinsicWidth()
+		          && shown.getIntrinsicHeight() == drawable.getIntrinsicHeight()) {
+		        target.setBackgroundDrawable(drawable);
+		      } else {
+		        ViewUtil.setBackgroundImage(target, drawable);
+		      }
+		    }
+		  });
+		  animBackground.showFrame(0);
+		  if (animRunning) {
+			  animBackground.start();
 		  }
-		  if (resourceId!=-1) {
-			  ViewUtil.setBackgroundImage((android.widget.ImageView) container.$form().findViewById(resourceId), animBackground.getFrame(0));
-		  } else {
-			  ViewUtil.setBackgroundImage(view, animBackground.getFrame(0));
-		  }	    	
 	  }
 	    
   }
   
   public void setFrame(int frame) {
 	  frame--;
-	  if (frame < animBackground.getNumberOfFrames()) {
-		  if (resourceId!=-1) {
-			  ViewUtil.setBackgroundImage((android.widget.ImageView) container.$form().findViewById(resourceId), animBackground.getFrame(frame));
-		  } else {
-			  ViewUtil.setBackgroundImage(view, animBackground.getFrame(frame));
+	  if (animBackground != null) {
+		  if (frame >= 0 && frame < animBackground.getFrameCount()) {
+			  animBackground.showFrame(frame);
 		  }
 	  }	  
   }
@@ -233,16 +239,25 @@ public final class Image extends AndroidViewComponent implements OnResumeListene
 	public void onStop() {
 		
 		if (autoToggle) {
-			if (animBackground.isRunning()) {
+			if (animBackground != null && animBackground.isRunning()) {
 				animBackground.stop();
 			}
 		}		
 	}
 
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		if (animBackground != null) {
+			animBackground.release();
+			animBackground = null;
+		}
+	}
+
 	@Override
 	public void onResume() {
 		
-		if (autoToggle && animRunning) {
+		if (autoToggle && animRunning && animBackground != null) {
 			animBackground.start();			
 		}		
 	}
@@ -2,6 +2,7 @@ package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
 
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
@@ -11,8 +12,12 @@ import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.Toast;
 import java.io.IOException;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MaskCache;
 import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MediaUtil;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.RotationCache;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.CollisionMask;
 
 
 
@@ -23,8 +28,8 @@ import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher
  * resize the component. It adds the onTouch listener as well. It also gives you the ability to better
  * manage the memory hold. Use AutoToggle(true) to enable this feature. It will automatically disable the
  * sprite's timer when the activity it's in is paused, then re-enables it upon resume.
- * SpriteSheet animation has also been built into this component. It runs in it's own thread for as best
- * performance as possible. In order to use the spritesheet functionality, SetSheetAnimandFPS must be
+ * SpriteSheet animation has also been built into this component. It is run by the canvas' clock, along
+ * with every other animation on the canvas, so no thread is needed per sprite. In order to use the spritesheet functionality, SetSheetAnimandFPS must be
  * called with the filename (with, or without the extension -- ex "buttonpic", or "buttonpic.png" ), the 
  * amount of frames in the sheet, and the fps, or speed of the animation. When startAnimation is called,
  * the animation will run threw the frames one after another. You can also specify a custom animation list
@@ -44,23 +49,44 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
   private boolean rotates;
   private boolean sheetAnimation=false;
   private boolean autoToggle=true;
-  private Matrix mat;
+  private Paint rotationPaint;
   public int currentFrame=1;
   private Bitmap unrotatedBitmap;
-  private Bitmap rotatedBitmap;
-  private BitmapDrawable rotatedDrawable;
-  private double cachedRotationHeading;
-  private boolean rotationCached;
+  private double rotationStep;
   private int spriteWidth;
   private int spriteHeight;
   private int frameCount;
   private Rect sourceRect;
+  // Scratch space and caches for drawing, only touched by the thread that
+  // draws the sprite: the UI thread for a Canvas, the render thread for an
+  // AnimCanvas.  The rotated copy from RotationCache, used when RotationStep
+  // is set, is kept with the picture and angle it was made from, both worked
+  // out from the state being drawn, so nothing else needs to reset it.
+  private Matrix mat;
+  private Bitmap rotatedBitmap;
+  private Bitmap rotatedSource;
+  private float rotatedAngle;
+  private Rect rotatedRect;
+  // Where the current frame is in the picture and where it goes on the
+  // canvas
+  private final Rect frameRect = new Rect();
+  private final Rect sheetDestRect = new Rect();
+  // Whether the sprite collides by its opaque pixels, and the mask of the
+  // current frame stretched to the sprite's size, with the mask it came from
+  private boolean maskCollision;
+  private CollisionMask scaledMask;
+  private CollisionMask scaledMaskSource;
   private double fps;
   private boolean animRunning=false;
   private boolean running=false;
-  private double framePeriod;
   private boolean loop;
-  private Thread animThread;
+  // Position in the frame sequence, and this sprite's place in the
+  // animations run by the canvas' clock (-1 when not among them), the
+  // uptime its next frame is due, and whether it is due in the current tick
+  private int animPosition;
+  int animationIndex = -1;
+  double nextAnimationFrameTime;
+  boolean animationFrameDue;
   private Handler androidUIhandler = new Handler();
    
   private boolean customAnim=false;
@@ -77,8 +103,9 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
     super(container);
     
     mat = new Matrix();
+    rotationPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    rotatedRect = new Rect();
     rotates = true;
-    rotationCached = false;
     
     container.$form().registerForOnResume(this);
     container.$form().registerForOnStop(this);
@@ -94,8 +121,9 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 	    super(container, resourceId);
 	    
 	    mat = new Matrix();
+	    rotationPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	    rotatedRect = new Rect();
 	    rotates = true;
-	    rotationCached = false;
 	    
 	    container.$form().registerForOnResume(this);
 	    container.$form().registerForOnStop(this);
@@ -185,6 +213,7 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 		  picName = picName.split("\\.")[0];
 	  }
 	  //int temp = form.getResources().getIdentifier(picName, "drawable", form.getPackageName());
+	  MediaUtil.releaseDrawable(drawable);
 	  try {
 		  drawable = MediaUtil.getDrawable(canvas.$form(), picName);
 		  //drawable = form.getResources().getDrawable(temp);
@@ -194,6 +223,7 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 		  spriteHeight = unrotatedBitmap.getHeight();
 		  sourceRect.right = spriteWidth;
 		  sourceRect.bottom = spriteHeight;
+		  preloadMasks();
 		 
 	  } catch (IOException e) {
 		  Log.e("ImageSprite", "Unable to load " + picName);
@@ -222,8 +252,51 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 	  yTop = y;
   }
   
+  // Bits of RenderSnapshot.flags
+  private static final int DRAW_SHEET = 1;
+  private static final int DRAW_ROTATES = 2;
+
   public void onDraw(android.graphics.Canvas canvas) {
-	if (sheetAnimation) {
+	draw(canvas, xLeft, yTop, Heading(), visible, Width(), Height(), unrotatedBitmap,
+		drawable, drawFlags(), rotationStep, sourceRect.left, spriteWidth, spriteHeight);
+  }
+
+  @Override
+  void captureDrawState(RenderSnapshot snapshot, int index) {
+	super.captureDrawState(snapshot, index);
+	snapshot.frame[index] = sourceRect.left;
+	snapshot.frameWidth[index] = spriteWidth;
+	snapshot.frameHeight[index] = spriteHeight;
+	snapshot.bitmap[index] = unrotatedBitmap;
+	snapshot.drawable[index] = drawable;
+	snapshot.flags[index] = drawFlags();
+	snapshot.rotationStep[index] = rotationStep;
+  }
+
+  private int drawFlags() {
+	return (sheetAnimation ? DRAW_SHEET : 0) | (rotates ? DRAW_ROTATES : 0);
+  }
+
+  @Override
+  void onDraw(android.graphics.Canvas canvas, RenderSnapshot snapshot, int index) {
+	draw(canvas, snapshot.x[index], snapshot.y[index], snapshot.heading[index],
+		snapshot.visible[index], snapshot.width[index], snapshot.height[index],
+		snapshot.bitmap[index], snapshot.drawable[index], snapshot.flags[index],
+		snapshot.rotationStep[index], snapshot.frame[index], snapshot.frameWidth[index],
+		snapshot.frameHeight[index]);
+  }
+
+  // Draws the sprite with the given state.  frameLeft, frameWidth and
+  // frameHeight are where the current frame is in the picture, for sheet
+  // animations.  Apart from the state passed in, only the drawing fields
+  // above are read or changed, and nothing else touches those, so the
+  // render thread of an AnimCanvas can call it with a snapshot while the UI
+  // thread changes the sprite.
+  private void draw(android.graphics.Canvas canvas, double xLeft, double yTop,
+		  double heading, boolean visible, int w, int h, Bitmap unrotatedBitmap,
+		  Drawable drawable, int flags, double rotationStep, int frameLeft,
+		  int frameWidth, int frameHeight) {
+	if ((flags & DRAW_SHEET) != 0) {
 		
 		if (unrotatedBitmap != null && visible) {
 			int xinit = (int) Math.round(xLeft);
@@ -231,8 +304,9 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 			// The source Rect declares where in our image the currant frame is.
 			// The dest Rect declares where on the canvas it should draw the bitmap
 			// We can use this to stretch the image however you want.
-	    	Rect destRect = new Rect(xinit, yinit, xinit + Width(), yinit + Height());
-	    	canvas.drawBitmap(unrotatedBitmap, sourceRect, destRect, null);	    	
+			frameRect.set(frameLeft, 0, frameLeft + frameWidth, frameHeight);
+	    	sheetDestRect.set(xinit, yinit, xinit + w, yinit + h);
+	    	canvas.drawBitmap(unrotatedBitmap, frameRect, sheetDestRect, null);	    	
 	    	    	
 	    } 
 		
@@ -241,51 +315,42 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 		if (unrotatedBitmap != null && visible) {
 			int xinit = (int) Math.round(xLeft);
 			int yinit = (int) Math.round(yTop);
-			int w = Width();
-			int h = Height();
 			// 			If the sprite doesn't rotate,  use the original drawable
 			// 	otherwise use the bitmapDrawable
-			if (!rotates) {
+			if ((flags & DRAW_ROTATES) == 0) {
 				drawable.setBounds(xinit, yinit, xinit + w, yinit + h);
 				drawable.draw(canvas);
 			} else {
-				// compute the new rotated image if the heading has changed
-				if (!rotationCached || (cachedRotationHeading != Heading())) {
-					// Set up the matrix for the rotation transformation
-					// Rotate around the center of the sprite image (w/2, h/2)
-					// TODO(user): Add a way for the user to specify the center of rotation.
-					mat.setRotate((float) -Heading(), w / 2, h / 2);
-					// Next create the rotated bitmap
-					// Careful: We use getWidth and getHeight of the unrotated bitmap, rather than the
-					// Width and Height of the sprite.  Doing the latter produces an illegal argument
-					// exception in creating the bitmap, if the user sets the Width or Height of the
-					// sprite to be larger than the image size.
-					rotatedBitmap = Bitmap.createBitmap(
-						unrotatedBitmap,
-						0, 0,
-						unrotatedBitmap.getWidth(), unrotatedBitmap.getHeight(),
-						mat, true);
-					// make a drawable for the rotated image and cache the heading
-					rotatedDrawable = new BitmapDrawable(rotatedBitmap);
-					cachedRotationHeading = Heading();
+				// The image is drawn at its own size, turned about its center, with
+				// that center kept on the center of the sprite.
+				// TODO(user): Add a way for the user to specify the center of rotation.
+				float xCenter = xinit + w / 2f;
+				float yCenter = yinit + h / 2f;
+				if (rotationStep == 0) {
+					// Transform the bitmap while drawing it, which allocates nothing.
+					mat.setTranslate(-unrotatedBitmap.getWidth() / 2f, -unrotatedBitmap.getHeight() / 2f);
+					mat.postRotate((float) -heading);
+					mat.postTranslate(xCenter, yCenter);
+					canvas.drawBitmap(unrotatedBitmap, mat, rotationPaint);
+				} else {
+					// Snap the heading to the step, so that the rotated copies can be
+					// shared and reused, and only look one up when the angle changes.
+					float angle = (float) (Math.round(-heading / rotationStep) * rotationStep % 360);
+					if (angle < 0) {
+						angle += 360;
+					}
+					Bitmap rotated = rotatedBitmap;
+					if (rotated == null || rotatedSource != unrotatedBitmap || angle != rotatedAngle) {
+						rotated = RotationCache.get(unrotatedBitmap, angle);
+						rotatedBitmap = rotated;
+						rotatedSource = unrotatedBitmap;
+						rotatedAngle = angle;
+					}
+					int left = Math.round(xCenter - rotated.getWidth() / 2f);
+					int top = Math.round(yCenter - rotated.getHeight() / 2f);
+					rotatedRect.set(left, top, left + rotated.getWidth(), top + rotated.getHeight());
+					canvas.drawBitmap(rotated, null, rotatedRect, null);
 				}
-				// Position the drawable:
-				// We want the center of the image to remain fixed under the rotation.
-				// To do this, we have to take account of the fact that, since the original
-				// and the rotated bitmaps are rectangular, the offset of the center point from (0,0)
-				// in the rotated bitmap will in general be different from the offset
-				// in the unrotated bitmap.  Namely, rather than being 1/2 the width and height of the
-				// unrotated bitmap, the offset is 1/2 the width and height of the rotated bitmap.
-				// So when we display on the canvas, we  need to displace the upper left away
-				// from (xinit, yinit) to take account of the difference in the offsets.
-				rotatedDrawable.setBounds(
-						xinit + w / 2 - rotatedBitmap.getWidth() / 2,
-						yinit + h / 2 - rotatedBitmap.getHeight() / 2 ,
-						// 	add in the width and height of the rotated bitmap
-						// to get the other right and bottom edges
-						xinit + w / 2 + rotatedBitmap.getWidth() / 2,
-						yinit + h / 2 + rotatedBitmap.getHeight() / 2);
-				rotatedDrawable.draw(canvas);
 			} 			
 		}		
 	}
@@ -344,124 +409,65 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 	  	  
 	  if (sheetAnimation && !animRunning) {
 		  
-		  framePeriod = 1000/this.fps;
+		  // Pick up at the frame being shown, as a paused animation did
+		  // before.
+		  animPosition = shownAnimationPosition();
 		  running=true;
 		  animRunning=true;
-		  
-		  		  			  
-		  
-		  animThread = new Thread(new Runnable() {
-				
-				@Override
-				public void run() {
-				
-					long beginTime;
-					long timeDiff;
-					int sleepTime;
-					int curframe; 
-					int x = 0;
-					while (running) {				
-					// we declare our internal frame counter here. We cannot directly modify the
-					// currentFrame variable, so we do it later by running the curFrame() method
-					if (!customAnim) {
-						curframe = currentFrame;
-					 
-					beginTime = System.currentTimeMillis();
-					
-					// Here we need to post to the UI's thread, as a seperate thread cannot touch
-					// any views. While this may seem to defeat the purpose, the timing for the animation
-					// is handled in a seperate thread, rather than the UI thread (which has other
-					// stuff to process).
-					
-					androidUIhandler.post(new Runnable() {
-						
-						@Override
-						public void run() {
-							
-							gotoFrame(currentFrame);							
-						}
-					});
-					
-					// Get the time spent changing the sprite's image
-					timeDiff = System.currentTimeMillis() - beginTime;
-					
-					// If there is time to spare between frames, go to sleep for this long
-					sleepTime = (int) (framePeriod - timeDiff);
-					
-					if (sleepTime > 0) {
-						try {
-							
-							Thread.sleep(sleepTime);
-						} catch (InterruptedException e) {}
-					}
-					
-					// to adjust if the system falls behind frames
-					while (sleepTime < 0) {
-						sleepTime += framePeriod;
-					}
-					
-					// increase frame to go to next frame of animation
-					
-					curframe++;	
-									
-					// If the current frame is higher than the framecount, go back to the first frame
-					// If the animation is not set to loop, then it stops here.
-					if (curframe>frameCount) {
-						curframe = 1;
-						if (!loop) {
-							running = false;
-							animRunning=false;
-							endAnimationEvent();
-						}
-					}
-					// 	This increases the currentframe which resides outside of the thread.
-					curFrame(curframe);
-					} else {
-							
-							curframe = customAnimFrames[x];
-							beginTime = System.currentTimeMillis();
-							curFrame(curframe);
-							androidUIhandler.post(new Runnable() {
-								
-								@Override
-								public void run() {
-									
-									gotoFrame(currentFrame);							
-								}
-							});
-							
-							timeDiff = System.currentTimeMillis() - beginTime;
-							sleepTime = (int) (framePeriod - timeDiff);
-							
-							if (sleepTime > 0) {
-								try {
-									
-									Thread.sleep(sleepTime);
-								} catch (InterruptedException e) {}
-							}
-							
-							while (sleepTime < 0) {
-								sleepTime += framePeriod;
-							}
-							
-							x++;
-							if (x>=customAnimFrames.length) {
-								x = 0;
-								if (!loop) {
-									running = false;									
-									animRunning = false;
-									endAnimationEvent();
-								}
-							}
-						}
-					}
-			}
-		});				
-		animThread.start();
-			  
+		  // The canvas' clock advances the frames, along with every other
+		  // animation on the canvas, on the UI thread.
+		  spriteClock().startAnimation(this);
 	  }	  	  
 	  
   }
+
+  // The position in the animation of the frame being shown, or 0 if the
+  // frame isn't part of it.
+  private int shownAnimationPosition() {
+	  int frame = spriteWidth > 0 ? sourceRect.left / spriteWidth : 0;
+	  if (customAnim && customAnimFrames != null) {
+		  for (int i = 0; i < customAnimFrames.length; i++) {
+			  if (customAnimFrames[i] - 1 == frame) {
+				  return i;
+			  }
+		  }
+		  return 0;
+	  }
+	  return frame < frameCount ? frame : 0;
+  }
+
+  // The time between frames, in ms, used by the canvas' clock.
+  double getAnimationFramePeriod() {
+	  return 1000 / fps;
+  }
+
+  /**
+   * Shows the next frame of the running animation, stopping the animation
+   * after its last frame unless it loops.  Called by the canvas' clock.
+   */
+  void nextAnimationFrame() {
+	  int length;
+	  int frame;
+	  if (customAnim && customAnimFrames != null) {
+		  length = customAnimFrames.length;
+		  frame = customAnimFrames[animPosition % length];
+	  } else {
+		  length = frameCount;
+		  frame = animPosition + 1;
+	  }
+	  gotoFrame(frame);
+
+	  // If we've gone past the last frame, go back to the first one.
+	  // If the animation is not set to loop, then it stops here.
+	  animPosition++;
+	  if (animPosition >= length) {
+		  animPosition = 0;
+		  if (!loop) {
+			  stopAnimation();
+			  endAnimationEvent();
+		  }
+	  }
+  }
   
   private void endAnimationEvent() {
 	  final ImageSprite component = this;
@@ -514,6 +520,7 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 		  path = path.split("\\.")[0];
 	  }
 	  //int temp = form.getResources().getIdentifier(path, "drawable", form.getPackageName());
+	  MediaUtil.releaseDrawable(drawable);
 	  try {
 		  //drawable = form.getResources().getDrawable(temp);
 		  drawable = MediaUtil.getDrawable(canvas.$form(), path);
@@ -525,6 +532,7 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 			unrotatedBitmap = null;
 		} else {
 			unrotatedBitmap = ((BitmapDrawable) drawable).getBitmap();
+			preloadMasks();
 		}
 	
     registerChange();
@@ -597,6 +605,152 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
     this.rotates = rotates;
     registerChange();
   }
+
+  /**
+   * RotationStep property getter method.
+   *
+   * @return the angle, in degrees, rotating images snap to, or 0 if they
+   * follow the heading exactly
+   */
+
+  public double RotationStep() {
+    return rotationStep;
+  }
+
+  /**
+   * RotationStep property setter method.  With a step of 0 (the default) a
+   * rotating image is transformed as it is drawn, following the heading
+   * exactly without allocating anything.  With a positive step, such as 5,
+   * the heading is rounded to a multiple of the step and a pre-rotated copy
+   * of the image is drawn instead.  Copies are kept in {@link RotationCache},
+   * shared with every sprite using the same picture, which is cheaper to draw
+   * for sprites that turn a lot.
+   *
+   * @param step the angle, in degrees, rotating images snap to, or 0
+   */
+
+  public void RotationStep(double step) {
+    if (step < 0) {
+      throw new IllegalArgumentException("Illegal rotation step " + step);
+    }
+    // The rotated copy in use is dropped by the drawing thread, once the
+    // angle drawn at changes.
+    rotationStep = step;
+    registerChange();
+  }
+
+  /**
+   * MaskCollision property getter method.
+   *
+   * @return {@code true} if the sprite collides by its opaque pixels,
+   * {@code false} if by its bounding box or circle
+   */
+
+  public boolean MaskCollision() {
+    return maskCollision;
+  }
+
+  /**
+   * MaskCollision property setter method.  With mask collision on, sprites
+   * whose shapes overlap only collide if an opaque pixel of this sprite's
+   * picture (or of the current frame of its sheet) overlaps the other
+   * sprite, so irregular pictures don't collide across their transparent
+   * corners.  The masks are built once per picture and shared by every
+   * sprite showing it; see {@link MaskCache}.  A picture drawn rotated
+   * collides by its bounding box.
+   *
+   * @param maskCollision {@code true} to collide by opaque pixels
+   */
+
+  public void MaskCollision(boolean maskCollision) {
+    this.maskCollision = maskCollision;
+    preloadMasks();
+    registerChange();
+  }
+
+  // Builds the masks of the picture now rather than at the first collision.
+  private void preloadMasks() {
+    if (maskCollision && unrotatedBitmap != null) {
+      MaskCache.preload(unrotatedBitmap, sheetAnimation ? frameCount : 1);
+    }
+  }
+
+  @Override
+  CollisionMask collisionMask() {
+    if (!maskCollision || unrotatedBitmap == null || drawnRotated()
+        || Width() <= 0 || Height() <= 0) {
+      return null;
+    }
+    CollisionMask mask;
+    if (sheetAnimation) {
+      int frame = spriteWidth > 0 ? sourceRect.left / spriteWidth : 0;
+      mask = MaskCache.get(unrotatedBitmap, frameCount, Math.min(frame, frameCount - 1));
+    } else {
+      mask = MaskCache.get(unrotatedBitmap, 1, 0);
+    }
+    // The picture is drawn stretched to the sprite's size, so its mask is too.
+    if (mask != scaledMaskSource || scaledMask.getWidth() != Width()
+        || scaledMask.getHeight() != Height()) {
+      scaledMask = mask.scaled(Width(), Height());
+      scaledMaskSource = mask;
+    }
+    return scaledMask;
+  }
+
+  // A rotating image is drawn turned about its center, so its shape is the
+  // sprite's rectangle rotated by the heading rather than the bounding box.
+  private boolean drawnRotated() {
+    return rotates && !sheetAnimation && Heading() != 0;
+  }
+
+  @Override
+  public boolean containsPoint(double qx, double qy) {
+    if (!drawnRotated()) {
+      return super.containsPoint(qx, qy);
+    }
+    // Rotate the point into the frame of the unrotated image.
+    double radians = Math.toRadians(-Heading());
+    double cos = Math.cos(radians);
+    double sin = Math.sin(radians);
+    double dx = qx - (xLeft + Width() / 2.0);
+    double dy = qy - (yTop + Height() / 2.0);
+    return Math.abs(dx * cos + dy * sin) <= Width() / 2.0
+        && Math.abs(-dx * sin + dy * cos) <= Height() / 2.0;
+  }
+
+  @Override
+  public void onDelete() {
+    super.onDelete();
+    spriteClock().stopAnimation(this);
+    // Let other sprites showing the same picture keep sharing it.
+    MediaUtil.releaseDrawable(drawable);
+    drawable = null;
+    unrotatedBitmap = null;
+  }
+
+  @Override
+  protected void getDrawBounds(Rect bounds) {
+    super.getDrawBounds(bounds);
+    if (rotates && !sheetAnimation && unrotatedBitmap != null) {
+      // The rotated bitmap is centered on the sprite and is drawn at the
+      // image's own size, so it can reach out to half the image's diagonal.
+      int w = Math.max(Width(), unrotatedBitmap.getWidth());
+      int h = Math.max(Height(), unrotatedBitmap.getHeight());
+      int radius = (int) Math.ceil(Math.sqrt(w * w + h * h) / 2) + 1;
+      int xCenter = (int) Math.round(xLeft) + Width() / 2;
+      int yCenter = (int) Math.round(yTop) + Height() / 2;
+      bounds.union(xCenter - radius, yCenter - radius, xCenter + radius, yCenter + radius);
+    }
+  }
+
+  @Override
+  public boolean intersectsWith(BoundingBox rect) {
+    if (!drawnRotated()) {
+      return rectangleIntersects(xLeft, yTop, Width(), Height(), rect);
+    }
+    return rotatedRectangleIntersects(xLeft + Width() / 2.0, yTop + Height() / 2.0,
+        Width(), Height(), Math.toRadians(-Heading()), rect);
+  }
     
     public void LoopAnimation(boolean loop) {
 		this.loop = loop;
@@ -606,16 +760,7 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 		
 		this.running = false;
 		this.animRunning = false;
-		boolean retry = true;
-		
-		while (retry) {
-			try {
-				animThread.join();
-				retry=false;
-			} catch (InterruptedException e) {
-				
-			}
-		}	
+		spriteClock().stopAnimation(this);
 		
 	}
     
@@ -628,8 +773,9 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 
 		// We can now turn the timer back on
 		if (autoToggle) {
-			if (animRunning) {
-				this.running=true;				
+			if (animRunning && !running) {
+				this.running=true;
+				spriteClock().startAnimation(this);
 			}
 			Enabled(true);
 		}
@@ -641,8 +787,10 @@ public class ImageSprite extends Sprite implements OnStopListener, OnResumeListe
 
 		// Turn the sprite's timer off to avoid memory leaks (this can be shut off by using AutoToggle(false);
 		if (autoToggle) {
-			if (animRunning || running) {
+			if (running) {
+				// The animation picks up where it left off in onResume().
 				this.running=false;
+				spriteClock().stopAnimation(this);
 			}
 			Enabled(false);
 		}		
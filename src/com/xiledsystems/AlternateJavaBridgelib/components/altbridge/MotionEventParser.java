@@ -0,0 +1,437 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import java.util.ArrayList;
+import java.util.List;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.BoundingBox;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.SpriteIndex;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.Viewport;
+
+/**
+ * Parser for Android {@link android.view.MotionEvent} sequences, which calls
+ * the appropriate event handlers.  Each finger on the canvas is followed
+ * on its own, up to {@link #MAX_POINTERS} of them.  Specifically:
+ * <ul>
+ * <li> If a finger goes down and then moves, a sequence of
+ * {@link Sprite#Dragged(float, float, float, float, float, float)}
+ * calls are generated for sprites that it touched, and its final lift is
+ * ignored.
+ *
+ * <li> If a finger goes down and then lifts either immediately or after
+ * moving no further than {@link #TAP_THRESHOLD} pixels horizontally or
+ * vertically from the start point, it is interpreted as a touch, and a
+ * single call to {@link Sprite#Touched(float, float)} for each touched
+ * sprite is generated.
+ * </ul>
+ *
+ * After the {@code Dragged()} or {@code Touched()} methods are called for
+ * any applicable sprites, a call is made to
+ * {@link #dragged(float, float, float, float, float, float, boolean)}
+ * or {@link #touched(float, float, boolean)}, respectively.  The
+ * additional final argument indicates whether it was preceded by one or
+ * more calls to a sprite, i.e., whether the locations on the canvas had a
+ * sprite on them ({@code true}) or were empty of sprites {@code false}).
+ *
+ * <p>Android delivers the moves of a frame as one event, with the points
+ * in between as history.  {@code Dragged()} only sees the latest point,
+ * but {@link #draggedPath} is called once per event with every point, for
+ * drawing smooth strokes.  While two or more fingers are down,
+ * {@link #pinched} reports how the first two have moved relative to each
+ * other.
+ *
+ * <p>Everything is kept in arrays allocated up front, so parsing an event
+ * allocates nothing.
+ *
+ * <p>{@link Canvas} and {@link AnimCanvas} each subclass it to raise their
+ * own events.
+ *
+ */
+abstract class MotionEventParser {
+  /**
+   * The number of pixels right, left, up, or down, a sequence of drags must
+   * move from the starting point to be considered a drag (instead of a
+   * touch).
+   */
+  public static final int TAP_THRESHOLD = 30;
+
+  /**
+   * The width of a finger.  This is used in determining whether a sprite is
+   * touched.  Specifically, this is used to determine the horizontal extent
+   * of a bounding box that is tested for collision with each sprite.  The
+   * vertical extent is determined by {@link #FINGER_HEIGHT}.
+   */
+  public static final int FINGER_WIDTH = 24;
+
+  /**
+   * The width of a finger.  This is used in determining whether a sprite is
+   * touched.  Specifically, this is used to determine the vertical extent
+   * of a bounding box that is tested for collision with each sprite.  The
+   * horizontal extent is determined by {@link #FINGER_WIDTH}.
+   */
+  public static final int FINGER_HEIGHT = 24;
+
+  /**
+   * The most fingers followed at once.  Any more are ignored.
+   */
+  public static final int MAX_POINTERS = 10;
+
+  private static final int HALF_FINGER_WIDTH = FINGER_WIDTH / 2;
+  private static final int HALF_FINGER_HEIGHT = FINGER_HEIGHT / 2;
+
+  // The area under a finger, reused for every finger and event
+  private final BoundingBox touchBox = new BoundingBox(0, 0, 0, 0);
+
+  // The sprites under a finger, in drawing order, likewise reused
+  private final List<Sprite> touchedSprites = new ArrayList<Sprite>();
+
+  // Everything known about each finger, by slot.  A slot is free when its
+  // pointer id is UNSET.
+  private static final int UNSET = -1;
+  private final int[] pointerIds = new int[MAX_POINTERS];
+
+  // startX and startY hold the coordinates of where a touch/drag started
+  private final float[] startX = new float[MAX_POINTERS];
+  private final float[] startY = new float[MAX_POINTERS];
+
+  // lastX and lastY hold the coordinates of the previous step of a drag
+  private final float[] lastX = new float[MAX_POINTERS];
+  private final float[] lastY = new float[MAX_POINTERS];
+
+  private final boolean[] drag = new boolean[MAX_POINTERS];
+
+  /**
+   * The set of sprites encountered in each finger's touch or drag
+   * sequence.  Checks are only made for sprites at the endpoints of each
+   * drag.
+   */
+  private final List<List<Sprite>> draggedSprites = new ArrayList<List<Sprite>>();
+
+  // The points of a finger's move, passed to DraggedPath.  They only grow.
+  private float[] pathX = new float[16];
+  private float[] pathY = new float[16];
+
+  // The first two fingers' distance and angle when the second went down
+  private int pinchFirst = UNSET;
+  private int pinchSecond = UNSET;
+  private float pinchStartDistance;
+  private float pinchStartAngle;
+
+  // Converts between view and world coordinates
+  private final Viewport viewport;
+
+  // Finds the sprites under a finger
+  private final SpriteIndex<Sprite> sprites;
+
+  MotionEventParser(Viewport viewport, SpriteIndex<Sprite> sprites) {
+    this.viewport = viewport;
+    this.sprites = sprites;
+    for (int i = 0; i < MAX_POINTERS; i++) {
+      pointerIds[i] = UNSET;
+      draggedSprites.add(new ArrayList<Sprite>());
+    }
+  }
+
+  void parse(MotionEvent event) {
+    int action = event.getAction();
+    // ACTION_POINTER_ID_MASK is really the index of the pointer that went
+    // down or up; it was only renamed to say so after API level 5.
+    int actionIndex = (action & MotionEvent.ACTION_POINTER_ID_MASK)
+        >> MotionEvent.ACTION_POINTER_ID_SHIFT;
+
+    switch (action & MotionEvent.ACTION_MASK) {
+      case MotionEvent.ACTION_DOWN:
+        // A new gesture: forget any finger whose up never arrived, so its
+        // slot is free again and its sprites aren't dragged any more.
+        for (int slot = 0; slot < MAX_POINTERS; slot++) {
+          release(slot);
+        }
+        pointerDown(event, actionIndex);
+        break;
+
+      case MotionEvent.ACTION_POINTER_DOWN:
+        pointerDown(event, actionIndex);
+        break;
+
+      case MotionEvent.ACTION_MOVE:
+        for (int i = 0; i < event.getPointerCount(); i++) {
+          pointerMoved(event, i);
+        }
+        pinch(event);
+        break;
+
+      case MotionEvent.ACTION_UP:
+      case MotionEvent.ACTION_POINTER_UP:
+        pointerUp(event, actionIndex);
+        break;
+
+      case MotionEvent.ACTION_CANCEL:
+        // The gesture was taken away from us, so forget it without
+        // raising anything.
+        for (int slot = 0; slot < MAX_POINTERS; slot++) {
+          release(slot);
+        }
+        break;
+    }
+  }
+
+  private void pointerDown(MotionEvent event, int index) {
+    int slot = slotFor(UNSET);
+    if (slot == UNSET) {
+      // Too many fingers; this one is ignored.
+      return;
+    }
+    pointerIds[slot] = event.getPointerId(index);
+    float x = worldX(event.getX(index));
+    float y = worldY(event.getY(index));
+    startX[slot] = x;
+    startY[slot] = y;
+    lastX[slot] = x;
+    lastY[slot] = y;
+    drag[slot] = false;
+
+    List<Sprite> dragged = draggedSprites.get(slot);
+    dragged.clear();
+    sprites.findTouched(touchBox(event.getX(index), event.getY(index)), touchedSprites);
+    for (int i = 0; i < touchedSprites.size(); i++) {
+      Sprite sprite = touchedSprites.get(i);
+      dragged.add(sprite);
+      if (sprite instanceof ImageSprite) {
+        ((ImageSprite) sprite).requestDownEvent();
+      }
+    }
+    touchedSprites.clear();
+
+    startPinch(event);
+  }
+
+  private void pointerMoved(MotionEvent event, int index) {
+    int slot = slotFor(event.getPointerId(index));
+    if (slot == UNSET) {
+      // Ensure that this was preceded by a down
+      Log.w("Canvas", "In MotionEventParser.parse(), " +
+          "an ACTION_MOVE was passed without a preceding ACTION_DOWN: " + event);
+      return;
+    }
+    float x = worldX(event.getX(index));
+    float y = worldY(event.getY(index));
+
+    // A move carries every finger that is down, so one that stayed put
+    // has nothing to report.
+    int historySize = event.getHistorySize();
+    if (x == lastX[slot] && y == lastY[slot] && historySize == 0) {
+      return;
+    }
+
+    // If the new point is near the start point, it may just be a tap
+    // (The threshold is in view pixels.)
+    if (!drag[slot]) {
+      float threshold = (float) (TAP_THRESHOLD / viewport.getZoom());
+      if (Math.abs(x - startX[slot]) < threshold && Math.abs(y - startY[slot]) < threshold) {
+        return;
+      }
+    }
+    // Otherwise, it's a drag.
+    drag[slot] = true;
+
+    // Update draggedSprites by adding any that are currently being
+    // touched.
+    List<Sprite> dragged = draggedSprites.get(slot);
+    sprites.findTouched(touchBox(event.getX(index), event.getY(index)), touchedSprites);
+    for (int i = 0; i < touchedSprites.size(); i++) {
+      Sprite sprite = touchedSprites.get(i);
+      if (!dragged.contains(sprite)) {
+        dragged.add(sprite);
+      }
+    }
+    touchedSprites.clear();
+
+    // Raise a Dragged event for any affected sprites
+    boolean handled = false;
+    for (int i = 0; i < dragged.size(); i++) {
+      Sprite sprite = dragged.get(i);
+      if (sprite.Enabled() && sprite.Visible()) {
+        sprite.Dragged(startX[slot], startY[slot], lastX[slot], lastY[slot], x, y);
+        handled = true;
+      }
+    }
+
+    // Last argument indicates whether a sprite handled the drag
+    dragged(startX[slot], startY[slot], lastX[slot], lastY[slot], x, y, handled);
+
+    // The whole path since the last event, from the previous point through
+    // the points Android batched up to this one
+    int count = historySize + 2;
+    if (count > pathX.length) {
+      pathX = new float[Math.max(count, pathX.length * 2)];
+      pathY = new float[pathX.length];
+    }
+    pathX[0] = lastX[slot];
+    pathY[0] = lastY[slot];
+    for (int h = 0; h < historySize; h++) {
+      pathX[h + 1] = worldX(event.getHistoricalX(index, h));
+      pathY[h + 1] = worldY(event.getHistoricalY(index, h));
+    }
+    pathX[count - 1] = x;
+    pathY[count - 1] = y;
+    draggedPath(pointerIds[slot], startX[slot], startY[slot], pathX, pathY, count, handled);
+
+    lastX[slot] = x;
+    lastY[slot] = y;
+  }
+
+  private void pointerUp(MotionEvent event, int index) {
+    int slot = slotFor(event.getPointerId(index));
+    if (slot == UNSET) {
+      return;
+    }
+    // If we never strayed far from the start point, it's a tap.  (If we
+    // did stray far, we've already handled the movements in
+    // pointerMoved().)
+    if (!drag[slot]) {
+      // It's a tap
+      boolean handled = false;
+      List<Sprite> dragged = draggedSprites.get(slot);
+      for (int i = 0; i < dragged.size(); i++) {
+        Sprite sprite = dragged.get(i);
+        if (sprite.Enabled() && sprite.Visible()) {
+          sprite.Touched(startX[slot], startY[slot]);
+          handled = true;
+          if (sprite instanceof ImageSprite) {
+          	((ImageSprite) sprite).requestUpEvent();
+          }
+        }
+      }
+      // Last argument indicates that one or more sprites handled the tap
+      touched(startX[slot], startY[slot], handled);
+    }
+
+    // Prepare for next drag.  If the finger was pinching, the next two
+    // fingers down, if there are, start a new pinch.
+    boolean pinching = slot == pinchFirst || slot == pinchSecond;
+    release(slot);
+    if (pinching) {
+      startPinch(event);
+    }
+  }
+
+  private void release(int slot) {
+    pointerIds[slot] = UNSET;
+    drag[slot] = false;
+    draggedSprites.get(slot).clear();
+    if (slot == pinchFirst || slot == pinchSecond) {
+      pinchFirst = UNSET;
+      pinchSecond = UNSET;
+    }
+  }
+
+  // Starts following a pinch once two fingers are down, measured from
+  // where they are now.
+  private void startPinch(MotionEvent event) {
+    if (pinchFirst != UNSET) {
+      return;
+    }
+    int first = UNSET;
+    int second = UNSET;
+    for (int slot = 0; slot < MAX_POINTERS && second == UNSET; slot++) {
+      if (pointerIds[slot] != UNSET && event.findPointerIndex(pointerIds[slot]) >= 0) {
+        if (first == UNSET) {
+          first = slot;
+        } else {
+          second = slot;
+        }
+      }
+    }
+    if (second == UNSET) {
+      return;
+    }
+    int firstIndex = event.findPointerIndex(pointerIds[first]);
+    int secondIndex = event.findPointerIndex(pointerIds[second]);
+    float dx = event.getX(secondIndex) - event.getX(firstIndex);
+    float dy = event.getY(secondIndex) - event.getY(firstIndex);
+    pinchFirst = first;
+    pinchSecond = second;
+    pinchStartDistance = (float) Math.sqrt(dx * dx + dy * dy);
+    pinchStartAngle = (float) Math.toDegrees(Math.atan2(dy, dx));
+  }
+
+  // Raises Pinched for the two fingers being followed, if there are.
+  private void pinch(MotionEvent event) {
+    if (pinchFirst == UNSET || pinchStartDistance == 0) {
+      return;
+    }
+    int firstIndex = event.findPointerIndex(pointerIds[pinchFirst]);
+    int secondIndex = event.findPointerIndex(pointerIds[pinchSecond]);
+    if (firstIndex < 0 || secondIndex < 0) {
+      return;
+    }
+    float x1 = event.getX(firstIndex);
+    float y1 = event.getY(firstIndex);
+    float x2 = event.getX(secondIndex);
+    float y2 = event.getY(secondIndex);
+    float dx = x2 - x1;
+    float dy = y2 - y1;
+    float scale = (float) Math.sqrt(dx * dx + dy * dy) / pinchStartDistance;
+    float rotation = (float) Math.toDegrees(Math.atan2(dy, dx)) - pinchStartAngle;
+    if (rotation > 180) {
+      rotation -= 360;
+    } else if (rotation <= -180) {
+      rotation += 360;
+    }
+    pinched(scale, rotation, worldX((x1 + x2) / 2), worldY((y1 + y2) / 2));
+  }
+
+  // Returns the slot of the given pointer id, or UNSET if there is none.
+  // Looking for UNSET finds a free slot.
+  private int slotFor(int pointerId) {
+    for (int slot = 0; slot < MAX_POINTERS; slot++) {
+      if (pointerIds[slot] == pointerId) {
+        return slot;
+      }
+    }
+    return UNSET;
+  }
+
+  // Coordinates less than 0 can be returned if a move begins within a
+  // view and ends outside of it.  Because negative coordinates would
+  // probably confuse the user (as they did me) and would not be useful,
+  // we replace any negative values with zero.  Sprites, and the events
+  // raised, use world coordinates.
+  private float worldX(float viewX) {
+    return (float) viewport.toWorldX(Math.max(0, (int) viewX));
+  }
+
+  private float worldY(float viewY) {
+    return (float) viewport.toWorldY(Math.max(0, (int) viewY));
+  }
+
+  // Sets touchBox to the area under a finger at the given view
+  // coordinates, making sure that by adding or subtracting a half finger
+  // we don't go out of bounds.
+  private BoundingBox touchBox(float x, float y) {
+    int viewX = Math.max(0, (int) x);
+    int viewY = Math.max(0, (int) y);
+    touchBox.set(
+        viewport.toWorldX(Math.max(0, viewX - HALF_FINGER_HEIGHT)),
+        viewport.toWorldY(Math.max(0, viewY - HALF_FINGER_WIDTH)),
+        viewport.toWorldX(Math.min(width() - 1, viewX + HALF_FINGER_WIDTH)),
+        viewport.toWorldY(Math.min(height() - 1, viewY + HALF_FINGER_HEIGHT)));
+    return touchBox;
+  }
+
+  // The width and height of the canvas, in view pixels
+  abstract int width();
+
+  abstract int height();
+
+  // Raises the canvas' own events
+  abstract void touched(float x, float y, boolean touchedSprite);
+
+  abstract void dragged(float startX, float startY, float prevX, float prevY,
+      float currentX, float currentY, boolean draggedSprite);
+
+  abstract void draggedPath(int pointerId, float startX, float startY,
+      float[] xs, float[] ys, int count, boolean draggedSprite);
+
+  abstract void pinched(float scale, float rotation, float centerX, float centerY);
+}
@@ -9,6 +9,7 @@ import android.util.Log;
 
 import java.util.List;
 
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.EventMailbox;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
 
 /**
@@ -26,6 +27,16 @@ public class OrientationSensor extends AndroidNonvisibleComponent
   private float yaw;
   private float pitch;
   private float roll;
+
+  private static final int ORIENTATION_CHANGED = EventDispatcher.eventId("OrientationChanged");
+  // The arguments of OrientationChanged, reused for every event
+  private final float[] orientationArgs = new float[3];
+
+  // The least time between events, and the mailbox merging readings in
+  // the meantime (null when every reading raises an event)
+  private int coalesceInterval;
+  private EventMailbox mailbox;
+  private int droppedEvents;
   private int accuracy;
 
   /**
@@ -56,7 +67,10 @@ public class OrientationSensor extends AndroidNonvisibleComponent
    */
   
   public void OrientationChanged(float yaw, float pitch, float roll) {
-    EventDispatcher.dispatchEvent(this, "OrientationChanged", yaw, pitch, roll);
+    orientationArgs[0] = yaw;
+    orientationArgs[1] = pitch;
+    orientationArgs[2] = roll;
+    EventDispatcher.dispatchEvent(this, ORIENTATION_CHANGED, orientationArgs, 3);
   }
 
   // Properties
@@ -93,6 +107,67 @@ public class OrientationSensor extends AndroidNonvisibleComponent
   
   public void Enabled(boolean enabled) {
     this.enabled = enabled;
+    if (!enabled && mailbox != null) {
+      mailbox.cancel();
+    }
+  }
+
+  /**
+   * Returns the least time between OrientationChanged events, or 0 if every
+   * reading raises one.
+   *
+   * @return the interval in milliseconds
+   */
+  
+  public int CoalesceInterval() {
+    return coalesceInterval;
+  }
+
+  /**
+   * Specifies the least time between OrientationChanged events.  When it is
+   * more than 0, readings that come in sooner than that are merged into
+   * one event with the newest values, so a slow handler doesn't fall
+   * further and further behind the sensor.  16 milliseconds is about one
+   * screen frame.  {@link #DroppedEvents()} tells how many readings an
+   * event stands for.
+   *
+   * @param interval the interval in milliseconds, 0 to raise an event for
+   *        every reading
+   */
+  
+  public void CoalesceInterval(int interval) {
+    if (interval < 0) {
+      throw new IllegalArgumentException("Illegal coalesce interval " + interval);
+    }
+    coalesceInterval = interval;
+    if (interval == 0) {
+      if (mailbox != null) {
+        mailbox.cancel();
+        mailbox = null;
+      }
+      droppedEvents = 0;
+    } else if (mailbox == null) {
+      mailbox = new EventMailbox(3, interval, new EventMailbox.Receiver() {
+        public void receive(float[] args, int dropped) {
+          droppedEvents = dropped;
+          OrientationChanged(args[0], args[1], args[2]);
+        }
+      });
+    } else {
+      mailbox.setInterval(interval);
+    }
+  }
+
+  /**
+   * Returns how many readings were merged into the OrientationChanged event
+   * being handled without being raised themselves, when
+   * {@link #CoalesceInterval()} is more than 0.
+   *
+   * @return the number of readings dropped
+   */
+  
+  public int DroppedEvents() {
+    return droppedEvents;
   }
 
   /**
@@ -183,7 +258,11 @@ public class OrientationSensor extends AndroidNonvisibleComponent
       roll = values[2];
       accuracy = sensorEvent.accuracy;
 //      Log.d("OrientationSensor", "yaw, pitch, roll: " + yaw + ", " + pitch + ", " + roll);
-      OrientationChanged(yaw, pitch, roll);
+      if (mailbox != null) {
+        mailbox.post(values);
+      } else {
+        OrientationChanged(yaw, pitch, roll);
+      }
     }
   }
 
@@ -197,5 +276,8 @@ public class OrientationSensor extends AndroidNonvisibleComponent
   @Override
   public void onDelete() {
     sensorManager.unregisterListener(this);
+    if (mailbox != null) {
+      mailbox.cancel();
+    }
   }
 }
@@ -0,0 +1,743 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MediaUtil;
+
+/**
+ * Emits short-lived particles, such as sparks, smoke or rain, on an
+ * {@link AnimCanvas}.
+ *
+ * Particles are not components.  Each is a slot in a set of parallel
+ * primitive arrays (position, velocity, age, lifetime), allocated once for
+ * {@link #MaxParticles()} particles; a particle that dies is replaced by the
+ * last live one, so the live particles always fill the start of the arrays.
+ * The render thread of the canvas moves them all in one loop per frame and
+ * draws them all in one {@code drawVertices} call, as squares colored from
+ * {@link #StartColor()} to {@link #EndColor()} over their life and
+ * textured with {@link #Picture()} if there is one.
+ *
+ * Properties are set on the UI thread and picked up by the render thread at
+ * its next frame.  Positions are in world coordinates, like sprites'.
+ *
+ */
+public final class ParticleEmitter implements Component, Deleteable {
+
+  private static final int DEFAULT_MAX_PARTICLES = 1000;
+  private static final double DEFAULT_EMISSION_RATE = 100;
+  private static final int DEFAULT_LIFETIME = 1000;
+  private static final float DEFAULT_SPEED = 100;
+  private static final float DEFAULT_SPREAD = 360;
+  private static final float DEFAULT_SIZE = 4;
+
+  // Particles drawn per drawVertices call.  Vertex indices are shorts, so
+  // this keeps them below 32768.
+  private static final int QUADS_PER_DRAW = 8192;
+
+  private final AnimCanvas canvas;
+
+  // Properties, set on the UI thread and read by the render thread
+  private volatile boolean enabled = true;
+  private volatile double xEmitter;
+  private volatile double yEmitter;
+  private volatile double emissionRate = DEFAULT_EMISSION_RATE;
+  private volatile int lifetime = DEFAULT_LIFETIME;
+  private volatile float speed = DEFAULT_SPEED;
+  private volatile float speedVariation;
+  private volatile float heading = 90;
+  private volatile float spread = DEFAULT_SPREAD;
+  private volatile float gravity;
+  private volatile float size = DEFAULT_SIZE;
+  private volatile int startColor = Component.COLOR_WHITE;
+  private volatile int endColor = Component.COLOR_WHITE & 0x00FFFFFF;
+  private volatile int maxParticles = DEFAULT_MAX_PARTICLES;
+  private volatile Bitmap pictureBitmap;
+  private String picturePath = "";
+  private Drawable pictureDrawable;
+
+  // Particles asked for by Burst() and not yet emitted
+  private final AtomicInteger pendingBurst = new AtomicInteger();
+
+  // Set by Clear(), and acted on by the render thread
+  private volatile boolean clearRequested;
+
+  // The number of live particles, published after each frame
+  private volatile int particleCount;
+
+  // Everything below is only touched by the render thread.
+
+  // The live particles occupy the first count slots.
+  private int count;
+  private float[] x;
+  private float[] y;
+  private float[] vx;
+  private float[] vy;
+  private float[] age;
+  private float[] life;
+
+  // Vertex data for drawVertices: four corners per particle
+  private float[] verts;
+  private float[] texs;
+  private int[] colors;
+  private short[] indices;
+
+  private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private Bitmap shaderBitmap;
+
+  // Fractional particles owed by the emission rate
+  private double emissionCarry;
+  private long lastFrameTime;
+
+  // State of the xorshift generator used to vary particles
+  private int seed = (int) System.nanoTime() | 1;
+
+  /**
+   * Creates a new ParticleEmitter component.
+   *
+   * @param container the AnimCanvas on which particles are drawn
+   */
+  public ParticleEmitter(ComponentContainer container) {
+    if (!(container instanceof AnimCanvas)) {
+      throw new IllegalArgumentException("ParticleEmitter constructor called with container "
+          + container);
+    }
+    canvas = (AnimCanvas) container;
+    canvas.addParticleEmitter(this);
+  }
+
+  // Component implementation
+
+  @Override
+  public HandlesEventDispatching getDispatchDelegate() {
+    return canvas.$form();
+  }
+
+  // Deleteable implementation
+
+  @Override
+  public void onDelete() {
+    canvas.removeParticleEmitter(this);
+    MediaUtil.releaseDrawable(pictureDrawable);
+    pictureDrawable = null;
+    pictureBitmap = null;
+  }
+
+  // Properties
+
+  /**
+   * Returns whether new particles are being emitted.
+   *
+   * @return {@code true} if emitting, {@code false} otherwise
+   */
+
+  public boolean Enabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts or stops emitting particles at {@link #EmissionRate()}.  Live
+   * particles carry on until they die.
+   *
+   * @param enabled {@code true} to emit, {@code false} to stop
+   */
+
+  public void Enabled(boolean enabled) {
+    this.enabled = enabled;
+    canvas.requestRender();
+  }
+
+  /**
+   * Returns the x-coordinate at which particles are emitted.
+   *
+   * @return the emitter's x-coordinate
+   */
+
+  public double X() {
+    return xEmitter;
+  }
+
+  /**
+   * Specifies the x-coordinate at which particles are emitted.
+   *
+   * @param x the emitter's x-coordinate
+   */
+
+  public void X(double x) {
+    xEmitter = x;
+  }
+
+  /**
+   * Returns the y-coordinate at which particles are emitted.
+   *
+   * @return the emitter's y-coordinate
+   */
+
+  public double Y() {
+    return yEmitter;
+  }
+
+  /**
+   * Specifies the y-coordinate at which particles are emitted.
+   *
+   * @param y the emitter's y-coordinate
+   */
+
+  public void Y(double y) {
+    yEmitter = y;
+  }
+
+  /**
+   * Moves the emitter to the specified point.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   */
+
+  public void MoveTo(double x, double y) {
+    xEmitter = x;
+    yEmitter = y;
+  }
+
+  /**
+   * Returns the number of particles emitted per second.
+   *
+   * @return the emission rate
+   */
+
+  public double EmissionRate() {
+    return emissionRate;
+  }
+
+  /**
+   * Specifies the number of particles emitted per second while enabled.
+   *
+   * @param rate the emission rate
+   */
+
+  public void EmissionRate(double rate) {
+    if (rate < 0) {
+      throw new IllegalArgumentException("Illegal emission rate " + rate);
+    }
+    emissionRate = rate;
+    canvas.requestRender();
+  }
+
+  /**
+   * Returns how long each particle lives, in ms.
+   *
+   * @return the particle lifetime in ms
+   */
+
+  public int Lifetime() {
+    return lifetime;
+  }
+
+  /**
+   * Specifies how long each particle lives, in ms.
+   *
+   * @param ms the particle lifetime in ms
+   */
+
+  public void Lifetime(int ms) {
+    if (ms <= 0) {
+      throw new IllegalArgumentException("Illegal particle lifetime " + ms);
+    }
+    lifetime = ms;
+  }
+
+  /**
+   * Returns the speed at which particles leave the emitter.
+   *
+   * @return the speed in pixels per second
+   */
+
+  public float Speed() {
+    return speed;
+  }
+
+  /**
+   * Specifies the speed at which particles leave the emitter.
+   *
+   * @param speed the speed in pixels per second
+   */
+
+  public void Speed(float speed) {
+    this.speed = speed;
+  }
+
+  /**
+   * Returns by how much the speed of particles varies either way.
+   *
+   * @return the speed variation in pixels per second
+   */
+
+  public float SpeedVariation() {
+    return speedVariation;
+  }
+
+  /**
+   * Specifies by how much the speed of particles varies either way.  Each
+   * particle gets a random speed within {@link #Speed()} plus or minus this.
+   *
+   * @param variation the speed variation in pixels per second
+   */
+
+  public void SpeedVariation(float variation) {
+    speedVariation = variation;
+  }
+
+  /**
+   * Returns the direction in which particles are emitted.
+   *
+   * @return degrees above the positive x-axis
+   */
+
+  public float Heading() {
+    return heading;
+  }
+
+  /**
+   * Specifies the direction in which particles are emitted.
+   *
+   * @param heading degrees above the positive x-axis
+   */
+
+  public void Heading(float heading) {
+    this.heading = heading;
+  }
+
+  /**
+   * Returns the angle of the cone, centered on {@link #Heading()}, within
+   * which particles are emitted.
+   *
+   * @return the spread in degrees
+   */
+
+  public float Spread() {
+    return spread;
+  }
+
+  /**
+   * Specifies the angle of the cone, centered on {@link #Heading()}, within
+   * which particles are emitted.  360 emits in every direction.
+   *
+   * @param spread the spread in degrees
+   */
+
+  public void Spread(float spread) {
+    this.spread = spread;
+  }
+
+  /**
+   * Returns the downward acceleration of particles.
+   *
+   * @return the gravity in pixels per second per second
+   */
+
+  public float Gravity() {
+    return gravity;
+  }
+
+  /**
+   * Specifies the downward acceleration of particles.  Negative values make
+   * them rise.
+   *
+   * @param gravity the gravity in pixels per second per second
+   */
+
+  public void Gravity(float gravity) {
+    this.gravity = gravity;
+  }
+
+  /**
+   * Returns the width and height of each particle.
+   *
+   * @return the particle size in pixels
+   */
+
+  public float ParticleSize() {
+    return size;
+  }
+
+  /**
+   * Specifies the width and height of each particle.
+   *
+   * @param size the particle size in pixels
+   */
+
+  public void ParticleSize(float size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Illegal particle size " + size);
+    }
+    this.size = size;
+  }
+
+  /**
+   * Returns the color of particles when they are emitted, as an
+   * alpha-red-green-blue integer.
+   *
+   * @return the start color in the format 0xAARRGGBB
+   */
+
+  public int StartColor() {
+    return startColor;
+  }
+
+  /**
+   * Specifies the color of particles when they are emitted, as an
+   * alpha-red-green-blue integer.
+   *
+   * @param argb the start color in the format 0xAARRGGBB
+   */
+
+  public void StartColor(int argb) {
+    startColor = argb;
+  }
+
+  /**
+   * Returns the color of particles as they die, as an alpha-red-green-blue
+   * integer.
+   *
+   * @return the end color in the format 0xAARRGGBB
+   */
+
+  public int EndColor() {
+    return endColor;
+  }
+
+  /**
+   * Specifies the color of particles as they die, as an alpha-red-green-blue
+   * integer.  Particles fade from {@link #StartColor()} to this over their
+   * life; an end color with an alpha of 0 fades them out.
+   *
+   * @param argb the end color in the format 0xAARRGGBB
+   */
+
+  public void EndColor(int argb) {
+    endColor = argb;
+  }
+
+  /**
+   * Returns the most particles that can be alive at once.
+   *
+   * @return the particle capacity
+   */
+
+  public int MaxParticles() {
+    return maxParticles;
+  }
+
+  /**
+   * Specifies the most particles that can be alive at once.  Storage for
+   * this many is allocated up front, and no more are emitted while it is
+   * full.
+   *
+   * @param max the particle capacity
+   */
+
+  public void MaxParticles(int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException("Illegal particle capacity " + max);
+    }
+    maxParticles = max;
+  }
+
+  /**
+   * Returns the path of the picture drawn for each particle.
+   *
+   * @return the path of the picture, or an empty string for plain squares
+   */
+
+  public String Picture() {
+    return picturePath;
+  }
+
+  /**
+   * Specifies the path of the picture drawn for each particle, tinted by
+   * the particle's color.  An empty path draws plain squares.
+   *
+   * <p/>See {@link MediaUtil#determineMediaSource} for information about what
+   * a path can be.
+   *
+   * @param path the path of the picture
+   */
+
+  public void Picture(String path) {
+    picturePath = (path == null) ? "" : path;
+    MediaUtil.releaseDrawable(pictureDrawable);
+    pictureDrawable = null;
+    pictureBitmap = null;
+    if (picturePath.length() == 0) {
+      return;
+    }
+    try {
+      pictureDrawable = MediaUtil.getDrawable(canvas.$form(), picturePath);
+    } catch (IOException e) {
+      Log.e("ParticleEmitter", "Unable to load " + picturePath);
+    }
+    if (pictureDrawable instanceof BitmapDrawable) {
+      pictureBitmap = ((BitmapDrawable) pictureDrawable).getBitmap();
+    }
+  }
+
+  /**
+   * Emits a number of particles at once, on top of those emitted at
+   * {@link #EmissionRate()}, for instance for an explosion.  This works
+   * whether or not the emitter is enabled.
+   *
+   * @param number the number of particles
+   */
+
+  public void Burst(int number) {
+    if (number > 0) {
+      pendingBurst.addAndGet(number);
+      canvas.requestRender();
+    }
+  }
+
+  /**
+   * Removes every live particle.
+   */
+
+  public void Clear() {
+    clearRequested = true;
+    pendingBurst.set(0);
+    canvas.requestRender();
+  }
+
+  /**
+   * Returns the number of live particles, as of the last frame.
+   *
+   * @return the particle count
+   */
+
+  public int ParticleCount() {
+    return particleCount;
+  }
+
+  // Methods called by the render thread of the canvas
+
+  /**
+   * Determines whether frames are needed to move or emit particles, so that
+   * a canvas that only renders when dirty keeps rendering while they are.
+   *
+   * @return {@code true} if there are, or will be, live particles
+   */
+  boolean isActive() {
+    return count > 0 || pendingBurst.get() > 0 || (enabled && emissionRate > 0);
+  }
+
+  /**
+   * Emits, moves and draws the particles for one frame.  Called on the
+   * render thread, with the canvas already set up for world coordinates.
+   *
+   * @param canvas0 the canvas on which to draw
+   */
+  void onDraw(android.graphics.Canvas canvas0) {
+    long now = System.nanoTime();
+    float dt = lastFrameTime == 0 ? 0 : (now - lastFrameTime) / 1000000000f;
+    lastFrameTime = now;
+    // Don't let a long pause, such as the activity being stopped, turn into
+    // one huge step.
+    dt = Math.min(dt, 0.1f);
+
+    int capacity = maxParticles;
+    if (x == null || x.length != capacity) {
+      allocate(capacity);
+    }
+    if (clearRequested) {
+      clearRequested = false;
+      count = 0;
+      emissionCarry = 0;
+    }
+    emit(dt);
+    update(dt);
+    particleCount = count;
+    if (count > 0) {
+      draw(canvas0);
+    }
+  }
+
+  private void allocate(int capacity) {
+    int keep = Math.min(count, capacity);
+    x = copy(x, capacity, keep);
+    y = copy(y, capacity, keep);
+    vx = copy(vx, capacity, keep);
+    vy = copy(vy, capacity, keep);
+    age = copy(age, capacity, keep);
+    life = copy(life, capacity, keep);
+    count = keep;
+    verts = new float[capacity * 8];
+    texs = new float[capacity * 8];
+    colors = new int[capacity * 4];
+    shaderBitmap = null;
+
+    // Two triangles per quad, with the same pattern for every chunk drawn.
+    int quads = Math.min(capacity, QUADS_PER_DRAW);
+    indices = new short[quads * 6];
+    for (int q = 0; q < quads; q++) {
+      int v = q * 4;
+      int i = q * 6;
+      indices[i] = (short) v;
+      indices[i + 1] = (short) (v + 1);
+      indices[i + 2] = (short) (v + 2);
+      indices[i + 3] = (short) v;
+      indices[i + 4] = (short) (v + 2);
+      indices[i + 5] = (short) (v + 3);
+    }
+  }
+
+  private static float[] copy(float[] from, int capacity, int keep) {
+    float[] to = new float[capacity];
+    if (from != null) {
+      System.arraycopy(from, 0, to, 0, keep);
+    }
+    return to;
+  }
+
+  private void emit(float dt) {
+    int number = pendingBurst.getAndSet(0);
+    if (enabled) {
+      emissionCarry += emissionRate * dt;
+      int due = (int) emissionCarry;
+      emissionCarry -= due;
+      number += due;
+    }
+    number = Math.min(number, x.length - count);
+    if (number <= 0) {
+      return;
+    }
+    float ex = (float) xEmitter;
+    float ey = (float) yEmitter;
+    float lifeSeconds = lifetime / 1000f;
+    float baseSpeed = speed;
+    float variation = speedVariation;
+    float baseHeading = heading;
+    float cone = spread;
+    for (int n = 0; n < number; n++) {
+      int i = count++;
+      double radians = Math.toRadians(baseHeading + (random() - 0.5f) * cone);
+      float v = baseSpeed + (random() * 2 - 1) * variation;
+      x[i] = ex;
+      y[i] = ey;
+      // Flip, because y increases in the downward direction on Android canvases
+      vx[i] = (float) (v * Math.cos(radians));
+      vy[i] = (float) (-v * Math.sin(radians));
+      age[i] = 0;
+      life[i] = lifeSeconds;
+    }
+  }
+
+  private void update(float dt) {
+    float dvy = gravity * dt;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      float a = age[i] + dt;
+      if (a >= life[i]) {
+        // Move the last live particle into this slot and look at it next.
+        n--;
+        x[i] = x[n];
+        y[i] = y[n];
+        vx[i] = vx[n];
+        vy[i] = vy[n];
+        age[i] = age[n];
+        life[i] = life[n];
+        i--;
+        continue;
+      }
+      age[i] = a;
+      vy[i] += dvy;
+      x[i] += vx[i] * dt;
+      y[i] += vy[i] * dt;
+    }
+    count = n;
+  }
+
+  private void draw(android.graphics.Canvas canvas0) {
+    Bitmap bitmap = pictureBitmap;
+    if (bitmap != shaderBitmap) {
+      shaderBitmap = bitmap;
+      if (bitmap == null) {
+        paint.setShader(null);
+      } else {
+        paint.setShader(new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        // The picture is stretched over each particle.
+        float w = bitmap.getWidth();
+        float h = bitmap.getHeight();
+        for (int q = 0; q < texs.length; q += 8) {
+          texs[q] = 0;
+          texs[q + 1] = 0;
+          texs[q + 2] = w;
+          texs[q + 3] = 0;
+          texs[q + 4] = w;
+          texs[q + 5] = h;
+          texs[q + 6] = 0;
+          texs[q + 7] = h;
+        }
+      }
+    }
+
+    float half = size / 2;
+    int from = startColor;
+    int to = endColor;
+    int a0 = from >>> 24;
+    int r0 = (from >> 16) & 0xFF;
+    int g0 = (from >> 8) & 0xFF;
+    int b0 = from & 0xFF;
+    int da = (to >>> 24) - a0;
+    int dr = ((to >> 16) & 0xFF) - r0;
+    int dg = ((to >> 8) & 0xFF) - g0;
+    int db = (to & 0xFF) - b0;
+    for (int i = 0; i < count; i++) {
+      float left = x[i] - half;
+      float top = y[i] - half;
+      float right = x[i] + half;
+      float bottom = y[i] + half;
+      int v = i * 8;
+      verts[v] = left;
+      verts[v + 1] = top;
+      verts[v + 2] = right;
+      verts[v + 3] = top;
+      verts[v + 4] = right;
+      verts[v + 5] = bottom;
+      verts[v + 6] = left;
+      verts[v + 7] = bottom;
+
+      float t = age[i] / life[i];
+      int color = ((a0 + (int) (da * t)) << 24) | ((r0 + (int) (dr * t)) << 16)
+          | ((g0 + (int) (dg * t)) << 8) | (b0 + (int) (db * t));
+      int c = i * 4;
+      colors[c] = color;
+      colors[c + 1] = color;
+      colors[c + 2] = color;
+      colors[c + 3] = color;
+    }
+
+    float[] textures = bitmap == null ? null : texs;
+    for (int start = 0; start < count; start += QUADS_PER_DRAW) {
+      int quads = Math.min(QUADS_PER_DRAW, count - start);
+      canvas0.drawVertices(android.graphics.Canvas.VertexMode.TRIANGLES, quads * 8,
+          verts, start * 8, textures, start * 8, colors, start * 4,
+          indices, 0, quads * 6, paint);
+    }
+  }
+
+  // Returns a random number in [0, 1).
+  private float random() {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    return (seed >>> 8) / 16777216f;
+  }
+}
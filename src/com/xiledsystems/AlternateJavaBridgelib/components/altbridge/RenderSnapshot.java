@@ -0,0 +1,100 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.util.Viewport;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sprites of an {@link AnimCanvas} as they were at one moment, for its
+ * render thread to draw while the UI thread goes on changing them.
+ *
+ * The UI thread fills a snapshot with {@link #capture} and then hands
+ * it over; once handed over it is not changed again until the render thread
+ * has handed it back.  Snapshots are reused rather than allocated for every
+ * frame, so the arrays only grow.
+ *
+ */
+final class RenderSnapshot {
+
+  // Increases with every capture, so that the newest snapshot can be told
+  // apart from older ones.
+  long sequence;
+
+  // The camera the sprites are seen through
+  float cameraX;
+  float cameraY;
+  float zoom = 1;
+  boolean camera;
+
+  int count;
+  Sprite[] sprites = new Sprite[16];
+  double[] x = new double[16];
+  double[] y = new double[16];
+  double[] heading = new double[16];
+  int[] frame = new int[16];
+  boolean[] visible = new boolean[16];
+
+  // Set by the sprites that need them: the size to draw at, what to draw,
+  // how, and in what color
+  int[] width = new int[16];
+  int[] height = new int[16];
+  int[] frameWidth = new int[16];
+  int[] frameHeight = new int[16];
+  Bitmap[] bitmap = new Bitmap[16];
+  Drawable[] drawable = new Drawable[16];
+  int[] flags = new int[16];
+  double[] rotationStep = new double[16];
+  int[] color = new int[16];
+
+  /**
+   * Records the camera and the draw state of every sprite in the list.
+   *
+   * @param list the sprites to draw, in drawing order
+   * @param viewport the canvas' camera
+   * @param sequence the number of this capture
+   */
+  void capture(List<Sprite> list, Viewport viewport, long sequence) {
+    cameraX = (float) viewport.getCameraX();
+    cameraY = (float) viewport.getCameraY();
+    zoom = (float) viewport.getZoom();
+    camera = !viewport.isIdentity();
+    int size = list.size();
+    if (size > sprites.length) {
+      int length = Math.max(size, sprites.length * 2);
+      sprites = new Sprite[length];
+      x = new double[length];
+      y = new double[length];
+      heading = new double[length];
+      frame = new int[length];
+      visible = new boolean[length];
+      width = new int[length];
+      height = new int[length];
+      frameWidth = new int[length];
+      frameHeight = new int[length];
+      bitmap = new Bitmap[length];
+      drawable = new Drawable[length];
+      flags = new int[length];
+      rotationStep = new double[length];
+      color = new int[length];
+    }
+    for (int i = 0; i < size; i++) {
+      Sprite sprite = list.get(i);
+      sprites[i] = sprite;
+      bitmap[i] = null;
+      drawable[i] = null;
+      sprite.captureDrawState(this, i);
+    }
+    // Don't hold on to sprites, or pictures, that have since been removed.
+    if (size < count) {
+      Arrays.fill(sprites, size, count, null);
+      Arrays.fill(bitmap, size, count, null);
+      Arrays.fill(drawable, size, count, null);
+    }
+    count = size;
+    this.sequence = sequence;
+  }
+}
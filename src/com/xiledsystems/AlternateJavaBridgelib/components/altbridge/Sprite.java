@@ -1,16 +1,17 @@
 package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
 
+import android.graphics.Rect;
 import android.os.Handler;
 import android.util.Log;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.xiledsystems.AlternateJavaBridgelib.components.Component;
 import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
 import com.xiledsystems.AlternateJavaBridgelib.components.SpriteComponent;
-import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.TimerInternal;
 import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher;
+import com.xiledsystems.AlternateJavaBridgelib.components.util.CollisionMask;
 
 /**
  * Superclass of sprites able to move and interact with other sprites.
@@ -22,19 +23,36 @@ import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher
 public abstract class Sprite extends SpriteComponent implements Deleteable, OnInitializeListener {
   protected final Canvas canvas;
   protected final AnimCanvas aCanvas;
-  private TimerInternal timerInternal;
+  private int interval = 1000;  // Interval property, in ms
+  private boolean timerEnabled = true;  // Enabled property
   private Handler androidUIHandler;
   private boolean autoResize= false;
   private double widthMultiplier;
   private double heightMultiplier;
   private double zLayer = 1.0;
+
+  // Area of the canvas the sprite covered when last invalidated, which has
+  // to be redrawn when it moves away.
+  final Rect drawnBounds = new Rect();
+
+  // The sprite's sequence number among its canvas's sprites, which orders
+  // it among those of its layer.  Kept here by CanvasSprites so that
+  // sprites can be put in drawing order without looking them up.
+  long drawingSequence;
   
 
   // Keeps track of which other sprites are currently colliding with this one.
   // That way, we don't raise CollidedWith() more than once for each collision.
-  // Events are only raised when sprites are added to this collision set.  They
-  // are removed when they no longer collide.
-  private Set<SpriteComponent> registeredCollisions;
+  // Events are only raised when sprites are added to this collision list.
+  // They are removed when they no longer collide.  A sprite rarely collides
+  // with more than a few others at once, so a list is cheaper than a set.
+  private List<SpriteComponent> registeredCollisions;
+
+  // Incremented by every addRegisteredCollisions() call, which marks the
+  // sprites already in its list with it, so that it can tell whether a
+  // sprite is there without searching the list.
+  private static int collisionPass;
+  private int collisionStamp;
 
   // This variable prevents events from being raised before construction of
   // all components has taken place.  This was added to fix bug 2262218.
@@ -71,11 +89,11 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
     	this.aCanvas.$form().registerForOnInitialize(this);
     }
     // Set in motion.
-    timerInternal = new TimerInternal(this);
+    spriteClock().schedule(this, interval);
     Heading(0);  // Default initial heading
 
     // Maintain a list of collisions.
-    registeredCollisions = new HashSet<SpriteComponent>();
+    registeredCollisions = new ArrayList<SpriteComponent>();
   }
   
   public Sprite(ComponentContainer container, int resourceId) {
@@ -104,11 +122,11 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
 	    	this.aCanvas.$form().registerForOnInitialize(this);
 	    }
 	    // Set in motion.
-	    timerInternal = new TimerInternal(this);
+	    spriteClock().schedule(this, interval);
 	    Heading(0);  // Default initial heading
 
 	    // Maintain a list of collisions.
-	    registeredCollisions = new HashSet<SpriteComponent>();
+	    registeredCollisions = new ArrayList<SpriteComponent>();
 	  }
 
   @Override
@@ -123,7 +141,11 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
 
   public void Z(double layer) {
 	  this.zLayer = layer;
-	  canvas.changeSpriteLayer(this);
+	  if (canvas != null) {
+		  canvas.changeSpriteLayer(this);
+	  } else {
+		  aCanvas.changeSpriteLayer(this);
+	  }
   }
   
   public double Z() {
@@ -201,6 +223,81 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
     return registeredCollisions.contains(other);
   }
 
+  /**
+   * Adds every sprite registered as colliding with this one to the given
+   * list, unless it is already there.
+   *
+   * @param out the list to add to
+   */
+  void addRegisteredCollisions(List<Sprite> out) {
+    if (registeredCollisions.isEmpty()) {
+      return;
+    }
+    int stamp = ++collisionPass;
+    for (int i = 0; i < out.size(); i++) {
+      out.get(i).collisionStamp = stamp;
+    }
+    for (int i = 0; i < registeredCollisions.size(); i++) {
+      Sprite other = (Sprite) registeredCollisions.get(i);
+      if (other.collisionStamp != stamp) {
+        other.collisionStamp = stamp;
+        out.add(other);
+      }
+    }
+  }
+
+  /**
+   * Returns the mask of the sprite's opaque pixels, at the size it is drawn
+   * with its upper left corner at ({@link #X()}, {@link #Y()}), if it
+   * collides by its pixels.  The default is {@code null}, meaning the sprite
+   * collides by its shape.
+   *
+   * @return the sprite's collision mask, or {@code null}
+   */
+  CollisionMask collisionMask() {
+    return null;
+  }
+
+  /**
+   * Determines whether two sprites that have passed the bounding box or
+   * circle test also overlap by their pixels.  A sprite without a
+   * {@link #collisionMask()} counts as solid over its bounding box, or over
+   * the square around its circle if it uses circle collision.
+   *
+   * @param sprite1 one sprite
+   * @param sprite2 another sprite
+   * @return {@code true} if neither has a mask or the masks overlap
+   */
+  static boolean masksColliding(Sprite sprite1, Sprite sprite2) {
+    CollisionMask mask1 = sprite1.collisionMask();
+    CollisionMask mask2 = sprite2.collisionMask();
+    if (mask1 == null && mask2 == null) {
+      return true;
+    }
+    if (mask1 == null) {
+      return sprite1.maskOverlapsShape(mask2, sprite2);
+    }
+    if (mask2 == null) {
+      return sprite2.maskOverlapsShape(mask1, sprite1);
+    }
+    return mask1.overlaps((int) Math.round(sprite1.X()), (int) Math.round(sprite1.Y()),
+        mask2, (int) Math.round(sprite2.X()), (int) Math.round(sprite2.Y()));
+  }
+
+  // Tests the mask of another sprite against this sprite's own shape.
+  private boolean maskOverlapsShape(CollisionMask mask, Sprite masked) {
+    int x = (int) Math.round(masked.X());
+    int y = (int) Math.round(masked.Y());
+    if (isCircleCollision()) {
+      double radius = getCollisionRadius();
+      return mask.overlapsRectangle(x, y, (int) Math.floor(X() - radius),
+          (int) Math.floor(Y() - radius), (int) Math.ceil(X() + radius),
+          (int) Math.ceil(Y() + radius));
+    }
+    return mask.overlapsRectangle(x, y, (int) Math.floor(X()), (int) Math.floor(Y()),
+        (int) Math.ceil(X() + Width()), (int) Math.ceil(Y() + Height()));
+  }
+
   /**
    * Moves the sprite back in bounds if part of it extends out of bounds,
    * having no effect otherwise. If the sprite is too wide to fit on the
@@ -211,9 +308,9 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
   @Override  
   public void MoveIntoBounds() {
 	  if (canvas != null) {
-		  moveIntoBounds(canvas.Width(), canvas.Height());
+		  moveIntoBounds(canvas.WorldWidth(), canvas.WorldHeight());
 	  } else {
-		  moveIntoBounds(aCanvas.Width(), aCanvas.Height());
+		  moveIntoBounds(aCanvas.WorldWidth(), aCanvas.WorldHeight());
 	  }
   }
 
@@ -240,7 +337,7 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
    */
   @Override  
   public int Interval() {
-    return timerInternal.Interval();
+    return interval;
   }
 
   /**
@@ -250,7 +347,10 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
    */
   @Override  
   public void Interval(int interval) {
-    timerInternal.Interval(interval);
+    this.interval = interval;
+    if (timerEnabled) {
+      spriteClock().schedule(this, interval);
+    }
   }
 
   /**
@@ -261,7 +361,7 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
    */
   @Override  
   public boolean Enabled() {
-    return timerInternal.Enabled();
+    return timerEnabled;
   }
 
   /**
@@ -271,7 +371,22 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
    */
   @Override  
   public void Enabled(boolean enabled) {
-    timerInternal.Enabled(enabled);
+    timerEnabled = enabled;
+    if (enabled) {
+      spriteClock().schedule(this, interval);
+    } else {
+      spriteClock().cancel(this);
+    }
+  }
+
+  // The sprite is moved by its canvas' clock rather than a timer of its own,
+  // so that all the sprites on a canvas move together.
+  SpriteClock spriteClock() {
+    if (canvas != null) {
+      return canvas.getSpriteClock();
+    } else {
+      return aCanvas.getSpriteClock();
+    }
   }
 
   // Methods supporting move-related functionality
@@ -282,11 +397,15 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
     // before all components had been constructed.
     if (!initialized) {
       // During REPL, components are not initalized, but we still want to repaint the canvas.
+      // The collision grid is kept current so that initialized sprites still
+      // find this one.
     	if (canvas != null) {
-    		canvas.getView().invalidate();
+    		canvas.updateSpriteGrid(this);
+    		canvas.invalidateSprite(this);
     		return;
     	} else {
-    		aCanvas.getView().invalidate();
+    		aCanvas.updateSpriteGrid(this);
+    		aCanvas.spritesChanged();
     		return;
     	}
     }
@@ -321,9 +440,9 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
 	  }
 
 	  if (canvas != null) {
-		  return hitEdge(canvas.Width(), canvas.Height());
+		  return hitEdge(canvas.WorldWidth(), canvas.WorldHeight());
 	  } else {		  
-		  return hitEdge(aCanvas.Width(), aCanvas.Height());		  
+		  return hitEdge(aCanvas.WorldWidth(), aCanvas.WorldHeight());		  
 	  }
   }
 
@@ -342,7 +461,7 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
 
   @Override
   public void onDelete() {
-    timerInternal.Enabled(false);
+    Enabled(false);
     if (canvas != null) {
     	canvas.removeSprite(this);
     } else {
@@ -382,6 +501,52 @@ public abstract class Sprite extends SpriteComponent implements Deleteable, OnIn
 		}
 	}
   
+  /**
+   * Sets {@code bounds} to the area of the canvas {@link #onDraw} may paint,
+   * which is used to work out what to redraw when the sprite changes.  This
+   * is the sprite's width and height plus a pixel for antialiasing;
+   * subclasses that draw outside that must override it.
+   *
+   * @param bounds the rectangle to set
+   */
+  protected void getDrawBounds(Rect bounds) {
+    bounds.set((int) Math.floor(xLeft) - 1, (int) Math.floor(yTop) - 1,
+        (int) Math.ceil(xLeft + Width()) + 1, (int) Math.ceil(yTop + Height()) + 1);
+  }
+
+  /**
+   * Records what {@link #onDraw(android.graphics.Canvas, RenderSnapshot, int)}
+   * needs to draw the sprite as it is now.  Called on the UI thread by
+   * {@link AnimCanvas}.  Subclasses with more state to draw should extend
+   * this.
+   *
+   * @param snapshot the snapshot being filled
+   * @param index this sprite's place in the snapshot
+   */
+  void captureDrawState(RenderSnapshot snapshot, int index) {
+    snapshot.x[index] = xLeft;
+    snapshot.y[index] = yTop;
+    snapshot.heading[index] = Heading();
+    snapshot.visible[index] = visible;
+    snapshot.width[index] = Width();
+    snapshot.height[index] = Height();
+  }
+
+  /**
+   * Draws the sprite as it was recorded in a snapshot.  Called on the render
+   * thread of an {@link AnimCanvas}, so it must not read state that the UI
+   * thread changes.  The default just calls
+   * {@link #onDraw(android.graphics.Canvas)}, for subclasses that know
+   * nothing of snapshots.
+   *
+   * @param canvas the canvas on which to draw
+   * @param snapshot the snapshot to draw from
+   * @param index this sprite's place in the snapshot
+   */
+  void onDraw(android.graphics.Canvas canvas, RenderSnapshot snapshot, int index) {
+    onDraw(canvas);
+  }
+
   // Abstract methods that must be defined by subclasses
 
   /**
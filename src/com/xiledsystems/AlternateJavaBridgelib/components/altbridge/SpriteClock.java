@@ -0,0 +1,256 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drives the movement of every sprite on a canvas, and the sheet animations
+ * of its ImageSprites, from a single timer.
+ *
+ * Each sprite used to own a timer, so a canvas full of sprites queued one
+ * message per sprite per interval on the UI thread, and the sprites moved at
+ * slightly different moments.  The clock instead keeps one message pending,
+ * for the earliest time a sprite is due.  When it fires, every sprite due by
+ * then (give or take {@link #TICK_SLACK_MS}) is moved, or shown at its next
+ * animation frame, inside a canvas batch, so collisions are checked once all
+ * of them have changed and the view is invalidated once.
+ *
+ */
+final class SpriteClock implements Runnable {
+
+  // Sprites due within this many ms of a tick are moved in that tick, so
+  // sprites with the same interval stay in step.
+  private static final long TICK_SLACK_MS = 8;
+
+  private final Canvas canvas;
+  private final AnimCanvas aCanvas;
+
+  // Note that although this is creating a new Handler there is
+  // only one UI thread in an Android app and posting to this
+  // handler queues up a Runnable for execution on that thread.
+  private final Handler handler = new Handler();
+
+  private static final class Entry {
+    private final Sprite sprite;
+    private int interval;
+    private long due;
+    // Set while the entry is among this tick's due entries, and cleared if
+    // the sprite is rescheduled or cancelled before its turn comes.
+    private boolean firing;
+
+    private Entry(Sprite sprite) {
+      this.sprite = sprite;
+    }
+  }
+
+  // Sprites whose timer is enabled
+  private final Map<Sprite, Entry> entries = new HashMap<Sprite, Entry>();
+  private final List<Entry> scheduled = new ArrayList<Entry>();
+
+  // ImageSprites with a running sheet animation.  Each one knows its index
+  // in this list, so that animations start and stop in constant time.
+  private final List<ImageSprite> animations = new ArrayList<ImageSprite>();
+
+  // Scratch lists of the sprites to move and to animate in the current tick
+  private final List<Entry> dueEntries = new ArrayList<Entry>();
+  private final List<ImageSprite> dueAnimations = new ArrayList<ImageSprite>();
+
+  // Uptime at which the pending message runs, or -1 if none is pending
+  private long postedFor = -1;
+
+  SpriteClock(Canvas canvas) {
+    this.canvas = canvas;
+    this.aCanvas = null;
+  }
+
+  SpriteClock(AnimCanvas aCanvas) {
+    this.canvas = null;
+    this.aCanvas = aCanvas;
+  }
+
+  /**
+   * Starts, or restarts, calling {@link Sprite#alarm()} on the sprite every
+   * {@code interval} ms.
+   *
+   * @param sprite the sprite
+   * @param interval time between alarms in ms
+   */
+  void schedule(Sprite sprite, int interval) {
+    Entry entry = entries.get(sprite);
+    if (entry == null) {
+      entry = new Entry(sprite);
+      entries.put(sprite, entry);
+      scheduled.add(entry);
+    }
+    entry.interval = Math.max(interval, 0);
+    entry.due = SystemClock.uptimeMillis() + entry.interval;
+    entry.firing = false;
+    post(entry.due);
+  }
+
+  /**
+   * Stops calling {@link Sprite#alarm()} on the sprite.  Does nothing if the
+   * sprite is not scheduled.
+   *
+   * @param sprite the sprite
+   */
+  void cancel(Sprite sprite) {
+    Entry entry = entries.remove(sprite);
+    if (entry == null) {
+      return;
+    }
+    entry.firing = false;
+    scheduled.remove(entry);
+    stopIfIdle();
+  }
+
+  /**
+   * Starts calling {@link ImageSprite#nextAnimationFrame()} on the sprite at
+   * its animation's frame rate, beginning straight away.  Does nothing if
+   * the animation is already running.
+   *
+   * @param sprite the sprite
+   */
+  void startAnimation(ImageSprite sprite) {
+    if (sprite.animationIndex != -1) {
+      return;
+    }
+    sprite.animationIndex = animations.size();
+    animations.add(sprite);
+    long now = SystemClock.uptimeMillis();
+    sprite.nextAnimationFrameTime = now;
+    sprite.animationFrameDue = false;
+    post(now);
+  }
+
+  /**
+   * Stops animating the sprite.  Does nothing if its animation is not
+   * running.
+   *
+   * @param sprite the sprite
+   */
+  void stopAnimation(ImageSprite sprite) {
+    int index = sprite.animationIndex;
+    if (index == -1) {
+      return;
+    }
+    // Fill the gap with the last sprite rather than shifting the rest down.
+    ImageSprite last = animations.remove(animations.size() - 1);
+    if (last != sprite) {
+      animations.set(index, last);
+      last.animationIndex = index;
+    }
+    sprite.animationIndex = -1;
+    sprite.animationFrameDue = false;
+    stopIfIdle();
+  }
+
+  // Drops the pending message when there is nothing left to run.
+  private void stopIfIdle() {
+    if (scheduled.isEmpty() && animations.isEmpty()) {
+      handler.removeCallbacks(this);
+      postedFor = -1;
+    }
+  }
+
+  // Makes sure the clock runs no later than the given uptime.
+  private void post(long time) {
+    if (postedFor != -1 && postedFor <= time) {
+      return;
+    }
+    handler.removeCallbacks(this);
+    handler.postAtTime(this, time);
+    postedFor = time;
+  }
+
+  // Runnable implementation
+
+  public void run() {
+    postedFor = -1;
+    long now = SystemClock.uptimeMillis();
+    for (int i = 0; i < scheduled.size(); i++) {
+      Entry entry = scheduled.get(i);
+      if (entry.due <= now + TICK_SLACK_MS) {
+        entry.firing = true;
+        dueEntries.add(entry);
+        entry.due += entry.interval;
+        // Don't try to catch up on ticks missed while the UI thread was busy.
+        if (entry.due <= now) {
+          entry.due = now + entry.interval;
+        }
+      }
+    }
+
+    for (int i = 0; i < animations.size(); i++) {
+      ImageSprite sprite = animations.get(i);
+      if (sprite.nextAnimationFrameTime <= now + TICK_SLACK_MS) {
+        sprite.animationFrameDue = true;
+        dueAnimations.add(sprite);
+        double framePeriod = sprite.getAnimationFramePeriod();
+        sprite.nextAnimationFrameTime += framePeriod;
+        if (sprite.nextAnimationFrameTime <= now) {
+          sprite.nextAnimationFrameTime = now + framePeriod;
+        }
+      }
+    }
+
+    if (!dueEntries.isEmpty() || !dueAnimations.isEmpty()) {
+      if (canvas != null) {
+        canvas.beginBatch();
+      } else {
+        aCanvas.beginBatch();
+      }
+      try {
+        // An alarm can disable, delete or reschedule sprites later in the
+        // list, which then must not be moved in this tick.
+        for (int i = 0; i < dueEntries.size(); i++) {
+          Entry entry = dueEntries.get(i);
+          if (entry.firing) {
+            entry.firing = false;
+            entry.sprite.alarm();
+          }
+        }
+        // Likewise alarms and animations can stop or restart animations,
+        // including by ending their own.
+        for (int i = 0; i < dueAnimations.size(); i++) {
+          ImageSprite sprite = dueAnimations.get(i);
+          if (sprite.animationFrameDue) {
+            sprite.animationFrameDue = false;
+            sprite.nextAnimationFrame();
+          }
+        }
+      } finally {
+        for (int i = 0; i < dueEntries.size(); i++) {
+          dueEntries.get(i).firing = false;
+        }
+        dueEntries.clear();
+        for (int i = 0; i < dueAnimations.size(); i++) {
+          dueAnimations.get(i).animationFrameDue = false;
+        }
+        dueAnimations.clear();
+        if (canvas != null) {
+          canvas.endBatch();
+        } else {
+          aCanvas.endBatch();
+        }
+      }
+    }
+
+    // Alarms may have rescheduled or cancelled sprites, so look again.
+    long next = Long.MAX_VALUE;
+    for (int i = 0; i < scheduled.size(); i++) {
+      next = Math.min(next, scheduled.get(i).due);
+    }
+    for (int i = 0; i < animations.size(); i++) {
+      next = Math.min(next, (long) Math.ceil(animations.get(i).nextAnimationFrameTime));
+    }
+    if (next != Long.MAX_VALUE) {
+      post(next);
+    }
+  }
+}
@@ -6,6 +6,8 @@ import com.xiledsystems.AlternateJavaBridgelib.components.events.EventDispatcher
 
 public class ThreadTimer extends AndroidNonvisibleComponent implements OnResumeListener, OnDestroySvcListener, OnStopListener {
 	
+	private static final int TIMER = EventDispatcher.eventId("Timer");
+
 	private Thread thread;
 	private boolean running=false;
 	private boolean isRunning=false;
@@ -141,7 +143,7 @@ public class ThreadTimer extends AndroidNonvisibleComponent implements OnResumeL
 	
 	private void dispatchTimerEvent() {
 		
-		EventDispatcher.dispatchEvent(this, "Timer");
+		EventDispatcher.dispatchEvent(this, TIMER);
 		
 	}
 
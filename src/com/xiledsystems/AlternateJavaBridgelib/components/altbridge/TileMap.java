@@ -0,0 +1,622 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge;
+
+import android.graphics.Bitmap;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.SpriteComponent;
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util.MediaUtil;
+
+/**
+ * Grid of tiles drawn beneath the sprites of a {@link Canvas} or
+ * {@link AnimCanvas}, for building levels out of a tileset image.  Maps are
+ * a background layer: they are drawn over the canvas' background color or
+ * image, and beneath whatever has been drawn on the canvas with DrawLine,
+ * DrawText and the like.
+ *
+ * The tileset is cut into {@link #TileWidth()} by {@link #TileHeight()}
+ * tiles, numbered from 1 in reading order; tile 0 is empty.  The map is an
+ * array of tile numbers, one per cell, row by row, with its upper left
+ * corner at the origin of the world.
+ *
+ * The map is drawn in chunks of several tiles, each rendered once into a
+ * bitmap of its own and then drawn with a single call.  Only the chunks in
+ * view are drawn, and only those whose tiles have changed are rendered
+ * again.  The least recently drawn chunks are dropped beyond
+ * {@link #MaxCachedChunks()}.
+ *
+ * Sprites can be tested against the map with {@link #CollidesWith} and the
+ * other queries, which look at the cells directly.
+ *
+ */
+public final class TileMap implements Component, Deleteable {
+
+  // Chunks are about this many pixels across.
+  private static final int CHUNK_SIZE = 256;
+
+  private static final int DEFAULT_MAX_CACHED_CHUNKS = 48;
+
+  /**
+   * Everything needed to draw the map, replaced as a whole when the tileset,
+   * tile size or map size changes, so that the thread drawing the map never
+   * sees half of such a change.  Only the tiles themselves change in place.
+   */
+  private static final class Grid {
+    private final Bitmap tileset;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int columns;
+    private final int rows;
+    private final int[] tiles;
+    private final int chunkColumns;  // tiles across a chunk
+    private final int chunkRows;     // tiles down a chunk
+    private final int chunksAcross;
+    private final int chunksDown;
+
+    // Incremented, after the tile is changed, for every change to a tile in
+    // the chunk
+    private final AtomicIntegerArray chunkVersions;
+
+    private Grid(Bitmap tileset, int tileWidth, int tileHeight, int columns, int rows,
+        int[] tiles) {
+      this.tileset = tileset;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      this.columns = columns;
+      this.rows = rows;
+      this.tiles = tiles;
+      chunkColumns = Math.max(1, CHUNK_SIZE / tileWidth);
+      chunkRows = Math.max(1, CHUNK_SIZE / tileHeight);
+      chunksAcross = (columns + chunkColumns - 1) / chunkColumns;
+      chunksDown = (rows + chunkRows - 1) / chunkRows;
+      chunkVersions = new AtomicIntegerArray(chunksAcross * chunksDown);
+    }
+  }
+
+  // A rendered chunk, owned by the thread drawing the map
+  private static final class Chunk {
+    private Bitmap bitmap;
+    private int version = -1;
+    private long lastDrawn;
+  }
+
+  private final Canvas canvas;
+  private final AnimCanvas aCanvas;
+
+  private volatile Grid grid;
+  private volatile boolean visible = true;
+  private volatile int maxCachedChunks = DEFAULT_MAX_CACHED_CHUNKS;
+
+  private String tilesetPath = "";
+  private Drawable tilesetDrawable;
+
+  // Tiles that sprites collide with, indexed by tile number
+  private boolean[] solid = new boolean[0];
+
+  // Scratch space for invalidating a tile on a Canvas
+  private final Rect tileRect = new Rect();
+
+  // Everything below is only touched by the thread drawing the map, and
+  // by onDelete(), both holding the lock on the map.
+  private boolean deleted;
+  private Grid drawnGrid;
+  private Chunk[] chunks;
+  private int cachedChunks;
+  private long frame;
+  private final android.graphics.Canvas chunkCanvas = new android.graphics.Canvas();
+  private final Rect sourceRect = new Rect();
+  private final Rect destRect = new Rect();
+
+  /**
+   * Creates a new TileMap component.
+   *
+   * @param container the Canvas or AnimCanvas on which the map is drawn
+   */
+  public TileMap(ComponentContainer container) {
+    if (container instanceof Canvas) {
+      canvas = (Canvas) container;
+      aCanvas = null;
+      canvas.addTileMap(this);
+    } else if (container instanceof AnimCanvas) {
+      canvas = null;
+      aCanvas = (AnimCanvas) container;
+      aCanvas.addTileMap(this);
+    } else {
+      throw new IllegalArgumentException("TileMap constructor called with container " + container);
+    }
+    grid = new Grid(null, 32, 32, 0, 0, new int[0]);
+  }
+
+  // Component implementation
+
+  @Override
+  public HandlesEventDispatching getDispatchDelegate() {
+    return canvas != null ? canvas.$form() : aCanvas.$form();
+  }
+
+  // Deleteable implementation
+
+  @Override
+  public void onDelete() {
+    if (canvas != null) {
+      canvas.removeTileMap(this);
+    } else {
+      aCanvas.removeTileMap(this);
+    }
+    MediaUtil.releaseDrawable(tilesetDrawable);
+    tilesetDrawable = null;
+    releaseChunks();
+  }
+
+  // An AnimCanvas' thread may be drawing the map even after it has been
+  // removed, so the chunks are recycled under the lock it draws with, and
+  // it draws nothing more once they are.
+  private synchronized void releaseChunks() {
+    deleted = true;
+    dropChunks();
+    drawnGrid = null;
+  }
+
+  // Properties
+
+  /**
+   * Returns the path of the tileset image.
+   *
+   * @return the path of the tileset
+   */
+
+  public String Tileset() {
+    return tilesetPath;
+  }
+
+  /**
+   * Specifies the path of the tileset image, which is cut into tiles of
+   * {@link #TileWidth()} by {@link #TileHeight()} pixels.
+   *
+   * <p/>See {@link MediaUtil#determineMediaSource} for information about what
+   * a path can be.
+   *
+   * @param path the path of the tileset
+   */
+
+  public void Tileset(String path) {
+    tilesetPath = (path == null) ? "" : path;
+    MediaUtil.releaseDrawable(tilesetDrawable);
+    tilesetDrawable = null;
+    Bitmap tileset = null;
+    if (tilesetPath.length() > 0) {
+      try {
+        tilesetDrawable = MediaUtil.getDrawable(
+            canvas != null ? canvas.$form() : aCanvas.$form(), tilesetPath);
+      } catch (IOException e) {
+        Log.e("TileMap", "Unable to load " + tilesetPath);
+      }
+      if (tilesetDrawable instanceof BitmapDrawable) {
+        tileset = ((BitmapDrawable) tilesetDrawable).getBitmap();
+      }
+    }
+    Grid old = grid;
+    setGrid(new Grid(tileset, old.tileWidth, old.tileHeight, old.columns, old.rows, old.tiles));
+  }
+
+  /**
+   * Returns the width of a tile.
+   *
+   * @return the tile width in pixels
+   */
+
+  public int TileWidth() {
+    return grid.tileWidth;
+  }
+
+  /**
+   * Specifies the width of a tile, both in the tileset and in the world.
+   *
+   * @param width the tile width in pixels
+   */
+
+  public void TileWidth(int width) {
+    if (width <= 0) {
+      throw new IllegalArgumentException("Illegal tile width " + width);
+    }
+    Grid old = grid;
+    setGrid(new Grid(old.tileset, width, old.tileHeight, old.columns, old.rows, old.tiles));
+  }
+
+  /**
+   * Returns the height of a tile.
+   *
+   * @return the tile height in pixels
+   */
+
+  public int TileHeight() {
+    return grid.tileHeight;
+  }
+
+  /**
+   * Specifies the height of a tile, both in the tileset and in the world.
+   *
+   * @param height the tile height in pixels
+   */
+
+  public void TileHeight(int height) {
+    if (height <= 0) {
+      throw new IllegalArgumentException("Illegal tile height " + height);
+    }
+    Grid old = grid;
+    setGrid(new Grid(old.tileset, old.tileWidth, height, old.columns, old.rows, old.tiles));
+  }
+
+  /**
+   * Returns the number of columns in the map.
+   *
+   * @return the number of columns
+   */
+
+  public int Columns() {
+    return grid.columns;
+  }
+
+  /**
+   * Returns the number of rows in the map.
+   *
+   * @return the number of rows
+   */
+
+  public int Rows() {
+    return grid.rows;
+  }
+
+  /**
+   * Returns whether the map is drawn.
+   *
+   * @return {@code true} if the map is visible, {@code false} otherwise
+   */
+
+  public boolean Visible() {
+    return visible;
+  }
+
+  /**
+   * Specifies whether the map is drawn.  Collision queries work either way.
+   *
+   * @param visible {@code true} if the map should be visible
+   */
+
+  public void Visible(boolean visible) {
+    this.visible = visible;
+    redrawAll();
+  }
+
+  /**
+   * Returns the most chunks kept rendered at once.
+   *
+   * @return the chunk cache size
+   */
+
+  public int MaxCachedChunks() {
+    return maxCachedChunks;
+  }
+
+  /**
+   * Specifies the most chunks kept rendered at once.  Chunks in view are
+   * always kept, even if there are more of them.
+   *
+   * @param max the chunk cache size
+   */
+
+  public void MaxCachedChunks(int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException("Illegal chunk cache size " + max);
+    }
+    maxCachedChunks = max;
+  }
+
+  // Methods for changing the map
+
+  /**
+   * Replaces the map.
+   *
+   * @param columns the number of columns
+   * @param rows the number of rows
+   * @param tiles the tile numbers, row by row; {@code null} for an empty map
+   */
+
+  public void SetMap(int columns, int rows, int[] tiles) {
+    if (columns < 0 || rows < 0) {
+      throw new IllegalArgumentException("Illegal map size " + columns + "x" + rows);
+    }
+    int[] copy = new int[columns * rows];
+    if (tiles != null) {
+      if (tiles.length != copy.length) {
+        throw new IllegalArgumentException("Illegal number of tiles " + tiles.length
+            + " for a " + columns + "x" + rows + " map");
+      }
+      System.arraycopy(tiles, 0, copy, 0, copy.length);
+    }
+    Grid old = grid;
+    setGrid(new Grid(old.tileset, old.tileWidth, old.tileHeight, columns, rows, copy));
+  }
+
+  /**
+   * Returns the tile in a cell of the map.
+   *
+   * @param column the column, from 0
+   * @param row the row, from 0
+   * @return the tile number, or 0 if the cell is empty or outside the map
+   */
+
+  public int GetTile(int column, int row) {
+    Grid g = grid;
+    if (column < 0 || row < 0 || column >= g.columns || row >= g.rows) {
+      return 0;
+    }
+    return g.tiles[row * g.columns + column];
+  }
+
+  /**
+   * Changes the tile in a cell of the map.  Only the chunk holding the cell
+   * is rendered again.
+   *
+   * @param column the column, from 0
+   * @param row the row, from 0
+   * @param tile the tile number, or 0 to empty the cell
+   */
+
+  public void SetTile(int column, int row, int tile) {
+    Grid g = grid;
+    if (column < 0 || row < 0 || column >= g.columns || row >= g.rows) {
+      throw new IllegalArgumentException("Illegal cell " + column + "," + row);
+    }
+    int index = row * g.columns + column;
+    if (g.tiles[index] == tile) {
+      return;
+    }
+    g.tiles[index] = tile;
+    g.chunkVersions.incrementAndGet(
+        (row / g.chunkRows) * g.chunksAcross + column / g.chunkColumns);
+    if (canvas != null) {
+      tileRect.set(column * g.tileWidth, row * g.tileHeight,
+          (column + 1) * g.tileWidth, (row + 1) * g.tileHeight);
+      canvas.invalidateWorld(tileRect);
+    } else {
+      aCanvas.requestRender();
+    }
+  }
+
+  // Queries
+
+  /**
+   * Returns the tile at a point in the world.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   * @return the tile number, or 0 if there is none
+   */
+
+  public int TileAt(double x, double y) {
+    Grid g = grid;
+    return GetTile((int) Math.floor(x / g.tileWidth), (int) Math.floor(y / g.tileHeight));
+  }
+
+  /**
+   * Specifies whether sprites collide with a tile.
+   *
+   * @param tile the tile number
+   * @param isSolid {@code true} if sprites collide with the tile
+   */
+
+  public void SolidTile(int tile, boolean isSolid) {
+    if (tile <= 0) {
+      throw new IllegalArgumentException("Illegal tile " + tile);
+    }
+    if (tile >= solid.length) {
+      boolean[] grown = new boolean[Math.max(tile + 1, solid.length * 2)];
+      System.arraycopy(solid, 0, grown, 0, solid.length);
+      solid = grown;
+    }
+    solid[tile] = isSolid;
+  }
+
+  /**
+   * Determines whether there is a solid tile at a point in the world.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   * @return {@code true} if the tile there is solid, {@code false} otherwise
+   */
+
+  public boolean IsSolidAt(double x, double y) {
+    return isSolid(TileAt(x, y));
+  }
+
+  /**
+   * Determines whether a rectangle of the world overlaps a solid tile.
+   *
+   * @param x leftmost x-coordinate
+   * @param y uppermost y-coordinate
+   * @param width the width of the rectangle
+   * @param height the height of the rectangle
+   * @return {@code true} if a solid tile overlaps it, {@code false} otherwise
+   */
+
+  public boolean RectangleHitsSolid(double x, double y, double width, double height) {
+    if (width <= 0 || height <= 0) {
+      return false;
+    }
+    Grid g = grid;
+    int firstColumn = Math.max(0, (int) Math.floor(x / g.tileWidth));
+    int firstRow = Math.max(0, (int) Math.floor(y / g.tileHeight));
+    // The right and bottom edges are exclusive.
+    int lastColumn = Math.min(g.columns - 1, (int) Math.ceil((x + width) / g.tileWidth) - 1);
+    int lastRow = Math.min(g.rows - 1, (int) Math.ceil((y + height) / g.tileHeight) - 1);
+    for (int row = firstRow; row <= lastRow; row++) {
+      int index = row * g.columns + firstColumn;
+      for (int column = firstColumn; column <= lastColumn; column++, index++) {
+        if (isSolid(g.tiles[index])) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Determines whether a sprite overlaps a solid tile.  This tests the
+   * sprite's bounding box.
+   *
+   * @param sprite the sprite
+   * @return {@code true} if a solid tile overlaps it, {@code false} otherwise
+   */
+
+  public boolean CollidesWith(SpriteComponent sprite) {
+    return RectangleHitsSolid(sprite.X(), sprite.Y(), sprite.Width(), sprite.Height());
+  }
+
+  private boolean isSolid(int tile) {
+    return tile > 0 && tile < solid.length && solid[tile];
+  }
+
+  private void setGrid(Grid newGrid) {
+    grid = newGrid;
+    redrawAll();
+  }
+
+  private void redrawAll() {
+    if (canvas != null) {
+      canvas.getView().invalidate();
+    } else {
+      aCanvas.requestRender();
+    }
+  }
+
+  // Drawing, on the UI thread for a Canvas or the render thread for an
+  // AnimCanvas
+
+  /**
+   * Draws the chunks of the map that overlap the given area of the world,
+   * rendering any that are missing or out of date.
+   *
+   * @param canvas0 the canvas, set up for world coordinates
+   * @param left leftmost x-coordinate of the area
+   * @param top uppermost y-coordinate of the area
+   * @param right rightmost x-coordinate of the area
+   * @param bottom bottommost y-coordinate of the area
+   */
+  synchronized void onDraw(android.graphics.Canvas canvas0, double left, double top,
+      double right, double bottom) {
+    if (deleted) {
+      return;
+    }
+    Grid g = grid;
+    if (g != drawnGrid) {
+      dropChunks();
+      drawnGrid = g;
+      chunks = new Chunk[g.chunksAcross * g.chunksDown];
+    }
+    if (!visible || g.tileset == null || chunks.length == 0) {
+      return;
+    }
+    frame++;
+
+    int chunkWidth = g.chunkColumns * g.tileWidth;
+    int chunkHeight = g.chunkRows * g.tileHeight;
+    int firstAcross = Math.max(0, (int) Math.floor(left / chunkWidth));
+    int firstDown = Math.max(0, (int) Math.floor(top / chunkHeight));
+    int lastAcross = Math.min(g.chunksAcross - 1, (int) Math.floor(right / chunkWidth));
+    int lastDown = Math.min(g.chunksDown - 1, (int) Math.floor(bottom / chunkHeight));
+    for (int down = firstDown; down <= lastDown; down++) {
+      for (int across = firstAcross; across <= lastAcross; across++) {
+        int index = down * g.chunksAcross + across;
+        Chunk chunk = chunks[index];
+        if (chunk == null) {
+          chunk = new Chunk();
+          chunks[index] = chunk;
+        }
+        int version = g.chunkVersions.get(index);
+        if (chunk.bitmap == null || chunk.version != version) {
+          renderChunk(g, chunk, across, down);
+          // Reading the version before the tiles means a change made while
+          // rendering is caught next frame.
+          chunk.version = version;
+        }
+        chunk.lastDrawn = frame;
+        canvas0.drawBitmap(chunk.bitmap, across * chunkWidth, down * chunkHeight, null);
+      }
+    }
+  }
+
+  private void renderChunk(Grid g, Chunk chunk, int across, int down) {
+    if (chunk.bitmap == null) {
+      makeRoomForChunk();
+      chunk.bitmap = Bitmap.createBitmap(g.chunkColumns * g.tileWidth,
+          g.chunkRows * g.tileHeight, Bitmap.Config.ARGB_8888);
+      cachedChunks++;
+    }
+    chunkCanvas.setBitmap(chunk.bitmap);
+    chunkCanvas.drawColor(0, PorterDuff.Mode.CLEAR);
+
+    int tilesetColumns = g.tileset.getWidth() / g.tileWidth;
+    int firstColumn = across * g.chunkColumns;
+    int firstRow = down * g.chunkRows;
+    int lastColumn = Math.min(g.columns, firstColumn + g.chunkColumns);
+    int lastRow = Math.min(g.rows, firstRow + g.chunkRows);
+    for (int row = firstRow; row < lastRow; row++) {
+      for (int column = firstColumn; column < lastColumn; column++) {
+        int tile = g.tiles[row * g.columns + column] - 1;
+        if (tile < 0 || tilesetColumns == 0) {
+          continue;
+        }
+        int sourceLeft = (tile % tilesetColumns) * g.tileWidth;
+        int sourceTop = (tile / tilesetColumns) * g.tileHeight;
+        sourceRect.set(sourceLeft, sourceTop, sourceLeft + g.tileWidth, sourceTop + g.tileHeight);
+        int destLeft = (column - firstColumn) * g.tileWidth;
+        int destTop = (row - firstRow) * g.tileHeight;
+        destRect.set(destLeft, destTop, destLeft + g.tileWidth, destTop + g.tileHeight);
+        chunkCanvas.drawBitmap(g.tileset, sourceRect, destRect, null);
+      }
+    }
+  }
+
+  // Drops the least recently drawn chunk, if the cache is full and there is
+  // one not drawn in this frame.
+  private void makeRoomForChunk() {
+    if (cachedChunks < maxCachedChunks) {
+      return;
+    }
+    Chunk oldest = null;
+    for (int i = 0; i < chunks.length; i++) {
+      Chunk chunk = chunks[i];
+      if (chunk != null && chunk.bitmap != null && chunk.lastDrawn != frame
+          && (oldest == null || chunk.lastDrawn < oldest.lastDrawn)) {
+        oldest = chunk;
+      }
+    }
+    if (oldest != null) {
+      oldest.bitmap.recycle();
+      oldest.bitmap = null;
+      cachedChunks--;
+    }
+  }
+
+  private void dropChunks() {
+    if (chunks == null) {
+      return;
+    }
+    for (int i = 0; i < chunks.length; i++) {
+      if (chunks[i] != null && chunks[i].bitmap != null) {
+        chunks[i].bitmap.recycle();
+      }
+    }
+    chunks = null;
+    cachedChunks = 0;
+  }
+}
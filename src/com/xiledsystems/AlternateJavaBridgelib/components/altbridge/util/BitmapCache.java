@@ -0,0 +1,196 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util;
+
+import android.graphics.Bitmap;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of decoded images, so that components showing the same
+ * image share one {@link Bitmap} instead of each decoding their own.
+ *
+ * <p>Bitmaps are reference counted.  {@link #acquire} and {@link #put} each
+ * take a reference, which is given back with {@link #release} once the
+ * bitmap is no longer shown.  Bitmaps with no references left stay cached
+ * until the total size exceeds {@link #maxSize()}, at which point the least
+ * recently used of them are dropped.  Bitmaps still in use are never
+ * dropped, so the budget can be exceeded while they are.
+ *
+ * <p>{@link MediaUtil#getDrawable} goes through this cache, and
+ * {@link MediaUtil#releaseDrawable} releases what it returned.
+ *
+ */
+public final class BitmapCache {
+
+  private static final class Entry {
+    private final Bitmap bitmap;
+    private final long bytes;
+    private int references;
+
+    private Entry(Bitmap bitmap) {
+      this.bitmap = bitmap;
+      bytes = (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+  }
+
+  // Entries by key, in least to most recently used order
+  private static final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  // Entries by bitmap, so that release() doesn't need the key
+  private static final Map<Bitmap, Entry> entriesByBitmap = new HashMap<Bitmap, Entry>();
+
+  // Defaults to an eighth of the heap the VM will let the app grow to.
+  private static long maxSize = Runtime.getRuntime().maxMemory() / 8;
+  private static long size;
+
+  private static int hitCount;
+  private static int missCount;
+  private static int evictionCount;
+
+  private BitmapCache() {
+  }
+
+  /**
+   * Returns the bitmap cached under the given key, taking a reference to it.
+   *
+   * @param key the key
+   * @return the bitmap, or {@code null} if none is cached under the key
+   */
+  public static synchronized Bitmap acquire(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    entry.references++;
+    return entry.bitmap;
+  }
+
+  /**
+   * Caches a newly decoded bitmap under the given key, taking a reference to
+   * it.  If another bitmap was cached under the key in the meantime, that
+   * one is returned (and referenced) instead, and the caller should use it.
+   *
+   * @param key the key
+   * @param bitmap the bitmap
+   * @return the bitmap cached under the key
+   */
+  public static synchronized Bitmap put(String key, Bitmap bitmap) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      entry.references++;
+      return entry.bitmap;
+    }
+    entry = new Entry(bitmap);
+    // Referenced before trimming, so that the new entry is not the one dropped.
+    entry.references++;
+    entries.put(key, entry);
+    entriesByBitmap.put(bitmap, entry);
+    size += entry.bytes;
+    trimToSize(maxSize);
+    return entry.bitmap;
+  }
+
+  /**
+   * Gives back a reference taken by {@link #acquire} or {@link #put}.  Does
+   * nothing if the bitmap did not come from this cache.
+   *
+   * @param bitmap the bitmap
+   */
+  public static synchronized void release(Bitmap bitmap) {
+    Entry entry = entriesByBitmap.get(bitmap);
+    if (entry == null || entry.references == 0) {
+      return;
+    }
+    entry.references--;
+    if (entry.references == 0) {
+      trimToSize(maxSize);
+    }
+  }
+
+  /**
+   * Drops every bitmap that is not in use, for instance when the system is
+   * low on memory.
+   */
+  public static synchronized void evictUnused() {
+    trimToSize(0);
+  }
+
+  // Drops unused entries, least recently used first, until the cache is no
+  // bigger than the given size or only entries in use are left.
+  private static void trimToSize(long targetSize) {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (size > targetSize && iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.references == 0) {
+        iterator.remove();
+        entriesByBitmap.remove(entry.bitmap);
+        size -= entry.bytes;
+        evictionCount++;
+      }
+    }
+  }
+
+  /**
+   * Returns the size, in bytes, above which unused bitmaps are dropped.
+   *
+   * @return the cache budget in bytes
+   */
+  public static synchronized long maxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Specifies the size, in bytes, above which unused bitmaps are dropped.
+   *
+   * @param bytes the cache budget in bytes
+   */
+  public static synchronized void maxSize(long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("Illegal cache size " + bytes);
+    }
+    maxSize = bytes;
+    trimToSize(maxSize);
+  }
+
+  /**
+   * Returns the total size, in bytes, of the cached bitmaps, whether in use
+   * or not.
+   *
+   * @return the cache size in bytes
+   */
+  public static synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of lookups that found a cached bitmap.
+   *
+   * @return the hit count
+   */
+  public static synchronized int hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of lookups that had to decode the image.
+   *
+   * @return the miss count
+   */
+  public static synchronized int missCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of bitmaps dropped to stay within the budget.
+   *
+   * @return the eviction count
+   */
+  public static synchronized int evictionCount() {
+    return evictionCount;
+  }
+}
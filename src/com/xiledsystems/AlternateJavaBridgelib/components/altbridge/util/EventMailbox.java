@@ -0,0 +1,191 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Single-slot mailbox for coalescing an event raised faster than its
+ * handlers can keep up with, such as a sensor reading or a drag.
+ *
+ * <p>Each sample posted is merged into the one waiting in the mailbox, and
+ * the mailbox is emptied into its {@link Receiver} at most once every
+ * {@link #setInterval interval}, on the thread that created it.  However
+ * busy the handlers are, only one delivery is ever queued, and a sample
+ * waits no more than an interval plus the time the thread takes to get
+ * to it.
+ *
+ * <p>How each argument is merged is set with {@link #setMerge}; by default
+ * the newest value wins.  Samples are floats; a boolean can be passed as 1
+ * or 0 and merged with {@link #MAX}, so that it is true if it was in any
+ * sample.
+ *
+ */
+public final class EventMailbox {
+
+  /**
+   * Receives the samples from an {@link EventMailbox}.
+   */
+  public interface Receiver {
+    /**
+     * Handles a sample.  The array belongs to the mailbox and is reused for
+     * the next delivery.
+     *
+     * @param args the merged arguments
+     * @param dropped the number of samples merged into this one and not
+     *        delivered on their own
+     */
+    void receive(float[] args, int dropped);
+  }
+
+  /**
+   * Keeps the newest value of an argument.
+   */
+  public static final int LATEST = 0;
+
+  /**
+   * Keeps the value of an argument from the first sample merged.
+   */
+  public static final int FIRST = 1;
+
+  /**
+   * Keeps the greatest value of an argument.
+   */
+  public static final int MAX = 2;
+
+  private final Handler handler = new Handler();
+  private final Receiver receiver;
+  private final int[] merge;
+
+  // Guarded by this
+  private final float[] pending;
+  private boolean full;
+  private int dropped;
+  private long lastDelivery;
+  private int interval;
+
+  // The thread of handler only
+  private final float[] delivering;
+
+  private final Runnable deliver = new Runnable() {
+    public void run() {
+      int deliveredDropped;
+      synchronized (EventMailbox.this) {
+        if (!full) {
+          return;
+        }
+        System.arraycopy(pending, 0, delivering, 0, pending.length);
+        deliveredDropped = dropped;
+        full = false;
+        dropped = 0;
+        lastDelivery = SystemClock.uptimeMillis();
+      }
+      receiver.receive(delivering, deliveredDropped);
+    }
+  };
+
+  /**
+   * Creates a mailbox, which delivers on the calling thread.
+   *
+   * @param argCount the number of arguments of a sample
+   * @param interval the least time between deliveries, in milliseconds
+   * @param receiver receives the samples
+   */
+  public EventMailbox(int argCount, int interval, Receiver receiver) {
+    this.receiver = receiver;
+    merge = new int[argCount];
+    pending = new float[argCount];
+    delivering = new float[argCount];
+    setInterval(interval);
+  }
+
+  /**
+   * Specifies how an argument is merged.
+   *
+   * @param index the argument
+   * @param mode {@link #LATEST}, {@link #FIRST} or {@link #MAX}
+   */
+  public void setMerge(int index, int mode) {
+    if (mode != LATEST && mode != FIRST && mode != MAX) {
+      throw new IllegalArgumentException("Illegal merge mode " + mode);
+    }
+    merge[index] = mode;
+  }
+
+  /**
+   * Specifies the least time between deliveries.  16 milliseconds is about
+   * one screen frame.
+   *
+   * @param interval the time in milliseconds, 0 to deliver on the next
+   *        turn of the thread's loop
+   */
+  public synchronized void setInterval(int interval) {
+    if (interval < 0) {
+      throw new IllegalArgumentException("Illegal interval " + interval);
+    }
+    this.interval = interval;
+  }
+
+  /**
+   * Determines whether a sample is waiting to be delivered.
+   *
+   * @return {@code true} if one is
+   */
+  public synchronized boolean isPending() {
+    return full;
+  }
+
+  /**
+   * Returns an argument of the sample waiting to be delivered.
+   *
+   * @param index the argument
+   * @return its value, meaningless if {@link #isPending()} is {@code false}
+   */
+  public synchronized float pending(int index) {
+    return pending[index];
+  }
+
+  /**
+   * Merges a sample into the mailbox, scheduling its delivery if none is
+   * scheduled.  This can be called from any thread.
+   *
+   * @param args the arguments of the sample, copied
+   */
+  public synchronized void post(float[] args) {
+    if (!full) {
+      System.arraycopy(args, 0, pending, 0, pending.length);
+      full = true;
+      long delay = lastDelivery + interval - SystemClock.uptimeMillis();
+      handler.postDelayed(deliver, Math.max(0, delay));
+      return;
+    }
+    for (int i = 0; i < pending.length; i++) {
+      switch (merge[i]) {
+        case LATEST:
+          pending[i] = args[i];
+          break;
+        case MAX:
+          pending[i] = Math.max(pending[i], args[i]);
+          break;
+      }
+    }
+    dropped++;
+  }
+
+  /**
+   * Delivers the waiting sample now, if there is one.  This must be called
+   * on the thread that created the mailbox.
+   */
+  public void flush() {
+    handler.removeCallbacks(deliver);
+    deliver.run();
+  }
+
+  /**
+   * Throws away the waiting sample, if there is one.
+   */
+  public synchronized void cancel() {
+    handler.removeCallbacks(deliver);
+    full = false;
+    dropped = 0;
+  }
+}
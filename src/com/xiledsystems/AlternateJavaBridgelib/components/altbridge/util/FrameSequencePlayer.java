@@ -0,0 +1,420 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.altbridge.Form;
+
+/**
+ * Plays a sequence of images as an animation without decoding them all up
+ * front, as an {@link android.graphics.drawable.AnimationDrawable} would.
+ *
+ * <p>Only the frame being shown, the one shown before it and the next
+ * {@link #PREFETCH} frames are decoded at any time.  A background thread
+ * decodes the upcoming frames while the current one is shown, and the
+ * bitmaps of frames no longer needed are decoded into again (see
+ * {@link MediaUtil#decodeFrame}).  Memory use therefore depends on the size
+ * of a frame, not on the number of frames.
+ *
+ * <p>A frame that is not decoded in time is shown as soon as it is, and
+ * the animation carries on from it; frames are never skipped.
+ *
+ * <p>All methods, and {@link FrameTarget#showFrame}, run on the UI thread.
+ *
+ */
+public final class FrameSequencePlayer {
+
+  /**
+   * Shows the frames of a {@link FrameSequencePlayer}.
+   */
+  public interface FrameTarget {
+    /**
+     * Shows a frame.  The bitmap belongs to the player, which decodes
+     * another frame into it once two more frames have been shown, so it
+     * must not be kept beyond then.
+     *
+     * @param frame the frame's image
+     * @param index the frame's place in the sequence, from 0
+     */
+    void showFrame(Bitmap frame, int index);
+  }
+
+  /**
+   * The number of frames decoded ahead of the one being shown.
+   */
+  public static final int PREFETCH = 2;
+
+  // Buffers: the shown frame, the one shown before it (which may still be
+  // on its way to the screen), and the frames being prefetched
+  private static final int SLOTS = PREFETCH + 2;
+
+  private static final int FREE = 0;
+  private static final int DECODING = 1;  // owned by the decoder thread
+  private static final int READY = 2;
+  private static final int SHOWN = 3;
+  private static final int RETIRED = 4;
+
+  private static final int NONE = -1;
+
+  private final Form form;
+  private final String[] paths;
+  private final FrameTarget target;
+
+  private final Handler uiHandler = new Handler();
+  private final HandlerThread decoderThread;
+  private final Handler decoder;
+
+  // The buffers, guarded by this.  A slot's frame and bitmap are only
+  // changed by the decoder thread while it is DECODING.
+  private final int[] slotState = new int[SLOTS];
+  private final int[] slotFrame = new int[SLOTS];
+  private final Bitmap[] slotBitmap = new Bitmap[SLOTS];
+  private final boolean[] slotFailed = new boolean[SLOTS];
+  private final int[] slotGeneration = new int[SLOTS];
+  // Increased whenever the frames being decoded are no longer wanted
+  private int generation;
+  private boolean released;
+
+  // UI thread only
+  private int frameDuration;
+  private boolean looping = true;
+  private boolean running;
+  private int current = NONE;  // the frame shown
+  private int wanted = NONE;   // the frame to show as soon as it is decoded
+
+  private final Runnable tick = new Runnable() {
+    public void run() {
+      if (!running) {
+        return;
+      }
+      if (wanted == NONE) {
+        wanted = nextFrame(current);
+        if (wanted == NONE) {
+          // The end of a sequence that doesn't loop
+          running = false;
+          return;
+        }
+      }
+      showWanted();
+      uiHandler.postDelayed(this, frameDuration);
+    }
+  };
+
+  private final Runnable frameDecoded = new Runnable() {
+    public void run() {
+      showWanted();
+    }
+  };
+
+  /**
+   * Creates a player for the given images.  Nothing is decoded until a
+   * frame is asked for with {@link #start()} or {@link #showFrame(int)}.
+   *
+   * @param form the Form
+   * @param paths the paths of the images, in order (see
+   *        {@link MediaUtil#determineMediaSource})
+   * @param frameDuration how long each frame is shown, in milliseconds
+   * @param target shows the frames
+   */
+  public FrameSequencePlayer(Form form, List<String> paths, int frameDuration,
+      FrameTarget target) {
+    this.form = form;
+    this.paths = paths.toArray(new String[paths.size()]);
+    this.target = target;
+    setFrameDuration(frameDuration);
+    for (int i = 0; i < SLOTS; i++) {
+      slotFrame[i] = NONE;
+    }
+    decoderThread = new HandlerThread("FrameSequencePlayer",
+        Process.THREAD_PRIORITY_BACKGROUND);
+    decoderThread.start();
+    decoder = new Handler(decoderThread.getLooper());
+  }
+
+  /**
+   * Returns the number of frames.
+   *
+   * @return the frame count
+   */
+  public int getFrameCount() {
+    return paths.length;
+  }
+
+  /**
+   * Specifies how long each frame is shown.
+   *
+   * @param frameDuration the duration in milliseconds
+   */
+  public void setFrameDuration(int frameDuration) {
+    if (frameDuration <= 0) {
+      throw new IllegalArgumentException("Illegal frame duration " + frameDuration);
+    }
+    this.frameDuration = frameDuration;
+  }
+
+  /**
+   * Specifies whether the animation starts again after the last frame, or
+   * stops on it.
+   *
+   * @param looping {@code true} to loop
+   */
+  public void setLooping(boolean looping) {
+    this.looping = looping;
+  }
+
+  /**
+   * Returns whether the animation is playing.
+   *
+   * @return {@code true} if it is playing
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Plays the animation from the frame shown, or from the first frame if
+   * none has been.
+   */
+  public void start() {
+    if (running || released || paths.length == 0) {
+      return;
+    }
+    running = true;
+    if (current == NONE && wanted == NONE) {
+      wanted = 0;
+    }
+    prefetch(wanted != NONE ? wanted : nextFrame(current));
+    showWanted();
+    uiHandler.postDelayed(tick, frameDuration);
+  }
+
+  /**
+   * Stops the animation on the frame shown.
+   */
+  public void stop() {
+    running = false;
+    uiHandler.removeCallbacks(tick);
+  }
+
+  /**
+   * Shows the given frame as soon as it is decoded.  If the animation is
+   * playing it carries on from there.
+   *
+   * @param index the frame, from 0
+   */
+  public void showFrame(int index) {
+    if (index < 0 || index >= paths.length) {
+      throw new IllegalArgumentException("Illegal frame " + index);
+    }
+    if (released) {
+      return;
+    }
+    synchronized (this) {
+      // The frames being prefetched are no longer the next ones.
+      generation++;
+      for (int i = 0; i < SLOTS; i++) {
+        if (slotState[i] == READY && slotFrame[i] != index) {
+          slotState[i] = FREE;
+        }
+      }
+    }
+    wanted = index;
+    prefetch(index);
+    showWanted();
+  }
+
+  /**
+   * Stops the animation for good and lets go of its bitmaps and thread.
+   * The frame being shown is not recycled, since the target may go on
+   * showing it until it has something else to show; it is simply dropped,
+   * and collected once the target lets go of it too.
+   */
+  public void release() {
+    stop();
+    decoderThread.quit();
+    synchronized (this) {
+      released = true;
+      generation++;
+      for (int i = 0; i < SLOTS; i++) {
+        // A bitmap being decoded into is recycled by the decoder thread.
+        if (slotState[i] != DECODING && slotBitmap[i] != null) {
+          if (slotState[i] != SHOWN) {
+            slotBitmap[i].recycle();
+          }
+          slotBitmap[i] = null;
+        }
+      }
+    }
+  }
+
+  // Returns the frame after the given one, or NONE at the end of a
+  // sequence that doesn't loop.
+  private int nextFrame(int index) {
+    if (index + 1 < paths.length) {
+      return index + 1;
+    }
+    return looping ? 0 : NONE;
+  }
+
+  // Shows the wanted frame if it has been decoded, and starts decoding the
+  // frames after it.
+  private void showWanted() {
+    if (wanted == NONE) {
+      return;
+    }
+    Bitmap bitmap;
+    boolean failed;
+    synchronized (this) {
+      int slot = findSlot(wanted, READY);
+      if (slot == NONE) {
+        // Make sure it is on its way, in case it couldn't be when asked for.
+        prefetch(wanted);
+        return;
+      }
+      for (int i = 0; i < SLOTS; i++) {
+        if (slotState[i] == RETIRED) {
+          slotState[i] = FREE;
+        } else if (slotState[i] == SHOWN) {
+          // Not decoded into again until the next frame is shown, so the
+          // screen is done with it.
+          slotState[i] = RETIRED;
+        }
+      }
+      slotState[slot] = SHOWN;
+      bitmap = slotBitmap[slot];
+      failed = slotFailed[slot];
+    }
+    current = wanted;
+    wanted = NONE;
+    if (!failed) {
+      target.showFrame(bitmap, current);
+    }
+    int next = nextFrame(current);
+    if (next != NONE) {
+      prefetch(next);
+    }
+  }
+
+  // Starts decoding the PREFETCH frames from the given one, as far as there
+  // are free buffers.
+  private void prefetch(int from) {
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      int frame = from;
+      for (int k = 0; k < PREFETCH && frame != NONE; k++) {
+        if (!isDecoding(frame) && findSlot(frame, READY) == NONE
+            && findSlot(frame, SHOWN) == NONE) {
+          int slot = findSlot(NONE, FREE);
+          if (slot == NONE) {
+            return;
+          }
+          slotState[slot] = DECODING;
+          slotFrame[slot] = frame;
+          slotGeneration[slot] = generation;
+          decoder.post(new Decode(slot, frame, generation));
+        }
+        frame = nextFrame(frame);
+        if (frame == from) {
+          return;
+        }
+      }
+    }
+  }
+
+  // Returns a slot in the given state holding the given frame, or NONE.
+  // Looking for frame NONE finds any slot in the state.
+  private int findSlot(int frame, int state) {
+    for (int i = 0; i < SLOTS; i++) {
+      if (slotState[i] == state && (frame == NONE || slotFrame[i] == frame)) {
+        return i;
+      }
+    }
+    return NONE;
+  }
+
+  // Determines whether the frame is being decoded for the frames now
+  // wanted, rather than for ones that no longer are.
+  private boolean isDecoding(int frame) {
+    for (int i = 0; i < SLOTS; i++) {
+      if (slotState[i] == DECODING && slotFrame[i] == frame
+          && slotGeneration[i] == generation) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Decodes a frame into a slot on the decoder thread.
+  private final class Decode implements Runnable {
+    private final int slot;
+    private final int frame;
+    private final int jobGeneration;
+
+    private Decode(int slot, int frame, int jobGeneration) {
+      this.slot = slot;
+      this.frame = frame;
+      this.jobGeneration = jobGeneration;
+    }
+
+    public void run() {
+      Bitmap reuse;
+      boolean stale;
+      synchronized (FrameSequencePlayer.this) {
+        reuse = slotBitmap[slot];
+        stale = jobGeneration != generation;
+        if (stale) {
+          slotState[slot] = FREE;
+          if (released && reuse != null) {
+            reuse.recycle();
+            slotBitmap[slot] = null;
+          }
+        }
+      }
+      if (stale) {
+        // Not wanted any more, but the buffer it frees may be.
+        uiHandler.post(frameDecoded);
+        return;
+      }
+      Bitmap bitmap = null;
+      try {
+        bitmap = MediaUtil.decodeFrame(form, paths[frame], reuse);
+      } catch (IOException e) {
+        Log.e("FrameSequencePlayer", "Unable to load " + paths[frame]);
+      }
+      synchronized (FrameSequencePlayer.this) {
+        if (bitmap != null) {
+          if (reuse != null && bitmap != reuse) {
+            // Decoded into a new bitmap instead, so the old one is done with.
+            reuse.recycle();
+          }
+          slotBitmap[slot] = bitmap;
+        }
+        if (released) {
+          if (slotBitmap[slot] != null) {
+            slotBitmap[slot].recycle();
+            slotBitmap[slot] = null;
+          }
+          slotState[slot] = FREE;
+          return;
+        }
+        if (jobGeneration != generation) {
+          slotState[slot] = FREE;
+        } else {
+          // A frame that can't be decoded is passed over rather than
+          // holding up the animation.
+          slotFailed[slot] = bitmap == null;
+          slotState[slot] = READY;
+        }
+      }
+      uiHandler.post(frameDecoded);
+    }
+  }
+}
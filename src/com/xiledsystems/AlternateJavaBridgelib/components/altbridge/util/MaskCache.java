@@ -0,0 +1,86 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util;
+
+import android.graphics.Bitmap;
+
+import java.util.WeakHashMap;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.util.CollisionMask;
+
+/**
+ * Process-wide cache of the {@link CollisionMask}s of images, one per frame
+ * of a sprite sheet.  Masks are keyed by the bitmap itself, so sprites
+ * sharing a picture (see {@link BitmapCache}) also share its masks, and are
+ * only held for as long as the bitmap is.
+ *
+ */
+public final class MaskCache {
+
+  // Pixels with at least this alpha count as opaque.
+  private static final int ALPHA_THRESHOLD = 128;
+
+  private static final class Masks {
+    private final int frames;
+    private final CollisionMask[] frameMasks;
+
+    private Masks(int frames) {
+      this.frames = frames;
+      frameMasks = new CollisionMask[frames];
+    }
+  }
+
+  private static final WeakHashMap<Bitmap, Masks> masks = new WeakHashMap<Bitmap, Masks>();
+
+  private MaskCache() {
+  }
+
+  /**
+   * Returns the mask of a frame of an image, building it the first time.
+   * The image is split into {@code frames} frames side by side, as for a
+   * sprite sheet; an image that is not a sheet has one frame.
+   *
+   * @param bitmap the image
+   * @param frames the number of frames across the image
+   * @param frame the frame, from 0
+   * @return the mask of the frame
+   */
+  public static synchronized CollisionMask get(Bitmap bitmap, int frames, int frame) {
+    if (frames <= 0 || frame < 0 || frame >= frames) {
+      throw new IllegalArgumentException("Illegal frame " + frame + " of " + frames);
+    }
+    Masks entry = masks.get(bitmap);
+    if (entry == null || entry.frames != frames) {
+      entry = new Masks(frames);
+      masks.put(bitmap, entry);
+    }
+    CollisionMask mask = entry.frameMasks[frame];
+    if (mask == null) {
+      mask = build(bitmap, frames, frame);
+      entry.frameMasks[frame] = mask;
+    }
+    return mask;
+  }
+
+  /**
+   * Builds the masks of every frame of an image ahead of time, so that the
+   * first collision test doesn't have to.
+   *
+   * @param bitmap the image
+   * @param frames the number of frames across the image
+   */
+  public static void preload(Bitmap bitmap, int frames) {
+    for (int i = 0; i < frames; i++) {
+      get(bitmap, frames, i);
+    }
+  }
+
+  private static CollisionMask build(final Bitmap bitmap, int frames, int frame) {
+    final int width = bitmap.getWidth() / frames;
+    final int left = frame * width;
+    return CollisionMask.fromRows(width, bitmap.getHeight(), new CollisionMask.PixelRows() {
+      @Override
+      public void getRow(int y, int[] row) {
+        bitmap.getPixels(row, 0, width, left, y, width, 1);
+      }
+    }, ALPHA_THRESHOLD);
+  }
+}
@@ -6,6 +6,7 @@ import android.content.res.Resources.NotFoundException;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Rect;
+import android.graphics.drawable.AnimationDrawable;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.media.MediaPlayer;
@@ -358,6 +359,23 @@ return tempFile;
     // When the app says to fetch the image, we need to get the latest image, not one that we
     // cached previously.
 
+    // Set the size so that we scale down any image that is larger than twice the
+    // width/height of the screen.
+    // The goal is to never make an image that is actually larger than the screen end up appearing
+    // smaller than the screen.
+    Display display = ((WindowManager) form.getSystemService(Context.WINDOW_SERVICE)).
+        getDefaultDisplay();
+    int maxWidth = 2 * display.getWidth();
+    int maxHeight = 2 * display.getHeight();
+
+    String cacheKey = getBitmapCacheKey(mediaPath, mediaSource, maxWidth, maxHeight);
+    if (cacheKey != null) {
+      Bitmap bitmap = BitmapCache.acquire(cacheKey);
+      if (bitmap != null) {
+        return new BitmapDrawable(bitmap);
+      }
+    }
+
     InputStream is1;
     try {
       is1 = openMedia(form, mediaPath, mediaSource);
@@ -372,17 +390,150 @@ return tempFile;
 
     BitmapFactory.Options options;
     try {
-      options = getBitmapOptions(form, is1);
+      options = getBitmapOptions(is1, maxWidth, maxHeight);
     } finally {
       is1.close();
     }
 
+    Bitmap bitmap;
     InputStream is2 = openMedia(form, mediaPath, mediaSource);
     try {
-      return new BitmapDrawable(decodeStream(is2, null, options));
+      bitmap = decodeStream(is2, null, options);
     } finally {
       is2.close();
     }
+    if (cacheKey != null && bitmap != null) {
+      bitmap = BitmapCache.put(cacheKey, bitmap);
+    }
+    return new BitmapDrawable(bitmap);
+  }
+
+  /**
+   * Gives back the cached bitmaps held by a drawable returned by
+   * {@link #getDrawable}, or by an {@link AnimationDrawable} built from
+   * them, once it is no longer shown.  It does nothing for other drawables,
+   * so it is safe to call on whatever a component is about to replace.
+   *
+   * @param drawable the drawable, which may be {@code null}
+   */
+  public static void releaseDrawable(Drawable drawable) {
+    if (drawable instanceof BitmapDrawable) {
+      BitmapCache.release(((BitmapDrawable) drawable).getBitmap());
+    } else if (drawable instanceof AnimationDrawable) {
+      AnimationDrawable animation = (AnimationDrawable) drawable;
+      for (int i = 0; i < animation.getNumberOfFrames(); i++) {
+        releaseDrawable(animation.getFrame(i));
+      }
+    }
+  }
+
+  /**
+   * Decodes the image specified by mediaPath into a bitmap of its own, for
+   * showing briefly and then throwing away, as the frames of an animation
+   * are.  Unlike {@link #getDrawable}, the bitmap is never shared through
+   * {@link BitmapCache}, so the caller may reuse or recycle it.
+   *
+   * <p/>On Honeycomb and later the image is decoded into {@code reuse} when
+   * it can be, instead of a new bitmap.
+   *
+   * @param form the Form
+   * @param mediaPath the path to the media
+   * @param reuse a bitmap no longer needed, or {@code null}
+   * @return the decoded image, which is {@code reuse} if it was decoded into
+   *         it, or null if it could not be decoded
+   */
+  public static Bitmap decodeFrame(Form form, String mediaPath, Bitmap reuse)
+      throws IOException {
+    if (mediaPath == null || mediaPath.length() == 0) {
+      return null;
+    }
+    MediaSource mediaSource = determineMediaSource(form, mediaPath);
+    BitmapFactory.Options options;
+    int resourceId = 0;
+    if (mediaSource == MediaSource.ASSET) {
+      String name = mediaPath.contains(".") ? mediaPath.split("\\.")[0] : mediaPath;
+      resourceId = form.getResources().getIdentifier(name, "drawable", form.getPackageName());
+      if (resourceId == 0) {
+        throw new IOException("Drawable resource " + name + " could not be found");
+      }
+      options = new BitmapFactory.Options();
+    } else {
+      // Scale down as getDrawable does.
+      Display display = ((WindowManager) form.getSystemService(Context.WINDOW_SERVICE)).
+          getDefaultDisplay();
+      InputStream is1 = openMedia(form, mediaPath, mediaSource);
+      try {
+        options = getBitmapOptions(is1, 2 * display.getWidth(), 2 * display.getHeight());
+      } finally {
+        is1.close();
+      }
+    }
+
+    if (reuse != null && setInBitmap(options, reuse)) {
+      try {
+        return decodeWithOptions(form, mediaPath, mediaSource, resourceId, options);
+      } catch (IllegalArgumentException e) {
+        // The image doesn't fit the bitmap; decode it into a new one.
+        setInBitmap(options, null);
+      }
+    }
+    return decodeWithOptions(form, mediaPath, mediaSource, resourceId, options);
+  }
+
+  private static Bitmap decodeWithOptions(Form form, String mediaPath, MediaSource mediaSource,
+      int resourceId, BitmapFactory.Options options) throws IOException {
+    if (mediaSource == MediaSource.ASSET) {
+      return BitmapFactory.decodeResource(form.getResources(), resourceId, options);
+    }
+    InputStream is = openMedia(form, mediaPath, mediaSource);
+    try {
+      return decodeStream(is, null, options);
+    } finally {
+      is.close();
+    }
+  }
+
+  // BitmapFactory.Options.inBitmap only exists from Honeycomb on, so it is
+  // set by reflection.  Returns whether it could be set.
+  private static boolean setInBitmap(BitmapFactory.Options options, Bitmap bitmap) {
+    if (SdkLevel.getLevel() < SdkLevel.LEVEL_HONEYCOMB) {
+      return false;
+    }
+    try {
+      BitmapFactory.Options.class.getField("inBitmap").set(options, bitmap);
+      BitmapFactory.Options.class.getField("inMutable").setBoolean(options, bitmap != null);
+      return true;
+    } catch (NoSuchFieldException e) {
+      return false;
+    } catch (IllegalAccessException e) {
+      return false;
+    }
+  }
+
+  // Returns the key under which the decoded image is shared through BitmapCache, or null if
+  // it has to be decoded every time.  Files are keyed by their modification time too, so that
+  // an image rewritten by the app isn't hidden by the cache.
+  private static String getBitmapCacheKey(String mediaPath, MediaSource mediaSource,
+      int maxWidth, int maxHeight) throws IOException {
+    long version;
+    switch (mediaSource) {
+      case ASSET:
+        version = 0;
+        break;
+      case REPL_ASSET:
+        version = new File(replAssetPath(mediaPath)).lastModified();
+        break;
+      case SDCARD:
+        version = new File(mediaPath).lastModified();
+        break;
+      case FILE_URL:
+        version = new File(fileUrlToFilePath(mediaPath)).lastModified();
+        break;
+      default:
+        // Images from the network and from content providers may change at any time.
+        return null;
+    }
+    return mediaSource + ":" + mediaPath + "@" + version + ":" + maxWidth + "x" + maxHeight;
   }
 
   private static Bitmap decodeStream(InputStream is, Rect outPadding, BitmapFactory.Options opts) {
@@ -418,7 +569,8 @@ return tempFile;
     }
   }
 
-  private static BitmapFactory.Options getBitmapOptions(Form form, InputStream is) {
+  private static BitmapFactory.Options getBitmapOptions(InputStream is, int maxWidth,
+      int maxHeight) {
     // Get the size of the image.
     BitmapFactory.Options options = new BitmapFactory.Options();
     options.inJustDecodeBounds = true;
@@ -426,16 +578,7 @@ return tempFile;
     int imageWidth = options.outWidth;
     int imageHeight = options.outHeight;
 
-    // Get the screen size.
-    Display display = ((WindowManager) form.getSystemService(Context.WINDOW_SERVICE)).
-        getDefaultDisplay();
-
-    // Set the sample size so that we scale down any image that is larger than twice the
-    // width/height of the screen.
-    // The goal is to never make an image that is actually larger than the screen end up appearing
-    // smaller than the screen.
-    int maxWidth = 2 * display.getWidth();
-    int maxHeight = 2 * display.getHeight();
+    // Set the sample size so that the image is scaled down to the given size.
     int sampleSize = 1;
     while ((imageWidth / sampleSize > maxWidth) && (imageHeight / sampleSize > maxHeight)) {
       sampleSize *= 2;
@@ -0,0 +1,223 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.altbridge.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Process-wide cache of rotated copies of images, for sprites that turn
+ * through a fixed set of angles.  Copies are keyed by the source bitmap
+ * itself, so sprites sharing a picture (see {@link BitmapCache}) also share
+ * its rotations.  The cache only holds sources weakly: once nothing else
+ * refers to a source, its rotations are dropped too.
+ *
+ * <p>The cache is bounded by {@link #maxSize()}; beyond it the least
+ * recently used copies are dropped.  A dropped copy stays valid for whoever
+ * still holds it, and is simply rotated again when next asked for.
+ *
+ */
+public final class RotationCache {
+
+  // The keys of the map hold their source through a SourceReference; the
+  // key used to look entries up holds it directly, and is reused.
+  private static final class Key {
+    private SourceReference reference;
+    private Bitmap source;
+    private float degrees;
+    private int hash;
+
+    private Key set(Bitmap source, float degrees) {
+      this.source = source;
+      this.degrees = degrees;
+      hash = 31 * System.identityHashCode(source) + Float.floatToIntBits(degrees);
+      return this;
+    }
+
+    private Bitmap source() {
+      return reference != null ? reference.get() : source;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      if (other == this) {
+        return true;
+      }
+      // Keys whose source has been collected equal only themselves.
+      Bitmap bitmap = source();
+      return bitmap != null && bitmap == other.source() && degrees == other.degrees;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class SourceReference extends WeakReference<Bitmap> {
+    private final Key key;
+
+    private SourceReference(Key key, ReferenceQueue<Bitmap> queue) {
+      super(key.source, queue);
+      this.key = key;
+    }
+  }
+
+  // Rotated copies, in least to most recently used order
+  private static final LinkedHashMap<Key, Bitmap> rotations =
+      new LinkedHashMap<Key, Bitmap>(16, 0.75f, true);
+
+  // Sources that have been collected, whose rotations are to be dropped
+  private static final ReferenceQueue<Bitmap> collected = new ReferenceQueue<Bitmap>();
+
+  // Used to look rotations up and to rotate images; only touched while
+  // holding the class lock
+  private static final Key probe = new Key();
+  private static final Matrix matrix = new Matrix();
+
+  // Defaults to a sixteenth of the heap the VM will let the app grow to.
+  private static long maxSize = Runtime.getRuntime().maxMemory() / 16;
+  private static long size;
+
+  private static int hitCount;
+  private static int missCount;
+  private static int evictionCount;
+
+  private RotationCache() {
+  }
+
+  /**
+   * Returns a copy of the source image rotated clockwise by the given angle
+   * about its center, creating it if it is not cached.  The copy is the
+   * bounding box of the rotated image, so it is generally larger than the
+   * source.  A whole number of turns gives back the source itself, which is
+   * not cached.
+   *
+   * @param source the image to rotate
+   * @param degrees clockwise rotation, in degrees
+   * @return the rotated image
+   */
+  public static synchronized Bitmap get(Bitmap source, float degrees) {
+    if (degrees % 360 == 0) {
+      return source;
+    }
+    dropCollected();
+    Bitmap rotated = rotations.get(probe.set(source, degrees));
+    probe.source = null;
+    if (rotated != null) {
+      hitCount++;
+      return rotated;
+    }
+    missCount++;
+    matrix.setRotate(degrees, source.getWidth() / 2f, source.getHeight() / 2f);
+    rotated = Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(),
+        matrix, true);
+    Key key = new Key().set(source, degrees);
+    key.reference = new SourceReference(key, collected);
+    key.source = null;
+    rotations.put(key, rotated);
+    size += bytes(rotated);
+    trimToSize(maxSize);
+    return rotated;
+  }
+
+  /**
+   * Drops every cached rotation.
+   */
+  public static synchronized void clear() {
+    dropCollected();
+    trimToSize(0);
+  }
+
+  // Drops the rotations of sources that have been collected.
+  private static void dropCollected() {
+    SourceReference reference;
+    while ((reference = (SourceReference) collected.poll()) != null) {
+      Bitmap rotated = rotations.remove(reference.key);
+      if (rotated != null) {
+        size -= bytes(rotated);
+      }
+    }
+  }
+
+  // Drops entries, least recently used first, until the cache is no bigger
+  // than the given size.
+  private static void trimToSize(long targetSize) {
+    Iterator<Bitmap> iterator = rotations.values().iterator();
+    while (size > targetSize && iterator.hasNext()) {
+      size -= bytes(iterator.next());
+      iterator.remove();
+      evictionCount++;
+    }
+  }
+
+  private static long bytes(Bitmap bitmap) {
+    return (long) bitmap.getRowBytes() * bitmap.getHeight();
+  }
+
+  /**
+   * Returns the size, in bytes, above which rotations are dropped.
+   *
+   * @return the cache budget in bytes
+   */
+  public static synchronized long maxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Specifies the size, in bytes, above which rotations are dropped.
+   *
+   * @param bytes the cache budget in bytes
+   */
+  public static synchronized void maxSize(long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("Illegal cache size " + bytes);
+    }
+    maxSize = bytes;
+    trimToSize(maxSize);
+  }
+
+  /**
+   * Returns the total size, in bytes, of the cached rotations.
+   *
+   * @return the cache size in bytes
+   */
+  public static synchronized long size() {
+    dropCollected();
+    return size;
+  }
+
+  /**
+   * Returns the number of lookups that found a cached rotation.
+   *
+   * @return the hit count
+   */
+  public static synchronized int hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of lookups that had to rotate the image.
+   *
+   * @return the miss count
+   */
+  public static synchronized int missCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of rotations dropped to stay within the budget.
+   *
+   * @return the eviction count
+   */
+  public static synchronized int evictionCount() {
+    return evictionCount;
+  }
+}
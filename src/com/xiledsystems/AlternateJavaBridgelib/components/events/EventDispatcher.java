@@ -1,102 +1,451 @@
 package com.xiledsystems.AlternateJavaBridgelib.components.events;
 
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.WeakHashMap;
+
+import android.util.Log;
 
 import com.xiledsystems.AlternateJavaBridgelib.components.Component;
 import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesFloatEventDispatching;
 
+/**
+ * Routes the events raised by components to the handlers registered with
+ * their dispatch delegate.
+ *
+ * Event names are interned into small integer ids (see {@link #eventId}),
+ * and each delegate's handlers are kept in an array indexed by id, so
+ * dispatching an event is two array lookups rather than two hash lookups.
+ * The arrays are replaced rather than changed when handlers are
+ * registered or unregistered, so events are dispatched without locking,
+ * from any thread, while registrations change.
+ *
+ * Components raising an event many times a second should look its id up
+ * once and dispatch with it.  If all of its arguments are floats they can
+ * be passed in an array of their own, which a delegate implementing
+ * {@link HandlesFloatEventDispatching} receives without any boxing.
+ *
+ * Delegates are only weakly referenced, so a Form or FormService that is
+ * never passed to {@link #removeDispatchDelegate} is still collected, its
+ * handlers with it, once nothing else refers to it.
+ *
+ * Handlers can also be methods marked {@link OnEvent}, which an annotation
+ * processor routes to with generated code (see {@link EventRouter}).  Such
+ * handlers are called directly, without going through the delegate's
+ * string-based dispatchEvent.
+ *
+ * {@link EventStats} can record how often each event is dispatched and how
+ * long its handlers take.
+ */
 public class EventDispatcher
 {
+  private static final String LOG_TAG = "EventDispatcher";
+
   private static final boolean DEBUG = false;
-  private static final Map<HandlesEventDispatching, EventRegistry> mapDispatchDelegateToEventRegistry = new HashMap<HandlesEventDispatching, EventRegistry>();
+
+  private static final Object[] NO_ARGS = new Object[0];
+  private static final EventClosure[] NO_CLOSURES = new EventClosure[0];
+
+  // Guarded by EventDispatcher.class, as are all changes to the registries.
+  // Components dispatch from other threads than the one registering, such
+  // as a ThreadTimer's.
+  private static final Map<HandlesEventDispatching, EventRegistry> mapDispatchDelegateToEventRegistry = new WeakHashMap<HandlesEventDispatching, EventRegistry>();
+
+  // The registries in the map, for dispatching without locking.  The array
+  // is replaced, never changed, under the lock whenever a registry is added
+  // or removed.
+  private static volatile EventRegistry[] eventRegistries = new EventRegistry[0];
+
+  // The registry last dispatched to; almost every event goes to the same one.
+  private static volatile EventRegistry lastEventRegistry;
+
+  // Interned event names.  The map is replaced, never changed, so it can be
+  // read without locking; the names are indexed by id.
+  private static volatile Map<String, Integer> eventIds = new HashMap<String, Integer>();
+  private static volatile String[] eventNames = new String[0];
+
+  /**
+   * Returns the id of an event name, the same for the life of the process.
+   * Ids are small integers, allocated from 0 in the order names are first
+   * seen.
+   *
+   * @param eventName the name of the event
+   * @return its id
+   */
+  public static int eventId(String eventName)
+  {
+    Integer id = eventIds.get(eventName);
+    if (id != null) {
+      return id.intValue();
+    }
+    synchronized (EventDispatcher.class) {
+      id = eventIds.get(eventName);
+      if (id == null) {
+        String[] names = new String[eventNames.length + 1];
+        System.arraycopy(eventNames, 0, names, 0, eventNames.length);
+        id = Integer.valueOf(eventNames.length);
+        names[id.intValue()] = eventName;
+        Map<String, Integer> ids = new HashMap<String, Integer>(eventIds);
+        ids.put(eventName, id);
+        eventNames = names;
+        eventIds = ids;
+      }
+      return id.intValue();
+    }
+  }
+
+  /**
+   * Returns the name of an event id.
+   *
+   * @param eventId the id, as returned by {@link #eventId}
+   * @return the name of the event
+   */
+  public static String eventName(int eventId)
+  {
+    return eventNames[eventId];
+  }
 
   private static EventRegistry getEventRegistry(HandlesEventDispatching dispatchDelegate)
   {
-    EventRegistry er = (EventRegistry)mapDispatchDelegateToEventRegistry.get(dispatchDelegate);
+    EventRegistry er = mapDispatchDelegateToEventRegistry.get(dispatchDelegate);
     if (er == null) {
       er = new EventRegistry(dispatchDelegate);
       mapDispatchDelegateToEventRegistry.put(dispatchDelegate, er);
+      publishEventRegistries();
     }
     return er;
   }
 
   private static EventRegistry removeEventRegistry(HandlesEventDispatching dispatchDelegate) {
-    return (EventRegistry)mapDispatchDelegateToEventRegistry.remove(dispatchDelegate);
+    EventRegistry er = mapDispatchDelegateToEventRegistry.remove(dispatchDelegate);
+    if (er != null) {
+      er.removed = true;
+      publishEventRegistries();
+    }
+    return er;
+  }
+
+  // Copies the map's registries into eventRegistries.  Called with the lock
+  // held.  This also drops the registries of delegates since collected.
+  private static void publishEventRegistries()
+  {
+    eventRegistries = mapDispatchDelegateToEventRegistry.values().toArray(
+        new EventRegistry[mapDispatchDelegateToEventRegistry.size()]);
   }
 
-  public static void registerEventForDelegation(HandlesEventDispatching dispatchDelegate, String componentId, String eventName)
+  // Returns the registry of a delegate for dispatching, or null if it has no
+  // handlers.  This never locks: there are only ever a few delegates, so
+  // one that isn't the last dispatched to is looked for in eventRegistries.
+  private static EventRegistry findEventRegistry(HandlesEventDispatching dispatchDelegate)
+  {
+    EventRegistry er = lastEventRegistry;
+    if (er != null && !er.removed && er.dispatchDelegate.get() == dispatchDelegate) {
+      return er;
+    }
+    EventRegistry[] registries = eventRegistries;
+    for (int i = 0; i < registries.length; i++) {
+      er = registries[i];
+      // A registry removed in the meantime may still be in the array read,
+      // or be cached here after removeDispatchDelegate() cleared the cache;
+      // it is marked removed, so it is passed over either way.
+      if (!er.removed && er.dispatchDelegate.get() == dispatchDelegate) {
+        lastEventRegistry = er;
+        return er;
+      }
+    }
+    return null;
+  }
+
+  public static synchronized void registerEventForDelegation(HandlesEventDispatching dispatchDelegate, String componentId, String eventName)
+  {
+    EventRegistry er = getEventRegistry(dispatchDelegate);
+    int eventId = eventId(eventName);
+    EventClosure[] eventClosures = er.getEventClosures(eventId);
+    for (EventClosure eventClosure : eventClosures) {
+      if (eventClosure.componentId.equals(componentId)) {
+        return;
+      }
+    }
+    EventClosure[] newClosures = new EventClosure[eventClosures.length + 1];
+    System.arraycopy(eventClosures, 0, newClosures, 0, eventClosures.length);
+    newClosures[eventClosures.length] = new EventClosure(componentId, eventName, eventId, null);
+    er.setEventClosures(eventId, newClosures);
+  }
+
+  /**
+   * Registers a handler that is called directly rather than through the
+   * delegate's dispatchEvent.  It replaces any handler registered for the
+   * same component and event.
+   *
+   * @param dispatchDelegate the delegate, passed back to the handler
+   * @param componentId the name the handler is registered under
+   * @param eventName the name of the event
+   * @param handler the handler
+   */
+  public static synchronized void registerEventHandler(HandlesEventDispatching dispatchDelegate, String componentId, String eventName, EventHandler handler)
   {
     EventRegistry er = getEventRegistry(dispatchDelegate);
-    Set<EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
-    if (eventClosures == null) {
-      eventClosures = new HashSet<EventClosure>();
-      er.eventClosuresMap.put(eventName, eventClosures);
+    int eventId = eventId(eventName);
+    EventClosure[] eventClosures = er.getEventClosures(eventId);
+    EventClosure closure = new EventClosure(componentId, eventName, eventId, handler);
+    for (int i = 0; i < eventClosures.length; i++) {
+      if (eventClosures[i].componentId.equals(componentId)) {
+        EventClosure[] newClosures = eventClosures.clone();
+        newClosures[i] = closure;
+        er.setEventClosures(eventId, newClosures);
+        return;
+      }
+    }
+    EventClosure[] newClosures = new EventClosure[eventClosures.length + 1];
+    System.arraycopy(eventClosures, 0, newClosures, 0, eventClosures.length);
+    newClosures[eventClosures.length] = closure;
+    er.setEventClosures(eventId, newClosures);
+  }
+
+  /**
+   * Returns the handler registered for a component and event by
+   * {@link #registerEventHandler}, or null if there is none.
+   *
+   * @param dispatchDelegate the delegate
+   * @param componentId the name the handler is registered under
+   * @param eventName the name of the event
+   * @return the handler, or null
+   */
+  public static synchronized EventHandler getEventHandler(HandlesEventDispatching dispatchDelegate, String componentId, String eventName)
+  {
+    EventRegistry er = findEventRegistry(dispatchDelegate);
+    if (er == null) {
+      return null;
     }
+    for (EventClosure eventClosure : er.getEventClosures(eventId(eventName))) {
+      if (eventClosure.componentId.equals(componentId)) {
+        return eventClosure.handler;
+      }
+    }
+    return null;
+  }
 
-    eventClosures.add(new EventClosure(componentId, eventName, null));
+  /**
+   * Registers the handlers of a delegate marked with {@link OnEvent}, by
+   * way of the {@link EventRouter}s generated for its class and its
+   * superclasses, if there are any.  A router only registers the handlers
+   * of its own class, so the superclasses' go first, and a subclass's
+   * handler of the same event of the same component wins.  Form and
+   * FormService call this when they are created.  Finding the routers is
+   * the only reflection involved; events are then routed by the generated
+   * code.
+   *
+   * @param dispatchDelegate the delegate
+   * @return {@code true} if a router was found
+   */
+  public static boolean registerEventRouter(HandlesEventDispatching dispatchDelegate)
+  {
+    List<EventRouter> routers = new ArrayList<EventRouter>();
+    for (Class<?> c = dispatchDelegate.getClass(); c != null; c = c.getSuperclass()) {
+      String name = c.getName();
+      if (name.startsWith("android.") || name.startsWith("java.")) {
+        break;
+      }
+      EventRouter router = findEventRouter(c);
+      if (router != null) {
+        routers.add(router);
+      }
+    }
+    if (routers.isEmpty()) {
+      // Routers are only ever loaded by name, so a shrinker that isn't told
+      // to keep them removes them; see EventRouter.
+      Log.d(LOG_TAG, "No event router for " + dispatchDelegate.getClass().getName()
+          + "; its @OnEvent handlers, if any, are not registered");
+      return false;
+    }
+    for (int i = routers.size() - 1; i >= 0; i--) {
+      routers.get(i).register(dispatchDelegate);
+    }
+    return true;
   }
 
-  public static void unregisterEventForDelegation(HandlesEventDispatching dispatchDelegate, String componentId, String eventName)
+  // Returns the router generated for the class, or null if it has none.
+  private static EventRouter findEventRouter(Class<?> delegateClass)
+  {
+    try {
+      return (EventRouter) Class.forName(delegateClass.getName() + EventRouter.SUFFIX, true,
+          delegateClass.getClassLoader()).getDeclaredConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      // No @OnEvent handlers
+      return null;
+    } catch (InstantiationException e) {
+      throw new IllegalStateException("Unable to create the event router of " + delegateClass.getName(), e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Unable to create the event router of " + delegateClass.getName(), e);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException("Unable to create the event router of " + delegateClass.getName(), e);
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException("Unable to create the event router of " + delegateClass.getName(), e);
+    }
+  }
+
+  public static synchronized void unregisterEventForDelegation(HandlesEventDispatching dispatchDelegate, String componentId, String eventName)
   {
     EventRegistry er = getEventRegistry(dispatchDelegate);
-    Set<EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
-    if ((eventClosures == null) || (eventClosures.isEmpty())) {
+    int eventId = eventId(eventName);
+    EventClosure[] eventClosures = er.getEventClosures(eventId);
+    if (eventClosures.length == 0) {
       return;
     }
-    Set<EventClosure> toDelete = new HashSet<EventClosure>();
+    List<EventClosure> toKeep = new ArrayList<EventClosure>();
     for (EventClosure eventClosure : eventClosures) {
-      if (eventClosure.componentId.equals(componentId)) {
-        toDelete.add(eventClosure);
+      if (!eventClosure.componentId.equals(componentId)) {
+        toKeep.add(eventClosure);
       }
     }
-    for (EventClosure eventClosure : toDelete)
-    {
-      eventClosures.remove(eventClosure);
+    if (toKeep.size() < eventClosures.length) {
+      er.setEventClosures(eventId, toKeep.toArray(new EventClosure[toKeep.size()]));
     }
   }
 
-  public static void unregisterAllEventsForDelegation()
+  public static synchronized void unregisterAllEventsForDelegation()
   {
     for (EventRegistry er : mapDispatchDelegateToEventRegistry.values())
-      er.eventClosuresMap.clear();
+      er.clear();
   }
 
-  public static void removeDispatchDelegate(HandlesEventDispatching dispatchDelegate)
+  public static synchronized void removeDispatchDelegate(HandlesEventDispatching dispatchDelegate)
   {
     EventRegistry er = removeEventRegistry(dispatchDelegate);
     if (er != null)
-      er.eventClosuresMap.clear();
+      er.clear();
+    if (lastEventRegistry == er)
+      lastEventRegistry = null;
+  }
+
+  /**
+   * Returns the number of dispatch delegates with handlers registered, for
+   * checking that they don't leak.
+   *
+   * @return the number of delegates
+   */
+  public static synchronized int dispatchDelegateCount()
+  {
+    return mapDispatchDelegateToEventRegistry.size();
   }
 
   public static boolean dispatchEvent(Component component, String eventName, Object... args)
+  {
+    return dispatchEvent(component, eventId(eventName), args);
+  }
+
+  /**
+   * Dispatches an event with no arguments.
+   *
+   * @param component the component raising the event
+   * @param eventId the event, as returned by {@link #eventId}
+   * @return {@code true} if a handler handled it
+   */
+  public static boolean dispatchEvent(Component component, int eventId)
+  {
+    return dispatchEvent(component, eventId, NO_ARGS);
+  }
+
+  /**
+   * Dispatches an event.
+   *
+   * @param component the component raising the event
+   * @param eventId the event, as returned by {@link #eventId}
+   * @param args the arguments of the event
+   * @return {@code true} if a handler handled it
+   */
+  public static boolean dispatchEvent(Component component, int eventId, Object... args)
   {
     boolean dispatched = false;
     HandlesEventDispatching dispatchDelegate = component.getDispatchDelegate();
-    if (dispatchDelegate.canDispatchEvent(component, eventName)) {
-      EventRegistry er = getEventRegistry(dispatchDelegate);
-      Set<EventClosure> eventClosures = (Set<EventClosure>)er.eventClosuresMap.get(eventName);
-      if ((eventClosures != null) && (eventClosures.size() > 0)) {
-        dispatched = delegateDispatchEvent(dispatchDelegate, eventClosures, component, args);
+    if (dispatchDelegate.canDispatchEvent(component, eventNames[eventId])) {
+      EventRegistry er = findEventRegistry(dispatchDelegate);
+      if (er != null) {
+        EventClosure[] eventClosures = er.getEventClosures(eventId);
+        long start = EventStats.start();
+        for (EventClosure eventClosure : eventClosures) {
+          boolean handled;
+          if (eventClosure.handler != null) {
+            handled = eventClosure.handler.handle(dispatchDelegate, component, args);
+          } else {
+            handled = dispatchDelegate.dispatchEvent(component, eventClosure.componentId, eventClosure.eventName, args);
+          }
+          if (handled)
+          {
+            dispatched = true;
+          }
+        }
+        if (start != 0 && eventClosures.length > 0) {
+          EventStats.record(component, eventId, start);
+        }
       }
     }
     return dispatched;
   }
 
-  private static boolean delegateDispatchEvent(HandlesEventDispatching dispatchDelegate, Set<EventClosure> eventClosures, Component component, Object[] args)
+  /**
+   * Dispatches an event whose arguments are all floats.  A delegate
+   * implementing {@link HandlesFloatEventDispatching} gets the array as it
+   * is; any other gets the arguments boxed, as from
+   * {@link #dispatchEvent(Component, int, Object...)}.  The array can be
+   * reused for the next event once this returns.
+   *
+   * @param component the component raising the event
+   * @param eventId the event, as returned by {@link #eventId}
+   * @param args the arguments of the event
+   * @param argCount the number of arguments in {@code args}
+   * @return {@code true} if a handler handled it
+   */
+  public static boolean dispatchEvent(Component component, int eventId, float[] args, int argCount)
   {
     boolean dispatched = false;
-    for (EventClosure eventClosure : eventClosures) {
-      if (dispatchDelegate.dispatchEvent(component, eventClosure.componentId, eventClosure.eventName, args))
-      {
-        dispatched = true;
+    HandlesEventDispatching dispatchDelegate = component.getDispatchDelegate();
+    if (dispatchDelegate.canDispatchEvent(component, eventNames[eventId])) {
+      EventRegistry er = findEventRegistry(dispatchDelegate);
+      if (er != null) {
+        EventClosure[] eventClosures = er.getEventClosures(eventId);
+        Object[] boxed = null;
+        long start = EventStats.start();
+        for (EventClosure eventClosure : eventClosures) {
+          boolean handled;
+          if (eventClosure.handler != null) {
+            handled = eventClosure.handler.handle(dispatchDelegate, component, args, argCount);
+          } else if (dispatchDelegate instanceof HandlesFloatEventDispatching) {
+            handled = ((HandlesFloatEventDispatching) dispatchDelegate).dispatchEvent(component,
+                eventClosure.componentId, eventId, args, argCount);
+          } else {
+            if (boxed == null) {
+              boxed = box(args, argCount);
+            }
+            handled = dispatchDelegate.dispatchEvent(component, eventClosure.componentId, eventClosure.eventName, boxed);
+          }
+          if (handled)
+          {
+            dispatched = true;
+          }
+        }
+        if (start != 0 && eventClosures.length > 0) {
+          EventStats.record(component, eventId, start);
+        }
       }
     }
     return dispatched;
   }
 
+  static Object[] box(float[] args, int argCount)
+  {
+    Object[] boxed = new Object[argCount];
+    for (int i = 0; i < argCount; i++) {
+      boxed[i] = Float.valueOf(args[i]);
+    }
+    return boxed;
+  }
+
   public static String makeFullEventName(String componentId, String eventName)
   {
     return componentId + '$' + eventName;
@@ -104,12 +453,41 @@ public class EventDispatcher
 
   private static final class EventRegistry
   {
-    private final HandlesEventDispatching dispatchDelegate;
-    private final HashMap<String, Set<EventClosure>> eventClosuresMap = new HashMap<String, Set<EventClosure>>();
+    // Weak, as the registry is the map's value and would otherwise keep its
+    // own key alive
+    private final WeakReference<HandlesEventDispatching> dispatchDelegate;
+    // The closures of each event, by event id.  Replaced as a whole, along
+    // with the closure arrays in it, whenever a closure is added or removed.
+    private volatile EventClosure[][] eventClosuresById = new EventClosure[0][];
+    // Set once the registry is taken out of the map
+    private volatile boolean removed;
 
     EventRegistry(HandlesEventDispatching dispatchDelegate)
     {
-      this.dispatchDelegate = dispatchDelegate;
+      this.dispatchDelegate = new WeakReference<HandlesEventDispatching>(dispatchDelegate);
+    }
+
+    EventClosure[] getEventClosures(int eventId)
+    {
+      EventClosure[][] byId = eventClosuresById;
+      if (eventId >= byId.length || byId[eventId] == null) {
+        return NO_CLOSURES;
+      }
+      return byId[eventId];
+    }
+
+    void setEventClosures(int eventId, EventClosure[] eventClosures)
+    {
+      EventClosure[][] byId = eventClosuresById;
+      EventClosure[][] newById = new EventClosure[Math.max(byId.length, eventId + 1)][];
+      System.arraycopy(byId, 0, newById, 0, byId.length);
+      newById[eventId] = eventClosures;
+      eventClosuresById = newById;
+    }
+
+    void clear()
+    {
+      eventClosuresById = new EventClosure[0][];
     }
   }
 
@@ -117,11 +495,16 @@ public class EventDispatcher
   {
     private final String componentId;
     private final String eventName;
+    private final int eventId;
+    // Called instead of the delegate's dispatchEvent, or null
+    private final EventHandler handler;
 
-    private EventClosure(String componentId, String eventName, Object o)
+    private EventClosure(String componentId, String eventName, int eventId, EventHandler handler)
     {
       this.componentId = componentId;
       this.eventName = eventName;
+      this.eventId = eventId;
+      this.handler = handler;
     }
 
     @Override
@@ -140,13 +523,13 @@ public class EventDispatcher
         return false;
       }
 
-      return this.eventName.equals(that.eventName);
+      return this.eventId == that.eventId;
     }
 
     @Override
     public int hashCode()
     {
-      return 31 * this.eventName.hashCode() + this.componentId.hashCode();
+      return 31 * this.eventId + this.componentId.hashCode();
     }
   }
-}
\ No newline at end of file
+}
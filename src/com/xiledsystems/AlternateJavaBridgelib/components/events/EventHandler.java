@@ -0,0 +1,42 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.events;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+
+/**
+ * Handler of an event that {@link EventDispatcher} calls directly, rather
+ * than through the delegate's dispatchEvent.  The delegate is passed in
+ * rather than kept, so that registering a handler doesn't keep the
+ * delegate from being collected.
+ *
+ */
+public abstract class EventHandler {
+
+  /**
+   * Handles an event.
+   *
+   * @param dispatchDelegate the delegate the handler was registered with
+   * @param component the component raising the event
+   * @param args the arguments of the event
+   * @return {@code true} if the event was handled
+   */
+  public abstract boolean handle(HandlesEventDispatching dispatchDelegate, Component component,
+      Object[] args);
+
+  /**
+   * Handles an event whose arguments are all floats.  This boxes them for
+   * {@link #handle(HandlesEventDispatching, Component, Object[])}; override
+   * it to take them as they are.  The arguments must not be kept.  A
+   * boolean argument is passed as 1 or 0, and so is boxed as a Float.
+   *
+   * @param dispatchDelegate the delegate the handler was registered with
+   * @param component the component raising the event
+   * @param args the arguments of the event
+   * @param argCount the number of arguments in {@code args}
+   * @return {@code true} if the event was handled
+   */
+  public boolean handle(HandlesEventDispatching dispatchDelegate, Component component,
+      float[] args, int argCount) {
+    return handle(dispatchDelegate, component, EventDispatcher.box(args, argCount));
+  }
+}
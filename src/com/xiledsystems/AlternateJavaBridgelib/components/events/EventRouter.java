@@ -0,0 +1,48 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.events;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching;
+
+/**
+ * Registers the {@link OnEvent} handlers of a class.  Implementations are
+ * generated by the annotation processor, named after the class with
+ * {@link #SUFFIX} appended and placed in its package.
+ *
+ * <p>Routers are found by name when a Form or FormService is created, and
+ * nothing refers to them otherwise, so ProGuard removes or renames them
+ * unless told to keep them:
+ *
+ * <pre>
+ *   -keep class * implements com.xiledsystems.AlternateJavaBridgelib.components.events.EventRouter {
+ *     public &lt;init&gt;();
+ *   }
+ *   -keepnames class * implements com.xiledsystems.AlternateJavaBridgelib.components.HandlesEventDispatching
+ * </pre>
+ *
+ * The second rule keeps the names of the Forms and FormServices, which the
+ * routers' names are made from.  Without the rules the handlers are
+ * silently never called; {@link EventDispatcher#registerEventRouter} logs
+ * when it finds no router.
+ *
+ */
+public interface EventRouter {
+
+  /**
+   * What the name of a generated router adds to the name of its class.
+   */
+  public static final String SUFFIX = "_EventRouter";
+
+  /**
+   * The name routers register their handlers under.  A router registers
+   * one handler per event, which finds the method for the component; a
+   * subclass's router replaces its superclass's handler, and passes on to
+   * it the components it has no method for.
+   */
+  public static final String COMPONENT_ID = "$EventRouter";
+
+  /**
+   * Registers the handlers of a delegate with {@link EventDispatcher}.
+   *
+   * @param dispatchDelegate an instance of the router's class
+   */
+  public void register(HandlesEventDispatching dispatchDelegate);
+}
@@ -0,0 +1,363 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.events;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+
+/**
+ * Optional instrumentation of {@link EventDispatcher}: how often each event
+ * of each type of component is dispatched, and how long its handlers take.
+ *
+ * <p>Recording is off until {@link #setEnabled(boolean) enabled}, and costs a
+ * single volatile read per dispatch while off, so it can be left in
+ * production builds.  While on, each dispatch is timed and recorded without
+ * locking: a count, a total, a maximum, and a histogram in the style of
+ * HdrHistogram, with buckets a power of two wide split into
+ * {@link #SUB_BUCKETS} linear steps, so percentiles are within an eighth of
+ * their true value.
+ *
+ * <p>{@link #snapshot()} copies what has been recorded, and
+ * {@link #startLogging(int)} writes it to the log every so often.
+ *
+ */
+public final class EventStats {
+
+  private static final String LOG_TAG = "EventStats";
+
+  /**
+   * The number of buckets each power of two of nanoseconds is split into.
+   */
+  public static final int SUB_BUCKETS = 8;
+  private static final int SUB_BUCKET_BITS = 3;
+
+  // Times of 2^MAX_EXPONENT ns (about 18 minutes) and over share a bucket.
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private static volatile boolean enabled;
+  private static volatile long windowStart = System.nanoTime();
+
+  // Recorders by component class, each an array indexed by event id,
+  // replaced when it needs to grow.
+  private static final ConcurrentHashMap<Class<?>, Recorder[]> recorders =
+      new ConcurrentHashMap<Class<?>, Recorder[]>();
+
+  private static Handler logHandler;
+  private static Runnable logger;
+
+  private EventStats() {
+  }
+
+  // The figures of one event of one type of component
+  private static final class Recorder {
+    private final Class<?> componentType;
+    private final int eventId;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private Recorder(Class<?> componentType, int eventId) {
+      this.componentType = componentType;
+      this.eventId = eventId;
+    }
+
+    private void record(long nanos) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+      buckets.incrementAndGet(bucketOf(nanos));
+    }
+  }
+
+  /**
+   * What was recorded for one event of one type of component.
+   */
+  public static final class Snapshot {
+    private final Class<?> componentType;
+    private final String eventName;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long windowNanos;
+    private final long[] buckets;
+
+    private Snapshot(Recorder recorder, long windowNanos) {
+      componentType = recorder.componentType;
+      eventName = EventDispatcher.eventName(recorder.eventId);
+      buckets = new long[BUCKETS];
+      long total = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets[i] = recorder.buckets.get(i);
+        total += buckets[i];
+      }
+      // Counted from the histogram so that the percentiles agree with it,
+      // however the copy interleaved with recording.
+      count = total;
+      totalNanos = recorder.totalNanos.get();
+      maxNanos = recorder.maxNanos.get();
+      this.windowNanos = windowNanos;
+    }
+
+    public Class<?> getComponentType() {
+      return componentType;
+    }
+
+    public String getEventName() {
+      return eventName;
+    }
+
+    /**
+     * Returns the number of times the event was dispatched.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Returns the time spent in the event's handlers, in nanoseconds.
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Returns the longest time a dispatch of the event took, in
+     * nanoseconds.
+     */
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    /**
+     * Returns the average time a dispatch of the event took, in
+     * nanoseconds.
+     */
+    public long getMeanNanos() {
+      return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Returns how many times a second the event was dispatched, since
+     * recording was last reset.
+     */
+    public double getRate() {
+      return windowNanos <= 0 ? 0 : count * 1e9 / windowNanos;
+    }
+
+    /**
+     * Returns the time within which the given fraction of dispatches took,
+     * to within a bucket.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the time in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Illegal percentile " + percentile);
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long wanted = Math.max(1, (long) Math.ceil(count * percentile / 100));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets[i];
+        if (seen >= wanted) {
+          return Math.min(maxNanos, highestInBucket(i));
+        }
+      }
+      return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      String typeName = componentType.getSimpleName();
+      if (typeName.length() == 0) {
+        typeName = componentType.getName();  // anonymous
+      }
+      return typeName + "." + eventName
+          + ": " + count + " (" + Math.round(getRate()) + "/s)"
+          + ", total " + totalNanos / 1000000 + " ms"
+          + ", mean " + getMeanNanos() / 1000 + " us"
+          + ", p50 " + getPercentileNanos(50) / 1000 + " us"
+          + ", p99 " + getPercentileNanos(99) / 1000 + " us"
+          + ", max " + maxNanos / 1000 + " us";
+    }
+  }
+
+  /**
+   * Specifies whether dispatches are recorded.
+   *
+   * @param enable {@code true} to record them
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /**
+   * Returns whether dispatches are recorded.
+   *
+   * @return {@code true} if they are
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Throws away everything recorded, and starts measuring rates again from
+   * now.
+   */
+  public static void reset() {
+    recorders.clear();
+    windowStart = System.nanoTime();
+  }
+
+  /**
+   * Copies what has been recorded, the events whose handlers took the most
+   * time in all first.
+   *
+   * @return a snapshot of each event dispatched
+   */
+  public static List<Snapshot> snapshot() {
+    long window = System.nanoTime() - windowStart;
+    List<Snapshot> snapshots = new ArrayList<Snapshot>();
+    for (Map.Entry<Class<?>, Recorder[]> entry : recorders.entrySet()) {
+      for (Recorder recorder : entry.getValue()) {
+        if (recorder != null && recorder.count.get() > 0) {
+          snapshots.add(new Snapshot(recorder, window));
+        }
+      }
+    }
+    Collections.sort(snapshots, new Comparator<Snapshot>() {
+      @Override
+      public int compare(Snapshot a, Snapshot b) {
+        return a.totalNanos < b.totalNanos ? 1 : (a.totalNanos > b.totalNanos ? -1 : 0);
+      }
+    });
+    return snapshots;
+  }
+
+  /**
+   * Writes a snapshot to the log every so often, from the main thread,
+   * until {@link #stopLogging()}.  Recording must be enabled separately.
+   *
+   * @param intervalMillis the time between dumps, in milliseconds
+   */
+  public static synchronized void startLogging(final int intervalMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Illegal logging interval " + intervalMillis);
+    }
+    stopLogging();
+    logHandler = new Handler(Looper.getMainLooper());
+    logger = new Runnable() {
+      @Override
+      public void run() {
+        logSnapshot();
+        synchronized (EventStats.class) {
+          if (logger == this) {
+            logHandler.postDelayed(this, intervalMillis);
+          }
+        }
+      }
+    };
+    logHandler.postDelayed(logger, intervalMillis);
+  }
+
+  /**
+   * Stops the dumps started by {@link #startLogging(int)}.
+   */
+  public static synchronized void stopLogging() {
+    if (logger != null) {
+      logHandler.removeCallbacks(logger);
+      logger = null;
+      logHandler = null;
+    }
+  }
+
+  /**
+   * Writes a snapshot to the log now.
+   */
+  public static void logSnapshot() {
+    List<Snapshot> snapshots = snapshot();
+    Log.i(LOG_TAG, snapshots.size() + " events recorded");
+    for (Snapshot snapshot : snapshots) {
+      Log.i(LOG_TAG, snapshot.toString());
+    }
+  }
+
+  // Recording, for EventDispatcher
+
+  // Returns the time to pass to record(), or 0 if recording is off.
+  static long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  static void record(Component component, int eventId, long start) {
+    long nanos = System.nanoTime() - start;
+    recorderFor(component.getClass(), eventId).record(Math.max(0, nanos));
+  }
+
+  private static Recorder recorderFor(Class<?> componentType, int eventId) {
+    Recorder[] byId = recorders.get(componentType);
+    if (byId != null && eventId < byId.length && byId[eventId] != null) {
+      return byId[eventId];
+    }
+    synchronized (recorders) {
+      byId = recorders.get(componentType);
+      if (byId == null || eventId >= byId.length) {
+        Recorder[] grown = new Recorder[eventId + 1];
+        if (byId != null) {
+          System.arraycopy(byId, 0, grown, 0, byId.length);
+        }
+        byId = grown;
+      } else if (byId[eventId] != null) {
+        return byId[eventId];
+      } else {
+        byId = byId.clone();
+      }
+      Recorder recorder = new Recorder(componentType, eventId);
+      byId[eventId] = recorder;
+      recorders.put(componentType, byId);
+      return recorder;
+    }
+  }
+
+  // Histogram buckets: values below SUB_BUCKETS have one each; beyond,
+  // each power of two is split into SUB_BUCKETS.
+  static int bucketOf(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long highestInBucket(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int sub = bucket % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return (1L << exponent) + (sub + 1) * width - 1;
+  }
+}
@@ -0,0 +1,49 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.events;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a Form or FormService as the handler of an event, in
+ * place of a test in dispatchEvent such as
+ * {@code if (component == btn1 && eventName.equals("Click"))}.
+ *
+ * <p>The annotation processor in {@code processor/} generates an
+ * {@link EventRouter} for each class with such methods, which Form and
+ * FormService register when they are created.  The method's parameters are
+ * the arguments of the event, in order, and it returns either nothing or
+ * whether it handled the event.  Neither it nor the component's field can
+ * be private.
+ *
+ * <pre>
+ *   Button btn1;
+ *
+ *   &#64;OnEvent(component = "btn1", event = "Click")
+ *   void btn1Click() {
+ *     ...
+ *   }
+ *
+ *   &#64;OnEvent(component = "canvas1", event = "Dragged")
+ *   void canvas1Dragged(float startX, float startY, float prevX, float prevY,
+ *       float currentX, float currentY, boolean draggedSprite) {
+ *     ...
+ *   }
+ * </pre>
+ *
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface OnEvent {
+  /**
+   * The name of the field holding the component, or the empty string for
+   * the Form or FormService itself.
+   */
+  String component() default "";
+
+  /**
+   * The name of the event.
+   */
+  String event();
+}
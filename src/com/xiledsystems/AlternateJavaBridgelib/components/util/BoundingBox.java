@@ -4,6 +4,10 @@ package com.xiledsystems.AlternateJavaBridgelib.components.util;
 /**
  * Bounding box abstraction, similar to {@link android.graphics.Rect}.
  *
+ * <p>Like {@code Rect} it is mutable, so that code running for every touch
+ * or every frame can reuse one instance through {@link #set} rather than
+ * allocate a new one each time.
+ *
  */
 public final class BoundingBox {
   private double left;
@@ -26,6 +30,22 @@ public final class BoundingBox {
     bottom = b;
   }
 
+  /**
+   * Changes all the coordinates of this bounding box.  All coordinates are
+   * inclusive.
+   *
+   * @param l leftmost x-coordinate
+   * @param t topmost y-coordinate
+   * @param r rightmost x-coordinate
+   * @param b bottommost y-coordinate
+   */
+  public void set(double l, double t, double r, double b) {
+    left = l;
+    top = t;
+    right = r;
+    bottom = b;
+  }
+
   /**
    * Determines whether this bounding box intersects with the passed bounding
    * box and, if so, mutates the bounding box to be the intersection.  This was
@@ -0,0 +1,224 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.util;
+
+/**
+ * Bitmask of the opaque pixels of an image, for telling whether two images
+ * really overlap rather than just their bounding boxes.
+ *
+ * <p>Each row is packed into longs, 64 pixels to a long with the leftmost
+ * pixel in the lowest bit, so two masks are compared 64 pixels at a time by
+ * shifting the rows of one into line with the other and ANDing them.
+ * Masks are not changed once built, so one can be shared by every sprite
+ * showing the same image.
+ *
+ */
+public final class CollisionMask {
+
+  private final int width;
+  private final int height;
+  private final int wordsPerRow;
+  private final long[] bits;
+
+  private CollisionMask(int width, int height) {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("Illegal mask size " + width + "x" + height);
+    }
+    this.width = width;
+    this.height = height;
+    wordsPerRow = (width + 63) >>> 6;
+    bits = new long[wordsPerRow * height];
+  }
+
+  /**
+   * Builds the mask of a row of ARGB pixels at a time, as they come from an
+   * image.
+   *
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param rows supplies the rows of the image
+   * @param alphaThreshold the lowest alpha counted as opaque
+   * @return the mask
+   */
+  public static CollisionMask fromRows(int width, int height, PixelRows rows,
+      int alphaThreshold) {
+    CollisionMask mask = new CollisionMask(width, height);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      rows.getRow(y, row);
+      int base = y * mask.wordsPerRow;
+      for (int x = 0; x < width; x++) {
+        if ((row[x] >>> 24) >= alphaThreshold) {
+          mask.bits[base + (x >>> 6)] |= 1L << (x & 63);
+        }
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Source of the pixels of an image, a row at a time.
+   */
+  public interface PixelRows {
+    /**
+     * Copies a row of the image, as ARGB colors.
+     *
+     * @param y the row
+     * @param row where to put the pixels
+     */
+    void getRow(int y, int[] row);
+  }
+
+  /**
+   * Returns the width of the mask.
+   *
+   * @return the width in pixels
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the mask.
+   *
+   * @return the height in pixels
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Determines whether a pixel is opaque.
+   *
+   * @param x the column
+   * @param y the row
+   * @return {@code true} if the pixel is in the mask and opaque
+   */
+  public boolean get(int x, int y) {
+    if (x < 0 || y < 0 || x >= width || y >= height) {
+      return false;
+    }
+    return (bits[y * wordsPerRow + (x >>> 6)] & (1L << (x & 63))) != 0;
+  }
+
+  /**
+   * Returns a copy of this mask stretched to another size, sampling the
+   * nearest pixel, for an image drawn at a size other than its own.
+   *
+   * @param newWidth the new width
+   * @param newHeight the new height
+   * @return the stretched mask, or this mask if the size is the same
+   */
+  public CollisionMask scaled(int newWidth, int newHeight) {
+    if (newWidth == width && newHeight == height) {
+      return this;
+    }
+    CollisionMask mask = new CollisionMask(newWidth, newHeight);
+    if (width == 0 || height == 0) {
+      return mask;
+    }
+    for (int y = 0; y < newHeight; y++) {
+      int sourceY = (int) ((long) y * height / newHeight);
+      int base = y * mask.wordsPerRow;
+      for (int x = 0; x < newWidth; x++) {
+        if (get((int) ((long) x * width / newWidth), sourceY)) {
+          mask.bits[base + (x >>> 6)] |= 1L << (x & 63);
+        }
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Determines whether this mask, placed at (x, y), and another mask,
+   * placed at (otherX, otherY), have an opaque pixel in the same place.
+   *
+   * @param x where the left edge of this mask is
+   * @param y where the top edge of this mask is
+   * @param other the other mask
+   * @param otherX where the left edge of the other mask is
+   * @param otherY where the top edge of the other mask is
+   * @return {@code true} if they overlap, {@code false} otherwise
+   */
+  public boolean overlaps(int x, int y, CollisionMask other, int otherX, int otherY) {
+    int top = Math.max(y, otherY);
+    int bottom = Math.min(y + height, otherY + other.height);
+    int left = Math.max(x, otherX);
+    int right = Math.min(x + width, otherX + other.width);
+    if (top >= bottom || left >= right) {
+      return false;
+    }
+    // Columns of the overlap, in this mask's coordinates, and the offset of
+    // the other mask's columns from this one's.
+    int firstWord = (left - x) >>> 6;
+    int lastWord = (right - x - 1) >>> 6;
+    int shift = otherX - x;
+    for (int row = top; row < bottom; row++) {
+      int base = (row - y) * wordsPerRow;
+      int otherBase = (row - otherY) * other.wordsPerRow;
+      for (int word = firstWord; word <= lastWord; word++) {
+        long mine = bits[base + word];
+        if (mine != 0 && (mine & other.rowBits(otherBase, (word << 6) - shift)) != 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Determines whether this mask, placed at (x, y), has an opaque pixel in
+   * the given rectangle.
+   *
+   * @param x where the left edge of this mask is
+   * @param y where the top edge of this mask is
+   * @param left leftmost column of the rectangle
+   * @param top uppermost row of the rectangle
+   * @param right column just past the rectangle
+   * @param bottom row just past the rectangle
+   * @return {@code true} if they overlap, {@code false} otherwise
+   */
+  public boolean overlapsRectangle(int x, int y, int left, int top, int right, int bottom) {
+    int firstRow = Math.max(0, top - y);
+    int lastRow = Math.min(height, bottom - y);
+    int firstColumn = Math.max(0, left - x);
+    int lastColumn = Math.min(width, right - x);
+    if (firstRow >= lastRow || firstColumn >= lastColumn) {
+      return false;
+    }
+    int firstWord = firstColumn >>> 6;
+    int lastWord = (lastColumn - 1) >>> 6;
+    long firstBits = -1L << (firstColumn & 63);
+    long lastBits = -1L >>> (63 - ((lastColumn - 1) & 63));
+    for (int row = firstRow; row < lastRow; row++) {
+      int base = row * wordsPerRow;
+      for (int word = firstWord; word <= lastWord; word++) {
+        long wanted = -1L;
+        if (word == firstWord) {
+          wanted &= firstBits;
+        }
+        if (word == lastWord) {
+          wanted &= lastBits;
+        }
+        if ((bits[base + word] & wanted) != 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // Returns the 64 pixels of a row starting at the given column, which may
+  // be outside the mask; pixels outside it are clear.
+  private long rowBits(int base, int column) {
+    int word = column >> 6;
+    int offset = column & 63;
+    long low = word(base, word) >>> offset;
+    if (offset == 0) {
+      return low;
+    }
+    return low | (word(base, word + 1) << (64 - offset));
+  }
+
+  private long word(int base, int word) {
+    return (word < 0 || word >= wordsPerRow) ? 0 : bits[base + word];
+  }
+}
@@ -0,0 +1,276 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only list of items ordered by layer, lowest first, used to keep
+ * sprites in drawing order.  Items in the same layer are kept in the order
+ * they were put there.
+ *
+ * <p>Each layer is a bucket of its own.  Adding an item appends it to its
+ * bucket, and removing one leaves a gap where it was, closed up once a
+ * bucket is half gaps, so both take amortized constant time, plus a lookup
+ * in the sorted map of layers, logarithmic in the number of layers.
+ * Changing an item's layer is a removal and an addition, and moving it to
+ * the top of its own layer is cheaper still.
+ *
+ * <p>The flat order seen through {@link #get(int)}, {@link #indexOf(Object)}
+ * and iteration is not kept up to date as items change: the first read
+ * after any change rebuilds it, in time linear in the number of items.
+ * Any number of changes between reads cost one rebuild, so a canvas that
+ * reads the order once a frame pays for one rebuild a frame however many
+ * sprites changed layer.  Between changes, {@link #indexOf(Object)} takes
+ * constant time, so a few items can be put in list order without
+ * searching the list.  Items can also be put in list order without the
+ * list at all, by comparing their layers and then their
+ * {@link #getSequence(Object) sequence numbers}.
+ *
+ * @param <T> the type of item stored
+ */
+public final class LayeredList<T> extends AbstractList<T> {
+
+  private static final class Layer<T> {
+    private final double z;
+    // The layer's key in the map, boxed once rather than on every change
+    private final Double key;
+    // Items in the order they were put in the layer, with null where an
+    // item has been removed
+    private final List<Node<T>> nodes = new ArrayList<Node<T>>();
+    private int size;
+
+    private Layer(Double key) {
+      this.z = key.doubleValue();
+      this.key = key;
+    }
+  }
+
+  private static final class Node<T> {
+    private final T item;
+    private final Layer<T> layer;
+    private int slot;   // in the layer's nodes
+    private int index;  // in the flat order
+    private long sequence;
+
+    private Node(T item, Layer<T> layer) {
+      this.item = item;
+      this.layer = layer;
+    }
+  }
+
+  // Layers in use, lowest first
+  private final TreeMap<Double, Layer<T>> layers = new TreeMap<Double, Layer<T>>();
+
+  // Maps each item to its node, which knows its layer and its index.
+  private final Map<T, Node<T>> nodes = new HashMap<T, Node<T>>();
+
+  // The layer last added to, which sprites being set up mostly share
+  private Layer<T> lastLayer;
+
+  // Numbers items in the order they were put in their layers
+  private long nextSequence;
+
+  // Every item in order, rebuilt when stale
+  private final List<Node<T>> order = new ArrayList<Node<T>>();
+  private boolean orderStale;
+
+  /**
+   * Adds an item above every other item in the given layer.
+   *
+   * @param item the item to add
+   * @param z the layer
+   * @throws IllegalArgumentException if the item is already in the list
+   */
+  public void add(T item, double z) {
+    if (nodes.containsKey(item)) {
+      throw new IllegalArgumentException("Item already added: " + item);
+    }
+    Layer<T> layer = lastLayer;
+    if (layer == null || layer.size == 0 || !sameLayer(layer, z)) {
+      Double key = Double.valueOf(z);
+      layer = layers.get(key);
+      if (layer == null) {
+        layer = new Layer<T>(key);
+        layers.put(key, layer);
+      }
+      lastLayer = layer;
+    }
+    Node<T> node = new Node<T>(item, layer);
+    append(layer, node);
+    layer.size++;
+    nodes.put(item, node);
+    changed();
+  }
+
+  /**
+   * Moves an item above every other item in the given layer, which may be
+   * the one it is in.  Does nothing if the item is not in the list.
+   *
+   * @param item the item to move
+   * @param z the new layer
+   */
+  public void setLayer(T item, double z) {
+    Node<T> node = nodes.get(item);
+    if (node == null) {
+      return;
+    }
+    Layer<T> layer = node.layer;
+    if (!sameLayer(layer, z)) {
+      remove(item);
+      add(item, z);
+      return;
+    }
+    // Staying in the same layer, the item just moves to its end.
+    layer.nodes.set(node.slot, null);
+    append(layer, node);
+    if (layer.size < layer.nodes.size() / 2) {
+      compact(layer);
+    }
+    changed();
+  }
+
+  /**
+   * Returns the layer of an item.
+   *
+   * @param item the item
+   * @return the item's layer
+   * @throws IllegalArgumentException if the item is not in the list
+   */
+  public double getLayer(T item) {
+    Node<T> node = nodes.get(item);
+    if (node == null) {
+      throw new IllegalArgumentException("Item not added: " + item);
+    }
+    return node.layer.z;
+  }
+
+  /**
+   * Returns the sequence number of an item.  Items in the same layer are in
+   * the order of their sequence numbers, which change only when they are
+   * added or their layer is set.
+   *
+   * @param item the item
+   * @return the item's sequence number
+   * @throws IllegalArgumentException if the item is not in the list
+   */
+  public long getSequence(T item) {
+    Node<T> node = nodes.get(item);
+    if (node == null) {
+      throw new IllegalArgumentException("Item not added: " + item);
+    }
+    return node.sequence;
+  }
+
+  @Override
+  public boolean remove(Object item) {
+    Node<T> node = nodes.remove(item);
+    if (node == null) {
+      return false;
+    }
+    Layer<T> layer = node.layer;
+    layer.nodes.set(node.slot, null);
+    layer.size--;
+    if (layer.size == 0) {
+      layers.remove(layer.key);
+    } else if (layer.size < layer.nodes.size() / 2) {
+      compact(layer);
+    }
+    changed();
+    return true;
+  }
+
+  @Override
+  public boolean contains(Object item) {
+    return nodes.containsKey(item);
+  }
+
+  @Override
+  public int indexOf(Object item) {
+    Node<T> node = nodes.get(item);
+    if (node == null) {
+      return -1;
+    }
+    updateOrder();
+    return node.index;
+  }
+
+  @Override
+  public int lastIndexOf(Object item) {
+    // Items are only in the list once.
+    return indexOf(item);
+  }
+
+  @Override
+  public void clear() {
+    layers.clear();
+    nodes.clear();
+    lastLayer = null;
+    changed();
+  }
+
+  @Override
+  public T get(int index) {
+    updateOrder();
+    return order.get(index).item;
+  }
+
+  @Override
+  public int size() {
+    return nodes.size();
+  }
+
+  private void updateOrder() {
+    if (!orderStale) {
+      return;
+    }
+    order.clear();
+    for (Layer<T> layer : layers.values()) {
+      List<Node<T>> layerNodes = layer.nodes;
+      for (int i = 0; i < layerNodes.size(); i++) {
+        Node<T> node = layerNodes.get(i);
+        if (node != null) {
+          node.index = order.size();
+          order.add(node);
+        }
+      }
+    }
+    orderStale = false;
+  }
+
+  // Compares the way the map's keys do, so that 0.0 and -0.0 are distinct
+  // layers and NaN is one.
+  private static boolean sameLayer(Layer<?> layer, double z) {
+    return Double.compare(layer.z, z) == 0;
+  }
+
+  // Puts a node at the end of a layer, after every other item in it.
+  private void append(Layer<T> layer, Node<T> node) {
+    node.slot = layer.nodes.size();
+    node.sequence = ++nextSequence;
+    layer.nodes.add(node);
+  }
+
+  // Closes up the gaps left in a layer by removed items.
+  private static <T> void compact(Layer<T> layer) {
+    List<Node<T>> layerNodes = layer.nodes;
+    int kept = 0;
+    for (int i = 0; i < layerNodes.size(); i++) {
+      Node<T> node = layerNodes.get(i);
+      if (node != null) {
+        node.slot = kept;
+        layerNodes.set(kept++, node);
+      }
+    }
+    layerNodes.subList(kept, layerNodes.size()).clear();
+  }
+
+  private void changed() {
+    orderStale = true;
+    // Lets iterators in use fail fast, as for other lists.
+    modCount++;
+  }
+}
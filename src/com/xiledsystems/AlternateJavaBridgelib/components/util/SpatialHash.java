@@ -0,0 +1,398 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid used as a broadphase for collision detection.  Each item is
+ * stored in every cell its bounding box touches, so finding the items that
+ * might overlap a given one only requires looking at the cells it occupies
+ * rather than at every item.  Items returned by a query are only candidates;
+ * the caller is responsible for doing the exact test.
+ *
+ * <p>Once the cells in use have been created, moving items and querying
+ * allocate nothing: cells are found through an open-addressing table keyed
+ * by primitive longs, and emptied cells are kept for reuse.
+ *
+ * @param <T> the type of item stored
+ */
+public final class SpatialHash<T> {
+
+  /**
+   * Default width and height, in pixels, of a cell.
+   */
+  public static final int DEFAULT_CELL_SIZE = 64;
+
+  private int cellSize;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // Open-addressing table, with linear probing, mapping a packed
+  // (column, row) key to the entries occupying that cell.  A slot is free
+  // when its cell is null.  The capacity is a power of two.
+  private long[] cellKeys = new long[INITIAL_CAPACITY];
+  private List<Entry<T>>[] cells = newCellArray(INITIAL_CAPACITY);
+  private int cellCount;
+
+  // Emptied cell lists, kept to be reused
+  private final List<List<Entry<T>>> spareCells = new ArrayList<List<Entry<T>>>();
+
+  // Maps each item to its entry, which remembers the cells it occupies.
+  private final Map<T, Entry<T>> entries = new HashMap<T, Entry<T>>();
+
+  // Incremented for every query so that an item found in several cells is
+  // only reported once.
+  private int queryStamp;
+
+  private static final class Entry<T> {
+    private final T item;
+    private double left;
+    private double top;
+    private double right;
+    private double bottom;
+    private int minColumn;
+    private int minRow;
+    private int maxColumn;
+    private int maxRow;
+    private int stamp;
+
+    private Entry(T item) {
+      this.item = item;
+    }
+  }
+
+  /**
+   * Creates a spatial hash with cells of {@link #DEFAULT_CELL_SIZE} pixels.
+   */
+  public SpatialHash() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * Creates a spatial hash.
+   *
+   * @param cellSize the width and height of a cell, in pixels
+   */
+  public SpatialHash(int cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("Illegal cell size " + cellSize);
+    }
+    this.cellSize = cellSize;
+  }
+
+  /**
+   * Returns the width and height of a cell, in pixels.
+   *
+   * @return the cell size
+   */
+  public int getCellSize() {
+    return cellSize;
+  }
+
+  /**
+   * Changes the cell size, redistributing every item over the new cells.
+   *
+   * @param cellSize the width and height of a cell, in pixels
+   */
+  public void setCellSize(int cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("Illegal cell size " + cellSize);
+    }
+    if (cellSize == this.cellSize) {
+      return;
+    }
+    this.cellSize = cellSize;
+    clearCells();
+    for (Entry<T> entry : entries.values()) {
+      computeRange(entry);
+      addToCells(entry);
+    }
+  }
+
+  /**
+   * Inserts an item, or moves it if it is already present.  All coordinates
+   * are inclusive.  Moving an item within the cells it already occupies
+   * costs no more than recording its new bounds.
+   *
+   * @param item the item
+   * @param left leftmost x-coordinate
+   * @param top topmost y-coordinate
+   * @param right rightmost x-coordinate
+   * @param bottom bottommost y-coordinate
+   */
+  public void update(T item, double left, double top, double right, double bottom) {
+    Entry<T> entry = entries.get(item);
+    boolean added = false;
+    if (entry == null) {
+      entry = new Entry<T>(item);
+      entries.put(item, entry);
+      added = true;
+    }
+    entry.left = left;
+    entry.top = top;
+    entry.right = right;
+    entry.bottom = bottom;
+
+    int minColumn = cellOf(left);
+    int minRow = cellOf(top);
+    int maxColumn = cellOf(right);
+    int maxRow = cellOf(bottom);
+    if (!added && minColumn == entry.minColumn && minRow == entry.minRow
+        && maxColumn == entry.maxColumn && maxRow == entry.maxRow) {
+      return;
+    }
+    if (!added) {
+      removeFromCells(entry);
+    }
+    entry.minColumn = minColumn;
+    entry.minRow = minRow;
+    entry.maxColumn = maxColumn;
+    entry.maxRow = maxRow;
+    addToCells(entry);
+  }
+
+  /**
+   * Removes an item.  Does nothing if the item is not present.
+   *
+   * @param item the item to remove
+   */
+  public void remove(T item) {
+    Entry<T> entry = entries.remove(item);
+    if (entry != null) {
+      removeFromCells(entry);
+    }
+  }
+
+  /**
+   * Indicates whether the item has been inserted.
+   *
+   * @param item the item
+   * @return {@code true} if the item is present
+   */
+  public boolean contains(T item) {
+    return entries.containsKey(item);
+  }
+
+  /**
+   * Removes all items.
+   */
+  public void clear() {
+    clearCells();
+    entries.clear();
+  }
+
+  /**
+   * Adds to {@code out} every item sharing at least one cell with the given
+   * item, other than the item itself.  Nothing is added if the item is not
+   * present.
+   *
+   * @param item the item whose neighbours are wanted
+   * @param out the list to which candidates are appended
+   */
+  public void queryNeighbours(T item, List<T> out) {
+    Entry<T> entry = entries.get(item);
+    if (entry == null) {
+      return;
+    }
+    int stamp = ++queryStamp;
+    entry.stamp = stamp;
+    collect(entry.minColumn, entry.minRow, entry.maxColumn, entry.maxRow, stamp, out);
+  }
+
+  /**
+   * Adds to {@code out} every item sharing at least one cell with the given
+   * box.  All coordinates are inclusive.
+   *
+   * @param left leftmost x-coordinate
+   * @param top topmost y-coordinate
+   * @param right rightmost x-coordinate
+   * @param bottom bottommost y-coordinate
+   * @param out the list to which candidates are appended
+   */
+  public void query(double left, double top, double right, double bottom, List<T> out) {
+    int stamp = ++queryStamp;
+    collect(cellOf(left), cellOf(top), cellOf(right), cellOf(bottom), stamp, out);
+  }
+
+  private void collect(int minColumn, int minRow, int maxColumn, int maxRow, int stamp,
+      List<T> out) {
+    // A box spanning more cells than the table has slots, such as the whole
+    // of a zoomed-out view, is cheaper to answer by going through the cells
+    // in use.
+    long span = ((long) maxColumn - minColumn + 1) * ((long) maxRow - minRow + 1);
+    if (span > cells.length) {
+      for (int slot = 0; slot < cells.length; slot++) {
+        List<Entry<T>> cell = cells[slot];
+        if (cell == null) {
+          continue;
+        }
+        long key = cellKeys[slot];
+        int column = (int) (key >> 32);
+        int row = (int) key;
+        if (column >= minColumn && column <= maxColumn && row >= minRow && row <= maxRow) {
+          collect(cell, stamp, out);
+        }
+      }
+      return;
+    }
+    for (int column = minColumn; column <= maxColumn; column++) {
+      for (int row = minRow; row <= maxRow; row++) {
+        List<Entry<T>> cell = getCell(key(column, row));
+        if (cell != null) {
+          collect(cell, stamp, out);
+        }
+      }
+    }
+  }
+
+  private static <T> void collect(List<Entry<T>> cell, int stamp, List<T> out) {
+    for (int i = 0; i < cell.size(); i++) {
+      Entry<T> entry = cell.get(i);
+      if (entry.stamp != stamp) {
+        entry.stamp = stamp;
+        out.add(entry.item);
+      }
+    }
+  }
+
+  private void computeRange(Entry<T> entry) {
+    entry.minColumn = cellOf(entry.left);
+    entry.minRow = cellOf(entry.top);
+    entry.maxColumn = cellOf(entry.right);
+    entry.maxRow = cellOf(entry.bottom);
+  }
+
+  private void addToCells(Entry<T> entry) {
+    for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+      for (int row = entry.minRow; row <= entry.maxRow; row++) {
+        long key = key(column, row);
+        List<Entry<T>> cell = getCell(key);
+        if (cell == null) {
+          cell = spareCells.isEmpty()
+              ? new ArrayList<Entry<T>>()
+              : spareCells.remove(spareCells.size() - 1);
+          putCell(key, cell);
+        }
+        cell.add(entry);
+      }
+    }
+  }
+
+  private void removeFromCells(Entry<T> entry) {
+    for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+      for (int row = entry.minRow; row <= entry.maxRow; row++) {
+        long key = key(column, row);
+        List<Entry<T>> cell = getCell(key);
+        if (cell != null) {
+          cell.remove(entry);
+          if (cell.isEmpty()) {
+            removeCell(key);
+            spareCells.add(cell);
+          }
+        }
+      }
+    }
+  }
+
+  private int cellOf(double coordinate) {
+    return (int) Math.floor(coordinate / cellSize);
+  }
+
+  private static long key(int column, int row) {
+    return ((long) column << 32) | (row & 0xffffffffL);
+  }
+
+  // Methods for the table of cells
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <T> List<Entry<T>>[] newCellArray(int capacity) {
+    return new List[capacity];
+  }
+
+  private int slotOf(long key) {
+    // Mix the bits so that neighbouring cells spread over the table.
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & (cells.length - 1);
+  }
+
+  private List<Entry<T>> getCell(long key) {
+    int mask = cells.length - 1;
+    for (int slot = slotOf(key); cells[slot] != null; slot = (slot + 1) & mask) {
+      if (cellKeys[slot] == key) {
+        return cells[slot];
+      }
+    }
+    return null;
+  }
+
+  // Adds a cell that is not in the table yet.
+  private void putCell(long key, List<Entry<T>> cell) {
+    if ((cellCount + 1) * 2 > cells.length) {
+      resizeCells(cells.length * 2);
+    }
+    int mask = cells.length - 1;
+    int slot = slotOf(key);
+    while (cells[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    cellKeys[slot] = key;
+    cells[slot] = cell;
+    cellCount++;
+  }
+
+  private void removeCell(long key) {
+    int mask = cells.length - 1;
+    int slot = slotOf(key);
+    while (cells[slot] != null && cellKeys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    if (cells[slot] == null) {
+      return;
+    }
+    cells[slot] = null;
+    cellCount--;
+    // Move later cells of the same probe run back into the freed slot, so
+    // that lookups don't stop early at it.
+    int free = slot;
+    for (slot = (slot + 1) & mask; cells[slot] != null; slot = (slot + 1) & mask) {
+      int home = slotOf(cellKeys[slot]);
+      // The cell can move to the free slot unless its home lies cyclically
+      // after the free slot and at or before its current slot.
+      boolean stays = (free <= slot) ? (free < home && home <= slot)
+          : (free < home || home <= slot);
+      if (!stays) {
+        cellKeys[free] = cellKeys[slot];
+        cells[free] = cells[slot];
+        cells[slot] = null;
+        free = slot;
+      }
+    }
+  }
+
+  private void resizeCells(int capacity) {
+    long[] oldKeys = cellKeys;
+    List<Entry<T>>[] oldCells = cells;
+    cellKeys = new long[capacity];
+    cells = newCellArray(capacity);
+    cellCount = 0;
+    for (int i = 0; i < oldCells.length; i++) {
+      if (oldCells[i] != null) {
+        putCell(oldKeys[i], oldCells[i]);
+      }
+    }
+  }
+
+  private void clearCells() {
+    for (int i = 0; i < cells.length; i++) {
+      if (cells[i] != null) {
+        cells[i].clear();
+        spareCells.add(cells[i]);
+      }
+    }
+    Arrays.fill(cells, null);
+    cellCount = 0;
+  }
+}
@@ -0,0 +1,342 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sprites of a canvas, kept in drawing order in a {@link LayeredList}
+ * and by position in a {@link SpatialHash}, together with the queries a
+ * canvas makes of them: finding the sprites in an area, in drawing order,
+ * finding the sprites under a finger, and checking a sprite that has moved
+ * for collisions.
+ *
+ * <p>It knows nothing of Android.  What a sprite is, how it collides and
+ * how it is told so are left to the abstract methods, which a subclass
+ * implements for its type of sprite, so that the same code runs on a
+ * device and, for measuring it, on a desktop JVM.
+ *
+ * <p>Once the lists it reuses have grown, none of the queries allocate.
+ *
+ * @param <T> the type of sprite
+ */
+public abstract class SpriteIndex<T> {
+
+  // Every sprite, in drawing order
+  private final LayeredList<T> items = new LayeredList<T>();
+
+  // Broadphase for collision detection and for finding sprites by position
+  private final SpatialHash<T> grid = new SpatialHash<T>();
+
+  // Scratch lists for collision checks.  Collision handlers can move
+  // sprites, checking for collisions again before the check that raised
+  // them is done, so each level of nesting has a list of its own.
+  private final List<List<T>> collisionCandidates = new ArrayList<List<T>>();
+  private int collisionDepth;
+
+  // The sprites near a finger, reused for every touch
+  private final List<T> touchCandidates = new ArrayList<T>();
+
+  /**
+   * Adds a sprite above every other sprite in the given layer.
+   *
+   * @param item the sprite to add
+   * @param z the sprite's layer
+   * @throws IllegalArgumentException if the sprite is already present
+   */
+  public void add(T item, double z) {
+    items.add(item, z);
+    setSequence(item, items.getSequence(item));
+  }
+
+  /**
+   * Moves a sprite above every other sprite in the given layer, which may
+   * be the one it is in.  Its place in the grid is unchanged.  Does
+   * nothing if the sprite is not present.
+   *
+   * @param item the sprite to move
+   * @param z the sprite's new layer
+   */
+  public void setLayer(T item, double z) {
+    if (items.contains(item)) {
+      items.setLayer(item, z);
+      setSequence(item, items.getSequence(item));
+    }
+  }
+
+  /**
+   * Removes a sprite.  Does nothing if the sprite is not present.
+   *
+   * @param item the sprite to remove
+   */
+  public void remove(T item) {
+    items.remove(item);
+    grid.remove(item);
+  }
+
+  /**
+   * Indicates whether a sprite has been added and not removed.
+   *
+   * @param item the sprite
+   * @return {@code true} if the sprite is present
+   */
+  public boolean contains(T item) {
+    return items.contains(item);
+  }
+
+  /**
+   * Returns the number of sprites.
+   *
+   * @return the number of sprites
+   */
+  public int size() {
+    return items.size();
+  }
+
+  /**
+   * Records the region in which a sprite can collide with others, be
+   * touched or be drawn.  All coordinates are inclusive.  A sprite that is
+   * not present, such as one removed but still moving, is not put back.
+   *
+   * @param item the sprite
+   * @param left leftmost x-coordinate
+   * @param top topmost y-coordinate
+   * @param right rightmost x-coordinate
+   * @param bottom bottommost y-coordinate
+   */
+  public void update(T item, double left, double top, double right, double bottom) {
+    if (items.contains(item)) {
+      grid.update(item, left, top, right, bottom);
+    }
+  }
+
+  /**
+   * Returns the width and height, in pixels, of the grid's cells.
+   *
+   * @return the cell size
+   */
+  public int getCellSize() {
+    return grid.getCellSize();
+  }
+
+  /**
+   * Changes the width and height, in pixels, of the grid's cells.
+   *
+   * @param cellSize the cell size
+   */
+  public void setCellSize(int cellSize) {
+    grid.setCellSize(cellSize);
+  }
+
+  // Queries
+
+  /**
+   * Adds the sprites that may be in the given area to the list, in drawing
+   * order.  They are found through the grid, so the cost depends on the
+   * sprites near the area rather than on all of them.  All coordinates are
+   * inclusive.
+   *
+   * @param left leftmost x-coordinate
+   * @param top topmost y-coordinate
+   * @param right rightmost x-coordinate
+   * @param bottom bottommost y-coordinate
+   * @param out the list to add to
+   */
+  public void find(double left, double top, double right, double bottom, List<T> out) {
+    int start = out.size();
+    grid.query(left, top, right, bottom, out);
+    if (out.size() - start == items.size()) {
+      // Every sprite was found, so they are already known in order.
+      for (int i = 0; i < items.size(); i++) {
+        out.set(start + i, items.get(i));
+      }
+    } else if (out.size() - start > 1) {
+      sortByDrawingOrder(out, start);
+    }
+  }
+
+  /**
+   * Adds the sprites under a finger to the list, in drawing order: those in
+   * the area for which {@link #touches(Object, BoundingBox)} holds.
+   *
+   * @param box the area under the finger
+   * @param out the list to add to
+   */
+  public void findTouched(BoundingBox box, List<T> out) {
+    find(box.getLeft(), box.getTop(), box.getRight(), box.getBottom(), touchCandidates);
+    for (int i = 0; i < touchCandidates.size(); i++) {
+      T item = touchCandidates.get(i);
+      if (touches(item, box)) {
+        out.add(item);
+      }
+    }
+    touchCandidates.clear();
+  }
+
+  /**
+   * Checks if the given sprite now overlaps with or abuts any other sprite
+   * or has ceased to do so.  For a sprite newly in collision with it,
+   * {@link #collided(Object, Object)} is called for each sprite with the
+   * other as the second argument.  For a sprite that had been in collision
+   * with it and no longer is, {@link #noLongerColliding(Object, Object)} is
+   * called likewise.  Collisions are only recognized between sprites that
+   * are both {@link #collidable(Object)}.
+   *
+   * <p>Only sprites sharing a cell of the grid with the moved sprite, plus
+   * those it is already registered as colliding with, are examined.  The
+   * methods called may move sprites, and so check for collisions again.
+   *
+   * @param movedSprite the sprite that has just changed position
+   */
+  public void findCollisions(T movedSprite) {
+    if (collisionDepth == collisionCandidates.size()) {
+      collisionCandidates.add(new ArrayList<T>());
+    }
+    List<T> candidates = collisionCandidates.get(collisionDepth++);
+    try {
+      findCollisions(movedSprite, candidates);
+    } finally {
+      candidates.clear();
+      collisionDepth--;
+    }
+  }
+
+  private void findCollisions(T movedSprite, List<T> candidates) {
+    grid.queryNeighbours(movedSprite, candidates);
+    // A sprite that has left every cell the moved sprite occupies can't be
+    // colliding with it any more, but still has to be told so.
+    addRegisteredCollisions(movedSprite, candidates);
+
+    for (int i = 0; i < candidates.size(); i++) {
+      T sprite = candidates.get(i);
+      if (sprite != movedSprite) {
+        // Check whether we already raised an event for their collision.
+        if (registeredColliding(movedSprite, sprite)) {
+          // If they no longer conflict, note that.
+          if (!collidable(movedSprite) || !collidable(sprite)
+              || !colliding(sprite, movedSprite)) {
+            noLongerColliding(movedSprite, sprite);
+            noLongerColliding(sprite, movedSprite);
+          }
+        } else if (collidable(movedSprite) && collidable(sprite)
+            && colliding(sprite, movedSprite)) {
+          // They now conflict, so raise two collisions.
+          collided(movedSprite, sprite);
+          collided(sprite, movedSprite);
+        }
+      }
+    }
+  }
+
+  // Sorts the end of the list from the given index on into drawing order,
+  // in place.  Collections.sort() would copy the range into a new array;
+  // an insertion sort allocates nothing, and a query finds few sprites.
+  private void sortByDrawingOrder(List<T> list, int start) {
+    for (int i = start + 1; i < list.size(); i++) {
+      T item = list.get(i);
+      int j = i;
+      while (j > start && drawnAfter(list.get(j - 1), item)) {
+        list.set(j, list.get(j - 1));
+        j--;
+      }
+      list.set(j, item);
+    }
+  }
+
+  // The same order as the list's, by layer and then by when they were put
+  // in it, without making it rebuild its flat order.
+  private boolean drawnAfter(T item1, T item2) {
+    int order = Double.compare(getLayer(item1), getLayer(item2));
+    return order > 0 || (order == 0 && getSequence(item1) > getSequence(item2));
+  }
+
+  // Methods for the subclass to implement
+
+  /**
+   * Returns the layer a sprite was last added or moved to.
+   *
+   * @param item the sprite
+   * @return its layer
+   */
+  protected abstract double getLayer(T item);
+
+  /**
+   * Returns the sequence number last passed to
+   * {@link #setSequence(Object, long)} for a sprite.
+   *
+   * @param item the sprite
+   * @return its sequence number
+   */
+  protected abstract long getSequence(T item);
+
+  /**
+   * Keeps a sprite's {@link LayeredList#getSequence(Object) sequence number}
+   * with the sprite, so that sprites can be put in drawing order without
+   * looking them up.
+   *
+   * @param item the sprite
+   * @param sequence its sequence number
+   */
+  protected abstract void setSequence(T item, long sequence);
+
+  /**
+   * Determines whether a finger over the given area touches a sprite.
+   *
+   * @param item the sprite
+   * @param box the area under the finger
+   * @return {@code true} if the sprite can be touched and intersects it
+   */
+  protected abstract boolean touches(T item, BoundingBox box);
+
+  /**
+   * Determines whether a sprite takes part in collisions at all.
+   *
+   * @param item the sprite
+   * @return {@code true} if it can collide
+   */
+  protected abstract boolean collidable(T item);
+
+  /**
+   * Determines whether two sprites found near each other in the grid are
+   * in collision.
+   *
+   * @param item1 one sprite
+   * @param item2 another sprite
+   * @return {@code true} if they are in collision
+   */
+  protected abstract boolean colliding(T item1, T item2);
+
+  /**
+   * Indicates whether a collision between two sprites has been registered.
+   *
+   * @param item the sprite
+   * @param other the other sprite
+   * @return {@code true} if {@code item} was told of the collision and not
+   *         of its end
+   */
+  protected abstract boolean registeredColliding(T item, T other);
+
+  /**
+   * Adds every sprite registered as colliding with the given one to the
+   * list, unless it is already there.
+   *
+   * @param item the sprite
+   * @param out the list to add to
+   */
+  protected abstract void addRegisteredCollisions(T item, List<T> out);
+
+  /**
+   * Tells a sprite of a new collision, registering it.
+   *
+   * @param item the sprite
+   * @param other the sprite it now collides with
+   */
+  protected abstract void collided(T item, T other);
+
+  /**
+   * Tells a sprite that a collision has ended, unregistering it.
+   *
+   * @param item the sprite
+   * @param other the sprite it no longer collides with
+   */
+  protected abstract void noLongerColliding(T item, T other);
+}
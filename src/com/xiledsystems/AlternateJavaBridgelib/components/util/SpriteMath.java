@@ -0,0 +1,221 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.util;
+
+import com.xiledsystems.AlternateJavaBridgelib.components.Component;
+
+/**
+ * The arithmetic behind sprite movement, edges, bouncing and collisions,
+ * kept free of Android classes so that it can be run and measured on a
+ * plain JVM.  {@link com.xiledsystems.AlternateJavaBridgelib.components.SpriteComponent}
+ * and the canvases delegate to it.
+ *
+ * <p>Sprites are described by their upper left corner and their size, in
+ * canvas coordinates, where y increases downwards.
+ *
+ */
+public final class SpriteMath {
+
+  private SpriteMath() {
+  }
+
+  /**
+   * Advances one coordinate of a moving sprite by a single step.
+   *
+   * @param position the current coordinate
+   * @param speed the distance moved per step, in pixels
+   * @param direction the cosine (for x) or sine (for y) of the heading
+   * @return the new coordinate
+   */
+  public static double step(double position, double speed, double direction) {
+    return position + speed * direction;
+  }
+
+  /**
+   * Determines which edge of the canvas, if any, a sprite is past.
+   *
+   * @param x leftmost x-coordinate of the sprite
+   * @param y uppermost y-coordinate of the sprite
+   * @param width width of the sprite
+   * @param height height of the sprite
+   * @param canvasWidth width of the canvas
+   * @param canvasHeight height of the canvas
+   * @return {@link Component#DIRECTION_NONE} if the sprite is within the
+   *         canvas, otherwise the direction of the edge or corner it is past
+   */
+  public static int edgeHit(double x, double y, int width, int height,
+      int canvasWidth, int canvasHeight) {
+    // Note that more than one of these can be true.  For example, if the
+    // sprite is past the northwest boundary, north and west will be true.
+    boolean west = x < 0;
+    boolean north = y < 0;
+    boolean east = x + width > canvasWidth;
+    boolean south = y + height > canvasHeight;
+
+    if (west) {
+      if (north) {
+        return Component.DIRECTION_NORTHWEST;
+      } else if (south) {
+        return Component.DIRECTION_SOUTHWEST;
+      } else {
+        return Component.DIRECTION_WEST;
+      }
+    }
+
+    if (east) {
+      if (north) {
+        return Component.DIRECTION_NORTHEAST;
+      } else if (south) {
+        return Component.DIRECTION_SOUTHEAST;
+      } else {
+        return Component.DIRECTION_EAST;
+      }
+    }
+
+    if (north) {
+      return Component.DIRECTION_NORTH;
+    }
+    if (south) {
+      return Component.DIRECTION_SOUTH;
+    }
+    return Component.DIRECTION_NONE;
+  }
+
+  /**
+   * Returns the coordinate that brings a sprite back within the canvas along
+   * one axis.  A sprite too big to fit is aligned with the left or top edge.
+   *
+   * @param position leftmost x-coordinate or uppermost y-coordinate of the
+   *        sprite
+   * @param size width or height of the sprite
+   * @param canvasSize width or height of the canvas
+   * @return the coordinate within bounds, which is {@code position} itself
+   *         if the sprite is already within them
+   */
+  public static double intoBounds(double position, int size, int canvasSize) {
+    if (size > canvasSize || position < 0) {
+      return 0;
+    }
+    if (position + size > canvasSize) {
+      return canvasSize - size;
+    }
+    return position;
+  }
+
+  /**
+   * Normalizes an angle to be in the range [0, 360).
+   *
+   * @param angle original value
+   * @return equivalent angle in the range [0, 360).
+   */
+  public static double normalizeAngle(double angle) {
+    angle = angle % 360;
+    // The following step is necessary because Java's modulus operation yields a
+    // negative number if the dividend is negative and the divisor is positive.
+    if (angle < 0) {
+      angle += 360;
+    }
+    return angle;
+  }
+
+  /**
+   * Returns the heading of a sprite after bouncing off an edge.  The heading
+   * is only changed if the sprite was moving toward that edge, which avoids
+   * oscillations.
+   *
+   * @param heading degrees above the positive x-axis
+   * @param edge the direction of the edge to bounce off of
+   * @return the new heading, or {@code heading} itself if it is unchanged
+   */
+  public static double bounceHeading(double heading, int edge) {
+    double normalizedAngle = normalizeAngle(heading);
+
+    if ((edge == Component.DIRECTION_EAST
+         && (normalizedAngle < 90 || normalizedAngle > 270))
+        || (edge == Component.DIRECTION_WEST
+            && (normalizedAngle > 90 && normalizedAngle < 270))) {
+      return 180 - normalizedAngle;
+    } else if ((edge == Component.DIRECTION_NORTH
+                && normalizedAngle > 0 && normalizedAngle < 180)
+               || (edge == Component.DIRECTION_SOUTH && normalizedAngle > 180)) {
+      return 360 - normalizedAngle;
+    } else if ((edge == Component.DIRECTION_NORTHEAST
+                && normalizedAngle > 0 && normalizedAngle < 90)
+              || (edge == Component.DIRECTION_NORTHWEST
+                  && normalizedAngle > 90 && normalizedAngle < 180)
+              || (edge == Component.DIRECTION_SOUTHWEST
+                  && normalizedAngle > 180 && normalizedAngle < 270)
+              || (edge == Component.DIRECTION_SOUTHEAST && normalizedAngle > 270)) {
+      return 180 + normalizedAngle;
+    }
+    return heading;
+  }
+
+  /**
+   * Determines whether two sprites' rectangles overlap or abut, each grown by
+   * a pixel so that sprites that merely touch count as colliding.
+   *
+   * @param x1 leftmost x-coordinate of the first sprite
+   * @param y1 uppermost y-coordinate of the first sprite
+   * @param width1 width of the first sprite
+   * @param height1 height of the first sprite
+   * @param x2 leftmost x-coordinate of the second sprite
+   * @param y2 uppermost y-coordinate of the second sprite
+   * @param width2 width of the second sprite
+   * @param height2 height of the second sprite
+   * @return {@code true} if they are in collision, {@code false} otherwise
+   */
+  public static boolean rectanglesColliding(double x1, double y1, int width1, int height1,
+      double x2, double y2, int width2, int height2) {
+    return x1 - 1 <= x2 + width2 && x1 + width1 >= x2 - 1
+        && y1 - 1 <= y2 + height2 && y1 + height1 >= y2 - 1;
+  }
+
+  /**
+   * Determines whether two sprites using circle collision are in collision.
+   * Each sprite's position is taken as the center of its circle.
+   *
+   * @param x1 x-coordinate of the first sprite
+   * @param y1 y-coordinate of the first sprite
+   * @param radius1 collision radius of the first sprite
+   * @param x2 x-coordinate of the second sprite
+   * @param y2 y-coordinate of the second sprite
+   * @param radius2 collision radius of the second sprite
+   * @return {@code true} if they are in collision, {@code false} otherwise
+   */
+  public static boolean circlesColliding(double x1, double y1, double radius1,
+      double x2, double y2, double radius2) {
+    int dx = Math.abs((int) (x2 - x1));
+    int dy = Math.abs((int) (y2 - y1));
+    double squaredDistance = (radius1 + radius2) + (radius1 + radius2);
+    return (dx * dx) + (dy * dy) <= squaredDistance;
+  }
+
+  /**
+   * Determines whether a sprite using circle collision is in collision with
+   * a rectangular one.  The circle's center is the position of its sprite.
+   *
+   * @param circleX x-coordinate of the circle's center
+   * @param circleY y-coordinate of the circle's center
+   * @param radius collision radius of the circle
+   * @param x leftmost x-coordinate of the rectangle
+   * @param y uppermost y-coordinate of the rectangle
+   * @param width width of the rectangle
+   * @param height height of the rectangle
+   * @return {@code true} if they are in collision, {@code false} otherwise
+   */
+  public static boolean circleRectangleColliding(double circleX, double circleY, double radius,
+      double x, double y, int width, int height) {
+    double halfWidth = width / 2;
+    double halfHeight = height / 2;
+    double distanceX = Math.abs(circleX - x - halfWidth);
+    double distanceY = Math.abs(circleY - y - halfHeight);
+    if (distanceX > halfWidth + radius || distanceY > halfHeight + radius) {
+      return false;
+    }
+    if (distanceX <= halfWidth || distanceY <= halfHeight) {
+      return true;
+    }
+    double cornerX = distanceX - halfWidth;
+    double cornerY = distanceY - halfHeight;
+    return cornerX * cornerX + cornerY * cornerY <= radius * radius;
+  }
+}
@@ -0,0 +1,167 @@
+package com.xiledsystems.AlternateJavaBridgelib.components.util;
+
+/**
+ * Camera onto a world that may be bigger than the canvas showing it.
+ * Sprites live in world coordinates; the canvas shows the part of the world
+ * starting at the camera position, magnified by the zoom.  With the camera
+ * at the origin and a zoom of 1, world and canvas coordinates are the same.
+ *
+ * <p>A world size of 0 means the world is the size of the canvas.
+ *
+ */
+public final class Viewport {
+
+  private int worldWidth;
+  private int worldHeight;
+  private double cameraX;
+  private double cameraY;
+  private double zoom = 1;
+
+  /**
+   * Returns the width of the world.
+   *
+   * @return the world width, or 0 if it is the canvas width
+   */
+  public int getWorldWidth() {
+    return worldWidth;
+  }
+
+  /**
+   * Specifies the width of the world.
+   *
+   * @param width the world width, or 0 to use the canvas width
+   */
+  public void setWorldWidth(int width) {
+    if (width < 0) {
+      throw new IllegalArgumentException("Illegal world width " + width);
+    }
+    worldWidth = width;
+  }
+
+  /**
+   * Returns the height of the world.
+   *
+   * @return the world height, or 0 if it is the canvas height
+   */
+  public int getWorldHeight() {
+    return worldHeight;
+  }
+
+  /**
+   * Specifies the height of the world.
+   *
+   * @param height the world height, or 0 to use the canvas height
+   */
+  public void setWorldHeight(int height) {
+    if (height < 0) {
+      throw new IllegalArgumentException("Illegal world height " + height);
+    }
+    worldHeight = height;
+  }
+
+  /**
+   * Returns the world x-coordinate shown at the left edge of the canvas.
+   *
+   * @return the camera's x-coordinate
+   */
+  public double getCameraX() {
+    return cameraX;
+  }
+
+  /**
+   * Specifies the world x-coordinate shown at the left edge of the canvas.
+   *
+   * @param x the camera's x-coordinate
+   */
+  public void setCameraX(double x) {
+    cameraX = x;
+  }
+
+  /**
+   * Returns the world y-coordinate shown at the top edge of the canvas.
+   *
+   * @return the camera's y-coordinate
+   */
+  public double getCameraY() {
+    return cameraY;
+  }
+
+  /**
+   * Specifies the world y-coordinate shown at the top edge of the canvas.
+   *
+   * @param y the camera's y-coordinate
+   */
+  public void setCameraY(double y) {
+    cameraY = y;
+  }
+
+  /**
+   * Returns the number of canvas pixels per world pixel.
+   *
+   * @return the zoom
+   */
+  public double getZoom() {
+    return zoom;
+  }
+
+  /**
+   * Specifies the number of canvas pixels per world pixel.
+   *
+   * @param zoom the zoom, greater than 0
+   */
+  public void setZoom(double zoom) {
+    if (!(zoom > 0)) {
+      throw new IllegalArgumentException("Illegal zoom " + zoom);
+    }
+    this.zoom = zoom;
+  }
+
+  /**
+   * Determines whether world and canvas coordinates are the same.
+   *
+   * @return {@code true} if the camera is at the origin with a zoom of 1
+   */
+  public boolean isIdentity() {
+    return cameraX == 0 && cameraY == 0 && zoom == 1;
+  }
+
+  /**
+   * Converts a canvas x-coordinate to a world x-coordinate.
+   *
+   * @param x the canvas x-coordinate
+   * @return the world x-coordinate
+   */
+  public double toWorldX(double x) {
+    return cameraX + x / zoom;
+  }
+
+  /**
+   * Converts a canvas y-coordinate to a world y-coordinate.
+   *
+   * @param y the canvas y-coordinate
+   * @return the world y-coordinate
+   */
+  public double toWorldY(double y) {
+    return cameraY + y / zoom;
+  }
+
+  /**
+   * Converts a world x-coordinate to a canvas x-coordinate.
+   *
+   * @param x the world x-coordinate
+   * @return the canvas x-coordinate
+   */
+  public double toCanvasX(double x) {
+    return (x - cameraX) * zoom;
+  }
+
+  /**
+   * Converts a world y-coordinate to a canvas y-coordinate.
+   *
+   * @param y the world y-coordinate
+   * @return the canvas y-coordinate
+   */
+  public double toCanvasY(double y) {
+    return (y - cameraY) * zoom;
+  }
+}